@@ -0,0 +1,204 @@
+package com.github.mongobat.inmemory;
+
+import org.bson.*;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs aggregation pipelines: $match, $project, $addFields/$set, $unset, $sort, $skip, $limit, $count,
+ * $group, $unwind, $replaceRoot, $sample, $bucketAuto and $lookup
+ */
+final class Aggregation {
+
+  private static final Random RANDOM = new Random();
+
+  private Aggregation() {
+  }
+
+  /**
+   * @param input     documents of the aggregated collection
+   * @param pipeline  pipeline stages
+   * @param resolver  documents of other collections of the database, for $lookup
+   * @return aggregation result
+   */
+  static List<BsonDocument> run(List<BsonDocument> input, List<BsonDocument> pipeline, Function<String, List<BsonDocument>> resolver) {
+    List<BsonDocument> documents = input;
+    for (BsonDocument stage : pipeline) {
+      String name = stage.getFirstKey();
+      BsonValue specification = stage.get(name);
+      documents = stage(name, specification, documents, resolver);
+    }
+    return documents;
+  }
+
+  private static List<BsonDocument> stage(String name, BsonValue specification, List<BsonDocument> documents,
+      Function<String, List<BsonDocument>> resolver) {
+    switch (name) {
+      case "$match":
+        return documents.stream()
+            .filter(document -> QueryMatcher.matches(document, specification.asDocument()))
+            .collect(Collectors.toList());
+      case "$project":
+        return documents.stream()
+            .map(document -> Projection.apply(document, specification.asDocument()))
+            .collect(Collectors.toList());
+      case "$addFields":
+      case "$set":
+        return documents.stream().map(document -> {
+          BsonDocument result = document.clone();
+          specification.asDocument().forEach((path, expression) -> {
+            BsonValue value = Expressions.evaluate(expression, document);
+            if (value != null) {
+              Bsons.set(result, path, Bsons.copy(value));
+            }
+          });
+          return result;
+        }).collect(Collectors.toList());
+      case "$unset": {
+        List<BsonValue> paths = specification.isArray() ? specification.asArray() : List.of(specification);
+        return documents.stream().map(document -> {
+          BsonDocument result = document.clone();
+          paths.forEach(path -> Bsons.remove(result, path.asString().getValue()));
+          return result;
+        }).collect(Collectors.toList());
+      }
+      case "$sort": {
+        List<BsonDocument> sorted = new ArrayList<>(documents);
+        sorted.sort(Sorting.comparator(specification.asDocument()));
+        return sorted;
+      }
+      case "$skip":
+        return documents.stream().skip(specification.asNumber().longValue()).collect(Collectors.toList());
+      case "$limit":
+        return documents.stream().limit(specification.asNumber().longValue()).collect(Collectors.toList());
+      case "$count":
+        return documents.isEmpty() ? List.of()
+            : List.of(new BsonDocument(specification.asString().getValue(), new BsonInt32(documents.size())));
+      case "$group":
+        return group(specification.asDocument(), documents);
+      case "$unwind":
+        return unwind(specification, documents);
+      case "$replaceRoot":
+      case "$replaceWith": {
+        BsonValue root = name.equals("$replaceRoot") ? specification.asDocument().get("newRoot") : specification;
+        return documents.stream().map(document -> Expressions.evaluate(root, document).asDocument()).collect(Collectors.toList());
+      }
+      case "$sample": {
+        List<BsonDocument> shuffled = new ArrayList<>(documents);
+        Collections.shuffle(shuffled, RANDOM);
+        return shuffled.stream().limit(specification.asDocument().getNumber("size").longValue()).collect(Collectors.toList());
+      }
+      case "$bucketAuto":
+        return bucketAuto(specification.asDocument(), documents);
+      case "$lookup":
+        return lookup(specification.asDocument(), documents, resolver);
+      default:
+        throw InMemoryErrors.unsupported("Aggregation stage " + name);
+    }
+  }
+
+  private static List<BsonDocument> group(BsonDocument specification, List<BsonDocument> documents) {
+    Map<BsonValue, Map<String, Expressions.Accumulator>> groups = new TreeMap<>(Bsons.ORDER);
+    Map<BsonValue, BsonValue> keys = new LinkedHashMap<>();
+    for (BsonDocument document : documents) {
+      BsonValue key = Expressions.evaluate(specification.get("_id"), document);
+      BsonValue groupKey = key == null ? BsonNull.VALUE : key;
+      Map<String, Expressions.Accumulator> accumulators = groups.computeIfAbsent(groupKey, k -> {
+        keys.put(k, k);
+        Map<String, Expressions.Accumulator> created = new LinkedHashMap<>();
+        specification.forEach((field, accumulator) -> {
+          if (!field.equals("_id")) {
+            created.put(field, Expressions.Accumulator.create(accumulator.asDocument().getFirstKey()));
+          }
+        });
+        return created;
+      });
+      accumulators.forEach((field, accumulator) -> {
+        BsonValue expression = specification.getDocument(field).values().iterator().next();
+        accumulator.accept(Expressions.evaluate(expression, document));
+      });
+    }
+
+    List<BsonDocument> result = new ArrayList<>();
+    for (BsonValue key : keys.keySet()) {
+      BsonDocument group = new BsonDocument("_id", key);
+      groups.get(key).forEach((field, accumulator) -> group.put(field, accumulator.result()));
+      result.add(group);
+    }
+    return result;
+  }
+
+  private static List<BsonDocument> unwind(BsonValue specification, List<BsonDocument> documents) {
+    String path = (specification.isString() ? specification : specification.asDocument().get("path")).asString().getValue().substring(1);
+    boolean preserve = specification.isDocument() && specification.asDocument().getBoolean("preserveNullAndEmptyArrays", BsonBoolean.FALSE).getValue();
+
+    List<BsonDocument> result = new ArrayList<>();
+    for (BsonDocument document : documents) {
+      BsonValue value = Bsons.get(document, path);
+      if (value != null && value.isArray() && !value.asArray().isEmpty()) {
+        for (BsonValue element : value.asArray()) {
+          BsonDocument unwound = document.clone();
+          Bsons.set(unwound, path, element);
+          result.add(unwound);
+        }
+      } else if (value != null && !value.isArray() && !value.isNull()) {
+        result.add(document);
+      } else if (preserve) {
+        result.add(document);
+      }
+    }
+    return result;
+  }
+
+  private static List<BsonDocument> bucketAuto(BsonDocument specification, List<BsonDocument> documents) {
+    BsonValue groupBy = specification.get("groupBy");
+    int buckets = specification.getNumber("buckets").intValue();
+    List<BsonValue> values = documents.stream()
+        .map(document -> Expressions.evaluate(groupBy, document))
+        .map(value -> value == null ? BsonNull.VALUE : value)
+        .sorted(Bsons.ORDER)
+        .collect(Collectors.toList());
+
+    List<BsonDocument> result = new ArrayList<>();
+    int size = (int) Math.ceil((double) values.size() / buckets);
+    for (int start = 0; start < values.size(); ) {
+      int end = Math.min(values.size(), start + size);
+      // equal values stay in one bucket
+      while (end < values.size() && Bsons.equal(values.get(end - 1), values.get(end))) {
+        end++;
+      }
+      BsonValue max = end < values.size() ? values.get(end) : values.get(end - 1);
+      result.add(new BsonDocument("_id", new BsonDocument("min", values.get(start)).append("max", max))
+          .append("count", new BsonInt32(end - start)));
+      start = end;
+    }
+    return result;
+  }
+
+  private static List<BsonDocument> lookup(BsonDocument specification, List<BsonDocument> documents,
+      Function<String, List<BsonDocument>> resolver) {
+    if (!specification.containsKey("localField")) {
+      throw InMemoryErrors.unsupported("$lookup with pipeline");
+    }
+    List<BsonDocument> foreign = resolver.apply(specification.getString("from").getValue());
+    String localField = specification.getString("localField").getValue();
+    String foreignField = specification.getString("foreignField").getValue();
+    String as = specification.getString("as").getValue();
+
+    List<BsonDocument> result = new ArrayList<>();
+    for (BsonDocument document : documents) {
+      BsonValue local = Bsons.get(document, localField);
+      BsonValue condition = local == null ? BsonNull.VALUE : local.isArray() ? new BsonDocument("$in", local) : local;
+      BsonArray matched = new BsonArray();
+      foreign.stream()
+          .filter(candidate -> QueryMatcher.matchesValues(Bsons.resolve(candidate, foreignField), condition))
+          .forEach(matched::add);
+      BsonDocument joined = document.clone();
+      Bsons.set(joined, as, matched);
+      result.add(joined);
+    }
+    return result;
+  }
+}
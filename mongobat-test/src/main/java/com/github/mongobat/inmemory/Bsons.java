@@ -0,0 +1,387 @@
+package com.github.mongobat.inmemory;
+
+import org.bson.*;
+import org.bson.codecs.Codec;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import org.bson.types.Decimal128;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BSON value helpers: comparison in MongoDB type order, dotted path access, numeric arithmetic and codecs
+ */
+final class Bsons {
+
+  static final Comparator<BsonValue> ORDER = Bsons::compare;
+
+  private Bsons() {
+  }
+
+  static BsonDocument toBsonDocument(Bson bson, CodecRegistry codecRegistry) {
+    return bson == null ? new BsonDocument() : bson.toBsonDocument(BsonDocument.class, codecRegistry);
+  }
+
+  static List<BsonDocument> toBsonDocuments(List<? extends Bson> bsons, CodecRegistry codecRegistry) {
+    List<BsonDocument> result = new ArrayList<>(bsons.size());
+    for (Bson bson : bsons) {
+      result.add(toBsonDocument(bson, codecRegistry));
+    }
+    return result;
+  }
+
+  /**
+   * Encodes a document, generating its <tt>_id</tt> the same way the driver does
+   */
+  @SuppressWarnings("unchecked")
+  static <T> BsonDocument encode(T document, CodecRegistry codecRegistry, boolean generateId) {
+    Codec<T> codec = (Codec<T>) codecRegistry.get(document.getClass());
+    if (generateId && codec instanceof CollectibleCodec) {
+      CollectibleCodec<T> collectibleCodec = (CollectibleCodec<T>) codec;
+      if (!collectibleCodec.documentHasId(document)) {
+        document = collectibleCodec.generateIdIfAbsentFromDocument(document);
+      }
+    }
+    BsonDocument result = new BsonDocument();
+    codec.encode(new BsonDocumentWriter(result), document, EncoderContext.builder().isEncodingCollectibleDocument(true).build());
+    return result;
+  }
+
+  static <T> T decode(BsonDocument document, Class<T> documentClass, CodecRegistry codecRegistry) {
+    if (document == null) {
+      return null;
+    }
+    if (documentClass == BsonDocument.class) {
+      return documentClass.cast(document.clone());
+    }
+    return codecRegistry.get(documentClass).decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+  }
+
+  static <T> T decodeValue(BsonValue value, Class<T> resultClass, CodecRegistry codecRegistry) {
+    BsonDocument wrapper = new BsonDocument("v", value);
+    BsonDocumentReader reader = new BsonDocumentReader(wrapper);
+    reader.readStartDocument();
+    reader.readName();
+    return codecRegistry.get(resultClass).decode(reader, DecoderContext.builder().build());
+  }
+
+  /**
+   * @return deep copy of mutable values (documents and arrays)
+   */
+  static BsonValue copy(BsonValue value) {
+    if (value.isDocument()) {
+      return value.asDocument().clone();
+    } else if (value.isArray()) {
+      return value.asArray().clone();
+    }
+    return value;
+  }
+
+  // paths
+
+  /**
+   * @return values found at the path; arrays on the way are traversed element by element
+   */
+  static List<BsonValue> resolve(BsonValue value, String path) {
+    List<BsonValue> result = new ArrayList<>();
+    resolve(value, path.split("\\."), 0, result);
+    return result;
+  }
+
+  private static void resolve(BsonValue value, String[] parts, int index, List<BsonValue> result) {
+    if (index == parts.length) {
+      result.add(value);
+      return;
+    }
+    String part = parts[index];
+    if (value.isDocument()) {
+      BsonValue child = value.asDocument().get(part);
+      if (child != null) {
+        resolve(child, parts, index + 1, result);
+      }
+    } else if (value.isArray()) {
+      BsonArray array = value.asArray();
+      if (isIndex(part)) {
+        int i = Integer.parseInt(part);
+        if (i < array.size()) {
+          resolve(array.get(i), parts, index + 1, result);
+        }
+      } else {
+        for (BsonValue element : array) {
+          if (element.isDocument()) {
+            resolve(element, parts, index, result);
+          }
+        }
+      }
+    }
+  }
+
+  static BsonValue get(BsonDocument document, String path) {
+    BsonValue current = document;
+    for (String part : path.split("\\.")) {
+      if (current.isDocument()) {
+        current = current.asDocument().get(part);
+      } else if (current.isArray() && isIndex(part) && Integer.parseInt(part) < current.asArray().size()) {
+        current = current.asArray().get(Integer.parseInt(part));
+      } else {
+        return null;
+      }
+      if (current == null) {
+        return null;
+      }
+    }
+    return current;
+  }
+
+  static void set(BsonDocument document, String path, BsonValue value) {
+    String[] parts = path.split("\\.");
+    BsonValue current = document;
+    for (int i = 0; i < parts.length - 1; i++) {
+      current = child(current, parts[i], path);
+    }
+    String last = parts[parts.length - 1];
+    if (current.isDocument()) {
+      current.asDocument().put(last, value);
+    } else if (current.isArray() && isIndex(last)) {
+      BsonArray array = current.asArray();
+      int index = Integer.parseInt(last);
+      while (array.size() <= index) {
+        array.add(BsonNull.VALUE);
+      }
+      array.set(index, value);
+    } else {
+      throw InMemoryErrors.writeError(28, "Cannot create field '" + last + "' in element " + current + " of path " + path);
+    }
+  }
+
+  private static BsonValue child(BsonValue current, String part, String path) {
+    if (current.isDocument()) {
+      BsonDocument document = current.asDocument();
+      BsonValue child = document.get(part);
+      if (child == null || child.isNull()) {
+        child = new BsonDocument();
+        document.put(part, child);
+      }
+      return child;
+    } else if (current.isArray() && isIndex(part)) {
+      BsonArray array = current.asArray();
+      int index = Integer.parseInt(part);
+      while (array.size() <= index) {
+        array.add(BsonNull.VALUE);
+      }
+      if (array.get(index).isNull()) {
+        array.set(index, new BsonDocument());
+      }
+      return array.get(index);
+    }
+    throw InMemoryErrors.writeError(28, "Cannot create field '" + part + "' in element " + current + " of path " + path);
+  }
+
+  static BsonValue remove(BsonDocument document, String path) {
+    int dot = path.lastIndexOf('.');
+    BsonValue parent = dot < 0 ? document : get(document, path.substring(0, dot));
+    String last = path.substring(dot + 1);
+    if (parent != null && parent.isDocument()) {
+      return parent.asDocument().remove(last);
+    } else if (parent != null && parent.isArray() && isIndex(last) && Integer.parseInt(last) < parent.asArray().size()) {
+      // unset keeps array positions
+      return parent.asArray().set(Integer.parseInt(last), BsonNull.VALUE);
+    }
+    return null;
+  }
+
+  private static boolean isIndex(String part) {
+    return !part.isEmpty() && part.chars().allMatch(Character::isDigit);
+  }
+
+  // comparison
+
+  static int compare(BsonValue a, BsonValue b) {
+    int rankA = rank(a);
+    int rankB = rank(b);
+    if (rankA != rankB) {
+      return Integer.compare(rankA, rankB);
+    }
+    switch (rankA) {
+      case 3:
+        return compareNumbers(a, b);
+      case 4:
+        return stringValue(a).compareTo(stringValue(b));
+      case 5:
+        return compareDocuments(a.asDocument(), b.asDocument());
+      case 6:
+        return compareArrays(a.asArray(), b.asArray());
+      case 7:
+        return compareBinaries(a.asBinary(), b.asBinary());
+      case 8:
+        return a.asObjectId().getValue().compareTo(b.asObjectId().getValue());
+      case 9:
+        return Boolean.compare(a.asBoolean().getValue(), b.asBoolean().getValue());
+      case 10:
+        return Long.compare(a.asDateTime().getValue(), b.asDateTime().getValue());
+      case 11:
+        return a.asTimestamp().compareTo(b.asTimestamp());
+      case 12:
+        return a.asRegularExpression().getPattern().compareTo(b.asRegularExpression().getPattern());
+      default:
+        return 0;
+    }
+  }
+
+  static boolean equal(BsonValue a, BsonValue b) {
+    return compare(a, b) == 0;
+  }
+
+  /**
+   * @return true if values are comparable by range operators ($gt, $lt...)
+   */
+  static boolean sameTypeBracket(BsonValue a, BsonValue b) {
+    return rank(a) == rank(b);
+  }
+
+  private static int rank(BsonValue value) {
+    switch (value.getBsonType()) {
+      case MIN_KEY:
+        return 1;
+      case NULL:
+      case UNDEFINED:
+        return 2;
+      case INT32:
+      case INT64:
+      case DOUBLE:
+      case DECIMAL128:
+        return 3;
+      case SYMBOL:
+      case STRING:
+        return 4;
+      case DOCUMENT:
+        return 5;
+      case ARRAY:
+        return 6;
+      case BINARY:
+        return 7;
+      case OBJECT_ID:
+        return 8;
+      case BOOLEAN:
+        return 9;
+      case DATE_TIME:
+        return 10;
+      case TIMESTAMP:
+        return 11;
+      case REGULAR_EXPRESSION:
+        return 12;
+      case MAX_KEY:
+        return 14;
+      default:
+        return 13;
+    }
+  }
+
+  private static String stringValue(BsonValue value) {
+    return value.isSymbol() ? value.asSymbol().getSymbol() : value.asString().getValue();
+  }
+
+  private static int compareNumbers(BsonValue a, BsonValue b) {
+    if (isIntegral(a) && isIntegral(b)) {
+      return Long.compare(a.asNumber().longValue(), b.asNumber().longValue());
+    }
+    if (a.isDecimal128() || b.isDecimal128()) {
+      return toBigDecimal(a).compareTo(toBigDecimal(b));
+    }
+    return Double.compare(a.asNumber().doubleValue(), b.asNumber().doubleValue());
+  }
+
+  private static int compareDocuments(BsonDocument a, BsonDocument b) {
+    List<Map.Entry<String, BsonValue>> entriesA = new ArrayList<>(a.entrySet());
+    List<Map.Entry<String, BsonValue>> entriesB = new ArrayList<>(b.entrySet());
+    for (int i = 0; i < Math.min(entriesA.size(), entriesB.size()); i++) {
+      int result = compare(entriesA.get(i).getValue(), entriesB.get(i).getValue());
+      if (result == 0) {
+        result = entriesA.get(i).getKey().compareTo(entriesB.get(i).getKey());
+      }
+      if (result != 0) {
+        return result;
+      }
+    }
+    return Integer.compare(entriesA.size(), entriesB.size());
+  }
+
+  private static int compareArrays(BsonArray a, BsonArray b) {
+    for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+      int result = compare(a.get(i), b.get(i));
+      if (result != 0) {
+        return result;
+      }
+    }
+    return Integer.compare(a.size(), b.size());
+  }
+
+  private static int compareBinaries(BsonBinary a, BsonBinary b) {
+    if (a.getData().length != b.getData().length) {
+      return Integer.compare(a.getData().length, b.getData().length);
+    }
+    if (a.getType() != b.getType()) {
+      return Byte.compare(a.getType(), b.getType());
+    }
+    for (int i = 0; i < a.getData().length; i++) {
+      int result = Integer.compare(a.getData()[i] & 0xff, b.getData()[i] & 0xff);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+
+  // numbers
+
+  static boolean isIntegral(BsonValue value) {
+    return value.isInt32() || value.isInt64();
+  }
+
+  static BigDecimal toBigDecimal(BsonValue value) {
+    if (value.isDecimal128()) {
+      return value.asDecimal128().getValue().bigDecimalValue();
+    } else if (isIntegral(value)) {
+      return BigDecimal.valueOf(value.asNumber().longValue());
+    }
+    return BigDecimal.valueOf(value.asNumber().doubleValue());
+  }
+
+  static BsonValue add(BsonValue a, BsonValue b) {
+    if (a.isDecimal128() || b.isDecimal128()) {
+      return new BsonDecimal128(new Decimal128(toBigDecimal(a).add(toBigDecimal(b))));
+    } else if (a.isDouble() || b.isDouble()) {
+      return new BsonDouble(a.asNumber().doubleValue() + b.asNumber().doubleValue());
+    }
+    long sum = Math.addExact(a.asNumber().longValue(), b.asNumber().longValue());
+    return a.isInt32() && b.isInt32() && sum == (int) sum ? new BsonInt32((int) sum) : new BsonInt64(sum);
+  }
+
+  static BsonValue multiply(BsonValue a, BsonValue b) {
+    if (a.isDecimal128() || b.isDecimal128()) {
+      return new BsonDecimal128(new Decimal128(toBigDecimal(a).multiply(toBigDecimal(b))));
+    } else if (a.isDouble() || b.isDouble()) {
+      return new BsonDouble(a.asNumber().doubleValue() * b.asNumber().doubleValue());
+    }
+    long product = Math.multiplyExact(a.asNumber().longValue(), b.asNumber().longValue());
+    return a.isInt32() && b.isInt32() && product == (int) product ? new BsonInt32((int) product) : new BsonInt64(product);
+  }
+
+  static boolean isTruthy(BsonValue value) {
+    if (value == null || value.isNull() || value.getBsonType() == BsonType.UNDEFINED) {
+      return false;
+    } else if (value.isBoolean()) {
+      return value.asBoolean().getValue();
+    } else if (value.isNumber() || value.isDecimal128()) {
+      return toBigDecimal(value).signum() != 0;
+    }
+    return true;
+  }
+}
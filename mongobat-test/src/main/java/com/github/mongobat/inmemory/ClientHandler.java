@@ -0,0 +1,47 @@
+package com.github.mongobat.inmemory;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoIterable;
+import org.bson.BsonString;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+/**
+ * Implements {@link MongoClient}. Databases live as long as the client, closing it is a no-op.
+ */
+final class ClientHandler extends ProxyHandler {
+
+  private final Map<String, InMemoryDatabase> databases = new ConcurrentSkipListMap<>();
+
+  ClientHandler() {
+    super(MongoClient.class);
+  }
+
+  InMemoryDatabase database(String name) {
+    return databases.computeIfAbsent(name, InMemoryDatabase::new);
+  }
+
+  @Override
+  Object handle(Object proxy, Method method, Object[] args) {
+    switch (method.getName()) {
+      case "getDatabase":
+        return new DatabaseHandler(database((String) args[0]), Settings.DEFAULT).proxy();
+      case "listDatabaseNames":
+        return new ResultIterableHandler(MongoIterable.class, query -> databases.entrySet().stream()
+            .filter(database -> !database.getValue().collectionNames().isEmpty())
+            .map(database -> new BsonString(database.getKey()))
+            .collect(Collectors.toList()),
+            value -> value.asString().getValue(), null, Settings.DEFAULT.codecRegistry).proxy();
+      case "close":
+        return null;
+      case "watch":
+        throw InMemoryErrors.commandError(InMemoryErrors.CHANGE_STREAMS_NOT_SUPPORTED,
+            "The $changeStream stage is only supported on replica sets");
+      default:
+        throw unsupported(method);
+    }
+  }
+}
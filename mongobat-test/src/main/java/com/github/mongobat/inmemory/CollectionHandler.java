@@ -0,0 +1,390 @@
+package com.github.mongobat.inmemory;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoNamespace;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteInsert;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.DistinctIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.ListIndexesIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.*;
+import com.mongodb.client.result.InsertManyResult;
+import com.mongodb.client.result.InsertOneResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.*;
+import org.bson.conversions.Bson;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Implements {@link MongoCollection} on top of an {@link InMemoryCollection}
+ */
+final class CollectionHandler extends ProxyHandler {
+
+  private final InMemoryDatabase database;
+  private final String name;
+  private final Class<?> documentClass;
+  private final Settings settings;
+
+  CollectionHandler(InMemoryDatabase database, String name, Class<?> documentClass, Settings settings) {
+    super(MongoCollection.class);
+    this.database = database;
+    this.name = name;
+    this.documentClass = documentClass;
+    this.settings = settings;
+  }
+
+  @Override
+  String describe() {
+    return "InMemoryCollection[" + database.getName() + "." + name + "]";
+  }
+
+  @Override
+  Object handle(Object proxy, Method method, Object[] args) {
+    String methodName = method.getName();
+    Object setting = settings.get(methodName);
+    if (setting != null) {
+      return setting;
+    }
+    Settings changed = args.length == 1 ? settings.with(methodName, args[0]) : null;
+    if (changed != null) {
+      return new CollectionHandler(database, name, documentClass, changed).proxy();
+    }
+
+    switch (methodName) {
+      case "getNamespace":
+        return new MongoNamespace(database.getName(), name);
+      case "getDocumentClass":
+        return documentClass;
+      case "withDocumentClass":
+        return new CollectionHandler(database, name, (Class<?>) args[0], settings).proxy();
+      case "find":
+        return find(args);
+      case "aggregate":
+        return aggregate(args);
+      case "distinct":
+        return distinct(args);
+      case "countDocuments":
+        return countDocuments(args);
+      case "estimatedDocumentCount":
+        return collection().size();
+      case "insertOne":
+        return InsertOneResult.acknowledged(collection().insert(encode(args[0], true)));
+      case "insertMany":
+        return insertMany(args);
+      case "bulkWrite":
+        @SuppressWarnings("unchecked")
+        List<? extends WriteModel<Object>> requests = (List<? extends WriteModel<Object>>) args[0];
+        BulkWriteOptions bulkWriteOptions = argument(args, BulkWriteOptions.class);
+        return bulkWrite(requests, bulkWriteOptions == null || bulkWriteOptions.isOrdered());
+      case "updateOne":
+        return update(args, false);
+      case "updateMany":
+        return update(args, true);
+      case "replaceOne":
+        ReplaceOptions replaceOptions = argument(args, ReplaceOptions.class);
+        return collection().update(filter(args[0]), encode(args[1], false), true, false,
+            replaceOptions != null && replaceOptions.isUpsert());
+      case "deleteOne":
+        return collection().delete(filter(args[0]), false);
+      case "deleteMany":
+        return collection().delete(filter(args[0]), true);
+      case "findOneAndDelete":
+        return findOneAndDelete(args);
+      case "findOneAndUpdate":
+        return findOneAndUpdate(args);
+      case "findOneAndReplace":
+        return findOneAndReplace(args);
+      case "createIndex":
+        IndexOptions indexOptions = argument(args, IndexOptions.class);
+        return collection().createIndex(filter(args[0]), indexOptions == null ? new IndexOptions() : indexOptions);
+      case "createIndexes":
+        @SuppressWarnings("unchecked")
+        List<IndexModel> indexes = (List<IndexModel>) args[0];
+        return indexes.stream()
+            .map(index -> collection().createIndex(filter(index.getKeys()), index.getOptions()))
+            .collect(Collectors.toList());
+      case "listIndexes":
+        return listIndexes(args);
+      case "dropIndex":
+        if (args[0] instanceof String) {
+          collection().dropIndex((String) args[0]);
+        } else {
+          collection().dropIndex(filter(args[0]));
+        }
+        return null;
+      case "dropIndexes":
+        collection().dropIndexes();
+        return null;
+      case "drop":
+        collection().drop();
+        return null;
+      case "renameCollection":
+        RenameCollectionOptions renameOptions = argument(args, RenameCollectionOptions.class);
+        database.renameCollection(name, ((MongoNamespace) args[0]).getCollectionName(),
+            renameOptions != null && renameOptions.isDropTarget());
+        return null;
+      case "watch":
+        throw InMemoryErrors.commandError(InMemoryErrors.CHANGE_STREAMS_NOT_SUPPORTED,
+            "The $changeStream stage is only supported on replica sets");
+      default:
+        throw unsupported(method);
+    }
+  }
+
+  private InMemoryCollection collection() {
+    return database.collection(name);
+  }
+
+  private BsonDocument filter(Object bson) {
+    return Bsons.toBsonDocument((Bson) bson, settings.codecRegistry);
+  }
+
+  private BsonDocument encode(Object document, boolean generateId) {
+    return Bsons.encode(document, settings.codecRegistry, generateId);
+  }
+
+  private Function<BsonValue, ?> decoder(Class<?> resultClass) {
+    return value -> Bsons.decode(value.asDocument(), resultClass, settings.codecRegistry);
+  }
+
+  // reads
+
+  private FindIterable<?> find(Object[] args) {
+    ResultIterableHandler handler = new ResultIterableHandler(FindIterable.class, this::find,
+        decoder(resultClass(args, documentClass)), query -> explain(query.filter), settings.codecRegistry);
+    if (args.length > 0 && args[0] instanceof Bson) {
+      handler.filter(filter(args[0]));
+    }
+    return handler.proxy();
+  }
+
+  private List<BsonDocument> find(ResultIterableHandler.Query query) {
+    List<BsonDocument> documents = collection().find(query.filter);
+    if (query.sort != null && !query.sort.isEmpty()) {
+      documents.sort(Sorting.comparator(query.sort));
+    }
+    return documents.stream()
+        .skip(query.skip)
+        .limit(query.limit == 0 ? Long.MAX_VALUE : Math.abs(query.limit))
+        .map(document -> query.projection == null ? document : Projection.apply(document, query.projection))
+        .collect(Collectors.toList());
+  }
+
+  private AggregateIterable<?> aggregate(Object[] args) {
+    @SuppressWarnings("unchecked")
+    List<BsonDocument> pipeline = Bsons.toBsonDocuments((List<? extends Bson>) args[0], settings.codecRegistry);
+    Function<ResultIterableHandler.Query, BsonDocument> explainer = query -> explain(
+        !pipeline.isEmpty() && pipeline.get(0).containsKey("$match") ? pipeline.get(0).getDocument("$match") : new BsonDocument());
+    return new ResultIterableHandler(AggregateIterable.class,
+        query -> Aggregation.run(collection().snapshot(), pipeline, other -> database.collection(other).snapshot()),
+        decoder(resultClass(args, documentClass)), explainer, settings.codecRegistry).proxy();
+  }
+
+  private DistinctIterable<?> distinct(Object[] args) {
+    String fieldName = (String) args[0];
+    Class<?> resultClass = (Class<?>) args[args.length - 1];
+    ResultIterableHandler handler = new ResultIterableHandler(DistinctIterable.class, query -> {
+      Set<BsonValue> values = new TreeSet<>(Bsons.ORDER);
+      for (BsonDocument document : collection().find(query.filter)) {
+        for (BsonValue value : Bsons.resolve(document, fieldName)) {
+          if (value.isArray()) {
+            values.addAll(value.asArray());
+          } else {
+            values.add(value);
+          }
+        }
+      }
+      return new ArrayList<>(values);
+    }, value -> Bsons.decodeValue(value, resultClass, settings.codecRegistry), null, settings.codecRegistry);
+    if (args.length == 3) {
+      handler.filter(filter(args[1]));
+    }
+    return handler.proxy();
+  }
+
+  private long countDocuments(Object[] args) {
+    BsonDocument filter = args.length > 0 && args[0] instanceof Bson ? filter(args[0]) : new BsonDocument();
+    CountOptions options = argument(args, CountOptions.class);
+    long count = collection().count(filter);
+    if (options != null) {
+      count = Math.max(0, count - options.getSkip());
+      if (options.getLimit() > 0) {
+        count = Math.min(count, options.getLimit());
+      }
+    }
+    return count;
+  }
+
+  private ListIndexesIterable<?> listIndexes(Object[] args) {
+    return new ResultIterableHandler(ListIndexesIterable.class, query -> collection().listIndexes(),
+        decoder(resultClass(args, Document.class)), null, settings.codecRegistry).proxy();
+  }
+
+  /**
+   * Explains a query the way a server would plan it: an index scan if the filter constrains the first field
+   * of an index, a collection scan otherwise
+   */
+  private BsonDocument explain(BsonDocument filter) {
+    InMemoryCollection collection = collection();
+    String indexName = filter.keySet().stream()
+        .filter(field -> !field.startsWith("$"))
+        .map(collection::findIndexesByPrefix)
+        .filter(names -> !names.isEmpty())
+        .map(names -> names.get(0))
+        .findFirst()
+        .orElse(null);
+    long returned = collection.count(filter);
+
+    BsonDocument winningPlan = indexName == null
+        ? new BsonDocument("stage", new BsonString("COLLSCAN"))
+        : new BsonDocument("stage", new BsonString("FETCH")).append("inputStage",
+            new BsonDocument("stage", new BsonString("IXSCAN")).append("indexName", new BsonString(indexName)));
+    return new BsonDocument("queryPlanner", new BsonDocument("namespace", new BsonString(database.getName() + "." + name))
+        .append("winningPlan", winningPlan))
+        .append("executionStats", new BsonDocument("nReturned", new BsonInt64(returned))
+            .append("totalKeysExamined", new BsonInt64(indexName == null ? 0 : returned))
+            .append("totalDocsExamined", new BsonInt64(indexName == null ? collection.size() : returned)))
+        .append("ok", new BsonDouble(1));
+  }
+
+  // writes
+
+  private UpdateResult update(Object[] args, boolean multi) {
+    if (args[1] instanceof List) {
+      throw InMemoryErrors.unsupported("Pipeline updates");
+    }
+    UpdateOptions options = argument(args, UpdateOptions.class);
+    if (options != null && options.getArrayFilters() != null) {
+      throw InMemoryErrors.unsupported("Array filters");
+    }
+    return collection().update(filter(args[0]), filter(args[1]), false, multi, options != null && options.isUpsert());
+  }
+
+  private InsertManyResult insertMany(Object[] args) {
+    List<?> documents = (List<?>) args[0];
+    InsertManyOptions options = argument(args, InsertManyOptions.class);
+    List<WriteModel<Object>> requests = documents.stream()
+        .map(InsertOneModel<Object>::new)
+        .collect(Collectors.toList());
+    BulkWriteResult result = bulkWrite(requests, options == null || options.isOrdered());
+    Map<Integer, BsonValue> insertedIds = new LinkedHashMap<>();
+    result.getInserts().forEach(insert -> insertedIds.put(insert.getIndex(), insert.getId()));
+    return InsertManyResult.acknowledged(insertedIds);
+  }
+
+  private BulkWriteResult bulkWrite(List<? extends WriteModel<Object>> requests, boolean ordered) {
+    int inserted = 0;
+    int matched = 0;
+    int deleted = 0;
+    int modified = 0;
+    List<BulkWriteInsert> inserts = new ArrayList<>();
+    List<BulkWriteUpsert> upserts = new ArrayList<>();
+    List<BulkWriteError> errors = new ArrayList<>();
+
+    for (int index = 0; index < requests.size(); index++) {
+      WriteModel<Object> request = requests.get(index);
+      try {
+        UpdateResult updateResult = null;
+        if (request instanceof InsertOneModel) {
+          BsonValue id = collection().insert(encode(((InsertOneModel<Object>) request).getDocument(), true));
+          inserts.add(new BulkWriteInsert(index, id));
+          inserted++;
+        } else if (request instanceof ReplaceOneModel) {
+          ReplaceOneModel<Object> replace = (ReplaceOneModel<Object>) request;
+          updateResult = collection().update(filter(replace.getFilter()), encode(replace.getReplacement(), false),
+              true, false, replace.getReplaceOptions().isUpsert());
+        } else if (request instanceof UpdateOneModel) {
+          UpdateOneModel<Object> update = (UpdateOneModel<Object>) request;
+          updateResult = collection().update(filter(update.getFilter()), updateDocument(update.getUpdate()),
+              false, false, update.getOptions().isUpsert());
+        } else if (request instanceof UpdateManyModel) {
+          UpdateManyModel<Object> update = (UpdateManyModel<Object>) request;
+          updateResult = collection().update(filter(update.getFilter()), updateDocument(update.getUpdate()),
+              false, true, update.getOptions().isUpsert());
+        } else if (request instanceof DeleteOneModel) {
+          deleted += collection().delete(filter(((DeleteOneModel<Object>) request).getFilter()), false).getDeletedCount();
+        } else if (request instanceof DeleteManyModel) {
+          deleted += collection().delete(filter(((DeleteManyModel<Object>) request).getFilter()), true).getDeletedCount();
+        } else {
+          throw InMemoryErrors.unsupported(request.getClass().getSimpleName());
+        }
+
+        if (updateResult != null) {
+          matched += updateResult.getMatchedCount();
+          modified += updateResult.getModifiedCount();
+          if (updateResult.getUpsertedId() != null) {
+            upserts.add(new BulkWriteUpsert(index, updateResult.getUpsertedId()));
+          }
+        }
+      } catch (MongoWriteException e) {
+        errors.add(new BulkWriteError(e.getError().getCode(), e.getError().getMessage(), e.getError().getDetails(), index));
+        if (ordered) {
+          break;
+        }
+      }
+    }
+
+    BulkWriteResult result = BulkWriteResult.acknowledged(inserted, matched, deleted, modified, upserts, inserts);
+    if (!errors.isEmpty()) {
+      throw new MongoBulkWriteException(result, errors, null, InMemoryErrors.SERVER_ADDRESS, Set.of());
+    }
+    return result;
+  }
+
+  private BsonDocument updateDocument(Bson update) {
+    if (update == null) {
+      throw InMemoryErrors.unsupported("Pipeline updates");
+    }
+    return filter(update);
+  }
+
+  private Object findOneAndDelete(Object[] args) {
+    FindOneAndDeleteOptions options = argument(args, FindOneAndDeleteOptions.class);
+    BsonDocument sort = options == null ? null : toDocument(options.getSort());
+    BsonDocument projection = options == null ? null : toDocument(options.getProjection());
+    return result(collection().findAndDelete(filter(args[0]), sort), projection);
+  }
+
+  private Object findOneAndUpdate(Object[] args) {
+    if (args[1] instanceof List) {
+      throw InMemoryErrors.unsupported("Pipeline updates");
+    }
+    FindOneAndUpdateOptions options = argument(args, FindOneAndUpdateOptions.class);
+    if (options == null) {
+      options = new FindOneAndUpdateOptions();
+    }
+    BsonDocument document = collection().findAndModify(filter(args[0]), toDocument(options.getSort()), filter(args[1]),
+        false, options.isUpsert(), options.getReturnDocument() == ReturnDocument.AFTER);
+    return result(document, toDocument(options.getProjection()));
+  }
+
+  private Object findOneAndReplace(Object[] args) {
+    FindOneAndReplaceOptions options = argument(args, FindOneAndReplaceOptions.class);
+    if (options == null) {
+      options = new FindOneAndReplaceOptions();
+    }
+    BsonDocument document = collection().findAndModify(filter(args[0]), toDocument(options.getSort()),
+        encode(args[1], false), true, options.isUpsert(), options.getReturnDocument() == ReturnDocument.AFTER);
+    return result(document, toDocument(options.getProjection()));
+  }
+
+  private BsonDocument toDocument(Bson bson) {
+    return bson == null ? null : filter(bson);
+  }
+
+  private Object result(BsonDocument document, BsonDocument projection) {
+    if (document == null) {
+      return null;
+    }
+    return Bsons.decode(projection == null ? document : Projection.apply(document, projection), documentClass, settings.codecRegistry);
+  }
+}
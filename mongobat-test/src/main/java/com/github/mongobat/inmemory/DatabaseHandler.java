@@ -0,0 +1,134 @@
+package com.github.mongobat.inmemory;
+
+import com.mongodb.client.ListCollectionsIterable;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.MongoIterable;
+import org.bson.*;
+import org.bson.conversions.Bson;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Implements {@link MongoDatabase} on top of an {@link InMemoryDatabase}.
+ * Supported commands: ping, hello, buildInfo, collStats, dbStats and dropDatabase.
+ */
+final class DatabaseHandler extends ProxyHandler {
+
+  private static final int COMMAND_NOT_FOUND = 59;
+
+  private final InMemoryDatabase database;
+  private final Settings settings;
+
+  DatabaseHandler(InMemoryDatabase database, Settings settings) {
+    super(MongoDatabase.class);
+    this.database = database;
+    this.settings = settings;
+  }
+
+  @Override
+  String describe() {
+    return "InMemoryDatabase[" + database.getName() + "]";
+  }
+
+  @Override
+  Object handle(Object proxy, Method method, Object[] args) {
+    String methodName = method.getName();
+    Object setting = settings.get(methodName);
+    if (setting != null) {
+      return setting;
+    }
+    Settings changed = args.length == 1 ? settings.with(methodName, args[0]) : null;
+    if (changed != null) {
+      return new DatabaseHandler(database, changed).proxy();
+    }
+
+    switch (methodName) {
+      case "getName":
+        return database.getName();
+      case "getCollection":
+        return new CollectionHandler(database, (String) args[0], args.length > 1 ? (Class<?>) args[1] : Document.class,
+            settings).proxy();
+      case "runCommand":
+        return Bsons.decode(runCommand(Bsons.toBsonDocument((Bson) args[0], settings.codecRegistry)),
+            resultClass(args, Document.class), settings.codecRegistry);
+      case "listCollectionNames":
+        return new ResultIterableHandler(MongoIterable.class,
+            query -> database.collectionNames().stream().map(BsonString::new).collect(Collectors.toList()),
+            value -> value.asString().getValue(), null, settings.codecRegistry).proxy();
+      case "listCollections":
+        Class<?> collectionClass = resultClass(args, Document.class);
+        return new ResultIterableHandler(ListCollectionsIterable.class, query -> listCollections(),
+            value -> Bsons.decode(value.asDocument(), collectionClass, settings.codecRegistry), null, settings.codecRegistry).proxy();
+      case "createCollection":
+        database.createCollection((String) args[0]);
+        return null;
+      case "drop":
+        database.drop();
+        return null;
+      case "watch":
+        throw InMemoryErrors.commandError(InMemoryErrors.CHANGE_STREAMS_NOT_SUPPORTED,
+            "The $changeStream stage is only supported on replica sets");
+      default:
+        throw unsupported(method);
+    }
+  }
+
+  private List<BsonDocument> listCollections() {
+    return database.collectionNames().stream()
+        .map(name -> new BsonDocument("name", new BsonString(name))
+            .append("type", new BsonString("collection"))
+            .append("options", new BsonDocument()))
+        .collect(Collectors.toList());
+  }
+
+  private BsonDocument runCommand(BsonDocument command) {
+    String name = command.getFirstKey();
+    BsonDocument ok = new BsonDocument("ok", new BsonDouble(1));
+    switch (name) {
+      case "ping":
+        return ok;
+      case "hello":
+      case "isMaster":
+      case "ismaster":
+        return new BsonDocument("isWritablePrimary", BsonBoolean.TRUE).append("ismaster", BsonBoolean.TRUE).append("ok", new BsonDouble(1));
+      case "buildInfo":
+      case "buildinfo":
+        return new BsonDocument("version", new BsonString("in-memory")).append("ok", new BsonDouble(1));
+      case "collStats":
+        return collStats(command.getString(name).getValue());
+      case "dbStats":
+        long objects = 0;
+        long dataSize = 0;
+        for (String collectionName : database.collectionNames()) {
+          objects += database.collection(collectionName).size();
+          dataSize += database.collection(collectionName).dataSize();
+        }
+        return new BsonDocument("db", new BsonString(database.getName()))
+            .append("collections", new BsonInt32(database.collectionNames().size()))
+            .append("objects", new BsonInt64(objects))
+            .append("dataSize", new BsonInt64(dataSize))
+            .append("ok", new BsonDouble(1));
+      case "dropDatabase":
+        database.drop();
+        return ok;
+      default:
+        throw InMemoryErrors.commandError(COMMAND_NOT_FOUND, "no such command: '" + name + "'");
+    }
+  }
+
+  private BsonDocument collStats(String collectionName) {
+    InMemoryCollection collection = database.collection(collectionName);
+    long count = collection.size();
+    long size = collection.dataSize();
+    return new BsonDocument("ns", new BsonString(database.getName() + "." + collectionName))
+        .append("count", new BsonInt64(count))
+        .append("size", new BsonInt64(size))
+        .append("avgObjSize", new BsonInt64(count == 0 ? 0 : size / count))
+        .append("storageSize", new BsonInt64(size))
+        .append("nindexes", new BsonInt32(collection.indexCount()))
+        .append("totalIndexSize", new BsonInt64(0))
+        .append("ok", new BsonDouble(1));
+  }
+}
@@ -0,0 +1,374 @@
+package com.github.mongobat.inmemory;
+
+import org.bson.*;
+import org.bson.codecs.BsonDocumentCodec;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates aggregation expressions: field paths, literals, object expressions and common operators
+ */
+final class Expressions {
+
+  private Expressions() {
+  }
+
+  static BsonValue evaluate(BsonValue expression, BsonDocument root) {
+    if (expression.isString()) {
+      String value = expression.asString().getValue();
+      if (value.equals("$$ROOT") || value.equals("$$CURRENT")) {
+        return root;
+      } else if (value.equals("$$NOW")) {
+        return new BsonDateTime(System.currentTimeMillis());
+      } else if (value.startsWith("$$")) {
+        throw InMemoryErrors.unsupported("Variable " + value);
+      } else if (value.startsWith("$")) {
+        return fieldPath(root, value.substring(1));
+      }
+      return expression;
+    } else if (expression.isArray()) {
+      BsonArray result = new BsonArray();
+      // missing fields evaluate to null in arrays
+      expression.asArray().forEach(element -> result.add(nullToBson(evaluate(element, root))));
+      return result;
+    } else if (QueryMatcher.isOperatorDocument(expression)) {
+      BsonDocument document = expression.asDocument();
+      return operator(document.getFirstKey(), document.get(document.getFirstKey()), root);
+    } else if (expression.isDocument()) {
+      BsonDocument result = new BsonDocument();
+      for (Map.Entry<String, BsonValue> field : expression.asDocument().entrySet()) {
+        BsonValue value = evaluate(field.getValue(), root);
+        if (value != null) {
+          result.put(field.getKey(), value);
+        }
+      }
+      return result;
+    }
+    return expression;
+  }
+
+  /**
+   * @return value at the path, an array of values if the path goes through an array, null if missing
+   */
+  static BsonValue fieldPath(BsonDocument root, String path) {
+    BsonValue direct = Bsons.get(root, path);
+    if (direct != null) {
+      return direct;
+    }
+    List<BsonValue> values = Bsons.resolve(root, path);
+    if (values.isEmpty()) {
+      return null;
+    }
+    return new BsonArray(values);
+  }
+
+  private static BsonValue operator(String operator, BsonValue operand, BsonDocument root) {
+    switch (operator) {
+      case "$literal":
+        return operand;
+      case "$add":
+        return fold(arguments(operand, root), Bsons::add);
+      case "$multiply":
+        return fold(arguments(operand, root), Bsons::multiply);
+      case "$subtract": {
+        List<BsonValue> args = arguments(operand, root);
+        if (args.get(0).isDateTime()) {
+          return args.get(1).isDateTime()
+              ? new BsonInt64(args.get(0).asDateTime().getValue() - args.get(1).asDateTime().getValue())
+              : new BsonDateTime(args.get(0).asDateTime().getValue() - args.get(1).asNumber().longValue());
+        }
+        return Bsons.add(args.get(0), Bsons.multiply(args.get(1), new BsonInt32(-1)));
+      }
+      case "$mod": {
+        List<BsonValue> args = arguments(operand, root);
+        if (args.get(0).isDouble() || args.get(1).isDouble()) {
+          return new BsonDouble(args.get(0).asNumber().doubleValue() % args.get(1).asNumber().doubleValue());
+        }
+        long remainder = args.get(0).asNumber().longValue() % args.get(1).asNumber().longValue();
+        return args.get(0).isInt32() && args.get(1).isInt32() ? new BsonInt32((int) remainder) : new BsonInt64(remainder);
+      }
+      case "$abs": {
+        BsonValue value = single(operand, root);
+        if (value == null || value.isNull()) {
+          return BsonNull.VALUE;
+        } else if (value.isDouble()) {
+          return new BsonDouble(Math.abs(value.asDouble().getValue()));
+        }
+        return value.isInt32() ? new BsonInt32(Math.abs(value.asInt32().getValue())) : new BsonInt64(Math.abs(value.asNumber().longValue()));
+      }
+      case "$toHashedIndexKey":
+        return new BsonInt64(hash(single(operand, root)));
+      case "$divide": {
+        List<BsonValue> args = arguments(operand, root);
+        return new BsonDouble(Bsons.toBigDecimal(args.get(0)).divide(Bsons.toBigDecimal(args.get(1)), MathContext.DECIMAL64).doubleValue());
+      }
+      case "$concat": {
+        StringBuilder result = new StringBuilder();
+        for (BsonValue arg : arguments(operand, root)) {
+          if (arg == null || arg.isNull()) {
+            return BsonNull.VALUE;
+          }
+          result.append(arg.asString().getValue());
+        }
+        return new BsonString(result.toString());
+      }
+      case "$toLower":
+        return new BsonString(single(operand, root).asString().getValue().toLowerCase());
+      case "$toUpper":
+        return new BsonString(single(operand, root).asString().getValue().toUpperCase());
+      case "$toString": {
+        BsonValue value = single(operand, root);
+        if (value == null || value.isNull()) {
+          return BsonNull.VALUE;
+        }
+        return new BsonString(value.isString() ? value.asString().getValue()
+            : value.isObjectId() ? value.asObjectId().getValue().toHexString()
+            : value.isNumber() || value.isDecimal128() ? Bsons.toBigDecimal(value).stripTrailingZeros().toPlainString()
+            : value.toString());
+      }
+      case "$ifNull": {
+        for (BsonValue arg : arguments(operand, root)) {
+          if (arg != null && !arg.isNull()) {
+            return arg;
+          }
+        }
+        return BsonNull.VALUE;
+      }
+      case "$cond": {
+        BsonValue condition;
+        BsonValue then;
+        BsonValue otherwise;
+        if (operand.isArray()) {
+          condition = operand.asArray().get(0);
+          then = operand.asArray().get(1);
+          otherwise = operand.asArray().get(2);
+        } else {
+          condition = operand.asDocument().get("if");
+          then = operand.asDocument().get("then");
+          otherwise = operand.asDocument().get("else");
+        }
+        return Bsons.isTruthy(evaluate(condition, root)) ? evaluate(then, root) : evaluate(otherwise, root);
+      }
+      case "$eq":
+        return BsonBoolean.valueOf(compareArguments(operand, root) == 0);
+      case "$ne":
+        return BsonBoolean.valueOf(compareArguments(operand, root) != 0);
+      case "$gt":
+        return BsonBoolean.valueOf(compareArguments(operand, root) > 0);
+      case "$gte":
+        return BsonBoolean.valueOf(compareArguments(operand, root) >= 0);
+      case "$lt":
+        return BsonBoolean.valueOf(compareArguments(operand, root) < 0);
+      case "$lte":
+        return BsonBoolean.valueOf(compareArguments(operand, root) <= 0);
+      case "$and":
+        return BsonBoolean.valueOf(arguments(operand, root).stream().allMatch(Bsons::isTruthy));
+      case "$or":
+        return BsonBoolean.valueOf(arguments(operand, root).stream().anyMatch(Bsons::isTruthy));
+      case "$not":
+        return BsonBoolean.valueOf(!Bsons.isTruthy(single(operand, root)));
+      case "$size":
+        return new BsonInt32(single(operand, root).asArray().size());
+      case "$arrayElemAt": {
+        List<BsonValue> args = arguments(operand, root);
+        BsonArray array = args.get(0).asArray();
+        int index = args.get(1).asNumber().intValue();
+        index = index < 0 ? array.size() + index : index;
+        return index >= 0 && index < array.size() ? array.get(index) : null;
+      }
+      case "$objectToArray": {
+        BsonArray result = new BsonArray();
+        single(operand, root).asDocument().forEach((key, value) -> result.add(new BsonDocument("k", new BsonString(key)).append("v", value)));
+        return result;
+      }
+      case "$sortArray": {
+        BsonDocument arguments = operand.asDocument();
+        List<BsonValue> result = new ArrayList<>(evaluate(arguments.get("input"), root).asArray());
+        result.sort(Comparator.comparing(BsonValue::asDocument, Sorting.comparator(arguments.getDocument("sortBy"))));
+        return new BsonArray(result);
+      }
+      case "$sum":
+      case "$avg":
+      case "$min":
+      case "$max": {
+        BsonValue value = single(operand, root);
+        List<BsonValue> values = value != null && value.isArray() ? value.asArray() : arguments(operand, root);
+        Accumulator accumulator = Accumulator.create(operator);
+        values.forEach(accumulator::accept);
+        return accumulator.result();
+      }
+      default:
+        throw InMemoryErrors.unsupported("Expression operator " + operator);
+    }
+  }
+
+  /**
+   * 64-bit MD5 based hash of a value, numerically equal numbers of different types hash the same like in hashed indexes
+   */
+  private static long hash(BsonValue value) {
+    BsonDocument wrapper = new BsonDocument("", canonical(value == null ? BsonNull.VALUE : value));
+    ByteBuffer bytes = new RawBsonDocument(wrapper, new BsonDocumentCodec()).getByteBuffer().asNIO();
+    byte[] encoded = new byte[bytes.remaining()];
+    bytes.get(encoded);
+    try {
+      return ByteBuffer.wrap(MessageDigest.getInstance("MD5").digest(encoded)).order(ByteOrder.LITTLE_ENDIAN).getLong();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static BsonValue canonical(BsonValue value) {
+    if (Bsons.isIntegral(value) || value.isDouble() && value.asDouble().getValue() == Math.rint(value.asDouble().getValue())) {
+      return new BsonInt64(value.asNumber().longValue());
+    } else if (value.isDocument()) {
+      BsonDocument result = new BsonDocument();
+      value.asDocument().forEach((key, element) -> result.put(key, canonical(element)));
+      return result;
+    } else if (value.isArray()) {
+      BsonArray result = new BsonArray();
+      value.asArray().forEach(element -> result.add(canonical(element)));
+      return result;
+    }
+    return value;
+  }
+
+  private static List<BsonValue> arguments(BsonValue operand, BsonDocument root) {
+    List<BsonValue> result = new ArrayList<>();
+    if (operand.isArray()) {
+      operand.asArray().forEach(arg -> result.add(evaluate(arg, root)));
+    } else {
+      result.add(evaluate(operand, root));
+    }
+    return result;
+  }
+
+  private static BsonValue single(BsonValue operand, BsonDocument root) {
+    return evaluate(operand.isArray() && operand.asArray().size() == 1 ? operand.asArray().get(0) : operand, root);
+  }
+
+  private static int compareArguments(BsonValue operand, BsonDocument root) {
+    List<BsonValue> args = arguments(operand, root);
+    return Bsons.compare(nullToBson(args.get(0)), nullToBson(args.get(1)));
+  }
+
+  private static BsonValue nullToBson(BsonValue value) {
+    return value == null ? BsonNull.VALUE : value;
+  }
+
+  private static BsonValue fold(List<BsonValue> values, java.util.function.BinaryOperator<BsonValue> operator) {
+    BsonValue result = null;
+    for (BsonValue value : values) {
+      if (value == null || value.isNull()) {
+        return BsonNull.VALUE;
+      }
+      result = result == null ? value : operator.apply(result, value);
+    }
+    return result;
+  }
+
+  /**
+   * Group accumulator ($sum, $avg, $min, $max, $first, $last, $push, $addToSet)
+   */
+  static final class Accumulator {
+    private final String operator;
+    private BsonValue value;
+    private BigDecimal sum = BigDecimal.ZERO;
+    private long count;
+    private final BsonArray values = new BsonArray();
+
+    private Accumulator(String operator) {
+      this.operator = operator;
+    }
+
+    static Accumulator create(String operator) {
+      switch (operator) {
+        case "$sum":
+        case "$avg":
+        case "$min":
+        case "$max":
+        case "$first":
+        case "$last":
+        case "$push":
+        case "$addToSet":
+        case "$count":
+          return new Accumulator(operator);
+        default:
+          throw InMemoryErrors.unsupported("Accumulator " + operator);
+      }
+    }
+
+    void accept(BsonValue input) {
+      switch (operator) {
+        case "$sum":
+          if (input != null && (input.isNumber() || input.isDecimal128())) {
+            value = value == null ? input : Bsons.add(value, input);
+          }
+          break;
+        case "$avg":
+          if (input != null && (input.isNumber() || input.isDecimal128())) {
+            sum = sum.add(Bsons.toBigDecimal(input));
+            count++;
+          }
+          break;
+        case "$count":
+          count++;
+          break;
+        case "$min":
+          if (input != null && !input.isNull() && (value == null || Bsons.compare(input, value) < 0)) {
+            value = input;
+          }
+          break;
+        case "$max":
+          if (input != null && !input.isNull() && (value == null || Bsons.compare(input, value) > 0)) {
+            value = input;
+          }
+          break;
+        case "$first":
+          if (count++ == 0) {
+            value = input == null ? BsonNull.VALUE : input;
+          }
+          break;
+        case "$last":
+          value = input == null ? BsonNull.VALUE : input;
+          break;
+        case "$push":
+          if (input != null) {
+            values.add(input);
+          }
+          break;
+        case "$addToSet":
+          if (input != null && values.stream().noneMatch(element -> Bsons.equal(element, input))) {
+            values.add(input);
+          }
+          break;
+        default:
+          throw InMemoryErrors.unsupported("Accumulator " + operator);
+      }
+    }
+
+    BsonValue result() {
+      switch (operator) {
+        case "$sum":
+          return value == null ? new BsonInt32(0) : value;
+        case "$avg":
+          return count == 0 ? BsonNull.VALUE : new BsonDouble(sum.divide(BigDecimal.valueOf(count), MathContext.DECIMAL64).doubleValue());
+        case "$count":
+          return count == (int) count ? new BsonInt32((int) count) : new BsonInt64(count);
+        case "$push":
+        case "$addToSet":
+          return values;
+        default:
+          return value == null ? BsonNull.VALUE : value;
+      }
+    }
+  }
+}
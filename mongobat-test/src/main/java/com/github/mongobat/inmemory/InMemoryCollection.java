@@ -0,0 +1,346 @@
+package com.github.mongobat.inmemory;
+
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.*;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.types.ObjectId;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Documents and indexes of a single collection, kept in <tt>_id</tt> order.
+ * All operations work on copies, so callers never share state with the stored documents.
+ */
+final class InMemoryCollection {
+
+  private static final String ID_INDEX = "_id_";
+
+  private final NavigableMap<BsonValue, BsonDocument> documents = new TreeMap<>(Bsons.ORDER);
+  private final Map<String, Index> indexes = new LinkedHashMap<>();
+  private boolean exists;
+
+  InMemoryCollection() {
+    indexes.put(ID_INDEX, new Index(ID_INDEX, new BsonDocument("_id", new BsonInt32(1)), true, false, null));
+  }
+
+  private static final class Index {
+    private final String name;
+    private final BsonDocument keys;
+    private final boolean unique;
+    private final boolean sparse;
+    private final BsonDocument partialFilter;
+
+    private Index(String name, BsonDocument keys, boolean unique, boolean sparse, BsonDocument partialFilter) {
+      this.name = name;
+      this.keys = keys;
+      this.unique = unique;
+      this.sparse = sparse;
+      this.partialFilter = partialFilter;
+    }
+
+    private boolean covers(BsonDocument document) {
+      if (sparse && keys.keySet().stream().allMatch(path -> Bsons.get(document, path) == null)) {
+        return false;
+      }
+      return partialFilter == null || QueryMatcher.matches(document, partialFilter);
+    }
+
+    private BsonArray key(BsonDocument document) {
+      BsonArray key = new BsonArray();
+      for (String path : keys.keySet()) {
+        BsonValue value = Bsons.get(document, path);
+        key.add(value == null ? BsonNull.VALUE : value);
+      }
+      return key;
+    }
+
+    private BsonDocument toDocument() {
+      BsonDocument document = new BsonDocument("v", new BsonInt32(2)).append("key", keys.clone()).append("name", new BsonString(name));
+      if (unique && !name.equals(ID_INDEX)) {
+        document.append("unique", BsonBoolean.TRUE);
+      }
+      if (sparse) {
+        document.append("sparse", BsonBoolean.TRUE);
+      }
+      if (partialFilter != null) {
+        document.append("partialFilterExpression", partialFilter.clone());
+      }
+      return document;
+    }
+  }
+
+  synchronized boolean exists() {
+    return exists;
+  }
+
+  synchronized void create() {
+    exists = true;
+  }
+
+  // reads
+
+  synchronized List<BsonDocument> find(BsonDocument filter) {
+    return documents.values().stream()
+        .filter(document -> QueryMatcher.matches(document, filter))
+        .map(BsonDocument::clone)
+        .collect(Collectors.toList());
+  }
+
+  synchronized long count(BsonDocument filter) {
+    return documents.values().stream().filter(document -> QueryMatcher.matches(document, filter)).count();
+  }
+
+  synchronized List<BsonDocument> snapshot() {
+    return documents.values().stream().map(BsonDocument::clone).collect(Collectors.toList());
+  }
+
+  synchronized long size() {
+    return documents.size();
+  }
+
+  /**
+   * @return total BSON size of the documents in bytes
+   */
+  synchronized long dataSize() {
+    return documents.values().stream()
+        .mapToLong(document -> new RawBsonDocument(document, new BsonDocumentCodec()).getByteBuffer().remaining())
+        .sum();
+  }
+
+  synchronized int indexCount() {
+    return indexes.size();
+  }
+
+  // writes
+
+  synchronized BsonValue insert(BsonDocument document) {
+    BsonDocument stored = document.clone();
+    if (!stored.containsKey("_id")) {
+      stored.put("_id", new BsonObjectId(new ObjectId()));
+    }
+    checkUnique(stored, null);
+    documents.put(stored.get("_id"), stored);
+    exists = true;
+    return stored.get("_id");
+  }
+
+  /**
+   * @param update      update operators or a replacement document
+   * @param replacement true if the update is a replacement document
+   * @param multi       true to update all matching documents
+   */
+  synchronized UpdateResult update(BsonDocument filter, BsonDocument update, boolean replacement, boolean multi,
+      boolean upsert) {
+    validateUpdate(update, replacement);
+    List<BsonDocument> matched = documents.values().stream()
+        .filter(document -> QueryMatcher.matches(document, filter))
+        .limit(multi ? Long.MAX_VALUE : 1)
+        .collect(Collectors.toList());
+
+    if (matched.isEmpty()) {
+      if (!upsert) {
+        return UpdateResult.acknowledged(0, 0L, null);
+      }
+      return UpdateResult.acknowledged(0, 0L, insert(upserted(filter, update, replacement)));
+    }
+
+    long modified = 0;
+    for (BsonDocument document : matched) {
+      if (modify(document, update, replacement) != null) {
+        modified++;
+      }
+    }
+    return UpdateResult.acknowledged(matched.size(), modified, null);
+  }
+
+  /**
+   * @return document before or after the modification, null if nothing matched and nothing was upserted
+   */
+  synchronized BsonDocument findAndModify(BsonDocument filter, BsonDocument sort, BsonDocument update,
+      boolean replacement, boolean upsert, boolean returnAfter) {
+    validateUpdate(update, replacement);
+    Optional<BsonDocument> found = first(filter, sort);
+    if (found.isEmpty()) {
+      if (!upsert) {
+        return null;
+      }
+      BsonValue id = insert(upserted(filter, update, replacement));
+      return returnAfter ? documents.get(id).clone() : null;
+    }
+
+    BsonDocument before = found.get().clone();
+    BsonDocument after = modify(found.get(), update, replacement);
+    return returnAfter ? (after != null ? after : before).clone() : before;
+  }
+
+  synchronized BsonDocument findAndDelete(BsonDocument filter, BsonDocument sort) {
+    Optional<BsonDocument> found = first(filter, sort);
+    found.ifPresent(document -> documents.remove(document.get("_id")));
+    return found.map(BsonDocument::clone).orElse(null);
+  }
+
+  synchronized DeleteResult delete(BsonDocument filter, boolean multi) {
+    List<BsonValue> ids = documents.values().stream()
+        .filter(document -> QueryMatcher.matches(document, filter))
+        .limit(multi ? Long.MAX_VALUE : 1)
+        .map(document -> document.get("_id"))
+        .collect(Collectors.toList());
+    ids.forEach(documents::remove);
+    return DeleteResult.acknowledged(ids.size());
+  }
+
+  synchronized void drop() {
+    documents.clear();
+    indexes.keySet().retainAll(Set.of(ID_INDEX));
+    exists = false;
+  }
+
+  private Optional<BsonDocument> first(BsonDocument filter, BsonDocument sort) {
+    return documents.values().stream()
+        .filter(document -> QueryMatcher.matches(document, filter))
+        .min(sort == null || sort.isEmpty() ? (a, b) -> 0 : Sorting.comparator(sort));
+  }
+
+  private static void validateUpdate(BsonDocument update, boolean replacement) {
+    if (replacement && Updater.isUpdateDocument(update)) {
+      throw new IllegalArgumentException("Invalid BSON field name " + update.getFirstKey());
+    } else if (!replacement && !Updater.isUpdateDocument(update)) {
+      throw new IllegalArgumentException("Invalid BSON field name " + (update.isEmpty() ? "{}" : update.getFirstKey()));
+    }
+  }
+
+  private static BsonDocument upserted(BsonDocument filter, BsonDocument update, boolean replacement) {
+    BsonDocument seed = QueryMatcher.upsertSeed(filter);
+    if (replacement) {
+      BsonDocument document = update.clone();
+      if (!document.containsKey("_id") && seed.containsKey("_id")) {
+        document.put("_id", seed.get("_id"));
+      }
+      return document;
+    }
+    Updater.apply(seed, update, true);
+    return seed;
+  }
+
+  /**
+   * @return stored document after the modification, null if it was not changed
+   */
+  private BsonDocument modify(BsonDocument document, BsonDocument update, boolean replacement) {
+    BsonValue id = document.get("_id");
+    BsonDocument modified;
+    if (replacement) {
+      if (update.containsKey("_id") && !Bsons.equal(update.get("_id"), id)) {
+        throw InMemoryErrors.writeError(InMemoryErrors.IMMUTABLE_FIELD, "After applying the update, the (immutable) field '_id' was found to have been altered");
+      }
+      modified = new BsonDocument("_id", id);
+      update.forEach((key, value) -> {
+        if (!key.equals("_id")) {
+          modified.put(key, Bsons.copy(value));
+        }
+      });
+    } else {
+      modified = document.clone();
+      Updater.apply(modified, update, false);
+    }
+
+    if (modified.equals(document)) {
+      return null;
+    }
+    checkUnique(modified, id);
+    documents.put(id, modified);
+    return modified;
+  }
+
+  private void checkUnique(BsonDocument document, BsonValue replacedId) {
+    if (replacedId == null && documents.containsKey(document.get("_id"))) {
+      throw duplicateKey(indexes.get(ID_INDEX), document);
+    }
+    for (Index index : indexes.values()) {
+      if (!index.unique || index.name.equals(ID_INDEX) || !index.covers(document)) {
+        continue;
+      }
+      BsonArray key = index.key(document);
+      for (BsonDocument other : documents.values()) {
+        if (!Bsons.equal(other.get("_id"), document.get("_id")) && index.covers(other) && Bsons.equal(index.key(other), key)) {
+          throw duplicateKey(index, document);
+        }
+      }
+    }
+  }
+
+  private static RuntimeException duplicateKey(Index index, BsonDocument document) {
+    return InMemoryErrors.writeError(InMemoryErrors.DUPLICATE_KEY,
+        "E11000 duplicate key error index: " + index.name + " dup key: " + index.key(document));
+  }
+
+  // indexes
+
+  synchronized String createIndex(BsonDocument keys, IndexOptions options) {
+    String name = options.getName() != null ? options.getName() : indexName(keys);
+    Index existing = indexes.get(name);
+    if (existing != null) {
+      return name;
+    }
+    BsonDocument partialFilter = options.getPartialFilterExpression() == null ? null
+        : Bsons.toBsonDocument(options.getPartialFilterExpression(), com.mongodb.MongoClientSettings.getDefaultCodecRegistry());
+    Index index = new Index(name, keys.clone(), options.isUnique(), options.isSparse(), partialFilter);
+
+    if (index.unique) {
+      Set<BsonArray> seen = new TreeSet<>(Bsons.ORDER::compare);
+      for (BsonDocument document : documents.values()) {
+        if (index.covers(document) && !seen.add(index.key(document))) {
+          throw InMemoryErrors.commandError(InMemoryErrors.DUPLICATE_KEY,
+              "E11000 duplicate key error index: " + name + " dup key: " + index.key(document));
+        }
+      }
+    }
+    indexes.put(name, index);
+    exists = true;
+    return name;
+  }
+
+  synchronized List<BsonDocument> listIndexes() {
+    return indexes.values().stream().map(Index::toDocument).collect(Collectors.toList());
+  }
+
+  /**
+   * @return names of indexes whose first key is the given field
+   */
+  synchronized List<String> findIndexesByPrefix(String field) {
+    return indexes.values().stream()
+        .filter(index -> index.keys.getFirstKey().equals(field))
+        .map(index -> index.name)
+        .collect(Collectors.toList());
+  }
+
+  synchronized void dropIndex(String name) {
+    if (name.equals(ID_INDEX)) {
+      throw InMemoryErrors.commandError(72, "cannot drop _id index");
+    }
+    if (indexes.remove(name) == null) {
+      throw InMemoryErrors.commandError(27, "index not found with name [" + name + "]");
+    }
+  }
+
+  synchronized void dropIndex(BsonDocument keys) {
+    String name = indexes.values().stream()
+        .filter(index -> index.keys.equals(keys))
+        .map(index -> index.name)
+        .findFirst()
+        .orElseThrow(() -> InMemoryErrors.commandError(27, "can't find index with key: " + keys));
+    dropIndex(name);
+  }
+
+  synchronized void dropIndexes() {
+    indexes.keySet().retainAll(Set.of(ID_INDEX));
+  }
+
+  private static String indexName(BsonDocument keys) {
+    return keys.entrySet().stream()
+        .map(key -> key.getKey() + "_" + (key.getValue().isNumber() ? key.getValue().asNumber().intValue() : key.getValue().asString().getValue()))
+        .collect(Collectors.joining("_"));
+  }
+}
@@ -0,0 +1,62 @@
+package com.github.mongobat.inmemory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Collections of a single database. Collections are created implicitly by the first write, like on a server.
+ */
+final class InMemoryDatabase {
+
+  private static final int NAMESPACE_EXISTS = 48;
+  private static final int NAMESPACE_NOT_FOUND = 26;
+
+  private final String name;
+  private final Map<String, InMemoryCollection> collections = new TreeMap<>();
+
+  InMemoryDatabase(String name) {
+    this.name = name;
+  }
+
+  String getName() {
+    return name;
+  }
+
+  synchronized InMemoryCollection collection(String collectionName) {
+    return collections.computeIfAbsent(collectionName, key -> new InMemoryCollection());
+  }
+
+  synchronized List<String> collectionNames() {
+    return collections.entrySet().stream()
+        .filter(entry -> entry.getValue().exists())
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+
+  synchronized void createCollection(String collectionName) {
+    InMemoryCollection collection = collection(collectionName);
+    if (collection.exists()) {
+      throw InMemoryErrors.commandError(NAMESPACE_EXISTS, "Collection " + name + "." + collectionName + " already exists.");
+    }
+    collection.create();
+  }
+
+  synchronized void renameCollection(String from, String to, boolean dropTarget) {
+    InMemoryCollection source = collections.get(from);
+    if (source == null || !source.exists()) {
+      throw InMemoryErrors.commandError(NAMESPACE_NOT_FOUND, "Source collection " + name + "." + from + " does not exist");
+    }
+    InMemoryCollection target = collections.get(to);
+    if (target != null && target.exists() && !dropTarget) {
+      throw InMemoryErrors.commandError(NAMESPACE_EXISTS, "target namespace exists");
+    }
+    collections.remove(from);
+    collections.put(to, source);
+  }
+
+  synchronized void drop() {
+    collections.values().forEach(InMemoryCollection::drop);
+  }
+}
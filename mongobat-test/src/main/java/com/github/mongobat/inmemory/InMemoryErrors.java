@@ -0,0 +1,37 @@
+package com.github.mongobat.inmemory;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteError;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+
+/**
+ * Exceptions shaped like the ones thrown by the driver, so error handling code can be tested
+ */
+final class InMemoryErrors {
+
+  static final ServerAddress SERVER_ADDRESS = new ServerAddress("in-memory", 27017);
+  static final int DUPLICATE_KEY = 11000;
+  static final int IMMUTABLE_FIELD = 66;
+  static final int CHANGE_STREAMS_NOT_SUPPORTED = 40573;
+
+  private InMemoryErrors() {
+  }
+
+  static MongoWriteException writeError(int code, String message) {
+    return new MongoWriteException(new WriteError(code, message, new BsonDocument()), SERVER_ADDRESS);
+  }
+
+  static MongoCommandException commandError(int code, String message) {
+    return new MongoCommandException(new BsonDocument("ok", new BsonInt32(0))
+        .append("code", new BsonInt32(code))
+        .append("errmsg", new BsonString(message)), SERVER_ADDRESS);
+  }
+
+  static UnsupportedOperationException unsupported(String feature) {
+    return new UnsupportedOperationException(feature + " is not supported by the in-memory database");
+  }
+}
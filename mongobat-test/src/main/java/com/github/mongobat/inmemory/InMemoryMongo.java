@@ -0,0 +1,37 @@
+package com.github.mongobat.inmemory;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+
+/**
+ * In-memory stand-in of the MongoDB sync driver for fast unit tests of changelogs.
+ * <p>
+ * Supports CRUD with common query and update operators, unique, sparse and partial indexes, bulk writes,
+ * find-and-modify, simple aggregation pipelines and collection renames. Errors are reported with the
+ * server's error codes (e.g. 11000 for duplicate keys). Sessions, change streams, pipeline updates
+ * and array filters are not supported and throw {@link UnsupportedOperationException}
+ * (change streams throw {@link com.mongodb.MongoCommandException} like a standalone server).
+ * <pre>
+ * MongoBat runner = new MongoBat(InMemoryMongo.newClient());
+ * </pre>
+ */
+public final class InMemoryMongo {
+
+  private InMemoryMongo() {
+  }
+
+  /**
+   * @return new client with no data
+   */
+  public static MongoClient newClient() {
+    return new ClientHandler().proxy();
+  }
+
+  /**
+   * @param name database name
+   * @return new database with no data
+   */
+  public static MongoDatabase newDatabase(String name) {
+    return newClient().getDatabase(name);
+  }
+}
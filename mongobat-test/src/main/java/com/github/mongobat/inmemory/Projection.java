@@ -0,0 +1,62 @@
+package com.github.mongobat.inmemory;
+
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+
+import java.util.Map;
+
+/**
+ * Applies inclusion, exclusion and computed field projections
+ */
+final class Projection {
+
+  private Projection() {
+  }
+
+  static BsonDocument apply(BsonDocument document, BsonDocument projection) {
+    if (projection == null || projection.isEmpty()) {
+      return document;
+    }
+
+    boolean includeId = !projection.containsKey("_id") || !isExclusion(projection.get("_id"));
+    boolean inclusion = projection.entrySet().stream()
+        .anyMatch(field -> !field.getKey().equals("_id") && !isExclusion(field.getValue()))
+        || (projection.size() == 1 && includeId);
+
+    if (!inclusion) {
+      BsonDocument result = document.clone();
+      projection.keySet().forEach(path -> Bsons.remove(result, path));
+      return result;
+    }
+
+    BsonDocument result = new BsonDocument();
+    if (includeId && document.containsKey("_id")) {
+      result.put("_id", document.get("_id"));
+    }
+    for (Map.Entry<String, BsonValue> field : projection.entrySet()) {
+      String path = field.getKey();
+      BsonValue specification = field.getValue();
+      if (path.equals("_id") && (isExclusion(specification) || isInclusion(specification))) {
+        continue;
+      }
+      if (QueryMatcher.isOperatorDocument(specification) && specification.asDocument().getFirstKey().matches("\\$(slice|elemMatch)")) {
+        throw InMemoryErrors.unsupported("Projection operator " + specification.asDocument().getFirstKey());
+      }
+      BsonValue value = isInclusion(specification)
+          ? Bsons.get(document, path)
+          : Expressions.evaluate(specification, document);
+      if (value != null) {
+        Bsons.set(result, path, Bsons.copy(value));
+      }
+    }
+    return result;
+  }
+
+  private static boolean isExclusion(BsonValue value) {
+    return (value.isBoolean() || value.isNumber()) && !Bsons.isTruthy(value);
+  }
+
+  private static boolean isInclusion(BsonValue value) {
+    return (value.isBoolean() || value.isNumber()) && Bsons.isTruthy(value);
+  }
+}
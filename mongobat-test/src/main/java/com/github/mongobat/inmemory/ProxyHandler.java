@@ -0,0 +1,78 @@
+package com.github.mongobat.inmemory;
+
+import com.mongodb.client.ClientSession;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Base of the handlers implementing driver interfaces. Driver interfaces have many overloads, so handlers
+ * dispatch on method names and argument types instead of implementing every method.
+ */
+abstract class ProxyHandler implements InvocationHandler {
+
+  private static final Object[] NO_ARGUMENTS = new Object[0];
+
+  private final Class<?> type;
+
+  ProxyHandler(Class<?> type) {
+    this.type = type;
+  }
+
+  <T> T proxy() {
+    @SuppressWarnings("unchecked")
+    T proxy = (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, this);
+    return proxy;
+  }
+
+  @Override
+  public final Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    Object[] arguments = args == null ? NO_ARGUMENTS : args;
+    if (method.getDeclaringClass() == Object.class) {
+      switch (method.getName()) {
+        case "equals":
+          return proxy == arguments[0];
+        case "hashCode":
+          return System.identityHashCode(proxy);
+        default:
+          return describe();
+      }
+    }
+    if (arguments.length > 0 && arguments[0] instanceof ClientSession) {
+      throw InMemoryErrors.unsupported("Client sessions");
+    }
+    return handle(proxy, method, arguments);
+  }
+
+  /**
+   * @return result of the invoked method
+   * @throws UnsupportedOperationException if the method is not supported
+   */
+  abstract Object handle(Object proxy, Method method, Object[] args) throws Throwable;
+
+  String describe() {
+    return "InMemory" + type.getSimpleName();
+  }
+
+  UnsupportedOperationException unsupported(Method method) {
+    return InMemoryErrors.unsupported(type.getSimpleName() + "." + method.getName());
+  }
+
+  /**
+   * @return class argument of a method, the default class if there is none
+   */
+  static Class<?> resultClass(Object[] args, Class<?> defaultClass) {
+    Class<?> resultClass = argument(args, Class.class);
+    return resultClass == null ? defaultClass : resultClass;
+  }
+
+  static <T> T argument(Object[] args, Class<T> argumentType) {
+    for (Object arg : args) {
+      if (argumentType.isInstance(arg)) {
+        return argumentType.cast(arg);
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,253 @@
+package com.github.mongobat.inmemory;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonNull;
+import org.bson.BsonRegularExpression;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates query filters: comparison, logical, element and array operators with dotted paths
+ */
+final class QueryMatcher {
+
+  private QueryMatcher() {
+  }
+
+  static boolean matches(BsonDocument document, BsonDocument filter) {
+    for (Map.Entry<String, BsonValue> condition : filter.entrySet()) {
+      if (!matchesCondition(document, condition.getKey(), condition.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean matchesCondition(BsonDocument document, String key, BsonValue condition) {
+    switch (key) {
+      case "$and":
+        return condition.asArray().stream().allMatch(clause -> matches(document, clause.asDocument()));
+      case "$or":
+        return condition.asArray().stream().anyMatch(clause -> matches(document, clause.asDocument()));
+      case "$nor":
+        return condition.asArray().stream().noneMatch(clause -> matches(document, clause.asDocument()));
+      case "$comment":
+        return true;
+      default:
+        if (key.startsWith("$")) {
+          throw InMemoryErrors.unsupported("Query operator " + key);
+        }
+        return matchesValues(Bsons.resolve(document, key), condition);
+    }
+  }
+
+  /**
+   * @param values    values found at the queried path
+   * @param condition value to be equal to, regex or operator document
+   */
+  static boolean matchesValues(List<BsonValue> values, BsonValue condition) {
+    if (isOperatorDocument(condition)) {
+      BsonDocument operators = condition.asDocument();
+      for (Map.Entry<String, BsonValue> operator : operators.entrySet()) {
+        if (!matchesOperator(values, operator.getKey(), operator.getValue(), operators)) {
+          return false;
+        }
+      }
+      return true;
+    } else if (condition.isRegularExpression()) {
+      return anyCandidate(values, value -> matchesRegex(value, condition.asRegularExpression()));
+    }
+    return matchesEquality(values, condition);
+  }
+
+  static boolean isOperatorDocument(BsonValue value) {
+    return value.isDocument() && !value.asDocument().isEmpty() && value.asDocument().getFirstKey().startsWith("$");
+  }
+
+  private static boolean matchesOperator(List<BsonValue> values, String operator, BsonValue operand, BsonDocument operators) {
+    switch (operator) {
+      case "$eq":
+        return matchesEquality(values, operand);
+      case "$ne":
+        return !matchesEquality(values, operand);
+      case "$gt":
+        return anyCandidate(values, value -> Bsons.sameTypeBracket(value, operand) && Bsons.compare(value, operand) > 0);
+      case "$gte":
+        return anyCandidate(values, value -> Bsons.sameTypeBracket(value, operand) && Bsons.compare(value, operand) >= 0);
+      case "$lt":
+        return anyCandidate(values, value -> Bsons.sameTypeBracket(value, operand) && Bsons.compare(value, operand) < 0);
+      case "$lte":
+        return anyCandidate(values, value -> Bsons.sameTypeBracket(value, operand) && Bsons.compare(value, operand) <= 0);
+      case "$in":
+        return matchesIn(values, operand.asArray());
+      case "$nin":
+        return !matchesIn(values, operand.asArray());
+      case "$exists":
+        return values.isEmpty() != Bsons.isTruthy(operand);
+      case "$regex":
+        BsonRegularExpression regex = operand.isRegularExpression() ? operand.asRegularExpression()
+            : new BsonRegularExpression(operand.asString().getValue(),
+            operators.containsKey("$options") ? operators.getString("$options").getValue() : null);
+        return anyCandidate(values, value -> matchesRegex(value, regex));
+      case "$options":
+        return true;
+      case "$not":
+        return !matchesValues(values, operand);
+      case "$size":
+        return values.stream().anyMatch(value -> value.isArray() && value.asArray().size() == operand.asNumber().intValue());
+      case "$all":
+        return operand.asArray().stream().allMatch(expected -> matchesEquality(values, expected));
+      case "$elemMatch":
+        return values.stream().anyMatch(value -> value.isArray()
+            && value.asArray().stream().anyMatch(element -> matchesElement(element, operand.asDocument())));
+      case "$type":
+        List<BsonValue> types = operand.isArray() ? operand.asArray() : List.of(operand);
+        return types.stream().anyMatch(type -> values.stream().anyMatch(value -> hasType(value, type)
+            || value.isArray() && value.asArray().stream().anyMatch(element -> hasType(element, type))));
+      case "$mod":
+        long divisor = operand.asArray().get(0).asNumber().longValue();
+        long remainder = operand.asArray().get(1).asNumber().longValue();
+        return anyCandidate(values, value -> value.isNumber() && value.asNumber().longValue() % divisor == remainder);
+      default:
+        throw InMemoryErrors.unsupported("Query operator " + operator);
+    }
+  }
+
+  private static boolean matchesElement(BsonValue element, BsonDocument condition) {
+    if (isOperatorDocument(condition)) {
+      return matchesValues(List.of(element), condition);
+    }
+    return element.isDocument() && matches(element.asDocument(), condition);
+  }
+
+  private static boolean matchesIn(List<BsonValue> values, BsonArray expected) {
+    return expected.stream().anyMatch(candidate -> candidate.isRegularExpression()
+        ? anyCandidate(values, value -> matchesRegex(value, candidate.asRegularExpression()))
+        : matchesEquality(values, candidate));
+  }
+
+  private static boolean matchesEquality(List<BsonValue> values, BsonValue expected) {
+    if (values.isEmpty()) {
+      return expected.isNull();
+    }
+    return values.stream().anyMatch(value -> Bsons.equal(value, expected)
+        || value.isArray() && value.asArray().stream().anyMatch(element -> Bsons.equal(element, expected)));
+  }
+
+  /**
+   * Values and elements of array values, as range and regex operators see them
+   */
+  private static boolean anyCandidate(List<BsonValue> values, Predicate<BsonValue> predicate) {
+    List<BsonValue> candidates = new ArrayList<>();
+    for (BsonValue value : values) {
+      candidates.add(value);
+      if (value.isArray()) {
+        candidates.addAll(value.asArray());
+      }
+    }
+    return candidates.stream().anyMatch(predicate);
+  }
+
+  private static boolean matchesRegex(BsonValue value, BsonRegularExpression regex) {
+    if (!value.isString()) {
+      return false;
+    }
+    int flags = 0;
+    String options = regex.getOptions();
+    if (options.contains("i")) {
+      flags |= Pattern.CASE_INSENSITIVE;
+    }
+    if (options.contains("m")) {
+      flags |= Pattern.MULTILINE;
+    }
+    if (options.contains("s")) {
+      flags |= Pattern.DOTALL;
+    }
+    if (options.contains("x")) {
+      flags |= Pattern.COMMENTS;
+    }
+    return Pattern.compile(regex.getPattern(), flags).matcher(value.asString().getValue()).find();
+  }
+
+  private static boolean hasType(BsonValue value, BsonValue type) {
+    if (type.isNumber()) {
+      return value.getBsonType().getValue() == type.asNumber().intValue();
+    }
+    switch (type.asString().getValue()) {
+      case "double":
+        return value.getBsonType() == BsonType.DOUBLE;
+      case "string":
+        return value.getBsonType() == BsonType.STRING;
+      case "object":
+        return value.getBsonType() == BsonType.DOCUMENT;
+      case "array":
+        return value.getBsonType() == BsonType.ARRAY;
+      case "binData":
+        return value.getBsonType() == BsonType.BINARY;
+      case "objectId":
+        return value.getBsonType() == BsonType.OBJECT_ID;
+      case "bool":
+        return value.getBsonType() == BsonType.BOOLEAN;
+      case "date":
+        return value.getBsonType() == BsonType.DATE_TIME;
+      case "null":
+        return value.getBsonType() == BsonType.NULL;
+      case "regex":
+        return value.getBsonType() == BsonType.REGULAR_EXPRESSION;
+      case "int":
+        return value.getBsonType() == BsonType.INT32;
+      case "timestamp":
+        return value.getBsonType() == BsonType.TIMESTAMP;
+      case "long":
+        return value.getBsonType() == BsonType.INT64;
+      case "decimal":
+        return value.getBsonType() == BsonType.DECIMAL128;
+      case "number":
+        return value.isNumber() || value.isDecimal128();
+      case "symbol":
+        return value.getBsonType() == BsonType.SYMBOL;
+      case "undefined":
+        return value.getBsonType() == BsonType.UNDEFINED;
+      case "minKey":
+        return value.getBsonType() == BsonType.MIN_KEY;
+      case "maxKey":
+        return value.getBsonType() == BsonType.MAX_KEY;
+      default:
+        throw InMemoryErrors.unsupported("$type " + type);
+    }
+  }
+
+  /**
+   * Document an upsert starts from: equality conditions of the filter
+   */
+  static BsonDocument upsertSeed(BsonDocument filter) {
+    BsonDocument seed = new BsonDocument();
+    addEqualities(seed, filter);
+    return seed;
+  }
+
+  private static void addEqualities(BsonDocument seed, BsonDocument filter) {
+    for (Map.Entry<String, BsonValue> condition : filter.entrySet()) {
+      String key = condition.getKey();
+      BsonValue value = condition.getValue();
+      if (key.equals("$and")) {
+        value.asArray().forEach(clause -> addEqualities(seed, clause.asDocument()));
+      } else if (key.startsWith("$")) {
+        continue;
+      } else if (isOperatorDocument(value)) {
+        if (value.asDocument().containsKey("$eq")) {
+          Bsons.set(seed, key, Bsons.copy(value.asDocument().get("$eq")));
+        }
+      } else if (!value.isRegularExpression()) {
+        Bsons.set(seed, key, value == null ? BsonNull.VALUE : Bsons.copy(value));
+      }
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package com.github.mongobat.inmemory;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Implements find, aggregate, distinct and listing iterables. Results are computed when the iteration starts,
+ * options without an in-memory meaning (batch size, time limits, hints..) are accepted and ignored.
+ */
+final class ResultIterableHandler extends ProxyHandler {
+
+  /**
+   * Computes raw results of an iterable
+   */
+  @FunctionalInterface
+  interface Source {
+    List<? extends BsonValue> results(Query query);
+  }
+
+  /**
+   * Find options set on the iterable
+   */
+  static final class Query {
+    BsonDocument filter = new BsonDocument();
+    BsonDocument projection;
+    BsonDocument sort;
+    int skip;
+    int limit;
+  }
+
+  private final Source source;
+  private final Function<BsonValue, ?> decoder;
+  private final Function<Query, BsonDocument> explainer;
+  private final CodecRegistry codecRegistry;
+  private final Query query = new Query();
+
+  ResultIterableHandler(Class<?> type, Source source, Function<BsonValue, ?> decoder,
+      Function<Query, BsonDocument> explainer, CodecRegistry codecRegistry) {
+    super(type);
+    this.source = source;
+    this.decoder = decoder;
+    this.explainer = explainer;
+    this.codecRegistry = codecRegistry;
+  }
+
+  ResultIterableHandler filter(BsonDocument filter) {
+    query.filter = filter;
+    return this;
+  }
+
+  @Override
+  Object handle(Object proxy, Method method, Object[] args) {
+    switch (method.getName()) {
+      case "filter":
+        query.filter = Bsons.toBsonDocument((Bson) args[0], codecRegistry);
+        return proxy;
+      case "projection":
+        query.projection = args[0] == null ? null : Bsons.toBsonDocument((Bson) args[0], codecRegistry);
+        return proxy;
+      case "sort":
+        query.sort = args[0] == null ? null : Bsons.toBsonDocument((Bson) args[0], codecRegistry);
+        return proxy;
+      case "skip":
+        query.skip = (Integer) args[0];
+        return proxy;
+      case "limit":
+        query.limit = (Integer) args[0];
+        return proxy;
+      case "iterator":
+      case "cursor":
+        return cursor();
+      case "first":
+        List<? extends BsonValue> results = source.results(query);
+        return results.isEmpty() ? null : decoder.apply(results.get(0));
+      case "into":
+        @SuppressWarnings("unchecked")
+        Collection<Object> target = (Collection<Object>) args[0];
+        source.results(query).forEach(result -> target.add(decoder.apply(result)));
+        return target;
+      case "forEach":
+        @SuppressWarnings("unchecked")
+        Consumer<Object> consumer = (Consumer<Object>) args[0];
+        source.results(query).forEach(result -> consumer.accept(decoder.apply(result)));
+        return null;
+      case "spliterator":
+        return Spliterators.spliteratorUnknownSize(cursor(), 0);
+      case "map":
+        @SuppressWarnings("unchecked")
+        com.mongodb.Function<Object, ?> mapper = (com.mongodb.Function<Object, ?>) args[0];
+        return new ResultIterableHandler(MongoIterable.class, ignored -> source.results(query),
+            decoder.andThen(mapper::apply), null, codecRegistry).proxy();
+      case "explain":
+        if (explainer == null) {
+          throw unsupported(method);
+        }
+        return Bsons.decode(explainer.apply(query), resultClass(args, Document.class), codecRegistry);
+      case "toCollection":
+        throw unsupported(method);
+      default:
+        if (method.getReturnType().isInstance(proxy)) {
+          return proxy;
+        }
+        throw unsupported(method);
+    }
+  }
+
+  private MongoCursor<?> cursor() {
+    return new CursorHandler(source.results(query), decoder).proxy();
+  }
+
+  /**
+   * Cursor over precomputed results
+   */
+  static final class CursorHandler extends ProxyHandler {
+    private final List<? extends BsonValue> results;
+    private final Function<BsonValue, ?> decoder;
+    private int position;
+
+    CursorHandler(List<? extends BsonValue> results, Function<BsonValue, ?> decoder) {
+      super(MongoCursor.class);
+      this.results = results;
+      this.decoder = decoder;
+    }
+
+    @Override
+    Object handle(Object proxy, Method method, Object[] args) {
+      switch (method.getName()) {
+        case "hasNext":
+          return position < results.size();
+        case "next":
+          if (position >= results.size()) {
+            throw new java.util.NoSuchElementException();
+          }
+          return decoder.apply(results.get(position++));
+        case "tryNext":
+          return position < results.size() ? decoder.apply(results.get(position++)) : null;
+        case "available":
+          return results.size() - position;
+        case "forEachRemaining":
+          @SuppressWarnings("unchecked")
+          Consumer<Object> consumer = (Consumer<Object>) args[0];
+          while (position < results.size()) {
+            consumer.accept(decoder.apply(results.get(position++)));
+          }
+          return null;
+        case "close":
+          position = results.size();
+          return null;
+        case "getServerCursor":
+          return null;
+        case "getServerAddress":
+          return InMemoryErrors.SERVER_ADDRESS;
+        default:
+          throw unsupported(method);
+      }
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package com.github.mongobat.inmemory;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * Settings of a database or collection. They don't change the in-memory behaviour but are reported back
+ * by getters, so code configuring them can be asserted.
+ */
+final class Settings {
+
+  static final Settings DEFAULT = new Settings(MongoClientSettings.getDefaultCodecRegistry(), ReadPreference.primary(),
+      WriteConcern.ACKNOWLEDGED, ReadConcern.DEFAULT);
+
+  final CodecRegistry codecRegistry;
+  final ReadPreference readPreference;
+  final WriteConcern writeConcern;
+  final ReadConcern readConcern;
+
+  private Settings(CodecRegistry codecRegistry, ReadPreference readPreference, WriteConcern writeConcern,
+      ReadConcern readConcern) {
+    this.codecRegistry = codecRegistry;
+    this.readPreference = readPreference;
+    this.writeConcern = writeConcern;
+    this.readConcern = readConcern;
+  }
+
+  /**
+   * @return value of a settings getter, null if the method is not one
+   */
+  Object get(String methodName) {
+    switch (methodName) {
+      case "getCodecRegistry":
+        return codecRegistry;
+      case "getReadPreference":
+        return readPreference;
+      case "getWriteConcern":
+        return writeConcern;
+      case "getReadConcern":
+        return readConcern;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * @return changed settings for a <tt>with*</tt> method, null if the method is not one
+   */
+  Settings with(String methodName, Object value) {
+    switch (methodName) {
+      case "withCodecRegistry":
+        return new Settings((CodecRegistry) value, readPreference, writeConcern, readConcern);
+      case "withReadPreference":
+        return new Settings(codecRegistry, (ReadPreference) value, writeConcern, readConcern);
+      case "withWriteConcern":
+        return new Settings(codecRegistry, readPreference, (WriteConcern) value, readConcern);
+      case "withReadConcern":
+        return new Settings(codecRegistry, readPreference, writeConcern, (ReadConcern) value);
+      default:
+        return null;
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package com.github.mongobat.inmemory;
+
+import org.bson.BsonDocument;
+import org.bson.BsonNull;
+import org.bson.BsonValue;
+
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Comparators for sort specifications like <tt>{field: 1, other: -1}</tt>
+ */
+final class Sorting {
+
+  private Sorting() {
+  }
+
+  static Comparator<BsonDocument> comparator(BsonDocument sort) {
+    Comparator<BsonDocument> comparator = (a, b) -> 0;
+    for (Map.Entry<String, BsonValue> field : sort.entrySet()) {
+      if (!field.getValue().isNumber()) {
+        throw InMemoryErrors.unsupported("Sort by " + field.getValue());
+      }
+      String path = field.getKey();
+      Comparator<BsonDocument> byField = Comparator.comparing(document -> valueOf(document, path), Bsons.ORDER);
+      comparator = comparator.thenComparing(field.getValue().asNumber().intValue() < 0 ? byField.reversed() : byField);
+    }
+    return comparator;
+  }
+
+  private static BsonValue valueOf(BsonDocument document, String path) {
+    BsonValue value = Bsons.get(document, path);
+    return value == null ? BsonNull.VALUE : value;
+  }
+}
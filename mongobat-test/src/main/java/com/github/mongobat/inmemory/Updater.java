@@ -0,0 +1,171 @@
+package com.github.mongobat.inmemory;
+
+import org.bson.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies update operator documents ($set, $inc, $push...) to stored documents
+ */
+final class Updater {
+
+  private Updater() {
+  }
+
+  static boolean isUpdateDocument(BsonDocument update) {
+    return !update.isEmpty() && update.getFirstKey().startsWith("$");
+  }
+
+  /**
+   * @param document document to update in place
+   * @param update   update operators
+   * @param insert   true if the document is being inserted by an upsert
+   */
+  static void apply(BsonDocument document, BsonDocument update, boolean insert) {
+    BsonValue id = document.get("_id");
+    for (Map.Entry<String, BsonValue> operator : update.entrySet()) {
+      BsonDocument fields = operator.getValue().asDocument();
+      for (Map.Entry<String, BsonValue> field : fields.entrySet()) {
+        apply(document, operator.getKey(), field.getKey(), field.getValue(), insert);
+      }
+    }
+    if (id != null && !id.equals(document.get("_id"))) {
+      throw InMemoryErrors.writeError(InMemoryErrors.IMMUTABLE_FIELD, "Performing an update on the path '_id' would modify the immutable field '_id'");
+    }
+  }
+
+  private static void apply(BsonDocument document, String operator, String path, BsonValue operand, boolean insert) {
+    BsonValue current = Bsons.get(document, path);
+    switch (operator) {
+      case "$set":
+        Bsons.set(document, path, Bsons.copy(operand));
+        break;
+      case "$setOnInsert":
+        if (insert) {
+          Bsons.set(document, path, Bsons.copy(operand));
+        }
+        break;
+      case "$unset":
+        Bsons.remove(document, path);
+        break;
+      case "$inc":
+        Bsons.set(document, path, current == null ? operand : Bsons.add(numeric(current, path), operand));
+        break;
+      case "$mul":
+        Bsons.set(document, path, Bsons.multiply(current == null ? new BsonInt32(0) : numeric(current, path), operand));
+        break;
+      case "$min":
+        if (current == null || Bsons.compare(operand, current) < 0) {
+          Bsons.set(document, path, Bsons.copy(operand));
+        }
+        break;
+      case "$max":
+        if (current == null || Bsons.compare(operand, current) > 0) {
+          Bsons.set(document, path, Bsons.copy(operand));
+        }
+        break;
+      case "$rename":
+        if (current != null) {
+          Bsons.remove(document, path);
+          Bsons.set(document, operand.asString().getValue(), current);
+        }
+        break;
+      case "$currentDate":
+        boolean timestamp = operand.isDocument() && "timestamp".equals(operand.asDocument().getString("$type").getValue());
+        long now = System.currentTimeMillis();
+        Bsons.set(document, path, timestamp ? new BsonTimestamp((int) (now / 1000), 1) : new BsonDateTime(now));
+        break;
+      case "$push":
+        push(document, path, array(document, current, path), operand);
+        break;
+      case "$addToSet":
+        BsonArray set = array(document, current, path);
+        for (BsonValue value : each(operand)) {
+          if (set.stream().noneMatch(element -> Bsons.equal(element, value))) {
+            set.add(Bsons.copy(value));
+          }
+        }
+        break;
+      case "$pull":
+        if (current != null) {
+          array(document, current, path).removeIf(element -> pullMatches(element, operand));
+        }
+        break;
+      case "$pullAll":
+        if (current != null) {
+          array(document, current, path).removeIf(element -> operand.asArray().stream().anyMatch(value -> Bsons.equal(element, value)));
+        }
+        break;
+      case "$pop":
+        if (current != null && !array(document, current, path).isEmpty()) {
+          BsonArray array = current.asArray();
+          array.remove(operand.asNumber().intValue() < 0 ? 0 : array.size() - 1);
+        }
+        break;
+      default:
+        throw InMemoryErrors.unsupported("Update operator " + operator);
+    }
+  }
+
+  private static BsonValue numeric(BsonValue current, String path) {
+    if (!current.isNumber() && !current.isDecimal128()) {
+      throw InMemoryErrors.writeError(14, "Cannot apply arithmetic to non-numeric field " + path);
+    }
+    return current;
+  }
+
+  private static BsonArray array(BsonDocument document, BsonValue current, String path) {
+    if (current == null) {
+      BsonArray array = new BsonArray();
+      Bsons.set(document, path, array);
+      return array;
+    } else if (!current.isArray()) {
+      throw InMemoryErrors.writeError(2, "The field '" + path + "' must be an array");
+    }
+    return current.asArray();
+  }
+
+  private static List<BsonValue> each(BsonValue operand) {
+    if (operand.isDocument() && operand.asDocument().containsKey("$each")) {
+      return operand.asDocument().getArray("$each");
+    }
+    return List.of(operand);
+  }
+
+  private static void push(BsonDocument document, String path, BsonArray array, BsonValue operand) {
+    List<BsonValue> values = new ArrayList<>();
+    each(operand).forEach(value -> values.add(Bsons.copy(value)));
+    BsonDocument modifiers = operand.isDocument() && operand.asDocument().containsKey("$each") ? operand.asDocument() : new BsonDocument();
+
+    int position = modifiers.containsKey("$position") ? modifiers.getNumber("$position").intValue() : array.size();
+    array.addAll(Math.max(0, Math.min(position, array.size())), values);
+
+    if (modifiers.containsKey("$sort")) {
+      BsonValue sort = modifiers.get("$sort");
+      List<BsonValue> sorted = new ArrayList<>(array);
+      sorted.sort(sort.isDocument() ? Comparator.comparing(BsonValue::asDocument, Sorting.comparator(sort.asDocument()))
+          : sort.asNumber().intValue() < 0 ? Bsons.ORDER.reversed() : Bsons.ORDER);
+      array.clear();
+      array.addAll(sorted);
+    }
+    if (modifiers.containsKey("$slice")) {
+      int slice = modifiers.getNumber("$slice").intValue();
+      List<BsonValue> kept = slice >= 0
+          ? new ArrayList<>(array.subList(0, Math.min(slice, array.size())))
+          : new ArrayList<>(array.subList(Math.max(0, array.size() + slice), array.size()));
+      array.clear();
+      array.addAll(kept);
+    }
+    Bsons.set(document, path, array);
+  }
+
+  private static boolean pullMatches(BsonValue element, BsonValue condition) {
+    if (condition.isDocument() && !QueryMatcher.isOperatorDocument(condition)) {
+      return element.isDocument() && QueryMatcher.matches(element.asDocument(), condition.asDocument());
+    }
+    return QueryMatcher.matchesValues(List.of(element), condition);
+  }
+}
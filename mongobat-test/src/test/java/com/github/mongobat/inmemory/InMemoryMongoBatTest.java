@@ -0,0 +1,61 @@
+package com.github.mongobat.inmemory;
+
+import com.github.mongobat.ExecutionReport;
+import com.github.mongobat.MongoBat;
+import com.github.mongobat.exception.MongoBatException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryMongoBatTest {
+
+  @Test
+  void shouldExecuteChangeLogsAgainstInMemoryDatabase() throws Exception {
+    MongoClient client = InMemoryMongo.newClient();
+    MongoBat runner = new MongoBat(client)
+        .setDbName("test")
+        .setChangeLogsScanPackage("com.github.mongobat.inmemory.changelog");
+
+    ExecutionReport report = runner.execute();
+
+    MongoDatabase db = client.getDatabase("test");
+    assertEquals(2, report.getExecuted());
+    assertEquals(3, db.getCollection("orders").countDocuments(Filters.eq("currency", "EUR")));
+    assertEquals(2, db.getCollection("dbchangelog").countDocuments());
+    assertFalse(runner.isExecutionInProgress());
+
+    assertEquals(0, new MongoBat(client).setDbName("test")
+        .setChangeLogsScanPackage("com.github.mongobat.inmemory.changelog")
+        .execute().getExecuted());
+    assertEquals(new Document("_id", 1).append("number", "A-1").append("currency", "EUR"),
+        db.getCollection("orders").find(Filters.eq("_id", 1)).first());
+  }
+
+  @Test
+  void shouldFailVerifiedChangeSetBeforeItIsRecorded() {
+    MongoClient client = InMemoryMongo.newClient();
+    MongoDatabase db = client.getDatabase("test");
+    db.getCollection("orders").insertMany(IntStream.range(0, 50)
+        .mapToObj(i -> new Document("_id", i).append("number", "A-" + i)
+            .append("customer", new Document("name", "customer " + i % 7)))
+        .collect(Collectors.toList()));
+    MongoBat runner = new MongoBat(client)
+        .setDbName("test")
+        .setChangeLogsScanPackage("com.github.mongobat.verify.changelog");
+
+    MongoBatException e = assertThrows(MongoBatException.class, runner::execute);
+
+    assertTrue(e.getMessage().contains("_id 7: customer.name"), e.getMessage());
+    assertEquals(0, db.getCollection("dbchangelog").countDocuments(Filters.eq("changeId", "archiveOrders")));
+  }
+}
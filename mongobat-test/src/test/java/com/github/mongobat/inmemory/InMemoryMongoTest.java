@@ -0,0 +1,145 @@
+package com.github.mongobat.inmemory;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoNamespace;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.*;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryMongoTest {
+
+  private MongoDatabase db;
+  private MongoCollection<Document> orders;
+
+  @BeforeEach
+  void init() {
+    db = InMemoryMongo.newDatabase("test");
+    orders = db.getCollection("orders");
+  }
+
+  @Test
+  void shouldFindDocumentsWithQueryOperators() {
+    orders.insertMany(List.of(
+        new Document("_id", 1).append("status", "NEW").append("total", 10).append("tags", List.of("a", "b")),
+        new Document("_id", 2).append("status", "PAID").append("total", 25.5).append("tags", List.of("b")),
+        new Document("_id", 3).append("status", "PAID").append("total", 40L)));
+
+    assertEquals(2, orders.countDocuments(Filters.eq("status", "PAID")));
+    assertEquals(2, orders.countDocuments(Filters.gte("total", 25)));
+    assertEquals(2, orders.countDocuments(Filters.eq("tags", "b")));
+    assertEquals(1, orders.countDocuments(Filters.and(Filters.in("status", "NEW", "PAID"), Filters.exists("tags", false))));
+    assertEquals(1, orders.countDocuments(Filters.or(Filters.regex("status", "^N"), Filters.size("tags", 3))));
+
+    List<Integer> ids = new ArrayList<>();
+    orders.find(Filters.ne("status", "NEW"))
+        .sort(Sorts.descending("total"))
+        .projection(Projections.include("_id"))
+        .map(document -> document.getInteger("_id"))
+        .into(ids);
+    assertEquals(List.of(3, 2), ids);
+    assertEquals(List.of("NEW", "PAID"), orders.distinct("status", String.class).into(new ArrayList<>()));
+  }
+
+  @Test
+  void shouldApplyUpdateOperatorsAndUpserts() {
+    orders.insertOne(new Document("_id", 1).append("total", 10).append("items", List.of("a")));
+
+    UpdateResult result = orders.updateOne(Filters.eq("_id", 1), Updates.combine(
+        Updates.inc("total", 5), Updates.set("customer.name", "John"), Updates.push("items", "b"), Updates.unset("missing")));
+    assertEquals(1, result.getModifiedCount());
+
+    Document order = orders.find(Filters.eq("_id", 1)).first();
+    assertEquals(15, order.getInteger("total"));
+    assertEquals("John", order.get("customer", Document.class).getString("name"));
+    assertEquals(List.of("a", "b"), order.getList("items", String.class));
+
+    UpdateResult upsert = orders.updateOne(Filters.eq("number", "A-2"), Updates.setOnInsert("total", 0),
+        new UpdateOptions().upsert(true));
+    assertNotNull(upsert.getUpsertedId());
+    assertEquals(0, orders.find(Filters.eq("number", "A-2")).first().getInteger("total"));
+
+    Document updated = orders.findOneAndUpdate(Filters.eq("_id", 1), Updates.addToSet("items", "a"),
+        new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+    assertEquals(List.of("a", "b"), updated.getList("items", String.class));
+  }
+
+  @Test
+  void shouldRejectDuplicatesOfUniqueIndex() {
+    orders.createIndex(Indexes.ascending("number"), new IndexOptions().unique(true));
+    orders.insertOne(new Document("number", "A-1"));
+
+    MongoWriteException exception = assertThrows(MongoWriteException.class, () -> orders.insertOne(new Document("number", "A-1")));
+    assertEquals(11000, exception.getCode());
+    assertEquals(1, orders.countDocuments());
+    assertEquals(2, orders.listIndexes().into(new ArrayList<>()).size());
+
+    orders.dropIndexes();
+    orders.insertOne(new Document("number", "A-1"));
+    assertThrows(MongoCommandException.class,
+        () -> orders.createIndex(Indexes.ascending("number"), new IndexOptions().unique(true)));
+  }
+
+  @Test
+  void shouldExecuteBulkWrites() {
+    BulkWriteResult result = orders.bulkWrite(List.of(
+        new InsertOneModel<>(new Document("_id", 1).append("total", 1)),
+        new InsertOneModel<>(new Document("_id", 2).append("total", 2)),
+        new UpdateManyModel<>(Filters.gt("total", 0), Updates.mul("total", 10)),
+        new ReplaceOneModel<>(Filters.eq("_id", 3), new Document("total", 3), new ReplaceOptions().upsert(true)),
+        new DeleteOneModel<>(Filters.eq("_id", 1))));
+
+    assertEquals(2, result.getInsertedCount());
+    assertEquals(2, result.getModifiedCount());
+    assertEquals(1, result.getUpserts().size());
+    assertEquals(1, result.getDeletedCount());
+    assertEquals(20, orders.find(Filters.eq("_id", 2)).first().getInteger("total"));
+
+    MongoBulkWriteException exception = assertThrows(MongoBulkWriteException.class, () -> orders.bulkWrite(List.of(
+        new InsertOneModel<>(new Document("_id", 2)),
+        new InsertOneModel<>(new Document("_id", 4))), new BulkWriteOptions().ordered(false)));
+    assertEquals(11000, exception.getWriteErrors().get(0).getCode());
+    assertEquals(1, exception.getWriteResult().getInsertedCount());
+  }
+
+  @Test
+  void shouldRunAggregationPipelines() {
+    orders.insertMany(List.of(
+        new Document("customer", "a").append("total", 10),
+        new Document("customer", "a").append("total", 5),
+        new Document("customer", "b").append("total", 7)));
+
+    List<Document> totals = orders.aggregate(List.of(
+        Aggregates.match(Filters.gt("total", 5)),
+        Aggregates.group("$customer", Accumulators.sum("total", "$total"), Accumulators.sum("count", 1)),
+        Aggregates.sort(Sorts.ascending("_id")))).into(new ArrayList<>());
+
+    assertEquals(List.of(
+        new Document("_id", "a").append("total", 10).append("count", 1),
+        new Document("_id", "b").append("total", 7).append("count", 1)), totals);
+  }
+
+  @Test
+  void shouldRenameCollectionsAndRejectChangeStreams() {
+    orders.insertOne(new Document("_id", 1));
+    db.getCollection("shadow").insertOne(new Document("_id", 2));
+
+    assertThrows(MongoCommandException.class, () -> db.getCollection("shadow").renameCollection(new MongoNamespace("test", "orders")));
+    db.getCollection("shadow").renameCollection(new MongoNamespace("test", "orders"), new RenameCollectionOptions().dropTarget(true));
+
+    assertEquals(List.of("orders"), db.listCollectionNames().into(new ArrayList<>()));
+    assertEquals(2, orders.find().first().getInteger("_id"));
+    assertThrows(MongoCommandException.class, () -> orders.watch().cursor());
+  }
+}
@@ -0,0 +1,32 @@
+package com.github.mongobat.inmemory.changelog;
+
+import com.github.mongobat.changeset.ChangeLog;
+import com.github.mongobat.changeset.ChangeSet;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+
+import java.util.List;
+
+@ChangeLog
+public class OrdersChangeLog {
+
+  @ChangeSet(order = "001", id = "createOrders", author = "testuser", description = "")
+  public void createOrders(MongoDatabase db) {
+    MongoCollection<Document> orders = db.getCollection("orders");
+    orders.createIndex(Indexes.ascending("number"), new IndexOptions().unique(true));
+    orders.insertMany(List.of(
+        new Document("_id", 1).append("number", "A-1"),
+        new Document("_id", 2).append("number", "A-2"),
+        new Document("_id", 3).append("number", "A-3")));
+  }
+
+  @ChangeSet(order = "002", id = "addCurrency", author = "testuser", description = "")
+  public void addCurrency(MongoDatabase db) {
+    db.getCollection("orders").updateMany(Filters.exists("currency", false), Updates.set("currency", "EUR"));
+  }
+}
@@ -0,0 +1,39 @@
+package com.github.mongobat.partition;
+
+import com.github.mongobat.inmemory.InMemoryMongo;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdRangeTest {
+
+  @Test
+  void shouldCoverEachDocumentOfMixedIdTypesOnce() {
+    MongoCollection<Document> orders = InMemoryMongo.newDatabase("test").getCollection("orders");
+    List<Document> documents = new ArrayList<>();
+    for (int i = 0; i < 150; i += 10) {
+      documents.add(new Document("_id", i));
+    }
+    List.of("aa", "abc", "b", "zz").forEach(id -> documents.add(new Document("_id", id)));
+    documents.add(new Document("_id", new ObjectId()));
+    documents.add(new Document("_id", new Document("tenant", 1)));
+    documents.add(new Document("_id", true));
+    documents.add(new Document("_id", null));
+    orders.insertMany(documents);
+
+    Set<Object> scanned = new HashSet<>();
+    for (IdRange range : IdRange.fromBoundaries(List.of(1, 100, "abc"))) {
+      orders.find(range.toFilter()).forEach(document -> assertTrue(scanned.add(document.get("_id")), document.toJson()));
+    }
+
+    assertEquals(documents.size(), scanned.size());
+  }
+}
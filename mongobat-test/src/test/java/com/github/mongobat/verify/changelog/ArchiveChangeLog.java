@@ -0,0 +1,23 @@
+package com.github.mongobat.verify.changelog;
+
+import com.github.mongobat.changeset.ChangeLog;
+import com.github.mongobat.changeset.ChangeSet;
+import com.github.mongobat.changeset.Verify;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@ChangeLog
+public class ArchiveChangeLog {
+
+  @ChangeSet(order = "001", id = "archiveOrders", author = "testuser", description = "")
+  @Verify(source = "orders", target = "orders_archive", fields = {"number", "customer.name"}, ranges = 4, sampleSize = 50)
+  public void archiveOrders(MongoDatabase db) {
+    List<Document> orders = db.getCollection("orders").find().into(new ArrayList<>());
+    // a faulty copy losing the customer of one order
+    orders.stream().filter(order -> order.getInteger("_id") == 7).forEach(order -> order.remove("customer"));
+    db.getCollection("orders_archive").insertMany(orders);
+  }
+}
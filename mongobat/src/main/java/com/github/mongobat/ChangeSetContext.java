@@ -0,0 +1,91 @@
+package com.github.mongobat;
+
+import com.github.mongobat.batching.WriteBatcher;
+import com.github.mongobat.changeset.CancellationToken;
+import com.github.mongobat.changeset.ChangeEntry;
+import com.github.mongobat.guard.QueryPlanInspector;
+import com.github.mongobat.partition.IdRange;
+import com.github.mongobat.progress.ProgressReporter;
+
+/**
+ * State of a single changeset execution, shared with its ChangeSet method parameters
+ */
+class ChangeSetContext {
+
+  private final ChangeEntry changeEntry;
+  private final CancellationToken cancellationToken;
+  private final IdRange range;
+  private final WriteBatcher writeBatcher;
+  private final QueryPlanInspector queryPlanInspector;
+  private final ProgressReporter progressReporter;
+
+  ChangeSetContext(ChangeEntry changeEntry, CancellationToken cancellationToken) {
+    this(changeEntry, cancellationToken, null, null, null, null);
+  }
+
+  private ChangeSetContext(ChangeEntry changeEntry, CancellationToken cancellationToken, IdRange range,
+      WriteBatcher writeBatcher, QueryPlanInspector queryPlanInspector, ProgressReporter progressReporter) {
+    this.changeEntry = changeEntry;
+    this.cancellationToken = cancellationToken;
+    this.range = range;
+    this.writeBatcher = writeBatcher;
+    this.queryPlanInspector = queryPlanInspector;
+    this.progressReporter = progressReporter;
+  }
+
+  /**
+   * @param range range processed by a partitioned changeset
+   * @return context of a single range execution
+   */
+  ChangeSetContext withRange(IdRange range) {
+    return new ChangeSetContext(changeEntry, cancellationToken, range, writeBatcher, queryPlanInspector, progressReporter);
+  }
+
+  /**
+   * @param writeBatcher batcher of writes made through the injected database, or null
+   * @return context of a single invocation
+   */
+  ChangeSetContext withWriteBatcher(WriteBatcher writeBatcher) {
+    return new ChangeSetContext(changeEntry, cancellationToken, range, writeBatcher, queryPlanInspector, progressReporter);
+  }
+
+  /**
+   * @param queryPlanInspector inspector of operations made through the injected database, or null
+   * @return context of a guarded execution
+   */
+  ChangeSetContext withQueryPlanInspector(QueryPlanInspector queryPlanInspector) {
+    return new ChangeSetContext(changeEntry, cancellationToken, range, writeBatcher, queryPlanInspector, progressReporter);
+  }
+
+  /**
+   * @param progressReporter reporter injected into the changeset
+   * @return context of a reported execution
+   */
+  ChangeSetContext withProgressReporter(ProgressReporter progressReporter) {
+    return new ChangeSetContext(changeEntry, cancellationToken, range, writeBatcher, queryPlanInspector, progressReporter);
+  }
+
+  ChangeEntry getChangeEntry() {
+    return changeEntry;
+  }
+
+  CancellationToken getCancellationToken() {
+    return cancellationToken;
+  }
+
+  IdRange getRange() {
+    return range;
+  }
+
+  WriteBatcher getWriteBatcher() {
+    return writeBatcher;
+  }
+
+  QueryPlanInspector getQueryPlanInspector() {
+    return queryPlanInspector;
+  }
+
+  ProgressReporter getProgressReporter() {
+    return progressReporter;
+  }
+}
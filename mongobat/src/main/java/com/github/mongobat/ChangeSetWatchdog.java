@@ -0,0 +1,132 @@
+package com.github.mongobat;
+
+import com.github.mongobat.exception.MongoBatChangeSetException;
+import com.github.mongobat.exception.MongoBatChangeSetTimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Watches the duration of time limited changesets.
+ * <p>
+ * The changeset runs on the calling thread, so its thread locals (e.g. the logging MDC) are kept, while a monitor
+ * thread watches it. When a changeset overruns, its stack trace is logged and cancellation is requested via its token.
+ * A changeset which doesn't stop within the grace period is interrupted. The watchdog returns only once the changeset
+ * has stopped, so the caller never releases the lock while it still runs. It then fails with
+ * {@link MongoBatChangeSetTimeoutException}.
+ */
+class ChangeSetWatchdog {
+  private static final Logger log = LoggerFactory.getLogger(ChangeSetWatchdog.class);
+
+  private final ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "mongobat-watchdog");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final Duration gracePeriod;
+
+  ChangeSetWatchdog(Duration gracePeriod) {
+    this.gracePeriod = gracePeriod;
+  }
+
+  /**
+   * Single changeset method invocation
+   */
+  @FunctionalInterface
+  interface ChangeSetInvocation {
+    Object invoke() throws IllegalAccessException, InvocationTargetException, MongoBatChangeSetException;
+  }
+
+  Object execute(ChangeSetContext context, Duration maxDuration, ChangeSetInvocation invocation)
+      throws IllegalAccessException, InvocationTargetException, MongoBatChangeSetException {
+    String changeId = context.getChangeEntry().getChangeId();
+    Watch watch = new Watch(Thread.currentThread());
+    watch.schedule(() -> {
+      log.warn("{} exceeded max duration {}, cancelling. Stack trace:\n{}", changeId, maxDuration,
+          formatStackTrace(watch.thread.getStackTrace()));
+      watch.timedOut = true;
+      context.getCancellationToken().cancel("max duration " + maxDuration + " exceeded");
+      watch.schedule(() -> {
+        log.warn("{} did not stop within {}, interrupting. Waiting for it to stop", changeId, gracePeriod);
+        watch.interrupted = true;
+        watch.thread.interrupt();
+      }, gracePeriod);
+    }, maxDuration);
+
+    Object result;
+    try {
+      result = invocation.invoke();
+    } catch (IllegalAccessException | InvocationTargetException | MongoBatChangeSetException | RuntimeException | Error e) {
+      if (!watch.finish()) {
+        throw e;
+      }
+      log.debug("{} stopped after cancellation", changeId, e);
+      throw timeout(changeId, maxDuration);
+    }
+    if (watch.finish()) {
+      throw timeout(changeId, maxDuration);
+    }
+    return result;
+  }
+
+  private static MongoBatChangeSetTimeoutException timeout(String changeId, Duration maxDuration) {
+    return new MongoBatChangeSetTimeoutException("Changeset " + changeId + " exceeded max duration " + maxDuration);
+  }
+
+  private static String formatStackTrace(StackTraceElement[] stackTrace) {
+    return Arrays.stream(stackTrace)
+        .map(element -> "\tat " + element)
+        .collect(Collectors.joining("\n"));
+  }
+
+  void close() {
+    monitor.shutdownNow();
+  }
+
+  /**
+   * Monitor state of one changeset, the monitor acts only until the changeset finished
+   */
+  private class Watch {
+    private final Thread thread;
+    private ScheduledFuture<?> pending;
+    private boolean finished;
+    private boolean timedOut;
+    private boolean interrupted;
+
+    Watch(Thread thread) {
+      this.thread = thread;
+    }
+
+    synchronized void schedule(Runnable action, Duration delay) {
+      pending = monitor.schedule(() -> {
+        synchronized (this) {
+          if (!finished) {
+            action.run();
+          }
+        }
+      }, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return whether the changeset timed out
+     */
+    synchronized boolean finish() {
+      finished = true;
+      pending.cancel(false);
+      if (interrupted) {
+        // the interrupt was meant for the changeset only, the caller still records it
+        Thread.interrupted();
+      }
+      return timedOut;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.github.mongobat;
+
+import com.github.mongobat.exception.MongoBatException;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks collections of changesets pending in an asynchronous execution.
+ * <p>
+ * A collection is ready when no pending changeset declares it and no pending changeset leaves its collections
+ * undeclared. A collection of a failed changeset, or of a changeset not executed because the run failed, stays failed
+ * until the next execution expects its changesets again.
+ */
+class CollectionReadiness {
+
+  // declared collections of pending changesets, empty if undeclared
+  private final Map<String, Set<String>> pending = new LinkedHashMap<>();
+  private final Map<String, Set<String>> failed = new HashMap<>();
+
+  /**
+   * @param changeId    pending changeset
+   * @param collections collections it modifies, none if unknown
+   */
+  synchronized void expect(String changeId, String[] collections) {
+    // declarations may repeat a collection
+    pending.put(changeId, new HashSet<>(Arrays.asList(collections)));
+    failed.remove(changeId);
+  }
+
+  /**
+   * @param changeId finished changeset whose result is recorded in the changelog, ignored if not expected
+   * @param success  false if the changeset failed
+   */
+  synchronized void finished(String changeId, boolean success) {
+    Set<String> collections = pending.remove(changeId);
+    if (collections != null) {
+      // a failed changeset without declared collections doesn't fail all of them
+      if (!success && !collections.isEmpty()) {
+        failed.put(changeId, collections);
+      }
+      notifyAll();
+    }
+  }
+
+  /**
+   * Ends a run. Changesets still pending after a completed run were not executed, e.g. because another process
+   * holds the lock, and are released. After a failed run their declared collections fail, as they were not migrated.
+   *
+   * @param completed false if the run failed or was aborted
+   */
+  synchronized void endRun(boolean completed) {
+    if (!completed) {
+      pending.forEach((changeId, collections) -> {
+        if (!collections.isEmpty()) {
+          failed.put(changeId, collections);
+        }
+      });
+    }
+    pending.clear();
+    notifyAll();
+  }
+
+  synchronized boolean isReady(String collection) throws MongoBatException {
+    for (Map.Entry<String, Set<String>> entry : failed.entrySet()) {
+      if (entry.getValue().contains(collection)) {
+        throw new MongoBatException("Collection " + collection + " is not migrated, changeset " + entry.getKey() + " did not complete");
+      }
+    }
+    return pending.values().stream()
+        .noneMatch(collections -> collections.isEmpty() || collections.contains(collection));
+  }
+
+  /**
+   * @param collection collection name
+   * @param timeout    maximal wait, null to wait until ready
+   * @return true if the collection is ready, false if the timeout elapsed
+   */
+  synchronized boolean await(String collection, Duration timeout) throws MongoBatException, InterruptedException {
+    long deadline = timeout == null ? 0 : System.nanoTime() + timeout.toNanos();
+    while (!isReady(collection)) {
+      if (timeout == null) {
+        wait();
+      } else {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return false;
+        }
+        wait(Math.max(1, remaining / 1_000_000));
+      }
+    }
+    return true;
+  }
+
+  /* Visible for testing */
+  synchronized Set<String> getPendingChangeIds() {
+    return new HashSet<>(pending.keySet());
+  }
+}
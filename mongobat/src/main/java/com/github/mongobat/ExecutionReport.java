@@ -0,0 +1,191 @@
+package com.github.mongobat;
+
+import com.github.mongobat.guard.QueryPlanFinding;
+import com.github.mongobat.profiling.CommandStats;
+import com.github.mongobat.stats.CollectionStats;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ExecutionReport {
+
+  private final String installationId;
+  private int scanned = 0;
+  private int executed = 0;
+  private int reExecuted = 0;
+  private int skipped = 0;
+  private int postponed = 0;
+  private int failed = 0;
+  private final Map<String, Result> results = new LinkedHashMap<>();
+  private final Map<String, CommandStats> commandStats = new LinkedHashMap<>();
+  private final Map<String, List<QueryPlanFinding>> queryPlanFindings = new LinkedHashMap<>();
+  private final Map<String, Integer> retries = new LinkedHashMap<>();
+  private final Map<String, Map<String, CollectionStats>> collectionStats = new LinkedHashMap<>();
+
+  public ExecutionReport(String installationId) {
+    this.installationId = installationId;
+  }
+
+  public synchronized void merge(ExecutionReport report) {
+    if (report == null) {
+      return;
+    }
+    this.scanned += report.getScanned();
+    this.executed += report.getExecuted();
+    this.reExecuted += report.getReExecuted();
+    this.skipped += report.getSkipped();
+    this.postponed += report.getPostponed();
+    this.failed += report.getFailed();
+    this.results.putAll(report.getResults());
+    this.commandStats.putAll(report.getCommandStats());
+    this.queryPlanFindings.putAll(report.getQueryPlanFindings());
+    report.getRetries().forEach((changeId, count) -> this.retries.merge(changeId, count, Integer::sum));
+    this.collectionStats.putAll(report.getCollectionStats());
+  }
+
+  public String getInstallationId() {
+    return installationId;
+  }
+
+  public int getScanned() {
+    return scanned;
+  }
+
+  public synchronized void addScanned() {
+    this.scanned++;
+  }
+
+  public synchronized void addScanned(int number) {
+    this.scanned += number;
+  }
+
+  public int getExecuted() {
+    return executed;
+  }
+
+  public synchronized void addExecuted() {
+    this.executed++;
+  }
+
+  public synchronized void addExecuted(String changeId) {
+    this.executed++;
+    this.results.put(changeId, Result.EXECUTED);
+  }
+
+  public int getReExecuted() {
+    return reExecuted;
+  }
+
+  public synchronized void addReExecuted() {
+    this.reExecuted++;
+  }
+
+  public synchronized void addReExecuted(String changeId) {
+    this.reExecuted++;
+    this.results.put(changeId, Result.RE_EXECUTED);
+  }
+
+  public int getSkipped() {
+    return skipped;
+  }
+
+  public synchronized void addSkipped() {
+    this.skipped++;
+  }
+
+  public synchronized void addSkipped(String changeId) {
+    this.skipped++;
+    this.results.put(changeId, Result.SKIPPED);
+  }
+
+  public int getPostponed() {
+    return postponed;
+  }
+
+  public synchronized void addPostponed() {
+    this.postponed++;
+  }
+
+  public synchronized void addPostponed(String changeId) {
+    this.postponed++;
+    this.results.put(changeId, Result.POSTPONED);
+  }
+
+  public synchronized void addPostponed(int number) {
+    this.postponed += number;
+  }
+
+  public int getFailed() {
+    return failed;
+  }
+
+  public synchronized void addFailed() {
+    this.failed++;
+  }
+
+  public synchronized void addFailed(String changeId) {
+    this.failed++;
+    this.results.put(changeId, Result.FAILED);
+  }
+
+  /**
+   * @return result of each change by its id, in execution order
+   */
+  public synchronized Map<String, Result> getResults() {
+    return Collections.unmodifiableMap(new LinkedHashMap<>(results));
+  }
+
+  public synchronized void addCommandStats(CommandStats stats) {
+    this.commandStats.put(stats.getChangeId(), stats);
+  }
+
+  /**
+   * @return driver commands issued by each change, if a command profiler is set
+   */
+  public synchronized Map<String, CommandStats> getCommandStats() {
+    return Collections.unmodifiableMap(new LinkedHashMap<>(commandStats));
+  }
+
+  public synchronized void addQueryPlanFindings(String changeId, List<QueryPlanFinding> findings) {
+    this.queryPlanFindings.put(changeId, List.copyOf(findings));
+  }
+
+  /**
+   * @return collection scans issued by each change, if a query plan guard is set
+   */
+  public synchronized Map<String, List<QueryPlanFinding>> getQueryPlanFindings() {
+    return Collections.unmodifiableMap(new LinkedHashMap<>(queryPlanFindings));
+  }
+
+  public synchronized void addRetry(String changeId) {
+    this.retries.merge(changeId, 1, Integer::sum);
+  }
+
+  /**
+   * @return number of retries of each change after transient errors, if a retry policy applies
+   */
+  public synchronized Map<String, Integer> getRetries() {
+    return Collections.unmodifiableMap(new LinkedHashMap<>(retries));
+  }
+
+  public synchronized void addCollectionStats(String changeId, Map<String, CollectionStats> deltas) {
+    this.collectionStats.put(changeId, deltas);
+  }
+
+  /**
+   * @return change of declared collections made by each change, if collection stats are enabled
+   */
+  public synchronized Map<String, Map<String, CollectionStats>> getCollectionStats() {
+    return Collections.unmodifiableMap(new LinkedHashMap<>(collectionStats));
+  }
+
+  public enum Result {
+    EXECUTED,
+    RE_EXECUTED,
+    SKIPPED,
+    POSTPONED,
+    FAILED
+  }
+}
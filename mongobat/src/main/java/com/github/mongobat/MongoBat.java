@@ -0,0 +1,1815 @@
+package com.github.mongobat;
+
+import com.github.mongobat.batching.WriteBatcher;
+import com.github.mongobat.changeset.CancellationToken;
+import com.github.mongobat.changeset.ChangeEntry;
+import com.github.mongobat.changeset.ChangeSet;
+import com.github.mongobat.changeset.ChangeStatus;
+import com.github.mongobat.changeset.ExecutionProfile;
+import com.github.mongobat.changeset.Partitioned;
+import com.github.mongobat.changeset.Retry;
+import com.github.mongobat.changeset.Seed;
+import com.github.mongobat.changeset.Selector;
+import com.github.mongobat.changeset.TimeoutPolicy;
+import com.github.mongobat.changeset.Verify;
+import com.github.mongobat.dao.ChangeEntryDao;
+import com.github.mongobat.dao.PartitionDao;
+import com.github.mongobat.exception.MongoBatCancellationException;
+import com.github.mongobat.exception.MongoBatChangeSetException;
+import com.github.mongobat.exception.MongoBatChangeSetTimeoutException;
+import com.github.mongobat.exception.MongoBatConfigurationException;
+import com.github.mongobat.exception.MongoBatConnectionException;
+import com.github.mongobat.exception.MongoBatException;
+import com.github.mongobat.guard.QueryPlanGuard;
+import com.github.mongobat.guard.QueryPlanInspector;
+import com.github.mongobat.lazy.LazyMigration;
+import com.github.mongobat.lazy.LazyMigrations;
+import com.github.mongobat.lazy.SweepLease;
+import com.github.mongobat.partition.IdRange;
+import com.github.mongobat.partition.IdRangeSplitter;
+import com.github.mongobat.partition.ParallelRangeScanner;
+import com.github.mongobat.partition.Partition;
+import com.github.mongobat.partition.PartitionCoordinator;
+import com.github.mongobat.partition.ShardChunkSplitter;
+import com.github.mongobat.profiling.ChangeSetEvent;
+import com.github.mongobat.profiling.CommandProfiler;
+import com.github.mongobat.profiling.CommandStats;
+import com.github.mongobat.progress.Progress;
+import com.github.mongobat.progress.ProgressListener;
+import com.github.mongobat.progress.ProgressReporter;
+import com.github.mongobat.resolver.ParameterProviders;
+import com.github.mongobat.resolver.ParameterResolver;
+import com.github.mongobat.retry.RetryPolicy;
+import com.github.mongobat.seed.SeedLoader;
+import com.github.mongobat.seed.SeedSource;
+import com.github.mongobat.stats.CollectionStats;
+import com.github.mongobat.stats.CollectionStatsCollector;
+import com.github.mongobat.status.MigrationStatus;
+import com.github.mongobat.status.RunMetrics;
+import com.github.mongobat.status.StatusServer;
+import com.github.mongobat.transform.ShadowRebuild;
+import com.github.mongobat.transform.ShadowRebuildExecutor;
+import com.github.mongobat.transform.ShadowRebuildReport;
+import com.github.mongobat.transform.Transformation;
+import com.github.mongobat.transform.TransformationExecutor;
+import com.github.mongobat.utils.ChangeService;
+import com.github.mongobat.utils.ChangeSetPlan;
+import com.github.mongobat.utils.Environment;
+import com.github.mongobat.utils.PlannedChangeSet;
+import com.github.mongobat.verify.CollectionVerifier;
+import com.github.mongobat.verify.Verification;
+import com.github.mongobat.verify.VerificationReport;
+import com.mongodb.MongoException;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import org.bson.BSONException;
+import org.bson.Document;
+import org.bson.json.JsonParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.github.mongobat.utils.StringUtils.hasText;
+
+/**
+ * Mongobee runner
+ *
+ * @author lstolowski
+ * @since 26/07/2014
+ */
+public class MongoBat {
+  private static final Logger log = LoggerFactory.getLogger(MongoBat.class);
+
+  private static final String DEFAULT_CHANGELOG_COLLECTION_NAME = "dbchangelog";
+  private static final String DEFAULT_LOCK_COLLECTION_NAME = "mongobatlock";
+  private static final String DEFAULT_PARTITION_COLLECTION_NAME = "mongobatpartitions";
+  private static final String SWEEP_LEASE_PREFIX = "sweep:";
+  private static final boolean DEFAULT_WAIT_FOR_LOCK = false;
+  private static final long DEFAULT_CHANGE_LOG_LOCK_WAIT_TIME = 5L;
+  private static final long DEFAULT_CHANGE_LOG_LOCK_POLL_RATE = 10L;
+  private static final boolean DEFAULT_THROW_EXCEPTION_IF_CANNOT_OBTAIN_LOCK = false;
+  private static final String FAILED_CHANGE_ID_TEMPLATE = "%s (failed, %s)";
+  private static final Duration DEFAULT_CANCELLATION_GRACE_PERIOD = Duration.ofSeconds(30);
+  private static final Duration DEFAULT_PROGRESS_INTERVAL = Duration.ofSeconds(10);
+  private static final int DEFAULT_MAX_POSTPONED_ATTEMPTS = 3;
+  private static final String KEY_RETRIES = "retries";
+
+  private ChangeEntryDao dao;
+
+  private boolean enabled = true;
+  private List<String> changeLogsScanPackages;
+  private MongoClient mongoClient;
+  private String dbName;
+  private String environment = Environment.ANY;
+
+  private Map<Class<?>, Object> changeSetMethodParams = Map.of();
+  private final List<ParameterResolver> parameterResolvers = new CopyOnWriteArrayList<>();
+  private final Map<Class<?>, Optional<ParameterResolver>> resolverByType = new ConcurrentHashMap<>();
+
+  private final Map<String, ExecutionProfile> executionProfiles = new HashMap<>();
+
+  private ChangeSetPlan changeSetPlan;
+
+  private final PartitionDao partitionDao = new PartitionDao(DEFAULT_PARTITION_COLLECTION_NAME);
+  private PartitionCoordinator partitionCoordinator;
+  private boolean assistPartitionedChangeSets = false;
+  private int parallelScanThreads = Runtime.getRuntime().availableProcessors();
+  private int parallelScanThreadsPerShard;
+  private boolean collectionStats = false;
+  private CollectionStatsCollector collectionStatsCollector;
+  private final RunMetrics runMetrics = new RunMetrics();
+  private Integer statusPort;
+  private StatusServer statusServer;
+
+  private Duration defaultMaxDuration;
+  private Duration cancellationGracePeriod = DEFAULT_CANCELLATION_GRACE_PERIOD;
+  private TimeoutPolicy timeoutPolicy = TimeoutPolicy.CONTINUE;
+  private ChangeSetWatchdog watchdog;
+  private final LazyMigrations lazyMigrations = new LazyMigrations();
+  // keys of started lazy migrations whose entry the run did not save yet, true once completed meanwhile;
+  // entries of failed changesets are never saved, so their completion is not recorded
+  private final Map<String, Boolean> unsavedLazyMigrations = new HashMap<>();
+  private final CollectionReadiness collectionReadiness = new CollectionReadiness();
+  private CommandProfiler commandProfiler;
+  private QueryPlanGuard queryPlanGuard;
+  private Duration progressInterval = DEFAULT_PROGRESS_INTERVAL;
+  private int maxPostponedAttempts = DEFAULT_MAX_POSTPONED_ATTEMPTS;
+  private RetryPolicy retryPolicy;
+  private final List<ProgressListener> progressListeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * <p>Constructor takes db.mongodb.MongoClient object as a parameter.
+   * </p><p>For more details about <tt>MongoClient</tt> please see com.mongodb.MongoClient docs
+   * </p>
+   *
+   * @param mongoClient database connection client
+   * @see MongoClient
+   */
+  public MongoBat(MongoClient mongoClient) {
+    this(mongoClient, String.valueOf(new Date().getTime()));
+  }
+
+  public MongoBat(MongoClient mongoClient, String installationId) {
+    this.mongoClient = mongoClient;
+    this.dao = createChangeEntryDao();
+    this.dao.setInstallationId(installationId);
+    this.lazyMigrations.setSweepLease(new SweepLease() {
+      @Override
+      public boolean acquire(String collection, String owner, Duration duration) {
+        try {
+          return dao.acquireLease(SWEEP_LEASE_PREFIX + collection, owner, duration);
+        } catch (MongoBatConnectionException e) {
+          return false;
+        }
+      }
+
+      @Override
+      public void release(String collection, String owner) {
+        try {
+          dao.releaseLease(SWEEP_LEASE_PREFIX + collection, owner);
+        } catch (MongoBatConnectionException e) {
+          log.warn("Mongobee failed to release sweep lease of {}", collection, e);
+        }
+      }
+    });
+  }
+
+  private ChangeEntryDao createChangeEntryDao() {
+    return new ChangeEntryDao(DEFAULT_CHANGELOG_COLLECTION_NAME, DEFAULT_LOCK_COLLECTION_NAME, DEFAULT_WAIT_FOR_LOCK,
+        DEFAULT_CHANGE_LOG_LOCK_WAIT_TIME, DEFAULT_CHANGE_LOG_LOCK_POLL_RATE, DEFAULT_THROW_EXCEPTION_IF_CANNOT_OBTAIN_LOCK);
+  }
+
+  public ExecutionReport executeSingle(ChangeEntry changeEntry) throws MongoBatException, ClassNotFoundException, NoSuchMethodException, InvocationTargetException, IllegalAccessException, InstantiationException {
+    ExecutionReport report = new ExecutionReport(dao.getInstallationId());
+    if (!isEnabled()) {
+      log.info("Mongobee is disabled. Exiting.");
+      return null;
+    }
+
+    validateConfig();
+
+    dao.connectMongoDb(this.mongoClient, dbName);
+
+    if (!acquireProcessLock()) {
+      log.info("Mongobee did not acquire process lock. Exiting.");
+      return null;
+    }
+
+    log.info("Mongobee acquired process lock, starting the data migration sequence..");
+
+    try {
+      report.addScanned();
+      executeChangeEntry(changeEntry, dao.isNewChange(changeEntry), report, new HashMap<>(), new CancellationToken());
+    } catch (MongoBatException e) {
+      report.addFailed(changeEntry.getChangeId());
+      log.error(e.getMessage(), e);
+      dao.save(prepareFailedChangeEntry(changeEntry, e));
+    } finally {
+      log.info("Mongobee is releasing process lock.");
+      dao.releaseProcessLock();
+      endRun();
+    }
+
+    log.info("Mongobee has finished his job.");
+    return report;
+  }
+
+  /**
+   * Executes given changes in order, under a single process lock.
+   * Changeset methods are resolved from the cached changeset plan and applied changes are looked up in one query.
+   * A failed change is recorded and the batch continues with the next one.
+   *
+   * @param changeEntries changes to execute, e.g. postponed ones
+   * @return execution report with a result for each change
+   * @throws MongoBatException exception
+   */
+  public ExecutionReport executeBatch(List<ChangeEntry> changeEntries) throws MongoBatException {
+    if (!isEnabled()) {
+      log.info("Mongobee is disabled. Exiting.");
+      return null;
+    }
+
+    validateConfig();
+
+    dao.connectMongoDb(this.mongoClient, dbName);
+
+    if (!acquireProcessLock()) {
+      log.info("Mongobee did not acquire process lock. Exiting.");
+      return null;
+    }
+
+    log.info("Mongobee acquired process lock, starting the data migration sequence for {} changes..", changeEntries.size());
+
+    ExecutionReport report;
+    try {
+      report = executeChangeEntries(changeEntries);
+    } finally {
+      log.info("Mongobee is releasing process lock.");
+      dao.releaseProcessLock();
+      endRun();
+    }
+
+    log.info("Mongobee has finished his job.");
+    return report;
+  }
+
+  private ExecutionReport executeChangeEntries(List<ChangeEntry> changeEntries) throws MongoBatException {
+    ExecutionReport report = new ExecutionReport(dao.getInstallationId());
+    Set<String> appliedChanges = dao.findAppliedChanges(changeEntries);
+    Map<Class<?>, Object> changeLogInstances = new HashMap<>();
+
+    for (ChangeEntry changeEntry : changeEntries) {
+      report.addScanned();
+      boolean succeeded = false;
+      try {
+        boolean isNew = !appliedChanges.contains(changeEntry.getKey());
+        executeChangeEntry(changeEntry, isNew, report, changeLogInstances, new CancellationToken());
+        succeeded = true;
+      } catch (MongoBatChangeSetTimeoutException e) {
+        recordFailedChange(changeEntry, report, e);
+        applyTimeoutPolicy(e);
+      } catch (InvocationTargetException e) {
+        Throwable targetException = e.getTargetException();
+        recordFailedChange(changeEntry, report, new MongoBatChangeSetException(targetException.getMessage(), targetException));
+      } catch (MongoBatException | ReflectiveOperationException e) {
+        recordFailedChange(changeEntry, report, e);
+      } finally {
+        // signalled once the result is in the changelog, so a released caller sees it recorded
+        collectionReadiness.finished(changeEntry.getChangeId(), succeeded);
+      }
+    }
+
+    return report;
+  }
+
+  private void executeChangeEntry(ChangeEntry changeEntry, boolean isNew, ExecutionReport report,
+      Map<Class<?>, Object> changeLogInstances, CancellationToken cancellationToken)
+      throws MongoBatException, ClassNotFoundException, IllegalAccessException, InvocationTargetException {
+    Method method = resolveChangeSetMethod(changeEntry);
+
+    ChangeSet changeSet = method.getAnnotation(ChangeSet.class);
+    if (!isEnvironmentMatching(changeSet.environment())) {
+      throw new MongoBatException(changeEntry.getChangeId() + " can be executed only on " + changeSet.environment() + " environment");
+    }
+
+    Object changeLogInstance = getChangeLogInstance(changeLogInstances, method.getDeclaringClass());
+    ChangeSetContext context = new ChangeSetContext(changeEntry, cancellationToken);
+
+    if (isNew) {
+      changeEntry.setStatus(ChangeStatus.INSTALLED);
+      executeChangeSetMethod(method, changeLogInstance, context, report);
+      saveChangeEntry(changeEntry);
+      report.addExecuted(changeEntry.getChangeId());
+      log.info("{} applied", changeEntry);
+    } else if (changeSet.repeatable()) {
+      changeEntry.setStatus(ChangeStatus.INSTALLED);
+      executeChangeSetMethod(method, changeLogInstance, context, report);
+      saveChangeEntry(changeEntry);
+      report.addReExecuted(changeEntry.getChangeId());
+      log.info("{} reapplied", changeEntry);
+    } else {
+      throw new MongoBatChangeSetException("Changeset " + changeEntry.getChangeId() + " cannot be executed");
+    }
+  }
+
+  /**
+   * Executing migration
+   *
+   * @throws MongoBatException exception
+   */
+  public ExecutionReport execute() throws MongoBatException {
+    if (!isEnabled()) {
+      log.info("Mongobee is disabled. Exiting.");
+      return null;
+    }
+
+    validateConfig();
+
+    dao.connectMongoDb(this.mongoClient, dbName);
+
+    if (!acquireProcessLock()) {
+      if (assistPartitionedChangeSets) {
+        log.info("Mongobee did not acquire process lock, assisting with partitioned changesets.");
+        int processed = getPartitionCoordinator().assist(dao.getMongoDatabase(), this::resolveRangeHandler, this::isLockHeldByOther);
+        log.info("Mongobee processed {} ranges of partitioned changesets.", processed);
+      }
+      log.info("Mongobee did not acquire process lock. Exiting.");
+      return null;
+    }
+
+    log.info("Mongobee acquired process lock, starting the data migration sequence..");
+
+    ExecutionReport report;
+    try {
+      report = executeMigration();
+    } finally {
+      log.info("Mongobee is releasing process lock.");
+      dao.releaseProcessLock();
+      endRun();
+    }
+
+    log.info("Mongobee has finished his job.");
+    return report;
+  }
+
+  /**
+   * Executes the migration on a background thread, so the application can serve requests which don't touch
+   * migrated collections meanwhile. Pending changesets are determined before this method returns, repositories
+   * of their collections should call {@link #awaitCollectionReady(String)} first.
+   * Changesets which don't declare their {@link ChangeSet#collections()} hold all collections until they finish.
+   * If another process holds the lock, collections are released immediately. If the execution fails, declared
+   * collections of failed changesets and of changesets which were not executed are not ready.
+   *
+   * @return report of the execution, completed exceptionally if the execution fails
+   * @throws MongoBatException exception
+   */
+  public CompletableFuture<ExecutionReport> executeAsync() throws MongoBatException {
+    if (!isEnabled()) {
+      log.info("Mongobee is disabled. Exiting.");
+      return CompletableFuture.completedFuture(null);
+    }
+
+    validateConfig();
+
+    dao.connectMongoDb(this.mongoClient, dbName);
+    expectPendingChangeSets();
+
+    CompletableFuture<ExecutionReport> future = new CompletableFuture<>();
+    Thread thread = new Thread(() -> {
+      boolean completed = false;
+      try {
+        ExecutionReport report = execute();
+        completed = true;
+        collectionReadiness.endRun(true);
+        future.complete(report);
+      } catch (Exception e) {
+        log.error("Mongobee asynchronous execution failed", e);
+        future.completeExceptionally(e);
+      } finally {
+        if (!completed) {
+          collectionReadiness.endRun(false);
+        }
+      }
+    }, "mongobat-async");
+    thread.start();
+    return future;
+  }
+
+  private void expectPendingChangeSets() throws MongoBatException {
+    List<PlannedChangeSet> changeSets = getChangeSetPlan().getChangeSets();
+    List<ChangeEntry> changeEntries = changeSets.stream()
+        .map(PlannedChangeSet::createChangeEntry)
+        .collect(Collectors.toList());
+    Set<String> appliedChanges = dao.findAppliedChanges(changeEntries);
+
+    for (int i = 0; i < changeSets.size(); i++) {
+      PlannedChangeSet changeSet = changeSets.get(i);
+      ChangeEntry changeEntry = changeEntries.get(i);
+      boolean pending = !appliedChanges.contains(changeEntry.getKey()) || changeSet.isRunAlways() && changeSet.isRepeatable();
+      if (isEnvironmentMatching(changeEntry.getEnvironment()) && !changeSet.isPostponed() && pending) {
+        collectionReadiness.expect(changeEntry.getChangeId(), changeSet.getChangeSet().collections());
+      }
+    }
+  }
+
+  /**
+   * Waits until no pending changeset of {@link #executeAsync()} modifies the collection
+   *
+   * @param collection collection name
+   * @throws MongoBatException    if a changeset modifying the collection failed or was not executed
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void awaitCollectionReady(String collection) throws MongoBatException, InterruptedException {
+    collectionReadiness.await(collection, null);
+  }
+
+  /**
+   * @param collection collection name
+   * @param timeout    maximal wait
+   * @return true if the collection is ready, false if the timeout elapsed
+   * @throws MongoBatException    if a changeset modifying the collection failed or was not executed
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean awaitCollectionReady(String collection, Duration timeout) throws MongoBatException, InterruptedException {
+    return collectionReadiness.await(collection, timeout);
+  }
+
+  /**
+   * @param collection collection name
+   * @return true if no pending changeset of {@link #executeAsync()} modifies the collection
+   * @throws MongoBatException if a changeset modifying the collection failed or was not executed
+   */
+  public boolean isCollectionReady(String collection) throws MongoBatException {
+    return collectionReadiness.isReady(collection);
+  }
+
+  /**
+   * Executes only changesets matching the selector, e.g. a single group of postponed changesets.
+   * Changesets are resolved from the plan built on the first scan, so the classpath is not rescanned.
+   * Postponed changesets are executed as well, already applied ones are re-executed only if they
+   * are marked as runAlways and repeatable.
+   *
+   * @param selector groups, tags or ids of changesets to execute
+   * @return execution report
+   * @throws MongoBatException exception
+   */
+  public ExecutionReport execute(Selector selector) throws MongoBatException {
+    if (!isEnabled()) {
+      log.info("Mongobee is disabled. Exiting.");
+      return null;
+    }
+
+    validateConfig();
+    if (selector == null || selector.isEmpty()) {
+      throw new MongoBatConfigurationException("Selector is empty: at least one group, tag or id should be set");
+    }
+
+    dao.connectMongoDb(this.mongoClient, dbName);
+
+    if (!acquireProcessLock()) {
+      log.info("Mongobee did not acquire process lock. Exiting.");
+      return null;
+    }
+
+    log.info("Mongobee acquired process lock, starting the data migration sequence for {}..", selector);
+
+    ExecutionReport report;
+    try {
+      report = executeSelected(selector);
+    } finally {
+      log.info("Mongobee is releasing process lock.");
+      dao.releaseProcessLock();
+      endRun();
+    }
+
+    log.info("Mongobee has finished his job.");
+    return report;
+  }
+
+  private ExecutionReport executeSelected(Selector selector) throws MongoBatException {
+    ExecutionReport report = new ExecutionReport(dao.getInstallationId());
+    List<PlannedChangeSet> changeSets = getChangeSetPlan().select(selector);
+    report.addScanned(changeSets.size());
+
+    List<ChangeEntry> changeEntries = changeSets.stream()
+        .map(PlannedChangeSet::createChangeEntry)
+        .collect(Collectors.toList());
+    Set<String> appliedChanges = dao.findAppliedChanges(changeEntries);
+    Map<Class<?>, Object> changeLogInstances = new HashMap<>();
+
+    for (int i = 0; i < changeSets.size(); i++) {
+      PlannedChangeSet changeSet = changeSets.get(i);
+      ChangeEntry changeEntry = changeEntries.get(i);
+
+      try {
+        if (!isEnvironmentMatching(changeEntry.getEnvironment())) {
+          log.info("{} skipped (wrong environment)", changeEntry);
+          report.addSkipped(changeEntry.getChangeId());
+        } else if (!appliedChanges.contains(changeEntry.getKey())) {
+          executeChangeSetMethod(changeSet.getMethod(), getChangeLogInstance(changeLogInstances, changeSet.getChangeLogClass()), changeEntry, report);
+          dao.save(changeEntry);
+          report.addExecuted(changeEntry.getChangeId());
+          log.info("{} applied", changeEntry);
+        } else if (changeSet.isRunAlways() && changeSet.isRepeatable()) {
+          executeChangeSetMethod(changeSet.getMethod(), getChangeLogInstance(changeLogInstances, changeSet.getChangeLogClass()), changeEntry, report);
+          dao.save(changeEntry);
+          report.addReExecuted(changeEntry.getChangeId());
+          log.info("{} reapplied", changeEntry);
+        } else {
+          report.addSkipped(changeEntry.getChangeId());
+          log.info("{} passed over", changeEntry);
+        }
+      } catch (MongoBatChangeSetException e) {
+        report.addFailed(changeEntry.getChangeId());
+        log.error(e.getMessage(), e);
+        dao.save(prepareFailedChangeEntry(changeEntry, e));
+        applyTimeoutPolicy(e);
+      } catch (IllegalAccessException e) {
+        throw new MongoBatException(e.getMessage(), e);
+      } catch (InvocationTargetException e) {
+        Throwable targetException = e.getTargetException();
+        throw new MongoBatException(targetException.getMessage(), e);
+      }
+    }
+
+    return report;
+  }
+
+  /**
+   * Executes changesets recorded as postponed, in their declaration order.
+   * Used by {@link com.github.mongobat.scheduler.PostponedChangeSetScheduler} to run heavy changesets off-peak.
+   * <p>
+   * No changeset is started after the deadline. When the deadline passes, running changesets are asked to stop
+   * via injected {@link CancellationToken}; a changeset which stops with {@link MongoBatCancellationException}
+   * stays postponed and is resumed by the next execution.
+   *
+   * @param concurrency       number of changesets executed at the same time
+   * @param deadline          time after which running changesets are cancelled
+   * @param cancellationToken token which cancels whole execution
+   * @return execution report
+   * @throws MongoBatException exception
+   */
+  public ExecutionReport executePostponed(int concurrency, Instant deadline, CancellationToken cancellationToken) throws MongoBatException {
+    if (!isEnabled()) {
+      log.info("Mongobee is disabled. Exiting.");
+      return null;
+    }
+
+    validateConfig();
+    if (concurrency < 1) {
+      throw new MongoBatConfigurationException("Concurrency should be greater than 0");
+    }
+    if (maxPostponedAttempts < 1) {
+      throw new MongoBatConfigurationException("Max postponed attempts should be greater than 0");
+    }
+
+    dao.connectMongoDb(this.mongoClient, dbName);
+
+    if (!acquireProcessLock()) {
+      log.info("Mongobee did not acquire process lock. Exiting.");
+      return null;
+    }
+
+    log.info("Mongobee acquired process lock, starting postponed changesets until {}..", deadline);
+
+    ExecutionReport report;
+    try {
+      report = executePostponedChanges(concurrency, deadline, cancellationToken);
+    } finally {
+      log.info("Mongobee is releasing process lock.");
+      dao.releaseProcessLock();
+      endRun();
+    }
+
+    log.info("Mongobee has finished his job.");
+    return report;
+  }
+
+  private ExecutionReport executePostponedChanges(int concurrency, Instant deadline, CancellationToken cancellationToken)
+      throws MongoBatException {
+    ExecutionReport report = new ExecutionReport(dao.getInstallationId());
+    ChangeSetPlan plan = getChangeSetPlan();
+
+    List<ChangeEntry> changeEntries = dao.findPostponedChanges();
+    changeEntries.sort(Comparator.comparingInt(entry -> plan
+        .findByMethod(entry.getChangeLogClass(), entry.getChangeSetMethodName())
+        .map(PlannedChangeSet::getPosition)
+        .orElse(Integer.MAX_VALUE)));
+    report.addScanned(changeEntries.size());
+
+    Queue<ChangeEntry> queue = new ConcurrentLinkedQueue<>(changeEntries);
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+    for (int i = 0; i < concurrency; i++) {
+      executor.execute(() -> {
+        ChangeEntry changeEntry;
+        while (!cancellationToken.isCancellationRequested() && (changeEntry = queue.poll()) != null) {
+          executePostponedChange(changeEntry, report, cancellationToken.newChild());
+        }
+      });
+    }
+    executor.shutdown();
+
+    try {
+      long timeLeft = Math.max(0, Duration.between(Instant.now(), deadline).toMillis());
+      if (!executor.awaitTermination(timeLeft, TimeUnit.MILLISECONDS)) {
+        log.info("Deadline {} reached, cancelling running changesets", deadline);
+        cancellationToken.cancel("deadline reached");
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      }
+    } catch (InterruptedException e) {
+      cancellationToken.cancel("interrupted");
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+
+    report.addPostponed(queue.size());
+    return report;
+  }
+
+  private void executePostponedChange(ChangeEntry changeEntry, ExecutionReport report, CancellationToken cancellationToken) {
+    try {
+      if (!isEnvironmentMatching(changeEntry.getEnvironment())) {
+        log.info("{} skipped (wrong environment)", changeEntry);
+        report.addSkipped(changeEntry.getChangeId());
+        return;
+      }
+      executeChangeEntry(changeEntry, true, report, new HashMap<>(), cancellationToken);
+    } catch (InvocationTargetException e) {
+      Throwable targetException = e.getTargetException();
+      if (targetException instanceof MongoBatCancellationException) {
+        report.addPostponed(changeEntry.getChangeId());
+        log.info("{} paused: {}", changeEntry, targetException.getMessage());
+      } else {
+        recordFailedPostponedChange(changeEntry, report, new MongoBatChangeSetException(targetException.getMessage(), targetException));
+      }
+    } catch (MongoBatException | ReflectiveOperationException e) {
+      recordFailedPostponedChange(changeEntry, report, e);
+    }
+  }
+
+  /**
+   * Counts the failure on the postponed entry, which is marked as failed and no longer scheduled
+   * once {@link #setMaxPostponedAttempts(int)} is reached
+   */
+  private void recordFailedPostponedChange(ChangeEntry changeEntry, ExecutionReport report, Exception exception) {
+    recordFailedChange(changeEntry, report, exception);
+    changeEntry.setAttempts(changeEntry.getAttempts() + 1);
+    changeEntry.setError(describeError(exception));
+    if (changeEntry.getAttempts() >= maxPostponedAttempts) {
+      changeEntry.setStatus(ChangeStatus.FAILED);
+      log.error("{} failed {} times, it won't be scheduled anymore", changeEntry.getChangeId(), changeEntry.getAttempts());
+    } else {
+      changeEntry.setStatus(ChangeStatus.POSTPONED);
+      log.warn("{} failed {} of {} attempts", changeEntry.getChangeId(), changeEntry.getAttempts(), maxPostponedAttempts);
+    }
+    try {
+      dao.save(changeEntry);
+    } catch (MongoBatException e) {
+      log.error("Attempt of {} could not be recorded", changeEntry.getChangeId(), e);
+    }
+  }
+
+  private void recordFailedChange(ChangeEntry changeEntry, ExecutionReport report, Exception exception) {
+    report.addFailed(changeEntry.getChangeId());
+    log.error(exception.getMessage(), exception);
+    try {
+      dao.save(prepareFailedChangeEntry(changeEntry, exception));
+    } catch (MongoBatException e) {
+      log.error("Failure of {} could not be recorded", changeEntry.getChangeId(), e);
+    }
+  }
+
+  /**
+   * Processes ranges of partitioned changesets published by the process lock holder, without acquiring the lock.
+   * Waits for ranges while the lock is held, returns when published ranges are finished or the lock is released.
+   *
+   * @return number of processed ranges
+   * @throws MongoBatException exception
+   * @see Partitioned
+   */
+  public int assistPartitionedChangeSets() throws MongoBatException {
+    if (!isEnabled()) {
+      log.info("Mongobee is disabled. Exiting.");
+      return 0;
+    }
+
+    validateConfig();
+
+    dao.connectMongoDb(this.mongoClient, dbName);
+
+    try {
+      return getPartitionCoordinator().assist(dao.getMongoDatabase(), this::resolveRangeHandler, this::isLockHeldByOther);
+    } finally {
+      endParameterRun();
+    }
+  }
+
+  private boolean isLockHeldByOther() {
+    try {
+      return dao.isProccessLockHeld();
+    } catch (MongoBatConnectionException e) {
+      log.warn("Mongobee could not check the process lock, stops assisting", e);
+      return false;
+    }
+  }
+
+  private PartitionCoordinator.RangeHandler resolveRangeHandler(Partition partition)
+      throws MongoBatChangeSetException {
+    try {
+      ChangeEntry changeEntry = getChangeSetPlan()
+          .findByMethod(partition.getChangeLogClass(), partition.getChangeSetMethodName())
+          .map(PlannedChangeSet::createChangeEntry)
+          .orElseThrow(() -> new MongoBatChangeSetException("Changeset " + partition.getChangeId() + " not found"));
+      Method method = resolveChangeSetMethod(changeEntry);
+      Object changeLogInstance = getChangeLogInstance(new HashMap<>(), method.getDeclaringClass());
+      ChangeSetContext context = new ChangeSetContext(changeEntry, new CancellationToken());
+      return range -> invokeWithParameters(method, changeLogInstance, context.withRange(range));
+    } catch (MongoBatChangeSetException e) {
+      throw e;
+    } catch (MongoBatException | ClassNotFoundException e) {
+      throw new MongoBatChangeSetException(e.getMessage(), e);
+    }
+  }
+
+  private PartitionCoordinator getPartitionCoordinator() {
+    if (partitionCoordinator == null) {
+      partitionCoordinator = new PartitionCoordinator(partitionDao, new IdRangeSplitter(),
+          dao.getInstallationId() + "/" + UUID.randomUUID());
+    }
+    return partitionCoordinator;
+  }
+
+  private Object getChangeLogInstance(Map<Class<?>, Object> changeLogInstances, Class<?> changeLogClass) throws MongoBatException {
+    Object changeLogInstance = changeLogInstances.get(changeLogClass);
+    if (changeLogInstance == null) {
+      try {
+        changeLogInstance = changeLogClass.getConstructor().newInstance();
+      } catch (NoSuchMethodException | IllegalAccessException | InstantiationException e) {
+        throw new MongoBatException(e.getMessage(), e);
+      } catch (InvocationTargetException e) {
+        Throwable targetException = e.getTargetException();
+        throw new MongoBatException(targetException.getMessage(), e);
+      }
+      changeLogInstances.put(changeLogClass, changeLogInstance);
+    }
+    return changeLogInstance;
+  }
+
+  private Method resolveChangeSetMethod(ChangeEntry changeEntry) throws MongoBatException, ClassNotFoundException {
+    Optional<PlannedChangeSet> planned = getChangeSetPlan()
+        .findByMethod(changeEntry.getChangeLogClass(), changeEntry.getChangeSetMethodName());
+    if (planned.isPresent()) {
+      return planned.get().getMethod();
+    }
+
+    // changelog outside of the scan packages
+    Class<?> changeLogClass = Class.forName(changeEntry.getChangeLogClass());
+    return Arrays.stream(changeLogClass.getDeclaredMethods())
+        .filter(m -> m.getName().equals(changeEntry.getChangeSetMethodName()))
+        .findFirst()
+        .orElseThrow(() -> new MongoBatException("No method " + changeEntry.getChangeSetMethodName() + " found."));
+  }
+
+  private ChangeSetPlan getChangeSetPlan() throws MongoBatChangeSetException {
+    if (changeSetPlan == null) {
+      changeSetPlan = ChangeSetPlan.build(changeLogsScanPackages);
+    }
+    return changeSetPlan;
+  }
+
+  private boolean isEnvironmentMatching(String changeSetEnvironment) {
+    return changeSetEnvironment.equals(this.environment)
+        || Environment.ANY.equals(this.environment)
+        || Environment.ANY.equals(changeSetEnvironment);
+  }
+
+  private ExecutionReport executeMigration() throws MongoBatException {
+    // a single report for all packages, so run metrics observe the counters of the whole run
+    ExecutionReport report = new ExecutionReport(dao.getInstallationId());
+    for (String scanPackage : changeLogsScanPackages) {
+      executeMigration(scanPackage, report);
+    }
+    return report;
+  }
+
+  private void executeMigration(String changeLogsScanPackage, ExecutionReport report) throws MongoBatException {
+    ChangeService service = new ChangeService(changeLogsScanPackage);
+
+    for (Class<?> changelogClass : service.fetchChangeLogs()) {
+
+      Object changelogInstance;
+      try {
+        changelogInstance = changelogClass.getConstructor().newInstance();
+        List<Method> changesetMethods = service.fetchChangeSets(changelogInstance.getClass());
+        report.addScanned(changesetMethods.size());
+
+        for (Method changesetMethod : changesetMethods) {
+          ChangeEntry changeEntry = service.createChangeEntry(changesetMethod);
+
+          try {
+            if (!isEnvironmentMatching(changeEntry.getEnvironment())) {
+              log.info("{} skipped (wrong environment)", changeEntry);
+              report.addSkipped(changeEntry.getChangeId());
+              continue;
+            }
+            if (dao.isNewChange(changeEntry)) {
+              if (!service.isPostponed(changesetMethod)) {
+                executeChangeSetMethod(changesetMethod, changelogInstance, changeEntry, report);
+                report.addExecuted(changeEntry.getChangeId());
+                log.info("{} applied", changeEntry);
+              } else {
+                changeEntry.setStatus(ChangeStatus.POSTPONED);
+                report.addPostponed(changeEntry.getChangeId());
+                log.info("{} postponed", changeEntry);
+              }
+              dao.save(changeEntry);
+            } else if (service.isRunAlwaysChangeSet(changesetMethod) && service.isRepeatable(changesetMethod) && !service.isPostponed(changesetMethod)) {
+              executeChangeSetMethod(changesetMethod, changelogInstance, changeEntry, report);
+              dao.save(changeEntry);
+              report.addReExecuted(changeEntry.getChangeId());
+              log.info("{} reapplied", changeEntry);
+            } else {
+              report.addSkipped(changeEntry.getChangeId());
+              log.info("{} passed over", changeEntry);
+            }
+          } catch (MongoBatChangeSetException e) {
+            report.addFailed(changeEntry.getChangeId());
+            log.error(e.getMessage(), e);
+            dao.save(prepareFailedChangeEntry(changeEntry, e));
+            applyTimeoutPolicy(e);
+          }
+        }
+      } catch (NoSuchMethodException | IllegalAccessException | InstantiationException e) {
+        throw new MongoBatException(e.getMessage(), e);
+      } catch (InvocationTargetException e) {
+        Throwable targetException = e.getTargetException();
+        throw new MongoBatException(targetException.getMessage(), e);
+      }
+
+    }
+  }
+
+  private Object executeChangeSetMethod(Method changeSetMethod, Object changeLogInstance, ChangeEntry changeEntry,
+      ExecutionReport report) throws IllegalAccessException, InvocationTargetException, MongoBatChangeSetException {
+    return executeChangeSetMethod(changeSetMethod, changeLogInstance, new ChangeSetContext(changeEntry, new CancellationToken()), report);
+  }
+
+  private Object executeChangeSetMethod(Method changeSetMethod, Object changeLogInstance, ChangeSetContext changeSetContext,
+      ExecutionReport report) throws IllegalAccessException, InvocationTargetException, MongoBatChangeSetException {
+    ChangeEntry changeEntry = changeSetContext.getChangeEntry();
+    QueryPlanInspector inspector = queryPlanGuard == null ? null : queryPlanGuard.newInspector(changeEntry.getChangeId());
+    ProgressReporter progressReporter = new ProgressReporter(changeEntry.getChangeId(), progressInterval,
+        progress -> publishProgress(changeEntry, progress));
+    ChangeSetContext context = changeSetContext.withQueryPlanInspector(inspector).withProgressReporter(progressReporter);
+    Map<String, CollectionStats> statsBefore = snapshotCollectionStats(changeSetMethod);
+    dao.markChangeStarted(changeEntry);
+    runMetrics.changeSetStarted(changeEntry.getChangeId(), report);
+    CommandStats commandStats = commandProfiler == null ? null : commandProfiler.start(changeEntry.getChangeId());
+    ChangeSetEvent event = new ChangeSetEvent();
+    event.begin();
+    String outcome = ChangeSetEvent.FAILED;
+    try {
+      Object result = invokeWithRetry(changeSetMethod, changeLogInstance, context, commandStats, report);
+      outcome = ChangeSetEvent.SUCCEEDED;
+      return result;
+    } catch (MongoBatChangeSetTimeoutException e) {
+      outcome = ChangeSetEvent.TIMED_OUT;
+      throw e;
+    } catch (InvocationTargetException e) {
+      if (e.getTargetException() instanceof MongoBatCancellationException) {
+        outcome = ChangeSetEvent.CANCELLED;
+      }
+      throw e;
+    } finally {
+      event.finish(changeEntry, outcome);
+      runMetrics.changeSetFinished(changeEntry.getChangeId(), outcome);
+      if (commandStats != null) {
+        commandProfiler.stop(commandStats);
+        changeEntry.addMetrics(commandStats.toDocument());
+        report.addCommandStats(commandStats);
+        log.info("{} issued {}", changeEntry.getChangeId(), commandStats);
+      }
+      if (inspector != null && !inspector.getFindings().isEmpty()) {
+        report.addQueryPlanFindings(changeEntry.getChangeId(), inspector.getFindings());
+      }
+      if (progressReporter.isReported()) {
+        changeEntry.addMetrics(new Document(ChangeEntry.KEY_PROGRESS, progressReporter.getProgress().toDocument()));
+      }
+      if (statsBefore != null) {
+        recordCollectionStats(changeEntry, statsBefore, report);
+      }
+      dao.markChangeFinished(changeEntry);
+    }
+  }
+
+  private Map<String, CollectionStats> snapshotCollectionStats(Method changeSetMethod) {
+    ChangeSet changeSet = changeSetMethod.getAnnotation(ChangeSet.class);
+    if (!collectionStats || changeSet == null || changeSet.collections().length == 0) {
+      return null;
+    }
+    return getCollectionStatsCollector().snapshot(dao.getMongoDatabase(), Arrays.asList(changeSet.collections()));
+  }
+
+  private void recordCollectionStats(ChangeEntry changeEntry, Map<String, CollectionStats> before, ExecutionReport report) {
+    Map<String, CollectionStats> delta = CollectionStatsCollector.delta(before,
+        getCollectionStatsCollector().snapshot(dao.getMongoDatabase(), before.keySet()));
+    changeEntry.addMetrics(new Document(CollectionStats.KEY_COLLECTION_STATS, CollectionStatsCollector.toDocuments(delta)));
+    report.addCollectionStats(changeEntry.getChangeId(), delta);
+    delta.forEach((collection, stats) -> log.info("{} changed {}: {}", changeEntry.getChangeId(), collection, stats));
+  }
+
+  private CollectionStatsCollector getCollectionStatsCollector() {
+    if (collectionStatsCollector == null) {
+      collectionStatsCollector = new CollectionStatsCollector();
+    }
+    return collectionStatsCollector;
+  }
+
+  private void publishProgress(ChangeEntry changeEntry, Progress progress) {
+    log.info("{} progress: {}", changeEntry.getChangeId(), progress.describe());
+    runMetrics.progressReported(progress);
+    try {
+      dao.saveProgress(changeEntry, progress.toDocument());
+    } catch (MongoBatConnectionException | MongoException e) {
+      log.warn("Mongobee failed to record progress of {}", changeEntry.getChangeId(), e);
+    }
+    for (ProgressListener listener : progressListeners) {
+      listener.onProgress(progress);
+    }
+  }
+
+  private Object invokeWithRetry(Method changeSetMethod, Object changeLogInstance, ChangeSetContext context,
+      CommandStats commandStats, ExecutionReport report)
+      throws IllegalAccessException, InvocationTargetException, MongoBatChangeSetException {
+    Duration maxDuration = getMaxDuration(changeSetMethod);
+    RetryPolicy retry = getRetryPolicy(changeSetMethod);
+    ChangeEntry changeEntry = context.getChangeEntry();
+    for (int attempt = 1; ; attempt++) {
+      try {
+        if (maxDuration != null) {
+          return getWatchdog().execute(context, maxDuration,
+              () -> invokeProfiledChangeSetMethod(changeSetMethod, changeLogInstance, context, commandStats));
+        }
+        return invokeProfiledChangeSetMethod(changeSetMethod, changeLogInstance, context, commandStats);
+      } catch (InvocationTargetException e) {
+        if (retry == null || attempt >= retry.getMaxAttempts() || !retry.isRetryable(e.getTargetException())
+            || context.getCancellationToken().isCancellationRequested()) {
+          throw e;
+        }
+        Duration backoff = retry.getBackoff(attempt);
+        log.warn("{} failed with transient error, retrying in {} ms (attempt {} of {}): {}", changeEntry.getChangeId(),
+            backoff.toMillis(), attempt + 1, retry.getMaxAttempts(), e.getTargetException().getMessage());
+        report.addRetry(changeEntry.getChangeId());
+        changeEntry.addMetrics(new Document(KEY_RETRIES, attempt));
+        try {
+          Thread.sleep(backoff.toMillis());
+        } catch (InterruptedException interrupted) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  private RetryPolicy getRetryPolicy(Method changeSetMethod) {
+    Retry retry = changeSetMethod.getAnnotation(Retry.class);
+    if (retry != null) {
+      return RetryPolicy.of(retry);
+    }
+    // the global policy retries only changesets which can be executed again
+    ChangeSet changeSet = changeSetMethod.getAnnotation(ChangeSet.class);
+    return changeSet != null && changeSet.repeatable() ? retryPolicy : null;
+  }
+
+  private Object invokeProfiledChangeSetMethod(Method changeSetMethod, Object changeLogInstance, ChangeSetContext context,
+      CommandStats commandStats) throws IllegalAccessException, InvocationTargetException, MongoBatChangeSetException {
+    if (commandStats == null) {
+      return invokeChangeSetMethod(changeSetMethod, changeLogInstance, context);
+    }
+    commandProfiler.bind(commandStats);
+    try {
+      return invokeChangeSetMethod(changeSetMethod, changeLogInstance, context);
+    } finally {
+      commandProfiler.unbind();
+    }
+  }
+
+  private Object invokeChangeSetMethod(Method changeSetMethod, Object changeLogInstance, ChangeSetContext context)
+      throws IllegalAccessException, InvocationTargetException, MongoBatChangeSetException {
+
+    Partitioned partitioned = changeSetMethod.getAnnotation(Partitioned.class);
+    if (partitioned != null) {
+      getPartitionCoordinator().execute(dao.getMongoDatabase(), context.getChangeEntry(), partitioned,
+          range -> invokeWithParameters(changeSetMethod, changeLogInstance, context.withRange(range)));
+      verifyChangeSet(changeSetMethod, context);
+      return null;
+    }
+
+    Object result;
+    if (changeSetMethod.getParameterCount() == 0) {
+      log.debug("method with no params");
+      result = changeSetMethod.invoke(changeLogInstance);
+    } else {
+      result = invokeWithParameters(changeSetMethod, changeLogInstance, context);
+    }
+
+    Seed seed = changeSetMethod.getAnnotation(Seed.class);
+    if (seed != null) {
+      loadSeed(seed, getChangeSetDatabase(changeSetMethod, context));
+    }
+    if (result instanceof Transformation) {
+      executeTransformation((Transformation) result, getChangeSetDatabase(changeSetMethod, context), context);
+    } else if (result instanceof ShadowRebuild) {
+      executeShadowRebuild((ShadowRebuild) result, getChangeSetDatabase(changeSetMethod, context), context);
+    } else if (result instanceof LazyMigration) {
+      startLazyMigration((LazyMigration) result, getExecutionProfile(changeSetMethod).apply(dao.getMongoDatabase()), context);
+    }
+    verifyChangeSet(changeSetMethod, context);
+    return result;
+  }
+
+  private void verifyChangeSet(Method changeSetMethod, ChangeSetContext context)
+      throws InvocationTargetException, MongoBatChangeSetException {
+    Verify verify = changeSetMethod.getAnnotation(Verify.class);
+    if (verify == null) {
+      return;
+    }
+    try {
+      VerificationReport verification = new CollectionVerifier(new IdRangeSplitter(), parallelScanThreads)
+          .setCommandProfiler(commandProfiler)
+          .verify(getChangeSetDatabase(changeSetMethod, context), Verification.of(verify), context.getCancellationToken());
+      context.getChangeEntry().addMetrics(new Document(VerificationReport.KEY_VERIFICATION, verification.toDocument()));
+    } catch (MongoBatChangeSetException e) {
+      throw e;
+    } catch (MongoBatException | MongoException e) {
+      // mismatches, cancellation and driver errors are reported as if thrown by the changeset itself
+      throw new InvocationTargetException(e);
+    }
+  }
+
+  private void startLazyMigration(LazyMigration migration, MongoDatabase database, ChangeSetContext context)
+      throws InvocationTargetException {
+    ChangeEntry changeEntry = context.getChangeEntry();
+    synchronized (unsavedLazyMigrations) {
+      unsavedLazyMigrations.put(changeEntry.getKey(), false);
+    }
+    long remaining;
+    try {
+      remaining = lazyMigrations.start(migration, database, () -> completeLazyMigration(changeEntry));
+    } catch (MongoException e) {
+      // reported as if thrown by the changeset itself
+      throw new InvocationTargetException(e);
+    }
+    // the sweeper marks the saved entry installed once no outdated document remains
+    changeEntry.setStatus(remaining == 0 ? ChangeStatus.INSTALLED : ChangeStatus.IN_PROGRESS);
+  }
+
+  /**
+   * Called by the sweeper, so the entry of the run is only read: the status is updated in the changelog
+   */
+  private void completeLazyMigration(ChangeEntry changeEntry) {
+    try {
+      synchronized (unsavedLazyMigrations) {
+        if (unsavedLazyMigrations.containsKey(changeEntry.getKey())) {
+          // not saved by the run yet, marked installed right after the save
+          unsavedLazyMigrations.put(changeEntry.getKey(), true);
+          return;
+        }
+      }
+      if (dao.markInstalled(changeEntry)) {
+        log.info("{} completed", changeEntry.getChangeId());
+      }
+    } catch (MongoBatConnectionException | MongoException e) {
+      log.error("Mongobee failed to record completion of {}", changeEntry.getChangeId(), e);
+    }
+  }
+
+  private void saveChangeEntry(ChangeEntry changeEntry) throws MongoBatConnectionException {
+    synchronized (unsavedLazyMigrations) {
+      dao.save(changeEntry);
+      if (Boolean.TRUE.equals(unsavedLazyMigrations.remove(changeEntry.getKey()))
+          && changeEntry.getStatus() == ChangeStatus.IN_PROGRESS && dao.markInstalled(changeEntry)) {
+        log.info("{} completed", changeEntry.getChangeId());
+      }
+    }
+  }
+
+  private void executeShadowRebuild(ShadowRebuild rebuild, MongoDatabase database, ChangeSetContext context)
+      throws InvocationTargetException, MongoBatChangeSetException {
+    try {
+      ShadowRebuildReport rebuildReport = new ShadowRebuildExecutor(mongoClient.getDatabase(ShadowRebuildExecutor.ADMIN_DATABASE))
+          .execute(database, rebuild, context.getCancellationToken());
+      context.getChangeEntry().addMetrics(new Document(ShadowRebuildReport.KEY_SHADOW_REBUILD, rebuildReport.toDocument()));
+    } catch (MongoBatChangeSetException e) {
+      throw e;
+    } catch (MongoBatException | MongoException e) {
+      // cancellation and driver errors are reported as if thrown by the changeset itself
+      throw new InvocationTargetException(e);
+    }
+  }
+
+  private void executeTransformation(Transformation transformation, MongoDatabase database, ChangeSetContext context)
+      throws InvocationTargetException, MongoBatChangeSetException {
+    try {
+      new TransformationExecutor(new IdRangeSplitter()).execute(database, transformation, context.getCancellationToken());
+    } catch (MongoBatChangeSetException e) {
+      throw e;
+    } catch (MongoBatException | MongoException e) {
+      // cancellation and driver errors are reported as if thrown by the changeset itself
+      throw new InvocationTargetException(e);
+    }
+  }
+
+  private void loadSeed(Seed seed, MongoDatabase database) throws InvocationTargetException, MongoBatChangeSetException {
+    try {
+      new SeedLoader(seed.batchSize(), Arrays.asList(seed.upsertKeys()))
+          .load(SeedSource.of(seed.resource()), database, seed.collection());
+    } catch (IOException | BSONException | JsonParseException | IllegalArgumentException e) {
+      throw new MongoBatChangeSetException("Seed " + seed.resource() + " can't be loaded: " + e.getMessage(), e);
+    } catch (MongoException e) {
+      // reported as if thrown by the changeset itself
+      throw new InvocationTargetException(e);
+    }
+  }
+
+  private Object invokeWithParameters(Method changeSetMethod, Object changeLogInstance, ChangeSetContext context)
+      throws IllegalAccessException, InvocationTargetException, MongoBatChangeSetException {
+
+    WriteBatcher writeBatcher = createWriteBatcher(changeSetMethod);
+    Object result;
+    try {
+      result = changeSetMethod.invoke(changeLogInstance, getParameters(changeSetMethod, context.withWriteBatcher(writeBatcher)));
+    } catch (IllegalAccessException | InvocationTargetException | MongoBatChangeSetException | RuntimeException e) {
+      if (writeBatcher != null) {
+        try {
+          writeBatcher.flush();
+        } catch (RuntimeException flushException) {
+          log.error("Mongobee failed to flush buffered writes of a failed changeset", flushException);
+        }
+      }
+      throw e;
+    }
+
+    if (writeBatcher != null) {
+      try {
+        writeBatcher.flush();
+      } catch (RuntimeException e) {
+        // reported as if thrown by the changeset itself
+        throw new InvocationTargetException(e);
+      }
+      log.debug("{} buffered writes executed in {} bulk writes", writeBatcher.getFlushedWrites(), writeBatcher.getBulkWrites());
+    }
+    return result;
+  }
+
+  private WriteBatcher createWriteBatcher(Method changeSetMethod) throws MongoBatChangeSetException {
+    if (!Arrays.asList(changeSetMethod.getParameterTypes()).contains(MongoDatabase.class)) {
+      return null;
+    }
+    ExecutionProfile profile = getExecutionProfile(changeSetMethod);
+    return profile.getAutoBatchSize() == null ? null
+        : new WriteBatcher(profile.getAutoBatchSize(), profile.getAutoBatchInterval());
+  }
+
+  private Object[] getParameters(Method changeSetMethod, ChangeSetContext context) throws MongoBatChangeSetException {
+    Object[] parameters = new Object[changeSetMethod.getParameterCount()];
+
+    for (int i = 0; i < changeSetMethod.getParameterCount(); i++) {
+      Class<?> type = changeSetMethod.getParameterTypes()[i];
+      if (type.equals(MongoDatabase.class)) {
+        MongoDatabase database = getChangeSetDatabase(changeSetMethod, context);
+        parameters[i] = context.getWriteBatcher() == null ? database : context.getWriteBatcher().wrap(database);
+      } else if (type.equals(ExecutionProfile.class)) {
+        parameters[i] = getExecutionProfile(changeSetMethod);
+      } else if (type.equals(CancellationToken.class)) {
+        parameters[i] = context.getCancellationToken();
+      } else if (type.equals(ProgressReporter.class) && context.getProgressReporter() != null) {
+        parameters[i] = context.getProgressReporter();
+      } else if (type.equals(IdRange.class) && context.getRange() != null) {
+        parameters[i] = context.getRange();
+      } else if (type.equals(ParallelRangeScanner.class)) {
+        ParallelRangeScanner scanner = new ParallelRangeScanner(new IdRangeSplitter(), parallelScanThreads, context.getCancellationToken())
+            .setShardChunkSplitter(new ShardChunkSplitter(mongoClient.getDatabase(ShardChunkSplitter.CONFIG_DATABASE)))
+            .setMaxThreadsPerShard(parallelScanThreadsPerShard)
+            .setCommandProfiler(commandProfiler);
+        Optional.ofNullable(getExecutionProfile(changeSetMethod).getBatchSize()).ifPresent(scanner::setBatchSize);
+        parameters[i] = scanner;
+      } else if (changeSetMethodParams.containsKey(type)) {
+        parameters[i] = changeSetMethodParams.get(type);
+      } else {
+        parameters[i] = resolveParameter(type);
+        if (parameters[i] == null) {
+          throw new MongoBatChangeSetException("ChangeSet method " + changeSetMethod.getName() +
+              " has wrong arguments list. Unsupported type: " + type.getSimpleName());
+        }
+      }
+    }
+
+    String paramsTypes = Arrays.stream(parameters)
+        .map(o -> o.getClass().getSimpleName())
+        .collect(Collectors.joining(", "));
+    log.debug("method with arguments: {}", paramsTypes);
+
+    return parameters;
+  }
+
+  private Object resolveParameter(Class<?> type) throws MongoBatChangeSetException {
+    Optional<ParameterResolver> resolver = resolverByType.computeIfAbsent(type,
+        t -> parameterResolvers.stream().filter(r -> r.supports(t)).findFirst());
+    try {
+      if (resolver.isPresent()) {
+        return resolver.get().resolve(type);
+      }
+    } catch (RuntimeException e) {
+      throw new MongoBatChangeSetException("Parameter " + type.getSimpleName() + " can't be resolved: " + e.getMessage(), e);
+    }
+    // instances given via setChangeSetMethodParams also match their supertypes, if only one does
+    Set<Object> matching = Collections.newSetFromMap(new IdentityHashMap<>());
+    changeSetMethodParams.values().stream().filter(type::isInstance).forEach(matching::add);
+    if (matching.size() > 1) {
+      throw new MongoBatChangeSetException("Parameter " + type.getSimpleName() + " is ambiguous, it matches instances of "
+          + matching.stream().map(param -> param.getClass().getSimpleName()).sorted().collect(Collectors.joining(", "))
+          + ". Register the instance under " + type.getSimpleName() + " via setChangeSetMethodParams");
+    }
+    return matching.stream().findFirst().orElse(null);
+  }
+
+  /**
+   * Starts the status server if enabled, then acquires the process lock, measuring the wait
+   */
+  private boolean acquireProcessLock() throws MongoBatException {
+    runMetrics.runStarted();
+    startStatusServer();
+    Instant started = Instant.now();
+    boolean acquired = false;
+    try {
+      acquired = dao.acquireProcessLock();
+      return acquired;
+    } finally {
+      runMetrics.lockWaited(Duration.between(started, Instant.now()), acquired);
+      if (!acquired) {
+        runMetrics.runFinished();
+        stopStatusServer();
+      }
+    }
+  }
+
+  private void endRun() {
+    endParameterRun();
+    runMetrics.runFinished();
+    stopStatusServer();
+  }
+
+  private synchronized void startStatusServer() {
+    if (statusPort == null || statusServer != null) {
+      return;
+    }
+    try {
+      statusServer = new StatusServer(new InetSocketAddress(statusPort), runMetrics, this::getMigrationStatus).start();
+    } catch (IOException e) {
+      log.error("Mongobee failed to start status server on port {}", statusPort, e);
+    }
+  }
+
+  private synchronized void stopStatusServer() {
+    if (statusServer != null) {
+      statusServer.stop();
+      statusServer = null;
+    }
+  }
+
+  private void endParameterRun() {
+    for (ParameterResolver resolver : parameterResolvers) {
+      try {
+        resolver.endRun();
+      } catch (RuntimeException e) {
+        log.warn("Mongobee failed to end run of parameter resolver {}", resolver, e);
+      }
+    }
+  }
+
+  private MongoDatabase getChangeSetDatabase(Method changeSetMethod, ChangeSetContext context)
+      throws MongoBatChangeSetException {
+    MongoDatabase database = getExecutionProfile(changeSetMethod).apply(dao.getMongoDatabase());
+    return context.getQueryPlanInspector() == null ? database : context.getQueryPlanInspector().wrap(database);
+  }
+
+  private Duration getMaxDuration(Method changeSetMethod) {
+    return Optional.ofNullable(changeSetMethod.getAnnotation(ChangeSet.class))
+        .map(ChangeSet::maxDuration)
+        .filter(seconds -> seconds > 0)
+        .map(Duration::ofSeconds)
+        .orElse(defaultMaxDuration);
+  }
+
+  private ChangeSetWatchdog getWatchdog() {
+    if (watchdog == null) {
+      watchdog = new ChangeSetWatchdog(cancellationGracePeriod);
+    }
+    return watchdog;
+  }
+
+  private void applyTimeoutPolicy(MongoBatChangeSetException exception) throws MongoBatChangeSetException {
+    if (exception instanceof MongoBatChangeSetTimeoutException && timeoutPolicy == TimeoutPolicy.ABORT) {
+      log.error("Mongobee aborts the execution after a timed out changeset.");
+      throw exception;
+    }
+  }
+
+  private ExecutionProfile getExecutionProfile(Method changeSetMethod) throws MongoBatChangeSetException {
+    String profile = Optional.ofNullable(changeSetMethod.getAnnotation(ChangeSet.class))
+        .map(ChangeSet::profile)
+        .orElse(ExecutionProfile.DEFAULT);
+    if (ExecutionProfile.DEFAULT.equals(profile)) {
+      return executionProfiles.getOrDefault(ExecutionProfile.DEFAULT, new ExecutionProfile(ExecutionProfile.DEFAULT));
+    }
+    ExecutionProfile executionProfile = executionProfiles.get(profile);
+    if (executionProfile == null) {
+      throw new MongoBatChangeSetException("ChangeSet method " + changeSetMethod.getName() + " uses unknown execution profile: " + profile);
+    }
+    return executionProfile;
+  }
+
+  private void validateConfig() throws MongoBatConfigurationException {
+    if (!hasText(dbName)) {
+      throw new MongoBatConfigurationException("DB name is not set. It should be defined in MongoDB URI or via setter");
+    }
+    if (changeLogsScanPackages == null || changeLogsScanPackages.isEmpty()) {
+      throw new MongoBatConfigurationException("Scan package for changelogs is not set: use appropriate setter");
+    }
+    if (this.mongoClient == null) {
+      throw new MongoBatConfigurationException("MongoClient is not set");
+    }
+  }
+
+  private ChangeEntry prepareFailedChangeEntry(ChangeEntry entry, Exception exception) {
+    String error = describeError(exception);
+
+    String changeId = String.format(FAILED_CHANGE_ID_TEMPLATE, entry.getChangeId(), new Date().getTime());
+    ChangeEntry result = new ChangeEntry(changeId, entry);
+    result.setStatus(ChangeStatus.FAILED);
+    result.setError(error);
+    result.setOriginalChangeId(entry.getChangeId());
+    return result;
+  }
+
+  private static String describeError(Exception exception) {
+    return Optional.ofNullable(exception.getCause())
+        .map(Object::toString)
+        .orElse(exception.getMessage());
+  }
+
+  /**
+   * @return true if an execution is in progress, in any process.
+   * @throws MongoBatConnectionException exception
+   */
+  public boolean isExecutionInProgress() throws MongoBatConnectionException {
+    return dao.isProccessLockHeld();
+  }
+
+  /**
+   * Status of the migration, in any process: lock holder, running changesets and progress.
+   * Served from a snapshot kept up to date by a change stream, or from a point read cached for a short time
+   * when change streams are not available, so it's cheap enough for readiness probes.
+   *
+   * @return migration status
+   * @throws MongoBatConnectionException exception
+   */
+  public MigrationStatus getMigrationStatus() throws MongoBatConnectionException {
+    return dao.getMigrationStatus();
+  }
+
+  /**
+   * Repeatable changesets failing with a transient driver error (primary step-down, network error, write conflict)
+   * are invoked again after a backoff, see {@link RetryPolicy}. A changeset annotated with {@link Retry} uses
+   * its own policy, even if not repeatable.
+   *
+   * @param retryPolicy policy of repeatable changesets, null (default) to fail them on the first error
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setRetryPolicy(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+    return this;
+  }
+
+  /**
+   * Changesets report progress through an injected {@link ProgressReporter}. Progress of running changesets is
+   * recorded in their changelog entries every interval, so {@link #getMigrationStatus()} of any process tells
+   * e.g. "72%, 18 min left".
+   *
+   * @param progressInterval minimal interval between progress updates, 10 seconds by default
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setProgressInterval(Duration progressInterval) {
+    this.progressInterval = progressInterval;
+    return this;
+  }
+
+  /**
+   * A postponed changeset failing this many times is recorded with status <tt>failed</tt> and no longer executed by
+   * {@link #executePostponed(int, Instant, CancellationToken)}. Its changelog entry keeps the number of attempts and
+   * the last error; resetting its status to <tt>postponed</tt> and its attempts schedules it again.
+   *
+   * @param maxPostponedAttempts attempts of a postponed changeset, 3 by default
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setMaxPostponedAttempts(int maxPostponedAttempts) {
+    this.maxPostponedAttempts = maxPostponedAttempts;
+    return this;
+  }
+
+  /**
+   * @param progressListener receives progress updates of changesets executed by this runner
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat addProgressListener(ProgressListener progressListener) {
+    this.progressListeners.add(progressListener);
+    return this;
+  }
+
+  /**
+   * Lazy migrations started by changesets returning a {@link LazyMigration}. The application reads migrated
+   * collections through them, so outdated documents are upgraded on read.
+   *
+   * @return lazy migrations of this runner
+   */
+  public LazyMigrations getLazyMigrations() {
+    return lazyMigrations;
+  }
+
+  /**
+   * Driver commands of each changeset (counts by command, bytes sent and received, command time) are recorded
+   * in the changelog entry metrics and in the execution report. The profiler has to be added as a command listener
+   * of the client, see {@link CommandProfiler}.
+   *
+   * @param commandProfiler command listener registered on the client
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setCommandProfiler(CommandProfiler commandProfiler) {
+    this.commandProfiler = commandProfiler;
+    return this;
+  }
+
+  /**
+   * Operations of changesets made through the injected database are explained, and collection scans of large
+   * collections are reported in the execution report or blocked, see {@link QueryPlanGuard}.
+   *
+   * @param queryPlanGuard guard settings, null to turn the guard off
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setQueryPlanGuard(QueryPlanGuard queryPlanGuard) {
+    this.queryPlanGuard = queryPlanGuard;
+    return this;
+  }
+
+  /**
+   * Used DB name should be set here
+   *
+   * @param dbName database name
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setDbName(String dbName) {
+    this.dbName = dbName;
+    return this;
+  }
+
+  /**
+   * Initialize environment type. Only {@link com.github.mongobat.changeset.ChangeSet} with environment marked as ANY (default) or the same value will be executed
+   *
+   * @param environment environment type
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setEnvironment(String environment) {
+    this.environment = environment;
+    return this;
+  }
+
+  /**
+   * Optional params for ChangeSet methods. A parameter is matched by the exact type first, then by an instance of its
+   * subtype. A changeset fails if several instances match its parameter type.
+   *
+   * @param changeSetMethodParams instances of additional params which can be used in ChangeSet methods
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setChangeSetMethodParams(Map<Class<?>, Object> changeSetMethodParams) {
+    this.changeSetMethodParams = Map.copyOf(changeSetMethodParams);
+    return this;
+  }
+
+  /**
+   * Resolver of ChangeSet method params, asked after built-in params and params set via
+   * {@link #setChangeSetMethodParams(Map)}. Parameters are created only when a changeset needing them runs,
+   * see {@link ParameterProviders}.
+   *
+   * @param parameterResolver resolver of additional params
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat registerParameterResolver(ParameterResolver parameterResolver) {
+    this.parameterResolvers.add(parameterResolver);
+    this.resolverByType.clear();
+    return this;
+  }
+
+  /**
+   * Registers settings of the database injected into changesets with matching {@link ChangeSet#profile()}.
+   * A profile registered with {@link ExecutionProfile#DEFAULT} name applies to changesets without a profile.
+   *
+   * @param executionProfile execution profile
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat registerExecutionProfile(ExecutionProfile executionProfile) {
+    this.executionProfiles.put(executionProfile.getName(), executionProfile);
+    return this;
+  }
+
+  /**
+   * Maximal duration of changesets which don't define {@link ChangeSet#maxDuration()}, unlimited by default
+   *
+   * @param defaultMaxDuration max duration, null for unlimited
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setDefaultMaxDuration(Duration defaultMaxDuration) {
+    this.defaultMaxDuration = defaultMaxDuration;
+    return this;
+  }
+
+  /**
+   * Time an overrunning changeset gets to stop after cancellation before its thread is interrupted, default 30 seconds
+   *
+   * @param cancellationGracePeriod grace period
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setCancellationGracePeriod(Duration cancellationGracePeriod) {
+    this.cancellationGracePeriod = cancellationGracePeriod;
+    if (watchdog != null) {
+      watchdog.close();
+      watchdog = null;
+    }
+    return this;
+  }
+
+  /**
+   * @param timeoutPolicy whether remaining changesets are executed after a changeset timed out, CONTINUE by default
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setTimeoutPolicy(TimeoutPolicy timeoutPolicy) {
+    this.timeoutPolicy = timeoutPolicy;
+    return this;
+  }
+
+  /**
+   * How long the migration status is cached when change streams are not available, default 5 seconds
+   *
+   * @param statusCacheTtl cache TTL
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setStatusCacheTtl(Duration statusCacheTtl) {
+    this.dao.setStatusCacheTtl(statusCacheTtl);
+    return this;
+  }
+
+  /**
+   * Whether the migration status is kept up to date by a change stream, default true
+   *
+   * @param watchStatus false to use only cached point reads
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setWatchStatus(boolean watchStatus) {
+    this.dao.setWatchStatus(watchStatus);
+    return this;
+  }
+
+  /**
+   * Write concern of changelog entries, MAJORITY by default. Not affected by changeset execution profiles.
+   *
+   * @param changelogWriteConcern write concern
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setChangelogWriteConcern(WriteConcern changelogWriteConcern) {
+    this.dao.setChangelogWriteConcern(changelogWriteConcern);
+    return this;
+  }
+
+  /**
+   * Package name where @ChangeLog-annotated classes are kept.
+   *
+   * @param changeLogsScanPackage package where your changelogs are
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setChangeLogsScanPackage(String changeLogsScanPackage) {
+    this.changeLogsScanPackages = List.of(changeLogsScanPackage);
+    this.changeSetPlan = null;
+    return this;
+  }
+
+  public MongoBat setChangeLogsScanPackages(List<String> changeLogsScanPackage) {
+    this.changeLogsScanPackages = changeLogsScanPackage;
+    this.changeSetPlan = null;
+    return this;
+  }
+
+  /**
+   * Feature which enables processing of partitioned changeset ranges when the process lock is held by another node
+   *
+   * @param assistPartitionedChangeSets Mongobee will process published ranges if the lock is not acquired
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setAssistPartitionedChangeSets(boolean assistPartitionedChangeSets) {
+    this.assistPartitionedChangeSets = assistPartitionedChangeSets;
+    return this;
+  }
+
+  /**
+   * Number of threads, and thus cursors and server connections, used by {@link ParallelRangeScanner} injected into ChangeSet methods
+   *
+   * @param parallelScanThreads number of scanning threads, default is number of available processors
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setParallelScanThreads(int parallelScanThreads) {
+    this.parallelScanThreads = parallelScanThreads;
+    return this;
+  }
+
+  /**
+   * Caps threads of {@link ParallelRangeScanner} working on chunks of one shard, when scanning a sharded collection
+   *
+   * @param parallelScanThreadsPerShard maximum scanning threads per shard, default spreads scanning threads evenly among shards
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setParallelScanThreadsPerShard(int parallelScanThreadsPerShard) {
+    this.parallelScanThreadsPerShard = parallelScanThreadsPerShard;
+    return this;
+  }
+
+  /**
+   * Records <tt>collStats</tt> changes (count, size, storageSize, totalIndexSize) of collections declared
+   * by {@link ChangeSet#collections()}, snapshotted before and after each changeset. Changes are stored in the
+   * changelog entry metrics and in {@link ExecutionReport#getCollectionStats()}.
+   *
+   * @param collectionStats true to record collection stats, default false
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setCollectionStats(boolean collectionStats) {
+    this.collectionStats = collectionStats;
+    return this;
+  }
+
+  /**
+   * Serves <tt>/status</tt> (JSON) and <tt>/metrics</tt> (Prometheus text format) over HTTP while a run holds
+   * the process lock, see {@link StatusServer}. The server starts with the lock acquisition and stops with its release.
+   *
+   * @param statusPort port of the status server, 0 picks a free port, null (default) disables the server
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setStatusPort(Integer statusPort) {
+    this.statusPort = statusPort;
+    return this;
+  }
+
+  /**
+   * @return status server of the current run, null if disabled or not running
+   */
+  public synchronized StatusServer getStatusServer() {
+    return statusServer;
+  }
+
+  /**
+   * @return live figures of the current or last run of this process
+   */
+  public RunMetrics getRunMetrics() {
+    return runMetrics;
+  }
+
+  /**
+   * Overwrites a default collection used to coordinate partitioned changesets, hardcoded in DEFAULT_PARTITION_COLLECTION_NAME
+   *
+   * @param partitionCollectionName a new partition collection name
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setPartitionCollectionName(String partitionCollectionName) {
+    this.partitionDao.setPartitionCollectionName(partitionCollectionName);
+    return this;
+  }
+
+  /**
+   * @return true if Mongobee runner is enabled and able to run, otherwise false
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Feature which enables/disables Mongobee runner execution
+   *
+   * @param enabled MOngobee will run only if this option is set to true
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setEnabled(boolean enabled) {
+    this.enabled = enabled;
+    return this;
+  }
+
+  /**
+   * Feature which enables/disables waiting for lock if it's already obtained
+   *
+   * @param waitForLock Mongobee will be waiting for lock if it's already obtained if this option is set to true
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setWaitForLock(boolean waitForLock) {
+    this.dao.setWaitForLock(waitForLock);
+    return this;
+  }
+
+  /**
+   * Waiting time for acquiring lock if waitForLock is true
+   *
+   * @param changeLogLockWaitTime Waiting time in minutes for acquiring lock
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setChangeLogLockWaitTime(long changeLogLockWaitTime) {
+    this.dao.setChangeLogLockWaitTime(changeLogLockWaitTime);
+    return this;
+  }
+
+  /**
+   * Poll rate for acquiring lock if waitForLock is true
+   *
+   * @param changeLogLockPollRate Poll rate in seconds for acquiring lock
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setChangeLogLockPollRate(long changeLogLockPollRate) {
+    this.dao.setChangeLogLockPollRate(changeLogLockPollRate);
+    return this;
+  }
+
+  /**
+   * Feature which enables/disables throwing MongobeeLockException if Mongobee can not obtain lock
+   *
+   * @param throwExceptionIfCannotObtainLock Mongobee will throw MongobeeLockException if lock can not be obtained
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setThrowExceptionIfCannotObtainLock(boolean throwExceptionIfCannotObtainLock) {
+    this.dao.setThrowExceptionIfCannotObtainLock(throwExceptionIfCannotObtainLock);
+    return this;
+  }
+
+  /**
+   * Overwrites a default mongobee changelog collection hardcoded in DEFAULT_CHANGELOG_COLLECTION_NAME.
+   * <p>
+   * CAUTION! Use this method carefully - when changing the name on a existing system,
+   * your changelogs will be executed again on your MongoDB instance
+   *
+   * @param changelogCollectionName a new changelog collection name
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setChangelogCollectionName(String changelogCollectionName) {
+    this.dao.setChangelogCollectionName(changelogCollectionName);
+    return this;
+  }
+
+  /**
+   * Overwrites a default mongobee lock collection hardcoded in DEFAULT_LOCK_COLLECTION_NAME
+   *
+   * @param lockCollectionName a new lock collection name
+   * @return Mongobee object for fluent interface
+   */
+  public MongoBat setLockCollectionName(String lockCollectionName) {
+    this.dao.setLockCollectionName(lockCollectionName);
+    return this;
+  }
+
+  /**
+   * Closes the Mongo instance used by Mongobee.
+   * This will close either the connection Mongobee was initiated with or that which was internally created.
+   */
+  public void close() {
+    lazyMigrations.close();
+    if (partitionCoordinator != null) {
+      partitionCoordinator.close();
+    }
+    if (watchdog != null) {
+      watchdog.close();
+    }
+    if (collectionStatsCollector != null) {
+      collectionStatsCollector.close();
+    }
+    stopStatusServer();
+    dao.close();
+  }
+}
@@ -0,0 +1,150 @@
+package com.github.mongobat.batching;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.*;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.InsertOneResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonValue;
+import org.bson.codecs.Codec;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.conversions.Bson;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Buffers single document writes of a collection, and flushes them before any other operation on the collection.
+ * Multi document writes are executed directly.
+ */
+class BatchingCollectionHandler implements InvocationHandler {
+
+  private final WriteBatcher batcher;
+  private final MongoCollection<?> collection;
+
+  BatchingCollectionHandler(WriteBatcher batcher, MongoCollection<?> collection) {
+    this.batcher = batcher;
+    this.collection = collection;
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    String name = method.getName();
+    if (method.getDeclaringClass() == Object.class) {
+      return name.equals("equals") ? proxy == args[0] : invokeDelegate(method, args);
+    }
+    if (name.startsWith("get")) {
+      return invokeDelegate(method, args);
+    }
+    if (name.startsWith("with")) {
+      return batcher.wrap((MongoCollection<?>) invokeDelegate(method, args));
+    }
+
+    WriteModel<?> request = toWriteModel(method, args);
+    if (request != null) {
+      batcher.add(collection, request);
+      return deferredResult(method, args, request);
+    }
+
+    if (name.equals("aggregate")) {
+      // $lookup, $unionWith or $merge may use other collections
+      batcher.flush();
+    } else {
+      batcher.flush(collection.getNamespace());
+    }
+    return invokeDelegate(method, args);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static WriteModel<?> toWriteModel(Method method, Object[] args) {
+    Class<?>[] types = method.getParameterTypes();
+    if (types.length == 0 || types.length > 3 || !isBufferedSignature(method.getName(), types)) {
+      return null;
+    }
+    Object options = types.length == 3 || (types.length == 2 && method.getName().startsWith("delete")) ? args[args.length - 1] : null;
+    switch (method.getName()) {
+      case "insertOne":
+        return new InsertOneModel<>(args[0]);
+      case "updateOne":
+        UpdateOptions updateOneOptions = options == null ? new UpdateOptions() : (UpdateOptions) options;
+        return args[1] instanceof List
+            ? new UpdateOneModel<>((Bson) args[0], (List<? extends Bson>) args[1], updateOneOptions)
+            : new UpdateOneModel<>((Bson) args[0], (Bson) args[1], updateOneOptions);
+      case "replaceOne":
+        return new ReplaceOneModel<>((Bson) args[0], args[1], options == null ? new ReplaceOptions() : (ReplaceOptions) options);
+      case "deleteOne":
+        return new DeleteOneModel<>((Bson) args[0], options == null ? new DeleteOptions() : (DeleteOptions) options);
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * @return true for overloads without a client session and with options expressible in a bulk write
+   */
+  private static boolean isBufferedSignature(String name, Class<?>[] types) {
+    switch (name) {
+      case "insertOne":
+        return types.length == 1;
+      case "updateOne":
+        return types[0] == Bson.class && (types.length == 2 || types[2] == UpdateOptions.class);
+      case "replaceOne":
+        return types[0] == Bson.class && (types.length == 2 || types[2] == ReplaceOptions.class);
+      case "deleteOne":
+        return types[0] == Bson.class && (types.length == 1 || types[1] == DeleteOptions.class);
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * The result of a write still buffered is read by executing the write directly. Once flushed in a bulk write, only
+   * the id of an inserted document is known.
+   */
+  private Object deferredResult(Method method, Object[] args, WriteModel<?> request) {
+    Supplier<Object> result = () -> {
+      Object direct = batcher.executeDirectly(collection.getNamespace(), request, () -> invokeUnchecked(method, args));
+      if (direct != null) {
+        return direct;
+      } else if (request instanceof InsertOneModel) {
+        return InsertOneResult.acknowledged(documentId(args[0]));
+      }
+      throw new IllegalStateException("Result of " + method.getName() + " on " + collection.getNamespace()
+          + " is not available after its bulk write, read it before the next write or disable auto batching");
+    };
+    Class<?> resultType = method.getReturnType();
+    if (resultType == InsertOneResult.class) {
+      return DeferredResults.insertOne(() -> (InsertOneResult) result.get());
+    } else if (resultType == UpdateResult.class) {
+      return DeferredResults.update(() -> (UpdateResult) result.get());
+    }
+    return DeferredResults.delete(() -> (DeleteResult) result.get());
+  }
+
+  @SuppressWarnings("unchecked")
+  private BsonValue documentId(Object document) {
+    Codec<Object> codec = (Codec<Object>) collection.getCodecRegistry().get(collection.getDocumentClass());
+    return codec instanceof CollectibleCodec ? ((CollectibleCodec<Object>) codec).getDocumentId(document) : null;
+  }
+
+  private Object invokeUnchecked(Method method, Object[] args) {
+    try {
+      return invokeDelegate(method, args);
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private Object invokeDelegate(Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(collection, args);
+    } catch (InvocationTargetException e) {
+      throw e.getTargetException();
+    }
+  }
+}
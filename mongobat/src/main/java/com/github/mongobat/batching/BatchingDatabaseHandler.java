@@ -0,0 +1,49 @@
+package com.github.mongobat.batching;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Wraps collections of a database, and flushes all buffered writes before any database operation
+ */
+class BatchingDatabaseHandler implements InvocationHandler {
+
+  private final WriteBatcher batcher;
+  private final MongoDatabase database;
+
+  BatchingDatabaseHandler(WriteBatcher batcher, MongoDatabase database) {
+    this.batcher = batcher;
+    this.database = database;
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    String name = method.getName();
+    if (method.getDeclaringClass() == Object.class) {
+      return name.equals("equals") ? proxy == args[0] : invokeDelegate(method, args);
+    }
+    if (name.startsWith("get") && !name.equals("getCollection") || name.equals("listCollectionNames")) {
+      return invokeDelegate(method, args);
+    }
+    if (name.equals("getCollection")) {
+      return batcher.wrap((MongoCollection<?>) invokeDelegate(method, args));
+    }
+    if (name.startsWith("with")) {
+      return batcher.wrap((MongoDatabase) invokeDelegate(method, args));
+    }
+    batcher.flush();
+    return invokeDelegate(method, args);
+  }
+
+  private Object invokeDelegate(Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(database, args);
+    } catch (InvocationTargetException e) {
+      throw e.getTargetException();
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package com.github.mongobat.batching;
+
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.InsertOneResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonValue;
+
+import java.util.function.Supplier;
+
+/**
+ * Results of buffered writes, resolved when first read
+ */
+final class DeferredResults {
+
+  private DeferredResults() {
+  }
+
+  private static final class Memo<T> {
+    private final Supplier<T> supplier;
+    private T value;
+
+    private Memo(Supplier<T> supplier) {
+      this.supplier = supplier;
+    }
+
+    private synchronized T get() {
+      if (value == null) {
+        value = supplier.get();
+      }
+      return value;
+    }
+  }
+
+  static InsertOneResult insertOne(Supplier<InsertOneResult> supplier) {
+    Memo<InsertOneResult> result = new Memo<>(supplier);
+    return new InsertOneResult() {
+      @Override
+      public boolean wasAcknowledged() {
+        return result.get().wasAcknowledged();
+      }
+
+      @Override
+      public BsonValue getInsertedId() {
+        return result.get().getInsertedId();
+      }
+    };
+  }
+
+  static UpdateResult update(Supplier<UpdateResult> supplier) {
+    Memo<UpdateResult> result = new Memo<>(supplier);
+    return new UpdateResult() {
+      @Override
+      public boolean wasAcknowledged() {
+        return result.get().wasAcknowledged();
+      }
+
+      @Override
+      public long getMatchedCount() {
+        return result.get().getMatchedCount();
+      }
+
+      @Override
+      public long getModifiedCount() {
+        return result.get().getModifiedCount();
+      }
+
+      @Override
+      public BsonValue getUpsertedId() {
+        return result.get().getUpsertedId();
+      }
+    };
+  }
+
+  static DeleteResult delete(Supplier<DeleteResult> supplier) {
+    Memo<DeleteResult> result = new Memo<>(supplier);
+    return new DeleteResult() {
+      @Override
+      public boolean wasAcknowledged() {
+        return result.get().wasAcknowledged();
+      }
+
+      @Override
+      public long getDeletedCount() {
+        return result.get().getDeletedCount();
+      }
+    };
+  }
+}
@@ -0,0 +1,160 @@
+package com.github.mongobat.batching;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces single document writes of a changeset into unordered bulk writes.
+ * <p>
+ * Databases and collections wrapped by the batcher buffer <tt>insertOne</tt>, <tt>updateOne</tt>,
+ * <tt>replaceOne</tt> and <tt>deleteOne</tt> per collection. <tt>updateMany</tt>, <tt>deleteMany</tt> and any other
+ * operation flush the buffer of the collection and are executed directly. A buffer is flushed before a write when it
+ * is full or its oldest write is older than the batch interval, before any database operation or aggregation, and by
+ * {@link #flush()} at the end of the changeset.
+ * <p>
+ * A buffered write returns a deferred result. Reading it takes the write out of the buffer and executes it directly,
+ * so it returns the real result and throws its <tt>MongoWriteException</tt>, after the other buffered writes of the
+ * collection are flushed. Once the write was flushed in a bulk write, only the id of an inserted document can be read.
+ * Errors of flushed writes, e.g. duplicate keys, are thrown by the operation flushing them as a
+ * <tt>MongoBulkWriteException</tt>, the other writes of the bulk write are still executed.
+ * <p>
+ * Buffered writes are executed unordered, so the writes of one collection between two flushes should not depend
+ * on each other.
+ */
+public class WriteBatcher {
+  private static final Logger log = LoggerFactory.getLogger(WriteBatcher.class);
+
+  private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
+  private final int batchSize;
+  private final Duration batchInterval;
+  private final Map<MongoNamespace, Buffer> buffers = new LinkedHashMap<>();
+  private long flushedWrites;
+  private long bulkWrites;
+
+  /**
+   * @param batchSize     maximal number of buffered writes of a collection
+   * @param batchInterval maximal age of buffered writes, null for no limit
+   */
+  public WriteBatcher(int batchSize, Duration batchInterval) {
+    this.batchSize = batchSize;
+    this.batchInterval = batchInterval;
+  }
+
+  private static final class Buffer {
+    private final MongoCollection<Object> collection;
+    private final List<WriteModel<Object>> requests = new ArrayList<>();
+    private final long createdAt = System.nanoTime();
+
+    private Buffer(MongoCollection<Object> collection) {
+      this.collection = collection;
+    }
+
+    private boolean accepts(MongoCollection<?> other) {
+      return collection.getDocumentClass().equals(other.getDocumentClass())
+          && Objects.equals(collection.getWriteConcern(), other.getWriteConcern())
+          && collection.getCodecRegistry() == other.getCodecRegistry();
+    }
+  }
+
+  /**
+   * @param database database to wrap
+   * @return database whose collections buffer single document writes
+   */
+  public MongoDatabase wrap(MongoDatabase database) {
+    return (MongoDatabase) Proxy.newProxyInstance(MongoDatabase.class.getClassLoader(),
+        new Class<?>[]{MongoDatabase.class}, new BatchingDatabaseHandler(this, database));
+  }
+
+  /**
+   * @param collection collection to wrap
+   * @param <T>        document type
+   * @return collection buffering single document writes
+   */
+  @SuppressWarnings("unchecked")
+  public <T> MongoCollection<T> wrap(MongoCollection<T> collection) {
+    return (MongoCollection<T>) Proxy.newProxyInstance(MongoCollection.class.getClassLoader(),
+        new Class<?>[]{MongoCollection.class}, new BatchingCollectionHandler(this, collection));
+  }
+
+  @SuppressWarnings("unchecked")
+  synchronized void add(MongoCollection<?> collection, WriteModel<?> request) {
+    MongoNamespace namespace = collection.getNamespace();
+    Buffer buffer = buffers.get(namespace);
+    // flushed before the write is added, so a write stays buffered at least until the next operation
+    if (buffer != null && (!buffer.accepts(collection) || buffer.requests.size() >= batchSize
+        || (batchInterval != null && System.nanoTime() - buffer.createdAt >= batchInterval.toNanos()))) {
+      flush(namespace);
+      buffer = null;
+    }
+    if (buffer == null) {
+      buffer = new Buffer((MongoCollection<Object>) collection);
+      buffers.put(namespace, buffer);
+    }
+    buffer.requests.add((WriteModel<Object>) request);
+  }
+
+  /**
+   * Takes a write out of its buffer, flushes the other buffered writes of the collection and executes it directly
+   *
+   * @return result of the direct execution, null if the write was already flushed
+   */
+  synchronized <R> R executeDirectly(MongoNamespace namespace, WriteModel<?> request, Supplier<R> direct) {
+    Buffer buffer = buffers.get(namespace);
+    if (buffer == null || !buffer.requests.remove(request)) {
+      return null;
+    }
+    flush(namespace);
+    return direct.get();
+  }
+
+  /**
+   * Executes buffered writes of a collection
+   *
+   * @param namespace collection namespace
+   */
+  public synchronized void flush(MongoNamespace namespace) {
+    Buffer buffer = buffers.remove(namespace);
+    if (buffer != null && !buffer.requests.isEmpty()) {
+      log.debug("Flushing {} writes to {}", buffer.requests.size(), namespace);
+      buffer.collection.bulkWrite(buffer.requests, UNORDERED);
+      flushedWrites += buffer.requests.size();
+      bulkWrites++;
+    }
+  }
+
+  /**
+   * Executes all buffered writes
+   */
+  public synchronized void flush() {
+    for (MongoNamespace namespace : new ArrayList<>(buffers.keySet())) {
+      flush(namespace);
+    }
+  }
+
+  public synchronized int getBufferedWrites() {
+    return buffers.values().stream().mapToInt(buffer -> buffer.requests.size()).sum();
+  }
+
+  public synchronized long getFlushedWrites() {
+    return flushedWrites;
+  }
+
+  public synchronized long getBulkWrites() {
+    return bulkWrites;
+  }
+}
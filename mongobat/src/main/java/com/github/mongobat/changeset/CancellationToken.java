@@ -0,0 +1,62 @@
+package com.github.mongobat.changeset;
+
+import com.github.mongobat.exception.MongoBatCancellationException;
+
+/**
+ * Cooperative cancellation signal which can be injected into ChangeSet methods.
+ * Long running changesets should check it periodically and stop their work when cancellation is requested,
+ * e.g. when a maintenance window closes. A changeset stopped this way stays pending and is resumed later.
+ *
+ * <pre>
+ * &#64;ChangeSet(order = "001", id = "backfill", author = "author", description = "", postponed = true)
+ * public void backfill(MongoDatabase db, CancellationToken token) throws MongoBatCancellationException {
+ *   for (...) {
+ *     token.throwIfCancellationRequested();
+ *     // process next batch
+ *   }
+ * }
+ * </pre>
+ */
+public class CancellationToken {
+
+  private final CancellationToken parent;
+  private volatile String reason;
+
+  public CancellationToken() {
+    this(null);
+  }
+
+  private CancellationToken(CancellationToken parent) {
+    this.parent = parent;
+  }
+
+  /**
+   * @return token which is cancelled together with this one, but can also be cancelled on its own
+   */
+  public CancellationToken newChild() {
+    return new CancellationToken(this);
+  }
+
+  public void cancel(String reason) {
+    if (this.reason == null) {
+      this.reason = reason;
+    }
+  }
+
+  public boolean isCancellationRequested() {
+    return reason != null || (parent != null && parent.isCancellationRequested());
+  }
+
+  public String getReason() {
+    if (reason == null && parent != null) {
+      return parent.getReason();
+    }
+    return reason;
+  }
+
+  public void throwIfCancellationRequested() throws MongoBatCancellationException {
+    if (isCancellationRequested()) {
+      throw new MongoBatCancellationException("Cancellation requested: " + getReason());
+    }
+  }
+}
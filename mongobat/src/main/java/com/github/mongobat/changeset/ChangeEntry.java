@@ -4,6 +4,7 @@ import com.github.mongobat.MongoBat;
 import org.bson.Document;
 
 import java.util.Date;
+import java.util.Optional;
 
 /**
  * Entry in the changes collection log {@link MongoBat#DEFAULT_CHANGELOG_COLLECTION_NAME}
@@ -27,6 +28,9 @@ public class ChangeEntry {
   public static final String KEY_STATUS = "status";
   public static final String KEY_ERROR = "error";
   public static final String KEY_ORIGINAL_CHANGE_ID = "originalChangeId";
+  public static final String KEY_METRICS = "metrics";
+  public static final String KEY_PROGRESS = "progress";
+  public static final String KEY_ATTEMPTS = "attempts";
 
   private final String changeId;
   private final String author;
@@ -41,6 +45,8 @@ public class ChangeEntry {
   private ChangeStatus status;
   private String error;
   private String originalChangeId;
+  private Document metrics;
+  private int attempts;
 
   public ChangeEntry(
       String changeId,
@@ -79,6 +85,28 @@ public class ChangeEntry {
         source.isPostponed(),
         source.isRepeatable()
     );
+    this.metrics = source.getMetrics();
+  }
+
+  public static ChangeEntry fromDBObject(Document document) {
+    ChangeEntry entry = new ChangeEntry(
+        document.getString(KEY_CHANGE_ID),
+        document.getString(KEY_AUTHOR),
+        Optional.ofNullable(document.getDate(KEY_TIMESTAMP)).orElseGet(Date::new),
+        document.getString(KEY_CHANGELOG_CLASS),
+        document.getString(KEY_CHANGESET_METHOD),
+        document.getString(KEY_DESCRIPTION),
+        document.getString(KEY_GROUP),
+        document.getString(KEY_ENVIRONMENT),
+        document.getBoolean(KEY_POSTPONED, false),
+        document.getBoolean(KEY_REPEATABLE, true)
+    );
+    entry.setStatus(ChangeStatus.fromStatus(document.getString(KEY_STATUS)));
+    entry.setError(document.getString(KEY_ERROR));
+    entry.setOriginalChangeId(document.getString(KEY_ORIGINAL_CHANGE_ID));
+    entry.setMetrics(document.get(KEY_METRICS, Document.class));
+    entry.setAttempts(document.getInteger(KEY_ATTEMPTS, 0));
+    return entry;
   }
 
   public Document buildFullDBObject() {
@@ -104,6 +132,14 @@ public class ChangeEntry {
       entry.append(KEY_ORIGINAL_CHANGE_ID, this.originalChangeId);
     }
 
+    if (this.metrics != null) {
+      entry.append(KEY_METRICS, this.metrics);
+    }
+
+    if (this.attempts > 0) {
+      entry.append(KEY_ATTEMPTS, this.attempts);
+    }
+
     return entry;
   }
 
@@ -129,9 +165,23 @@ public class ChangeEntry {
         ", status=" + status +
         ", error='" + error + '\'' +
         ", originalChangeId='" + originalChangeId + '\'' +
+        ", metrics=" + metrics +
         '}';
   }
 
+  /**
+   * @param changeId id of a change
+   * @param author   author of the change
+   * @return key identifying an applied change, like the unique changeId and author index
+   */
+  public static String key(String changeId, String author) {
+    return changeId + '\0' + author;
+  }
+
+  public String getKey() {
+    return key(changeId, author);
+  }
+
   public String getChangeId() {
     return this.changeId;
   }
@@ -195,4 +245,36 @@ public class ChangeEntry {
   public void setOriginalChangeId(String originalChangeId) {
     this.originalChangeId = originalChangeId;
   }
+
+  /**
+   * @return failed executions of a postponed change
+   */
+  public int getAttempts() {
+    return attempts;
+  }
+
+  public void setAttempts(int attempts) {
+    this.attempts = attempts;
+  }
+
+  /**
+   * @return metrics of the last execution, e.g. issued driver commands
+   */
+  public Document getMetrics() {
+    return metrics;
+  }
+
+  public void setMetrics(Document metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * @param metrics metrics merged into the metrics of this execution
+   */
+  public synchronized void addMetrics(Document metrics) {
+    if (this.metrics == null) {
+      this.metrics = new Document();
+    }
+    this.metrics.putAll(metrics);
+  }
 }
@@ -59,6 +59,13 @@ public @interface ChangeSet {
    */
   String group() default "";
 
+  /**
+   * Changeset tags, used to select changesets for targeted execution.
+   * Optional
+   * @return tags
+   */
+  String[] tags() default {};
+
   /**
    * Changeset will be executed only if environment match.
    * Optional
@@ -81,4 +88,28 @@ public @interface ChangeSet {
    */
   boolean repeatable() default true;
 
+  /**
+   * Name of the execution profile registered via MongoBat::registerExecutionProfile,
+   * which configures the database injected into the changeset.
+   * Optional (default database settings are used)
+   * @return execution profile name
+   */
+  String profile() default ExecutionProfile.DEFAULT;
+
+  /**
+   * Maximal duration of the changeset in seconds. An overrunning changeset is asked to stop via injected
+   * CancellationToken and recorded as failed.
+   * Optional (default duration set via MongoBat::setDefaultMaxDuration is used, unlimited if not set)
+   * @return max duration in seconds
+   */
+  long maxDuration() default 0;
+
+  /**
+   * Collections the changeset modifies, which are not ready for the application until it finishes,
+   * see MongoBat::awaitCollectionReady.
+   * Optional (default: unknown, all collections wait for the changeset)
+   * @return collection names
+   */
+  String[] collections() default {};
+
 }
@@ -0,0 +1,28 @@
+package com.github.mongobat.changeset;
+
+public enum ChangeStatus {
+
+  INSTALLED("installed"),
+  FAILED("failed"),
+  POSTPONED("postponed"),
+  IN_PROGRESS("in-progress");
+
+  private final String status;
+
+  ChangeStatus(String status) {
+    this.status = status;
+  }
+
+  public String getStatus() {
+    return status;
+  }
+
+  public static ChangeStatus fromStatus(String status) {
+    for (ChangeStatus value : values()) {
+      if (value.status.equals(status)) {
+        return value;
+      }
+    }
+    return INSTALLED;
+  }
+}
@@ -0,0 +1,193 @@
+package com.github.mongobat.changeset;
+
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoDatabase;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Named set of database settings for changesets, selected by {@link ChangeSet#profile()}.
+ * <p>
+ * <tt>MongoDatabase</tt> injected into a changeset with a profile is configured with the profile's write concern,
+ * read preference and read concern. The driver has no database-wide operation timeout or batch size, so these
+ * are exposed by the profile itself, which can be injected into the changeset and applied to its queries.
+ *
+ * <pre>
+ * runner.registerExecutionProfile(new ExecutionProfile("bulk")
+ *     .setWriteConcern(WriteConcern.W1)
+ *     .setReadPreference(ReadPreference.secondaryPreferred())
+ *     .setMaxTime(Duration.ofMinutes(10))
+ *     .setBatchSize(5000));
+ *
+ * &#64;ChangeSet(order = "001", id = "backfill", author = "author", description = "", profile = "bulk")
+ * public void backfill(MongoDatabase db, ExecutionProfile profile) {
+ *   profile.apply(db.getCollection("orders").find()).forEach(...);
+ * }
+ * </pre>
+ * Changelog entries are always written with durable settings, regardless of the profile.
+ * <p>
+ * With an auto batch size, single document writes made through the injected <tt>MongoDatabase</tt> are buffered
+ * per collection and executed as unordered bulk writes, see {@link com.github.mongobat.batching.WriteBatcher}.
+ */
+public class ExecutionProfile {
+
+  public static final String DEFAULT = "";
+
+  private final String name;
+  private WriteConcern writeConcern;
+  private ReadPreference readPreference;
+  private ReadConcern readConcern;
+  private Duration maxTime;
+  private Integer batchSize;
+  private Integer autoBatchSize;
+  private Duration autoBatchInterval;
+
+  public ExecutionProfile(String name) {
+    this.name = name;
+  }
+
+  /**
+   * @param database database used by default
+   * @return database configured with this profile's settings
+   */
+  public MongoDatabase apply(MongoDatabase database) {
+    MongoDatabase result = database;
+    if (writeConcern != null) {
+      result = result.withWriteConcern(writeConcern);
+    }
+    if (readPreference != null) {
+      result = result.withReadPreference(readPreference);
+    }
+    if (readConcern != null) {
+      result = result.withReadConcern(readConcern);
+    }
+    return result;
+  }
+
+  /**
+   * @param iterable query
+   * @param <T>      document type
+   * @return query with this profile's time limit and batch size
+   */
+  public <T> FindIterable<T> apply(FindIterable<T> iterable) {
+    FindIterable<T> result = iterable;
+    if (maxTime != null) {
+      result = result.maxTime(maxTime.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    if (batchSize != null) {
+      result = result.batchSize(batchSize);
+    }
+    return result;
+  }
+
+  /**
+   * @param iterable aggregation
+   * @param <T>      document type
+   * @return aggregation with this profile's time limit and batch size
+   */
+  public <T> AggregateIterable<T> apply(AggregateIterable<T> iterable) {
+    AggregateIterable<T> result = iterable;
+    if (maxTime != null) {
+      result = result.maxTime(maxTime.toMillis(), TimeUnit.MILLISECONDS);
+    }
+    if (batchSize != null) {
+      result = result.batchSize(batchSize);
+    }
+    return result;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public WriteConcern getWriteConcern() {
+    return writeConcern;
+  }
+
+  public ExecutionProfile setWriteConcern(WriteConcern writeConcern) {
+    this.writeConcern = writeConcern;
+    return this;
+  }
+
+  public ReadPreference getReadPreference() {
+    return readPreference;
+  }
+
+  public ExecutionProfile setReadPreference(ReadPreference readPreference) {
+    this.readPreference = readPreference;
+    return this;
+  }
+
+  public ReadConcern getReadConcern() {
+    return readConcern;
+  }
+
+  public ExecutionProfile setReadConcern(ReadConcern readConcern) {
+    this.readConcern = readConcern;
+    return this;
+  }
+
+  public Duration getMaxTime() {
+    return maxTime;
+  }
+
+  public ExecutionProfile setMaxTime(Duration maxTime) {
+    this.maxTime = maxTime;
+    return this;
+  }
+
+  public Integer getBatchSize() {
+    return batchSize;
+  }
+
+  public ExecutionProfile setBatchSize(Integer batchSize) {
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  public Integer getAutoBatchSize() {
+    return autoBatchSize;
+  }
+
+  /**
+   * @param autoBatchSize number of buffered single document writes of a collection flushed as one bulk write,
+   *                      null to execute writes immediately
+   * @return this profile
+   */
+  public ExecutionProfile setAutoBatchSize(Integer autoBatchSize) {
+    this.autoBatchSize = autoBatchSize;
+    return this;
+  }
+
+  public Duration getAutoBatchInterval() {
+    return autoBatchInterval;
+  }
+
+  /**
+   * @param autoBatchInterval maximal age of buffered writes, checked on each write
+   * @return this profile
+   */
+  public ExecutionProfile setAutoBatchInterval(Duration autoBatchInterval) {
+    this.autoBatchInterval = autoBatchInterval;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "ExecutionProfile{" +
+        "name='" + name + '\'' +
+        ", writeConcern=" + writeConcern +
+        ", readPreference=" + readPreference +
+        ", readConcern=" + readConcern +
+        ", maxTime=" + maxTime +
+        ", batchSize=" + batchSize +
+        ", autoBatchSize=" + autoBatchSize +
+        ", autoBatchInterval=" + autoBatchInterval +
+        '}';
+  }
+}
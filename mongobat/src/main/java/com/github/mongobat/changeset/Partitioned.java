@@ -0,0 +1,57 @@
+package com.github.mongobat.changeset;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a changeset which processes a collection in <tt>_id</tt> ranges, possibly on many nodes at once.
+ * <p>
+ * The process lock holder splits the collection into ranges and publishes them in a coordination collection.
+ * Ranges are claimed with a lease by the lock holder and by any instance calling
+ * {@link com.github.mongobat.MongoBat#assistPartitionedChangeSets()}. The changeset method is invoked once per range
+ * with {@link com.github.mongobat.partition.IdRange} parameter, and is recorded only after all ranges are done.
+ * Ranges of a dead worker are claimed again when its lease expires, so processing of a range should be idempotent.
+ *
+ * <pre>
+ * &#64;ChangeSet(order = "001", id = "backfill", author = "author", description = "")
+ * &#64;Partitioned(collection = "orders", partitions = 64)
+ * public void backfill(MongoDatabase db, IdRange range) {
+ *   db.getCollection("orders").updateMany(range.toFilter(), Updates.set("migrated", true));
+ * }
+ * </pre>
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Partitioned {
+
+  /**
+   * Collection split into <tt>_id</tt> ranges.
+   * Obligatory
+   * @return collection name
+   */
+  String collection();
+
+  /**
+   * Number of ranges.
+   * Optional (default is 16)
+   * @return number of partitions
+   */
+  int partitions() default 16;
+
+  /**
+   * Lease time of a claimed range. The lease is renewed while the range is processed,
+   * a range of a worker which stopped renewing is claimed again after the lease expires.
+   * Optional (default is 300)
+   * @return lease in seconds
+   */
+  long leaseSeconds() default 300;
+
+  /**
+   * Number of attempts to process a range before the whole changeset fails.
+   * Optional (default is 3)
+   * @return max attempts
+   */
+  int maxAttempts() default 3;
+}
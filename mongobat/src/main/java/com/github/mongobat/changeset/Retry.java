@@ -0,0 +1,47 @@
+package com.github.mongobat.changeset;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks an idempotent changeset which is invoked again when it fails with a transient driver error
+ * (primary step-down, network error, write conflict), with exponential backoff and jitter between attempts.
+ * Overrides the policy set via MongoBat::setRetryPolicy, {@code maxAttempts = 1} turns retries off.
+ *
+ * <pre>
+ * &#64;ChangeSet(order = "001", id = "backfill", author = "author", description = "")
+ * &#64;Retry(maxAttempts = 5, initialBackoff = 200)
+ * public void backfill(MongoDatabase db) {
+ *   db.getCollection("orders").updateMany(Filters.exists("total", false), Updates.set("total", 0));
+ * }
+ * </pre>
+ *
+ * @see com.github.mongobat.retry.RetryPolicy
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Retry {
+
+  /**
+   * Maximal number of invocations, including the first one.
+   * Optional (default is 3)
+   * @return max attempts
+   */
+  int maxAttempts() default 3;
+
+  /**
+   * Upper bound of the backoff before the first retry in milliseconds, doubled for each next retry.
+   * Optional (default is 100)
+   * @return initial backoff in milliseconds
+   */
+  long initialBackoff() default 100;
+
+  /**
+   * Upper bound of any backoff in milliseconds.
+   * Optional (default is 10000)
+   * @return max backoff in milliseconds
+   */
+  long maxBackoff() default 10_000;
+}
@@ -0,0 +1,55 @@
+package com.github.mongobat.changeset;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a changeset which loads documents from a resource into a collection.
+ * <p>
+ * The changeset method is invoked first (e.g. to create indexes), then the resource is streamed into the collection
+ * in unordered bulk writes, see {@link com.github.mongobat.seed.SeedLoader}. Supported formats are JSON Lines
+ * (<tt>.jsonl</tt>, <tt>.ndjson</tt>), an Extended JSON array (<tt>.json</tt>) and a <tt>mongodump</tt> file
+ * (<tt>.bson</tt>). With upsert keys, documents replace the ones with the same keys, so the seed can be re-run.
+ *
+ * <pre>
+ * &#64;ChangeSet(order = "001", id = "currencies", author = "author", description = "", runAlways = true)
+ * &#64;Seed(resource = "seed/currencies.jsonl", collection = "currencies", upsertKeys = "code")
+ * public void currencies(MongoDatabase db) {
+ *   db.getCollection("currencies").createIndex(Indexes.ascending("code"), new IndexOptions().unique(true));
+ * }
+ * </pre>
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Seed {
+
+  /**
+   * Classpath resource, or a file with <tt>file:</tt> prefix.
+   * Obligatory
+   * @return resource location
+   */
+  String resource();
+
+  /**
+   * Collection the documents are written to.
+   * Obligatory
+   * @return collection name
+   */
+  String collection();
+
+  /**
+   * Top level fields identifying a document. Without keys documents are inserted.
+   * Optional (default is {})
+   * @return upsert keys
+   */
+  String[] upsertKeys() default {};
+
+  /**
+   * Number of documents written in one bulk write.
+   * Optional (default is 1000)
+   * @return batch size
+   */
+  int batchSize() default 1000;
+}
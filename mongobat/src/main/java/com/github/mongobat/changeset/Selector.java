@@ -0,0 +1,71 @@
+package com.github.mongobat.changeset;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Selects changesets for targeted execution by group, tag or id.
+ * A changeset is selected if it matches any of the given criteria.
+ *
+ * @see com.github.mongobat.MongoBat#execute(Selector)
+ */
+public class Selector {
+
+  private final Set<String> groups = new LinkedHashSet<>();
+  private final Set<String> tags = new LinkedHashSet<>();
+  private final Set<String> ids = new LinkedHashSet<>();
+
+  public static Selector ofGroups(String... groups) {
+    return new Selector().withGroups(groups);
+  }
+
+  public static Selector ofTags(String... tags) {
+    return new Selector().withTags(tags);
+  }
+
+  public static Selector ofIds(String... ids) {
+    return new Selector().withIds(ids);
+  }
+
+  public Selector withGroups(String... groups) {
+    this.groups.addAll(Arrays.asList(groups));
+    return this;
+  }
+
+  public Selector withTags(String... tags) {
+    this.tags.addAll(Arrays.asList(tags));
+    return this;
+  }
+
+  public Selector withIds(String... ids) {
+    this.ids.addAll(Arrays.asList(ids));
+    return this;
+  }
+
+  public Set<String> getGroups() {
+    return Collections.unmodifiableSet(groups);
+  }
+
+  public Set<String> getTags() {
+    return Collections.unmodifiableSet(tags);
+  }
+
+  public Set<String> getIds() {
+    return Collections.unmodifiableSet(ids);
+  }
+
+  public boolean isEmpty() {
+    return groups.isEmpty() && tags.isEmpty() && ids.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return "Selector{" +
+        "groups=" + groups +
+        ", tags=" + tags +
+        ", ids=" + ids +
+        '}';
+  }
+}
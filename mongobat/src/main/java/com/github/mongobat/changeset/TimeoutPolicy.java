@@ -0,0 +1,17 @@
+package com.github.mongobat.changeset;
+
+/**
+ * What happens with remaining changesets after a changeset exceeded its maximal duration
+ *
+ * @see ChangeSet#maxDuration()
+ */
+public enum TimeoutPolicy {
+  /**
+   * Timed out changeset is recorded as failed and the execution continues with the next changeset
+   */
+  CONTINUE,
+  /**
+   * Timed out changeset is recorded as failed and the execution is aborted
+   */
+  ABORT
+}
@@ -0,0 +1,62 @@
+package com.github.mongobat.changeset;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a changeset which copies documents from a source into a target collection, verified after the changeset.
+ * <p>
+ * Both collections are split into the same <tt>_id</tt> ranges, and each range is compared by a count and a hash
+ * computed server-side over the canonical fields, so documents do not cross the network. Ranges are compared in
+ * parallel. A sample of source documents is then compared field by field with their copies.
+ * Any mismatch fails the changeset before it is recorded, see {@link com.github.mongobat.verify.CollectionVerifier}.
+ *
+ * <pre>
+ * &#64;ChangeSet(order = "001", id = "copy-orders", author = "author", description = "")
+ * &#64;Verify(source = "orders", target = "orders_archive", fields = {"number", "customer", "total"})
+ * public void copyOrders(MongoDatabase db) {
+ *   db.getCollection("orders").aggregate(List.of(Aggregates.out("orders_archive"))).toCollection();
+ * }
+ * </pre>
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Verify {
+
+  /**
+   * Collection the documents are copied from.
+   * Obligatory
+   * @return collection name
+   */
+  String source();
+
+  /**
+   * Collection the documents are copied to.
+   * Obligatory
+   * @return collection name
+   */
+  String target();
+
+  /**
+   * Fields which should be equal in both collections, <tt>_id</tt> is always compared.
+   * Optional (default is {}, meaning whole documents)
+   * @return compared fields
+   */
+  String[] fields() default {};
+
+  /**
+   * Number of <tt>_id</tt> ranges compared by hashes.
+   * Optional (default is 16)
+   * @return number of ranges
+   */
+  int ranges() default 16;
+
+  /**
+   * Number of source documents compared field by field.
+   * Optional (default is 100)
+   * @return sample size
+   */
+  int sampleSize() default 100;
+}
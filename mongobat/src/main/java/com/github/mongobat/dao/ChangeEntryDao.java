@@ -0,0 +1,422 @@
+package com.github.mongobat.dao;
+
+import static com.github.mongobat.utils.StringUtils.hasText;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.mongobat.changeset.ChangeEntry;
+import com.github.mongobat.changeset.ChangeStatus;
+import com.github.mongobat.exception.MongoBatConfigurationException;
+import com.github.mongobat.exception.MongoBatConnectionException;
+import com.github.mongobat.exception.MongoBatLockException;
+import com.github.mongobat.profiling.ConnectEvent;
+import com.github.mongobat.profiling.LockHoldEvent;
+import com.github.mongobat.profiling.LockWaitEvent;
+import com.github.mongobat.status.MigrationStatus;
+import com.github.mongobat.status.MigrationStatusView;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+
+/**
+ * @author lstolowski
+ * @since 27/07/2014
+ */
+public class ChangeEntryDao {
+  private static final Logger log = LoggerFactory.getLogger(ChangeEntryDao.class);
+
+  private MongoDatabase mongoDatabase;
+  private MongoClient mongoClient;
+  private String connectedDbName;
+  private ChangeEntryIndexDao indexDao;
+  private String changelogCollectionName;
+  private boolean waitForLock;
+  private long changeLogLockWaitTime;
+  private long changeLogLockPollRate;
+  private boolean throwExceptionIfCannotObtainLock;
+  private String installationId;
+  private WriteConcern changelogWriteConcern = WriteConcern.MAJORITY;
+  private Duration statusCacheTtl = Duration.ofSeconds(5);
+  private boolean watchStatus = true;
+  private MigrationStatusView statusView;
+  private LockHoldEvent lockHoldEvent;
+
+  private LockDao lockDao;
+
+  public ChangeEntryDao(String changelogCollectionName, String lockCollectionName, boolean waitForLock, long changeLogLockWaitTime,
+      long changeLogLockPollRate, boolean throwExceptionIfCannotObtainLock) {
+    this.indexDao = new ChangeEntryIndexDao(changelogCollectionName);
+    this.lockDao = new LockDao(lockCollectionName);
+    this.changelogCollectionName = changelogCollectionName;
+    this.waitForLock = waitForLock;
+    this.changeLogLockWaitTime = changeLogLockWaitTime;
+    this.changeLogLockPollRate = changeLogLockPollRate;
+    this.throwExceptionIfCannotObtainLock = throwExceptionIfCannotObtainLock;
+  }
+
+  public MongoDatabase getMongoDatabase() {
+    return mongoDatabase;
+  }
+
+  public MongoDatabase connectMongoDb(MongoClient mongo, String dbName) throws MongoBatConfigurationException {
+    if (!hasText(dbName)) {
+      throw new MongoBatConfigurationException("DB name is not set. Should be defined in MongoDB URI or via setter");
+    } else if (mongo == this.mongoClient && dbName.equals(connectedDbName)) {
+      // already connected, indexes and lock collection were verified on the first connection
+      return mongoDatabase;
+    } else {
+
+      ConnectEvent event = new ConnectEvent();
+      event.begin();
+      this.mongoClient = mongo;
+      this.connectedDbName = dbName;
+
+      mongoDatabase = mongo.getDatabase(dbName);
+
+      ensureChangeLogCollectionIndex(mongoDatabase.getCollection(changelogCollectionName));
+      initializeLock();
+      event.finish(dbName, changelogCollectionName);
+      return mongoDatabase;
+    }
+  }
+
+  /**
+   * Try to acquire process lock
+   *
+   * @return true if successfully acquired, false otherwise
+   * @throws MongoBatConnectionException exception
+   * @throws MongoBatLockException exception
+   */
+  public boolean acquireProcessLock() throws MongoBatConnectionException, MongoBatLockException {
+    verifyDbConnection();
+    LockWaitEvent event = new LockWaitEvent();
+    event.begin();
+    boolean acquired = lockDao.acquireLock(getMongoDatabase(), installationId);
+
+    if (!acquired && waitForLock) {
+      long timeToGiveUp = new Date().getTime() + (changeLogLockWaitTime * 1000 * 60);
+      while (!acquired && new Date().getTime() < timeToGiveUp) {
+        acquired = lockDao.acquireLock(getMongoDatabase(), installationId);
+        if (!acquired) {
+          log.info("Waiting for changelog lock....");
+          try {
+            Thread.sleep(changeLogLockPollRate * 1000);
+          } catch (InterruptedException e) {
+            // nothing
+          }
+        }
+      }
+    }
+
+    event.finish(installationId, acquired);
+    if (acquired) {
+      lockHoldEvent = new LockHoldEvent();
+      lockHoldEvent.begin();
+    }
+
+    if (!acquired && throwExceptionIfCannotObtainLock) {
+      log.info("Mongobee did not acquire process lock. Throwing exception.");
+      throw new MongoBatLockException("Could not acquire process lock");
+    }
+
+    return acquired;
+  }
+
+  public void releaseProcessLock() throws MongoBatConnectionException {
+    verifyDbConnection();
+    lockDao.releaseLock(getMongoDatabase());
+    if (lockHoldEvent != null) {
+      lockHoldEvent.finish(installationId);
+      lockHoldEvent = null;
+    }
+  }
+
+  public boolean isProccessLockHeld() throws MongoBatConnectionException {
+    return getMigrationStatus().isLockHeld();
+  }
+
+  /**
+   * @return status read from the locally cached view, see {@link MigrationStatusView}
+   * @throws MongoBatConnectionException exception
+   */
+  public synchronized MigrationStatus getMigrationStatus() throws MongoBatConnectionException {
+    verifyDbConnection();
+    if (statusView == null) {
+      statusView = new MigrationStatusView(getMongoDatabase(), lockDao, changelogCollectionName, statusCacheTtl, watchStatus);
+    }
+    return statusView.getStatus();
+  }
+
+  public void markChangeStarted(ChangeEntry changeEntry) {
+    lockDao.markChangeStarted(getMongoDatabase(), changeEntry.getChangeId());
+  }
+
+  public void markChangeFinished(ChangeEntry changeEntry) {
+    lockDao.markChangeFinished(getMongoDatabase(), changeEntry.getChangeId());
+  }
+
+  public boolean isNewChange(ChangeEntry changeEntry) throws MongoBatConnectionException {
+    verifyDbConnection();
+
+    MongoCollection<Document> mongobeeChangeLog = getMongoDatabase().getCollection(changelogCollectionName);
+    Document entry = mongobeeChangeLog.find(changeEntry.buildSearchQueryDBObject()).first();
+
+    if (entry == null) {
+      return true;
+    }
+    String status = entry.getString(ChangeEntry.KEY_STATUS);
+    return ChangeStatus.POSTPONED.getStatus().equals(status) || ChangeStatus.IN_PROGRESS.getStatus().equals(status);
+  }
+
+  /**
+   * Looks up already applied changes in one query, backed by the unique changeId and author index.
+   * The group of a change is not part of its identity and may have been edited since it was applied.
+   *
+   * @param changeEntries changes to look up
+   * @return keys ({@link ChangeEntry#getKey()}) of the given changes which are already applied
+   * @throws MongoBatConnectionException exception
+   */
+  public Set<String> findAppliedChanges(Collection<ChangeEntry> changeEntries) throws MongoBatConnectionException {
+    verifyDbConnection();
+    if (changeEntries.isEmpty()) {
+      return Set.of();
+    }
+
+    Set<String> changeIds = changeEntries.stream().map(ChangeEntry::getChangeId).collect(Collectors.toSet());
+    Set<String> keys = changeEntries.stream().map(ChangeEntry::getKey).collect(Collectors.toSet());
+
+    MongoCollection<Document> mongobeeChangeLog = getMongoDatabase().getCollection(changelogCollectionName);
+    List<Document> entries = mongobeeChangeLog.find(Filters.and(
+            Filters.in(ChangeEntry.KEY_CHANGE_ID, changeIds),
+            Filters.nin(ChangeEntry.KEY_STATUS, ChangeStatus.POSTPONED.getStatus(), ChangeStatus.IN_PROGRESS.getStatus())))
+        .projection(Projections.include(ChangeEntry.KEY_CHANGE_ID, ChangeEntry.KEY_AUTHOR))
+        .into(new ArrayList<>());
+
+    Set<String> applied = new HashSet<>();
+    for (Document entry : entries) {
+      String key = ChangeEntry.key(entry.getString(ChangeEntry.KEY_CHANGE_ID), entry.getString(ChangeEntry.KEY_AUTHOR));
+      if (keys.contains(key)) {
+        applied.add(key);
+      }
+    }
+    return applied;
+  }
+
+  /**
+   * @return changes recorded as postponed and not executed yet
+   * @throws MongoBatConnectionException exception
+   */
+  public List<ChangeEntry> findPostponedChanges() throws MongoBatConnectionException {
+    verifyDbConnection();
+
+    MongoCollection<Document> mongobeeChangeLog = getMongoDatabase().getCollection(changelogCollectionName);
+    return mongobeeChangeLog.find(Filters.eq(ChangeEntry.KEY_STATUS, ChangeStatus.POSTPONED.getStatus()))
+        .sort(Sorts.ascending(ChangeEntry.KEY_TIMESTAMP))
+        .map(ChangeEntry::fromDBObject)
+        .into(new ArrayList<>());
+  }
+
+  public void save(ChangeEntry changeEntry) throws MongoBatConnectionException {
+    verifyDbConnection();
+
+    MongoCollection<Document> mongobeeLog = getMongoDatabase().getCollection(changelogCollectionName);
+    if (changelogWriteConcern != null) {
+      mongobeeLog = mongobeeLog.withWriteConcern(changelogWriteConcern);
+    }
+
+    Document documentChangeEntry = changeEntry.buildFullDBObject();
+    documentChangeEntry.append("installationId", installationId);
+
+    // upsert, so postponed and re-executed changes update their existing entry
+    mongobeeLog.replaceOne(changeEntry.buildSearchQueryDBObject(), documentChangeEntry, new ReplaceOptions().upsert(true));
+  }
+
+  /**
+   * Marks an in-progress change installed, e.g. once its lazy migration completed. Only the status is updated,
+   * so a concurrent save of the entry by the run keeps its other fields.
+   *
+   * @param changeEntry change to mark installed, identified by changeId and author
+   * @return false if the change is not recorded in progress, e.g. not saved yet or already installed
+   * @throws MongoBatConnectionException exception
+   */
+  public boolean markInstalled(ChangeEntry changeEntry) throws MongoBatConnectionException {
+    verifyDbConnection();
+
+    MongoCollection<Document> mongobeeLog = getMongoDatabase().getCollection(changelogCollectionName);
+    if (changelogWriteConcern != null) {
+      mongobeeLog = mongobeeLog.withWriteConcern(changelogWriteConcern);
+    }
+    return mongobeeLog.updateOne(
+        Filters.and(changeEntry.buildSearchQueryDBObject(), Filters.eq(ChangeEntry.KEY_STATUS, ChangeStatus.IN_PROGRESS.getStatus())),
+        Updates.set(ChangeEntry.KEY_STATUS, ChangeStatus.INSTALLED.getStatus())).getMatchedCount() > 0;
+  }
+
+  /**
+   * @param name     leased resource, e.g. a lazily migrated collection
+   * @param owner    id of the lease holder
+   * @param duration lease duration
+   * @return true if the owner holds the lease, see {@link LockDao#acquireLease}
+   * @throws MongoBatConnectionException exception
+   */
+  public boolean acquireLease(String name, String owner, Duration duration) throws MongoBatConnectionException {
+    verifyDbConnection();
+    return lockDao.acquireLease(getMongoDatabase(), name, owner, duration.toMillis());
+  }
+
+  public void releaseLease(String name, String owner) throws MongoBatConnectionException {
+    verifyDbConnection();
+    lockDao.releaseLease(getMongoDatabase(), name, owner);
+  }
+
+  /**
+   * Records progress of a running change. A change without an entry yet gets an in-progress one,
+   * existing entries keep their status until the change is saved.
+   *
+   * @param changeEntry running change
+   * @param progress    progress document
+   * @throws MongoBatConnectionException exception
+   */
+  public void saveProgress(ChangeEntry changeEntry, Document progress) throws MongoBatConnectionException {
+    verifyDbConnection();
+
+    MongoCollection<Document> mongobeeLog = getMongoDatabase().getCollection(changelogCollectionName);
+    mongobeeLog.updateOne(changeEntry.buildSearchQueryDBObject(), Updates.combine(
+            Updates.set(ChangeEntry.KEY_PROGRESS, progress),
+            Updates.setOnInsert(ChangeEntry.KEY_STATUS, ChangeStatus.IN_PROGRESS.getStatus()),
+            Updates.setOnInsert(ChangeEntry.KEY_GROUP, changeEntry.getGroup())),
+        new UpdateOptions().upsert(true));
+  }
+
+  private void verifyDbConnection() throws MongoBatConnectionException {
+    if (getMongoDatabase() == null) {
+      throw new MongoBatConnectionException("Database is not connected. Mongobee has thrown an unexpected error",
+          new NullPointerException());
+    }
+  }
+
+  private void ensureChangeLogCollectionIndex(MongoCollection<Document> collection) {
+    Document index = indexDao.findRequiredChangeAndAuthorIndex(mongoDatabase);
+    if (index == null) {
+      indexDao.createRequiredUniqueIndex(collection);
+      log.debug("Index in collection {} was created", changelogCollectionName);
+    } else if (!indexDao.isUnique(index)) {
+      indexDao.dropIndex(collection, index);
+      indexDao.createRequiredUniqueIndex(collection);
+      log.debug("Index in collection {} was recreated", changelogCollectionName);
+    }
+  }
+
+  public void close() {
+      if (statusView != null) {
+        statusView.close();
+      }
+      this.mongoClient.close();
+  }
+
+  private void initializeLock() {
+    lockDao.intitializeLock(mongoDatabase);
+  }
+
+  public void setIndexDao(ChangeEntryIndexDao changeEntryIndexDao) {
+    this.indexDao = changeEntryIndexDao;
+  }
+
+  /* Visible for testing */
+  void setLockDao(LockDao lockDao) {
+    this.lockDao = lockDao;
+  }
+
+  public void setChangelogCollectionName(String changelogCollectionName) {
+	this.indexDao.setChangelogCollectionName(changelogCollectionName);
+	this.changelogCollectionName = changelogCollectionName;
+  }
+
+  public void setLockCollectionName(String lockCollectionName) {
+	this.lockDao.setLockCollectionName(lockCollectionName);
+  }
+
+  public boolean isWaitForLock() {
+    return waitForLock;
+  }
+
+  public void setWaitForLock(boolean waitForLock) {
+    this.waitForLock = waitForLock;
+  }
+
+  public long getChangeLogLockWaitTime() {
+    return changeLogLockWaitTime;
+  }
+
+  public void setChangeLogLockWaitTime(long changeLogLockWaitTime) {
+    this.changeLogLockWaitTime = changeLogLockWaitTime;
+  }
+
+  public long getChangeLogLockPollRate() {
+    return changeLogLockPollRate;
+  }
+
+  public void setChangeLogLockPollRate(long changeLogLockPollRate) {
+    this.changeLogLockPollRate = changeLogLockPollRate;
+  }
+
+  public boolean isThrowExceptionIfCannotObtainLock() {
+    return throwExceptionIfCannotObtainLock;
+  }
+
+  public void setThrowExceptionIfCannotObtainLock(boolean throwExceptionIfCannotObtainLock) {
+    this.throwExceptionIfCannotObtainLock = throwExceptionIfCannotObtainLock;
+  }
+
+  /**
+   * @param statusCacheTtl how long a status read without change stream is cached
+   */
+  public void setStatusCacheTtl(Duration statusCacheTtl) {
+    this.statusCacheTtl = statusCacheTtl;
+  }
+
+  /**
+   * @param watchStatus whether the status is kept up to date by a change stream
+   */
+  public void setWatchStatus(boolean watchStatus) {
+    this.watchStatus = watchStatus;
+  }
+
+  public WriteConcern getChangelogWriteConcern() {
+    return changelogWriteConcern;
+  }
+
+  /**
+   * @param changelogWriteConcern write concern of changelog entries, independent of changeset execution profiles;
+   *                              null keeps the write concern of the client
+   */
+  public void setChangelogWriteConcern(WriteConcern changelogWriteConcern) {
+    this.changelogWriteConcern = changelogWriteConcern;
+  }
+
+  public String getInstallationId() {
+    return installationId;
+  }
+
+  public void setInstallationId(String installationId) {
+    this.installationId = installationId;
+  }
+
+}
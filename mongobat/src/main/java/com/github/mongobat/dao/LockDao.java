@@ -0,0 +1,193 @@
+package com.github.mongobat.dao;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+
+/**
+ * @author colsson11
+ * @since 13.01.15
+ */
+public class LockDao {
+  private static final Logger logger = LoggerFactory.getLogger(LockDao.class);
+  private static final String KEY_PROP_NAME = "key";
+  public static final String KEY_OWNER = "owner";
+  public static final String KEY_ACQUIRED_AT = "acquiredAt";
+  public static final String KEY_RUNNING = "running";
+  public static final String KEY_COMPLETED = "completed";
+  public static final String KEY_LEASE_UNTIL = "leaseUntil";
+
+  private static final int INDEX_SORT_ASC = 1;
+
+  private static final String LOCK_ENTRY_KEY_VAL = "LOCK";
+  private static final String LEASE_KEY_PREFIX = "LEASE:";
+  private static final String NOW = "$$NOW";
+  private String lockCollectionName;
+  
+  public LockDao(String lockCollectionName) {
+	this.lockCollectionName = lockCollectionName;
+  }
+
+  public void intitializeLock(MongoDatabase db) {
+    createCollectionAndUniqueIndexIfNotExists(db);
+  }
+
+  private void createCollectionAndUniqueIndexIfNotExists(MongoDatabase db) {
+    Document indexKeys = new Document(KEY_PROP_NAME, INDEX_SORT_ASC);
+    IndexOptions indexOptions = new IndexOptions().unique(true).name("mongobeelock_key_idx");
+
+    db.getCollection(lockCollectionName).createIndex(indexKeys, indexOptions);
+  }
+
+  public boolean acquireLock(MongoDatabase db) {
+    return acquireLock(db, null);
+  }
+
+  /**
+   * @param db    MongoDatabase object
+   * @param owner installation id of the lock holder, published in migration status
+   * @return true if the lock was acquired
+   */
+  public boolean acquireLock(MongoDatabase db, String owner) {
+
+    Document insertObj = new Document(KEY_PROP_NAME, LOCK_ENTRY_KEY_VAL).append("status", "LOCK_HELD")
+        .append(KEY_OWNER, owner)
+        .append(KEY_ACQUIRED_AT, new Date())
+        .append(KEY_COMPLETED, 0);
+
+    // acquire lock by attempting to insert the same value in the collection - if it already exists (i.e. lock held)
+    // there will be an exception
+    try {
+      db.getCollection(lockCollectionName).insertOne(insertObj);
+    } catch (MongoWriteException ex) {
+      if (ex.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+        logger.warn("Duplicate key exception while acquireLock. Probably the lock has been already acquired.");
+      }
+      return false;
+    }
+    return true;
+  }
+
+  public void releaseLock(MongoDatabase db) {
+    // release lock by deleting collection entry
+    db.getCollection(lockCollectionName).deleteMany(new Document(KEY_PROP_NAME, LOCK_ENTRY_KEY_VAL));
+  }
+
+  /**
+   * Check if the lock is held. Could be used by external process for example.
+   *
+   * @param db MongoDatabase object
+   * @return true if the lock is currently held
+   */
+  public boolean isLockHeld(MongoDatabase db) {
+    return findLock(db) != null;
+  }
+
+  /**
+   * Point read of the lock document by its unique key
+   *
+   * @param db MongoDatabase object
+   * @return lock document, null if the lock is not held
+   */
+  public Document findLock(MongoDatabase db) {
+    return db.getCollection(lockCollectionName).find(new Document(KEY_PROP_NAME, LOCK_ENTRY_KEY_VAL)).first();
+  }
+
+  public boolean isLockDocument(Document document) {
+    return LOCK_ENTRY_KEY_VAL.equals(document.getString(KEY_PROP_NAME));
+  }
+
+  /**
+   * Publishes a changeset started by the lock holder
+   *
+   * @param db       MongoDatabase object
+   * @param changeId id of the started changeset
+   */
+  public void markChangeStarted(MongoDatabase db, String changeId) {
+    updateLock(db, Updates.addToSet(KEY_RUNNING, changeId));
+  }
+
+  /**
+   * Publishes a changeset finished by the lock holder
+   *
+   * @param db       MongoDatabase object
+   * @param changeId id of the finished changeset
+   */
+  public void markChangeFinished(MongoDatabase db, String changeId) {
+    updateLock(db, Updates.combine(Updates.pull(KEY_RUNNING, changeId), Updates.inc(KEY_COMPLETED, 1)));
+  }
+
+  private void updateLock(MongoDatabase db, Bson update) {
+    try {
+      db.getCollection(lockCollectionName).updateOne(new Document(KEY_PROP_NAME, LOCK_ENTRY_KEY_VAL), update);
+    } catch (MongoException e) {
+      // status information only, the migration goes on
+      logger.warn("Lock status could not be updated", e);
+    }
+  }
+
+  /**
+   * Acquires or renews a lease kept next to the lock, e.g. by a lazy migration sweeper which outlives the run.
+   * Lease times are computed with the server clock.
+   *
+   * @param db          MongoDatabase object
+   * @param name        leased resource
+   * @param owner       id of the lease holder
+   * @param leaseMillis lease duration
+   * @return true if the owner holds the lease
+   */
+  public boolean acquireLease(MongoDatabase db, String name, String owner, long leaseMillis) {
+    Bson filter = Filters.and(Filters.eq(KEY_PROP_NAME, LEASE_KEY_PREFIX + name), Filters.or(
+        Filters.eq(KEY_OWNER, owner),
+        Filters.expr(new Document("$lt", Arrays.asList("$" + KEY_LEASE_UNTIL, NOW)))));
+    List<Bson> update = List.of(new Document("$set", new Document(KEY_OWNER, owner)
+        .append(KEY_LEASE_UNTIL, new Document("$add", Arrays.asList(NOW, leaseMillis)))));
+    // held by another owner: the upsert collides with the existing lease
+    try {
+      db.getCollection(lockCollectionName).updateOne(filter, update, new UpdateOptions().upsert(true));
+    } catch (MongoWriteException ex) {
+      if (ex.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+        return false;
+      }
+      throw ex;
+    }
+    return true;
+  }
+
+  /**
+   * Expires a lease of the owner. The lease document is kept, as deletions in the lock collection are taken
+   * for a released lock by status watchers.
+   *
+   * @param db    MongoDatabase object
+   * @param name  leased resource
+   * @param owner id of the lease holder
+   */
+  public void releaseLease(MongoDatabase db, String name, String owner) {
+    db.getCollection(lockCollectionName).updateOne(
+        Filters.and(Filters.eq(KEY_PROP_NAME, LEASE_KEY_PREFIX + name), Filters.eq(KEY_OWNER, owner)),
+        Updates.set(KEY_LEASE_UNTIL, new Date(0)));
+  }
+
+  public String getLockCollectionName() {
+    return lockCollectionName;
+  }
+
+  public void setLockCollectionName(String lockCollectionName) {
+	this.lockCollectionName = lockCollectionName;
+  }
+
+}
@@ -0,0 +1,167 @@
+package com.github.mongobat.dao;
+
+import com.github.mongobat.changeset.ChangeEntry;
+import com.github.mongobat.partition.IdRange;
+import com.github.mongobat.partition.Partition;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Coordination collection of partitioned changesets.
+ * Lease times are computed with the server clock (<tt>$$NOW</tt>), so clock skew between nodes does not matter.
+ */
+public class PartitionDao {
+
+  private static final String NOW = "$$NOW";
+
+  private String partitionCollectionName;
+
+  public PartitionDao(String partitionCollectionName) {
+    this.partitionCollectionName = partitionCollectionName;
+  }
+
+  public boolean hasPartitions(MongoDatabase db, ChangeEntry changeEntry) {
+    return getCollection(db).find(byChange(changeEntry)).limit(1).first() != null;
+  }
+
+  public void createPartitions(MongoDatabase db, ChangeEntry changeEntry, List<IdRange> ranges, long leaseMillis, int maxAttempts) {
+    MongoCollection<Document> collection = getCollection(db);
+    collection.createIndex(new Document(Partition.KEY_CHANGE_ID, 1).append(Partition.KEY_AUTHOR, 1).append(Partition.KEY_INDEX, 1),
+        new IndexOptions().unique(true));
+
+    List<Document> partitions = new ArrayList<>(ranges.size());
+    for (int i = 0; i < ranges.size(); i++) {
+      partitions.add(new Document(Partition.KEY_CHANGE_ID, changeEntry.getChangeId())
+          .append(Partition.KEY_AUTHOR, changeEntry.getAuthor())
+          .append(Partition.KEY_CHANGELOG_CLASS, changeEntry.getChangeLogClass())
+          .append(Partition.KEY_CHANGESET_METHOD, changeEntry.getChangeSetMethodName())
+          .append(Partition.KEY_INDEX, i)
+          .append(Partition.KEY_MIN, ranges.get(i).getMin())
+          .append(Partition.KEY_MAX, ranges.get(i).getMax())
+          .append(Partition.KEY_STATUS, Partition.STATUS_PENDING)
+          .append(Partition.KEY_LEASE_MILLIS, leaseMillis)
+          .append(Partition.KEY_ATTEMPTS, 0)
+          .append(Partition.KEY_MAX_ATTEMPTS, maxAttempts));
+    }
+    collection.insertMany(partitions);
+  }
+
+  /**
+   * Claims a pending range, or a range whose lease expired
+   *
+   * @param db          database
+   * @param changeEntry change whose range should be claimed, any change if null
+   * @param owner       id of the claiming worker
+   * @return claimed partition, if any
+   */
+  public Optional<Partition> claim(MongoDatabase db, ChangeEntry changeEntry, String owner) {
+    Bson claimable = Filters.or(
+        Filters.eq(Partition.KEY_STATUS, Partition.STATUS_PENDING),
+        Filters.and(
+            Filters.eq(Partition.KEY_STATUS, Partition.STATUS_CLAIMED),
+            Filters.expr(new Document("$lt", List.of("$" + Partition.KEY_LEASE_UNTIL, NOW)))));
+    Bson filter = changeEntry == null ? claimable : Filters.and(byChange(changeEntry), claimable);
+
+    Document claimed = getCollection(db).findOneAndUpdate(filter,
+        List.of(new Document("$set", new Document(Partition.KEY_STATUS, Partition.STATUS_CLAIMED)
+            .append(Partition.KEY_OWNER, owner)
+            .append(Partition.KEY_LEASE_UNTIL, leaseUntil()))),
+        new FindOneAndUpdateOptions().sort(Sorts.ascending(Partition.KEY_INDEX)).returnDocument(ReturnDocument.AFTER));
+
+    return Optional.ofNullable(claimed).map(Partition::fromDBObject);
+  }
+
+  /**
+   * @return true if the lease is still held by the owner
+   */
+  public boolean renewLease(MongoDatabase db, Partition partition, String owner) {
+    return getCollection(db).updateOne(byOwner(partition, owner),
+        List.of(new Document("$set", new Document(Partition.KEY_LEASE_UNTIL, leaseUntil())))).getModifiedCount() > 0;
+  }
+
+  public void complete(MongoDatabase db, Partition partition, String owner) {
+    getCollection(db).updateOne(byOwner(partition, owner), Updates.combine(
+        Updates.set(Partition.KEY_STATUS, Partition.STATUS_DONE),
+        Updates.unset(Partition.KEY_LEASE_UNTIL)));
+  }
+
+  /**
+   * Returns a range which could not be processed, to be claimed again or marked as failed after the last attempt
+   */
+  public void release(MongoDatabase db, Partition partition, String owner, String error) {
+    int attempts = partition.getAttempts() + 1;
+    String status = attempts >= partition.getMaxAttempts() ? Partition.STATUS_FAILED : Partition.STATUS_PENDING;
+    getCollection(db).updateOne(byOwner(partition, owner), Updates.combine(
+        Updates.set(Partition.KEY_STATUS, status),
+        Updates.set(Partition.KEY_ATTEMPTS, attempts),
+        Updates.set(Partition.KEY_ERROR, error),
+        Updates.unset(Partition.KEY_OWNER),
+        Updates.unset(Partition.KEY_LEASE_UNTIL)));
+  }
+
+  public long countIncomplete(MongoDatabase db, ChangeEntry changeEntry) {
+    return getCollection(db).countDocuments(Filters.and(byChange(changeEntry), Filters.ne(Partition.KEY_STATUS, Partition.STATUS_DONE)));
+  }
+
+  /**
+   * @return true if ranges of any change are pending or claimed
+   */
+  public boolean hasUnfinished(MongoDatabase db) {
+    return getCollection(db).countDocuments(Filters.in(Partition.KEY_STATUS, Partition.STATUS_PENDING, Partition.STATUS_CLAIMED),
+        new CountOptions().limit(1)) > 0;
+  }
+
+  public long countFailed(MongoDatabase db, ChangeEntry changeEntry) {
+    return getCollection(db).countDocuments(Filters.and(byChange(changeEntry), Filters.eq(Partition.KEY_STATUS, Partition.STATUS_FAILED)));
+  }
+
+  /**
+   * Makes ranges which failed in a previous execution claimable again
+   *
+   * @return number of reset ranges
+   */
+  public long resetFailed(MongoDatabase db, ChangeEntry changeEntry) {
+    return getCollection(db).updateMany(Filters.and(byChange(changeEntry), Filters.eq(Partition.KEY_STATUS, Partition.STATUS_FAILED)),
+        Updates.combine(
+            Updates.set(Partition.KEY_STATUS, Partition.STATUS_PENDING),
+            Updates.set(Partition.KEY_ATTEMPTS, 0))).getModifiedCount();
+  }
+
+  public void deletePartitions(MongoDatabase db, ChangeEntry changeEntry) {
+    getCollection(db).deleteMany(byChange(changeEntry));
+  }
+
+  public void setPartitionCollectionName(String partitionCollectionName) {
+    this.partitionCollectionName = partitionCollectionName;
+  }
+
+  private MongoCollection<Document> getCollection(MongoDatabase db) {
+    return db.getCollection(partitionCollectionName);
+  }
+
+  private static Bson byChange(ChangeEntry changeEntry) {
+    return Filters.and(Filters.eq(Partition.KEY_CHANGE_ID, changeEntry.getChangeId()), Filters.eq(Partition.KEY_AUTHOR, changeEntry.getAuthor()));
+  }
+
+  private static Bson byOwner(Partition partition, String owner) {
+    return Filters.and(Filters.eq(Partition.KEY_ID, partition.getId()), Filters.eq(Partition.KEY_OWNER, owner),
+        Filters.eq(Partition.KEY_STATUS, Partition.STATUS_CLAIMED));
+  }
+
+  private static Document leaseUntil() {
+    return new Document("$add", List.of(NOW, "$" + Partition.KEY_LEASE_MILLIS));
+  }
+}
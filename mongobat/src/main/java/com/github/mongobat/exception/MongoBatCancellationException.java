@@ -0,0 +1,12 @@
+package com.github.mongobat.exception;
+
+/**
+ * Thrown by a changeset which stopped its work because cancellation was requested
+ *
+ * @see com.github.mongobat.changeset.CancellationToken
+ */
+public class MongoBatCancellationException extends MongoBatException {
+  public MongoBatCancellationException(String message) {
+    super(message);
+  }
+}
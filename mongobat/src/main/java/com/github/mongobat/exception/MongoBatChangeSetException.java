@@ -8,4 +8,8 @@ public class MongoBatChangeSetException extends MongoBatException {
   public MongoBatChangeSetException(String message) {
     super(message);
   }
+
+  public MongoBatChangeSetException(String message, Throwable cause) {
+    super(message, cause);
+  }
 }
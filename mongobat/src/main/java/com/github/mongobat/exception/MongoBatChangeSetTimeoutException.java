@@ -0,0 +1,12 @@
+package com.github.mongobat.exception;
+
+/**
+ * Thrown when a changeset exceeds its maximal duration and is stopped by the watchdog
+ *
+ * @see com.github.mongobat.changeset.ChangeSet#maxDuration()
+ */
+public class MongoBatChangeSetTimeoutException extends MongoBatChangeSetException {
+  public MongoBatChangeSetTimeoutException(String message) {
+    super(message);
+  }
+}
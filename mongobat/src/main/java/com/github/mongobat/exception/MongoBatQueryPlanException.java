@@ -0,0 +1,21 @@
+package com.github.mongobat.exception;
+
+import com.github.mongobat.guard.QueryPlanFinding;
+
+/**
+ * Thrown from a guarded collection when an operation of a changeset would scan a large collection.
+ * Unchecked, as it's thrown through the driver's interfaces.
+ */
+public class MongoBatQueryPlanException extends RuntimeException {
+
+  private final transient QueryPlanFinding finding;
+
+  public MongoBatQueryPlanException(QueryPlanFinding finding) {
+    super("Blocked " + finding);
+    this.finding = finding;
+  }
+
+  public QueryPlanFinding getFinding() {
+    return finding;
+  }
+}
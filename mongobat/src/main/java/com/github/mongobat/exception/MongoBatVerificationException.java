@@ -0,0 +1,22 @@
+package com.github.mongobat.exception;
+
+import com.github.mongobat.verify.VerificationReport;
+
+/**
+ * Thrown when a target collection does not match its source after a changeset
+ *
+ * @see com.github.mongobat.changeset.Verify
+ */
+public class MongoBatVerificationException extends MongoBatException {
+
+  private final transient VerificationReport report;
+
+  public MongoBatVerificationException(VerificationReport report) {
+    super("Verification failed: " + report);
+    this.report = report;
+  }
+
+  public VerificationReport getReport() {
+    return report;
+  }
+}
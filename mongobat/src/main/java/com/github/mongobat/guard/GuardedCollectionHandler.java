@@ -0,0 +1,92 @@
+package com.github.mongobat.guard;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.conversions.Bson;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Explains filtered operations of a collection before executing them
+ */
+class GuardedCollectionHandler implements InvocationHandler {
+
+  private static final Set<String> FILTERED_OPERATIONS = Set.of("find", "countDocuments", "distinct",
+      "updateOne", "updateMany", "replaceOne", "deleteOne", "deleteMany",
+      "findOneAndUpdate", "findOneAndReplace", "findOneAndDelete");
+
+  private final QueryPlanInspector inspector;
+  private final MongoCollection<?> collection;
+
+  GuardedCollectionHandler(QueryPlanInspector inspector, MongoCollection<?> collection) {
+    this.inspector = inspector;
+    this.collection = collection;
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    String name = method.getName();
+    if (method.getDeclaringClass() == Object.class && name.equals("equals")) {
+      return proxy == args[0];
+    }
+    if (FILTERED_OPERATIONS.contains(name)) {
+      Bson filter = firstBson(args);
+      if (filter != null) {
+        inspector.inspect(collection, name, filter);
+      }
+    } else if (name.equals("bulkWrite")) {
+      for (Object arg : args) {
+        if (arg instanceof List) {
+          for (Object request : (List<?>) arg) {
+            inspectRequest((WriteModel<?>) request);
+          }
+        }
+      }
+    }
+
+    Object result;
+    try {
+      result = method.invoke(collection, args);
+    } catch (InvocationTargetException e) {
+      throw e.getTargetException();
+    }
+    return name.startsWith("with") ? inspector.wrap((MongoCollection<?>) result) : result;
+  }
+
+  private void inspectRequest(WriteModel<?> request) {
+    if (request instanceof UpdateOneModel) {
+      inspector.inspect(collection, "updateOne", ((UpdateOneModel<?>) request).getFilter());
+    } else if (request instanceof UpdateManyModel) {
+      inspector.inspect(collection, "updateMany", ((UpdateManyModel<?>) request).getFilter());
+    } else if (request instanceof ReplaceOneModel) {
+      inspector.inspect(collection, "replaceOne", ((ReplaceOneModel<?>) request).getFilter());
+    } else if (request instanceof DeleteOneModel) {
+      inspector.inspect(collection, "deleteOne", ((DeleteOneModel<?>) request).getFilter());
+    } else if (request instanceof DeleteManyModel) {
+      inspector.inspect(collection, "deleteMany", ((DeleteManyModel<?>) request).getFilter());
+    }
+  }
+
+  /**
+   * @return filter of an operation, which is its first Bson argument after an optional client session
+   */
+  private static Bson firstBson(Object[] args) {
+    if (args != null) {
+      for (Object arg : args) {
+        if (arg instanceof Bson) {
+          return (Bson) arg;
+        }
+      }
+    }
+    return null;
+  }
+}
@@ -0,0 +1,42 @@
+package com.github.mongobat.guard;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Wraps collections of a database with {@link GuardedCollectionHandler}
+ */
+class GuardedDatabaseHandler implements InvocationHandler {
+
+  private final QueryPlanInspector inspector;
+  private final MongoDatabase database;
+
+  GuardedDatabaseHandler(QueryPlanInspector inspector, MongoDatabase database) {
+    this.inspector = inspector;
+    this.database = database;
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (method.getDeclaringClass() == Object.class && method.getName().equals("equals")) {
+      return proxy == args[0];
+    }
+    Object result;
+    try {
+      result = method.invoke(database, args);
+    } catch (InvocationTargetException e) {
+      throw e.getTargetException();
+    }
+    if (method.getName().equals("getCollection")) {
+      return inspector.wrap((MongoCollection<?>) result);
+    }
+    if (method.getName().startsWith("with")) {
+      return inspector.wrap((MongoDatabase) result);
+    }
+    return result;
+  }
+}
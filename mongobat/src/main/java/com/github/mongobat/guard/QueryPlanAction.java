@@ -0,0 +1,15 @@
+package com.github.mongobat.guard;
+
+/**
+ * What happens to an operation whose query plan scans a large collection
+ */
+public enum QueryPlanAction {
+  /**
+   * operation is executed, the finding is logged and reported
+   */
+  WARN,
+  /**
+   * operation fails with {@link com.github.mongobat.exception.MongoBatQueryPlanException}
+   */
+  BLOCK
+}
@@ -0,0 +1,60 @@
+package com.github.mongobat.guard;
+
+/**
+ * Collection scan issued by a changeset
+ */
+public class QueryPlanFinding {
+
+  private final String changeId;
+  private final String namespace;
+  private final String operation;
+  private final String filterShape;
+  private final long collectionSize;
+  private final boolean blocked;
+
+  public QueryPlanFinding(String changeId, String namespace, String operation, String filterShape,
+      long collectionSize, boolean blocked) {
+    this.changeId = changeId;
+    this.namespace = namespace;
+    this.operation = operation;
+    this.filterShape = filterShape;
+    this.collectionSize = collectionSize;
+    this.blocked = blocked;
+  }
+
+  public String getChangeId() {
+    return changeId;
+  }
+
+  public String getNamespace() {
+    return namespace;
+  }
+
+  public String getOperation() {
+    return operation;
+  }
+
+  /**
+   * @return filter with values replaced by "?"
+   */
+  public String getFilterShape() {
+    return filterShape;
+  }
+
+  /**
+   * @return estimated number of documents of the collection
+   */
+  public long getCollectionSize() {
+    return collectionSize;
+  }
+
+  public boolean isBlocked() {
+    return blocked;
+  }
+
+  @Override
+  public String toString() {
+    return operation + " on " + namespace + " (" + collectionSize + " documents) scans the collection with filter "
+        + filterShape + (blocked ? ", blocked" : "");
+  }
+}
@@ -0,0 +1,75 @@
+package com.github.mongobat.guard;
+
+/**
+ * Catches collection scans issued by changesets through the injected <tt>MongoDatabase</tt>.
+ * <p>
+ * Filters of queries, counts, updates, deletes, find-and-modify operations and bulk writes are explained with
+ * <tt>queryPlanner</tt> verbosity before the operation is executed. A <tt>COLLSCAN</tt> winning plan on a collection
+ * of at least {@link #setMinCollectionSize(long)} documents is reported, and blocked with {@link QueryPlanAction#BLOCK}.
+ * Each filter shape (fields and operators, values ignored) is explained once per changeset; operations without
+ * a filter are deliberate full scans and are not explained.
+ *
+ * <pre>
+ * runner.setQueryPlanGuard(new QueryPlanGuard()
+ *     .setAction(QueryPlanAction.BLOCK)
+ *     .setMinCollectionSize(1_000_000));
+ * </pre>
+ */
+public class QueryPlanGuard {
+
+  private static final long DEFAULT_MIN_COLLECTION_SIZE = 100_000L;
+
+  private QueryPlanAction action = QueryPlanAction.WARN;
+  private long minCollectionSize = DEFAULT_MIN_COLLECTION_SIZE;
+  private double sampleRate = 1.0;
+
+  /**
+   * @param changeId id of the executed changeset
+   * @return inspector of a single changeset execution
+   */
+  public QueryPlanInspector newInspector(String changeId) {
+    return new QueryPlanInspector(changeId, action, minCollectionSize, sampleRate);
+  }
+
+  public QueryPlanAction getAction() {
+    return action;
+  }
+
+  /**
+   * @param action action for collection scans, WARN by default
+   * @return this guard
+   */
+  public QueryPlanGuard setAction(QueryPlanAction action) {
+    this.action = action;
+    return this;
+  }
+
+  public long getMinCollectionSize() {
+    return minCollectionSize;
+  }
+
+  /**
+   * @param minCollectionSize estimated number of documents from which a collection scan is reported, 100000 by default
+   * @return this guard
+   */
+  public QueryPlanGuard setMinCollectionSize(long minCollectionSize) {
+    this.minCollectionSize = minCollectionSize;
+    return this;
+  }
+
+  public double getSampleRate() {
+    return sampleRate;
+  }
+
+  /**
+   * @param sampleRate fraction of not yet explained operations which are explained, 1 by default
+   * @return this guard
+   */
+  public QueryPlanGuard setSampleRate(double sampleRate) {
+    if (sampleRate <= 0 || sampleRate > 1) {
+      throw new IllegalArgumentException("Sample rate must be in (0, 1]");
+    }
+    this.sampleRate = sampleRate;
+    return this;
+  }
+}
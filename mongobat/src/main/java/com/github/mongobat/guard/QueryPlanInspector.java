@@ -0,0 +1,152 @@
+package com.github.mongobat.guard;
+
+import com.github.mongobat.exception.MongoBatQueryPlanException;
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.MongoException;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Explains operations of a single changeset execution and collects its findings, see {@link QueryPlanGuard}
+ */
+public class QueryPlanInspector {
+  private static final Logger log = LoggerFactory.getLogger(QueryPlanInspector.class);
+
+  private static final String COLLSCAN = "COLLSCAN";
+  private static final BsonString VALUE = new BsonString("?");
+
+  private final String changeId;
+  private final QueryPlanAction action;
+  private final long minCollectionSize;
+  private final double sampleRate;
+
+  private final Map<String, Optional<QueryPlanFinding>> inspected = new HashMap<>();
+  private final Map<MongoNamespace, Long> collectionSizes = new HashMap<>();
+  private final List<QueryPlanFinding> findings = new ArrayList<>();
+
+  QueryPlanInspector(String changeId, QueryPlanAction action, long minCollectionSize, double sampleRate) {
+    this.changeId = changeId;
+    this.action = action;
+    this.minCollectionSize = minCollectionSize;
+    this.sampleRate = sampleRate;
+  }
+
+  /**
+   * @param database database to wrap
+   * @return database whose collections explain operations before executing them
+   */
+  public MongoDatabase wrap(MongoDatabase database) {
+    return (MongoDatabase) Proxy.newProxyInstance(MongoDatabase.class.getClassLoader(),
+        new Class<?>[]{MongoDatabase.class}, new GuardedDatabaseHandler(this, database));
+  }
+
+  @SuppressWarnings("unchecked")
+  <T> MongoCollection<T> wrap(MongoCollection<T> collection) {
+    return (MongoCollection<T>) Proxy.newProxyInstance(MongoCollection.class.getClassLoader(),
+        new Class<?>[]{MongoCollection.class}, new GuardedCollectionHandler(this, collection));
+  }
+
+  /**
+   * @param collection collection the operation is executed on
+   * @param operation  operation name
+   * @param filter     filter of the operation
+   * @throws MongoBatQueryPlanException if the operation scans a large collection and scans are blocked
+   */
+  void inspect(MongoCollection<?> collection, String operation, Bson filter) {
+    BsonDocument filterDocument = filter.toBsonDocument(collection.getDocumentClass(), collection.getCodecRegistry());
+    if (filterDocument.isEmpty()) {
+      return;
+    }
+    String filterShape = shape(filterDocument).asDocument().toJson();
+    String key = collection.getNamespace() + " " + operation + " " + filterShape;
+
+    Optional<QueryPlanFinding> finding;
+    synchronized (this) {
+      finding = inspected.get(key);
+      if (finding == null) {
+        if (ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+          return;
+        }
+        finding = explain(collection, operation, filterDocument, filterShape);
+        inspected.put(key, finding);
+        finding.ifPresent(findings::add);
+      }
+    }
+    if (finding.isPresent() && finding.get().isBlocked()) {
+      throw new MongoBatQueryPlanException(finding.get());
+    }
+  }
+
+  private Optional<QueryPlanFinding> explain(MongoCollection<?> collection, String operation, BsonDocument filter,
+      String filterShape) {
+    try {
+      BsonDocument plan = collection.find(filter).explain(BsonDocument.class, ExplainVerbosity.QUERY_PLANNER);
+      BsonValue winningPlan = plan.getDocument("queryPlanner", new BsonDocument()).get("winningPlan");
+      if (winningPlan == null || !containsStage(winningPlan, COLLSCAN)) {
+        return Optional.empty();
+      }
+      long collectionSize = collectionSizes.computeIfAbsent(collection.getNamespace(), namespace -> collection.estimatedDocumentCount());
+      if (collectionSize < minCollectionSize) {
+        return Optional.empty();
+      }
+      QueryPlanFinding finding = new QueryPlanFinding(changeId, collection.getNamespace().getFullName(), operation,
+          filterShape, collectionSize, action == QueryPlanAction.BLOCK);
+      log.warn("{}: {}", changeId, finding);
+      return Optional.of(finding);
+    } catch (MongoException e) {
+      log.debug("{}: {} on {} could not be explained", changeId, operation, collection.getNamespace(), e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * @return collection scans found so far
+   */
+  public synchronized List<QueryPlanFinding> getFindings() {
+    return new ArrayList<>(findings);
+  }
+
+  private static boolean containsStage(BsonValue plan, String stage) {
+    if (plan.isArray()) {
+      return plan.asArray().stream().anyMatch(value -> containsStage(value, stage));
+    }
+    if (!plan.isDocument()) {
+      return false;
+    }
+    BsonValue value = plan.asDocument().get("stage");
+    if (value != null && value.isString() && value.asString().getValue().equals(stage)) {
+      return true;
+    }
+    return plan.asDocument().values().stream().anyMatch(child -> containsStage(child, stage));
+  }
+
+  private static BsonValue shape(BsonValue value) {
+    if (value.isDocument()) {
+      BsonDocument shape = new BsonDocument();
+      value.asDocument().forEach((field, child) -> shape.put(field, shape(child)));
+      return shape;
+    }
+    if (value.isArray() && value.asArray().stream().anyMatch(BsonValue::isDocument)) {
+      BsonArray shape = new BsonArray();
+      value.asArray().forEach(child -> shape.add(shape(child)));
+      return shape;
+    }
+    return VALUE;
+  }
+}
@@ -0,0 +1,220 @@
+package com.github.mongobat.lazy;
+
+import com.mongodb.client.model.Filters;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Document version upgrade of a collection, returned by a ChangeSet method and executed by MongoBat.
+ * <p>
+ * Each document carries its version in {@value #VERSION_FIELD} field, a document without it has version 0.
+ * Documents are upgraded step by step on read, through the codec registry given by
+ * {@link LazyMigrations#codecRegistry(String, org.bson.codecs.configuration.CodecRegistry)}, and written back
+ * asynchronously. A background sweeper upgrades the rest. The changeset is recorded as in progress until no
+ * outdated document remains.
+ *
+ * <pre>
+ * &#64;ChangeSet(order = "001", id = "orders-v2", author = "author", description = "")
+ * public LazyMigration ordersV2() {
+ *   return LazyMigration.of("orders", 2)
+ *       .step(0, order -&gt; order.append("currency", "EUR"))
+ *       .step(1, order -&gt; order.append("total", order.remove("amount")));
+ * }
+ * </pre>
+ * Documents written by the application should be stamped with the target version, see {@link #stamp(Document)}.
+ */
+public class LazyMigration {
+
+  public static final String VERSION_FIELD = "_v";
+
+  private static final int DEFAULT_SWEEP_BATCH_SIZE = 500;
+
+  private final String collection;
+  private final int targetVersion;
+  private final Map<Integer, UnaryOperator<Document>> steps = new TreeMap<>();
+  private boolean writeBack = true;
+  private boolean sweep = true;
+  private int sweepBatchSize = DEFAULT_SWEEP_BATCH_SIZE;
+  private Duration sweepPause = Duration.ZERO;
+
+  private LazyMigration(String collection, int targetVersion) {
+    this.collection = collection;
+    this.targetVersion = targetVersion;
+  }
+
+  /**
+   * @param collection    migrated collection
+   * @param targetVersion version of upgraded documents
+   * @return migration without steps
+   */
+  public static LazyMigration of(String collection, int targetVersion) {
+    if (targetVersion < 1) {
+      throw new IllegalArgumentException("Target version must be positive");
+    }
+    return new LazyMigration(collection, targetVersion);
+  }
+
+  /**
+   * @param fromVersion version of documents the step applies to
+   * @param upgrade     upgrades a document to the next version, may modify the given document
+   * @return this migration
+   */
+  public LazyMigration step(int fromVersion, UnaryOperator<Document> upgrade) {
+    if (fromVersion < 0 || fromVersion >= targetVersion) {
+      throw new IllegalArgumentException("Step version must be in [0, " + targetVersion + ")");
+    }
+    steps.put(fromVersion, upgrade);
+    return this;
+  }
+
+  /**
+   * @param writeBack whether documents upgraded on read are written back, default true
+   * @return this migration
+   */
+  public LazyMigration writeBack(boolean writeBack) {
+    this.writeBack = writeBack;
+    return this;
+  }
+
+  /**
+   * @param sweep whether the background sweeper upgrades documents which are not read, default true
+   * @return this migration
+   */
+  public LazyMigration sweep(boolean sweep) {
+    this.sweep = sweep;
+    return this;
+  }
+
+  /**
+   * @param sweepBatchSize number of documents upgraded by the sweeper between pauses, default 500
+   * @return this migration
+   */
+  public LazyMigration sweepBatchSize(int sweepBatchSize) {
+    if (sweepBatchSize < 1) {
+      throw new IllegalArgumentException("Sweep batch size must be positive");
+    }
+    this.sweepBatchSize = sweepBatchSize;
+    return this;
+  }
+
+  /**
+   * @param sweepPause pause of the sweeper between batches, default none
+   * @return this migration
+   */
+  public LazyMigration sweepPause(Duration sweepPause) {
+    this.sweepPause = sweepPause;
+    return this;
+  }
+
+  public String getCollection() {
+    return collection;
+  }
+
+  public int getTargetVersion() {
+    return targetVersion;
+  }
+
+  public boolean isWriteBack() {
+    return writeBack;
+  }
+
+  public boolean isSweep() {
+    return sweep;
+  }
+
+  public int getSweepBatchSize() {
+    return sweepBatchSize;
+  }
+
+  public Duration getSweepPause() {
+    return sweepPause;
+  }
+
+  /**
+   * @param document document
+   * @return version of the document, 0 if it has none
+   */
+  public static int version(Document document) {
+    Object version = document.get(VERSION_FIELD);
+    return version instanceof Number ? ((Number) version).intValue() : 0;
+  }
+
+  /**
+   * @param document document
+   * @return version of the document, 0 if it has none
+   */
+  public static int version(BsonDocument document) {
+    BsonValue version = document.get(VERSION_FIELD);
+    return version != null && version.isNumber() ? version.asNumber().intValue() : 0;
+  }
+
+  /**
+   * @param document document in its current form
+   * @return document with the target version
+   */
+  public Document stamp(Document document) {
+    return document.append(VERSION_FIELD, targetVersion);
+  }
+
+  /**
+   * @param document document of any older version
+   * @return document upgraded to the target version
+   * @throws IllegalStateException if a step is missing
+   */
+  public Document upgrade(Document document) {
+    Document result = document;
+    for (int version = version(document); version < targetVersion; version++) {
+      UnaryOperator<Document> step = steps.get(version);
+      if (step == null) {
+        throw new IllegalStateException("No upgrade of " + collection + " documents from version " + version);
+      }
+      Object id = result.get("_id");
+      result = step.apply(result);
+      result.put("_id", id);
+      result.put(VERSION_FIELD, version + 1);
+    }
+    return result;
+  }
+
+  /**
+   * @return filter of documents older than the target version
+   */
+  public Bson outdatedFilter() {
+    return Filters.or(Filters.lt(VERSION_FIELD, targetVersion), Filters.exists(VERSION_FIELD, false));
+  }
+
+  /**
+   * Guards the replacement of a document by its upgrade, so a concurrent write of the application is not overwritten
+   * with a stale upgraded copy. Documents with <tt>_v: 0</tt> and without <tt>_v</tt> are both matched.
+   *
+   * @param original document as read, before its upgrade
+   * @return filter matching the document only if none of its fields was changed since it was read
+   */
+  static Bson unchangedFilter(Document original) {
+    // a snapshot, steps may modify the document while upgrading it
+    BsonDocument snapshot = original.toBsonDocument();
+    return Filters.and(Filters.eq("_id", snapshot.get("_id")),
+        Filters.expr(new Document("$eq", List.of("$$ROOT", new Document("$literal", snapshot)))));
+  }
+
+  @Override
+  public String toString() {
+    return "LazyMigration{" +
+        "collection='" + collection + '\'' +
+        ", targetVersion=" + targetVersion +
+        ", steps=" + steps.keySet() +
+        ", writeBack=" + writeBack +
+        ", sweep=" + sweep +
+        ", sweepBatchSize=" + sweepBatchSize +
+        ", sweepPause=" + sweepPause +
+        '}';
+  }
+}
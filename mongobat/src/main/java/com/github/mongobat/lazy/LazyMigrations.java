@@ -0,0 +1,271 @@
+package com.github.mongobat.lazy;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lazy migrations started by MongoBat, by collection name.
+ * <p>
+ * The application reads migrated collections through {@link #wrap(MongoCollection)} or
+ * {@link #codecRegistry(String, CodecRegistry, Class[])}, so outdated documents are upgraded on read.
+ * Only whole documents of the collection should be decoded this way: projections are upgraded as they are,
+ * and aggregation results would be mistaken for outdated documents.
+ * Upgraded documents are written back asynchronously, re-reading the full document by id, only if it
+ * wasn't changed meanwhile. With a {@link SweepLease}, only one process at a time sweeps a collection.
+ */
+public class LazyMigrations {
+  private static final Logger log = LoggerFactory.getLogger(LazyMigrations.class);
+
+  private static final int WRITE_BACK_QUEUE_SIZE = 10000;
+  private static final Duration SWEEP_LEASE_DURATION = Duration.ofMinutes(1);
+
+  private final Map<String, Registration> registrations = new ConcurrentHashMap<>();
+  private final AtomicInteger threadCount = new AtomicInteger();
+  private final ExecutorService sweepers = Executors.newCachedThreadPool(daemon("mongobat-sweeper-"));
+  // a full queue drops write-backs, the sweeper upgrades those documents anyway
+  private final ExecutorService writeBacks = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(WRITE_BACK_QUEUE_SIZE), daemon("mongobat-write-back-"), new ThreadPoolExecutor.DiscardPolicy());
+  private volatile SweepLease sweepLease;
+  private volatile boolean closed;
+
+  /**
+   * Registers the migration for on-read upgrades and starts its sweeper
+   *
+   * @param migration  migration returned by the changeset
+   * @param database   database of the migrated collection
+   * @param onComplete called once no outdated document remains
+   * @return number of outdated documents
+   */
+  public long start(LazyMigration migration, MongoDatabase database, Runnable onComplete) {
+    MongoCollection<Document> collection = database.getCollection(migration.getCollection());
+    Registration registration = new Registration(migration, collection, onComplete);
+    Registration previous = registrations.put(migration.getCollection(), registration);
+    if (previous != null) {
+      previous.stopped = true;
+    }
+
+    long remaining = collection.countDocuments(migration.outdatedFilter());
+    registration.remaining.set(remaining);
+    log.info("Lazy migration of {} to version {}: {} documents outdated",
+        migration.getCollection(), migration.getTargetVersion(), remaining);
+    if (remaining == 0) {
+      registration.complete();
+    } else if (migration.isSweep()) {
+      sweepers.execute(() -> sweep(registration));
+    }
+    return remaining;
+  }
+
+  /**
+   * @param sweepLease coordinates sweepers of several processes, null to sweep whenever a migration is started
+   */
+  public void setSweepLease(SweepLease sweepLease) {
+    this.sweepLease = sweepLease;
+  }
+
+  /**
+   * @param collection collection name
+   * @param base       codec registry of the application
+   * @param documentClasses classes whose decoding upgrades documents, {@link Document} if none given
+   * @return codec registry upgrading outdated documents of the collection on read
+   */
+  public CodecRegistry codecRegistry(String collection, CodecRegistry base, Class<?>... documentClasses) {
+    Set<Class<?>> upgraded = Set.copyOf(documentClasses.length == 0 ? List.of(Document.class) : Arrays.asList(documentClasses));
+    CodecProvider provider = new CodecProvider() {
+      @Override
+      public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+        return upgraded.contains(clazz) ? new UpgradingCodec<>(base.get(clazz), base, LazyMigrations.this, collection) : null;
+      }
+    };
+    return CodecRegistries.fromRegistries(CodecRegistries.fromProviders(provider), base);
+  }
+
+  /**
+   * @param collection collection of the application
+   * @return the same collection upgrading outdated documents on read
+   */
+  public <T> MongoCollection<T> wrap(MongoCollection<T> collection) {
+    String name = collection.getNamespace().getCollectionName();
+    return collection.withCodecRegistry(codecRegistry(name, collection.getCodecRegistry(), collection.getDocumentClass()));
+  }
+
+  /**
+   * @param collection collection name
+   * @return number of outdated documents as last known, -1 if the collection isn't migrated lazily
+   */
+  public long getRemaining(String collection) {
+    Registration registration = registrations.get(collection);
+    return registration == null ? -1 : registration.remaining.get();
+  }
+
+  /**
+   * Stops sweepers and pending write-backs
+   */
+  public void close() {
+    closed = true;
+    sweepers.shutdownNow();
+    writeBacks.shutdownNow();
+  }
+
+  LazyMigration getMigration(String collection) {
+    Registration registration = registrations.get(collection);
+    return registration == null ? null : registration.migration;
+  }
+
+  void upgradedOnRead(String collection, Object id) {
+    Registration registration = registrations.get(collection);
+    if (registration != null && registration.migration.isWriteBack() && registration.pending.add(id)) {
+      writeBacks.execute(() -> {
+        try {
+          Document document = registration.collection.find(Filters.eq("_id", id)).first();
+          if (document != null && upgrade(registration, document)) {
+            registration.remaining.updateAndGet(remaining -> Math.max(0, remaining - 1));
+          }
+        } catch (RuntimeException e) {
+          log.warn("Mongobee failed to write back upgraded document {} of {}", id, collection, e);
+        } finally {
+          registration.pending.remove(id);
+        }
+      });
+    }
+  }
+
+  private void sweep(Registration registration) {
+    LazyMigration migration = registration.migration;
+    Bson outdated = migration.outdatedFilter();
+    SweepLease lease = sweepLease;
+    String owner = UUID.randomUUID().toString();
+    // renewed before each batch, so it survives a pause between batches
+    Duration leaseDuration = SWEEP_LEASE_DURATION.plus(migration.getSweepPause().multipliedBy(2));
+    Object lastId = null;
+    try {
+      while (!closed && !registration.stopped) {
+        if (lease != null && !lease.acquire(migration.getCollection(), owner, leaseDuration)) {
+          log.info("Lazy migration of {} is swept by another process", migration.getCollection());
+          return;
+        }
+        Bson filter = lastId == null ? outdated : Filters.and(outdated, Filters.gt("_id", lastId));
+        List<Document> batch = registration.collection.find(filter)
+            .sort(Sorts.ascending("_id"))
+            .limit(migration.getSweepBatchSize())
+            .into(new ArrayList<>());
+        if (batch.isEmpty()) {
+          break;
+        }
+        for (Document document : batch) {
+          lastId = document.get("_id");
+          try {
+            if (upgrade(registration, document)) {
+              registration.remaining.updateAndGet(remaining -> Math.max(0, remaining - 1));
+            }
+          } catch (RuntimeException e) {
+            log.warn("Mongobee failed to upgrade document {} of {}", lastId, migration.getCollection(), e);
+          }
+        }
+        if (!migration.getSweepPause().isZero()) {
+          Thread.sleep(migration.getSweepPause().toMillis());
+        }
+      }
+      if (closed || registration.stopped) {
+        releaseLease(lease, migration, owner);
+        return;
+      }
+
+      long remaining = registration.collection.countDocuments(outdated);
+      registration.remaining.set(remaining);
+      if (remaining == 0) {
+        log.info("Lazy migration of {} to version {} completed", migration.getCollection(), migration.getTargetVersion());
+        registration.complete();
+      } else {
+        log.warn("Lazy migration of {}: {} documents remain outdated after sweeping, sweeping resumes with the next run",
+            migration.getCollection(), remaining);
+      }
+      releaseLease(lease, migration, owner);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (RuntimeException e) {
+      log.error("Mongobee sweeper of {} failed", migration.getCollection(), e);
+    }
+  }
+
+  private static void releaseLease(SweepLease lease, LazyMigration migration, String owner) {
+    if (lease == null) {
+      return;
+    }
+    try {
+      lease.release(migration.getCollection(), owner);
+    } catch (RuntimeException e) {
+      log.warn("Mongobee failed to release sweep lease of {}, it expires on its own", migration.getCollection(), e);
+    }
+  }
+
+  private static boolean upgrade(Registration registration, Document document) {
+    LazyMigration migration = registration.migration;
+    int version = LazyMigration.version(document);
+    if (version >= migration.getTargetVersion()) {
+      return false;
+    }
+    Bson unchanged = LazyMigration.unchangedFilter(document);
+    UpdateResult result = registration.collection.replaceOne(unchanged, migration.upgrade(document));
+    return result.getModifiedCount() > 0;
+  }
+
+  private ThreadFactory daemon(String prefix) {
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private static class Registration {
+    private final LazyMigration migration;
+    private final MongoCollection<Document> collection;
+    private final Runnable onComplete;
+    private final AtomicLong remaining = new AtomicLong();
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private final Set<Object> pending = ConcurrentHashMap.newKeySet();
+    private volatile boolean stopped;
+
+    Registration(LazyMigration migration, MongoCollection<Document> collection, Runnable onComplete) {
+      this.migration = migration;
+      this.collection = collection;
+      this.onComplete = onComplete;
+    }
+
+    void complete() {
+      if (completed.compareAndSet(false, true)) {
+        onComplete.run();
+      }
+    }
+  }
+}
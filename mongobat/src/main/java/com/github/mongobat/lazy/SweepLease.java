@@ -0,0 +1,26 @@
+package com.github.mongobat.lazy;
+
+import java.time.Duration;
+
+/**
+ * Keeps one sweeper per collection among all processes. A sweeper outlives the run which started it, so the
+ * next run (possibly of another process) would otherwise start a second one.
+ */
+public interface SweepLease {
+
+  /**
+   * Acquires the lease of a collection, or renews it if already held by the owner
+   *
+   * @param collection swept collection
+   * @param owner      id of the sweeper
+   * @param duration   time the lease is held without renewal
+   * @return true if the owner holds the lease
+   */
+  boolean acquire(String collection, String owner, Duration duration);
+
+  /**
+   * @param collection swept collection
+   * @param owner      id of the sweeper
+   */
+  void release(String collection, String owner);
+}
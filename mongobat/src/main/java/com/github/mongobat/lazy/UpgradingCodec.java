@@ -0,0 +1,63 @@
+package com.github.mongobat.lazy;
+
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonReader;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.Document;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * Decodes documents of a lazily migrated collection, upgrading outdated ones on the fly.
+ * Encoding is delegated as is.
+ */
+class UpgradingCodec<T> implements Codec<T> {
+
+  private static final BsonDocumentCodec BSON_DOCUMENT_CODEC = new BsonDocumentCodec();
+
+  private final Codec<T> delegate;
+  private final CodecRegistry registry;
+  private final LazyMigrations migrations;
+  private final String collection;
+
+  UpgradingCodec(Codec<T> delegate, CodecRegistry registry, LazyMigrations migrations, String collection) {
+    this.delegate = delegate;
+    this.registry = registry;
+    this.migrations = migrations;
+    this.collection = collection;
+  }
+
+  @Override
+  public T decode(BsonReader reader, DecoderContext decoderContext) {
+    LazyMigration migration = migrations.getMigration(collection);
+    if (migration == null) {
+      return delegate.decode(reader, decoderContext);
+    }
+
+    BsonDocument document = BSON_DOCUMENT_CODEC.decode(reader, decoderContext);
+    if (LazyMigration.version(document) < migration.getTargetVersion()) {
+      Document current = registry.get(Document.class).decode(new BsonDocumentReader(document), decoderContext);
+      document = migration.upgrade(current).toBsonDocument(BsonDocument.class, registry);
+      BsonValue id = document.get("_id");
+      if (id != null) {
+        migrations.upgradedOnRead(collection, id);
+      }
+    }
+    return delegate.decode(new BsonDocumentReader(document), decoderContext);
+  }
+
+  @Override
+  public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+    delegate.encode(writer, value, encoderContext);
+  }
+
+  @Override
+  public Class<T> getEncoderClass() {
+    return delegate.getEncoderClass();
+  }
+}
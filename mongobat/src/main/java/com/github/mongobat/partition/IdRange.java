@@ -0,0 +1,223 @@
+package com.github.mongobat.partition;
+
+import com.mongodb.client.model.Filters;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Binary;
+import org.bson.types.Decimal128;
+import org.bson.types.MaxKey;
+import org.bson.types.MinKey;
+import org.bson.types.ObjectId;
+import org.bson.types.Symbol;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Range of <tt>_id</tt> values, lower bound inclusive and upper bound exclusive, in the BSON comparison order.
+ * A null bound means the range is open on that side.
+ * Ranges read from chunks of a sharded collection are over the shard key field and know the shard owning them.
+ */
+public class IdRange {
+
+  public static final String ID_FIELD = "_id";
+
+  // $type aliases of each BSON type bracket, in the comparison order
+  private static final List<List<String>> TYPE_BRACKETS = List.of(
+      List.of("minKey"),
+      List.of("null", "undefined"),
+      List.of("double", "int", "long", "decimal"),
+      List.of("string", "symbol"),
+      List.of("object"),
+      List.of("array"),
+      List.of("binData"),
+      List.of("objectId"),
+      List.of("bool"),
+      List.of("date"),
+      List.of("timestamp"),
+      List.of("regex"),
+      List.of("maxKey"));
+  private static final int MIN_KEY = 0;
+  private static final int MAX_KEY = TYPE_BRACKETS.size() - 1;
+
+  private final String field;
+  private final Object min;
+  private final Object max;
+  private final String shard;
+
+  public IdRange(Object min, Object max) {
+    this(ID_FIELD, min, max, null);
+  }
+
+  /**
+   * @param field field the range applies to
+   * @param min   inclusive lower bound, null if open
+   * @param max   exclusive upper bound, null if open
+   * @param shard shard owning the range, null if unknown
+   */
+  public IdRange(String field, Object min, Object max, String shard) {
+    this.field = field;
+    this.min = min;
+    this.max = max;
+    this.shard = shard;
+  }
+
+  /**
+   * @return range covering the whole collection
+   */
+  public static IdRange all() {
+    return new IdRange(null, null);
+  }
+
+  /**
+   * @param boundaries sorted split points
+   * @return consecutive ranges covering the whole collection
+   */
+  public static List<IdRange> fromBoundaries(List<?> boundaries) {
+    List<IdRange> ranges = new ArrayList<>(boundaries.size() + 1);
+    Object min = null;
+    for (Object boundary : boundaries) {
+      ranges.add(new IdRange(min, boundary));
+      min = boundary;
+    }
+    ranges.add(new IdRange(min, null));
+    return ranges;
+  }
+
+  public Object getMin() {
+    return min;
+  }
+
+  public Object getMax() {
+    return max;
+  }
+
+  public String getField() {
+    return field;
+  }
+
+  /**
+   * @return shard owning the range, null if the collection is not sharded
+   */
+  public String getShard() {
+    return shard;
+  }
+
+  /**
+   * @return filter matching documents of this range
+   */
+  public Bson toFilter() {
+    return toFilter(field);
+  }
+
+  /**
+   * Query operators only compare values of the same BSON type bracket, so a bound of another type than the values
+   * would match nothing. Comparisons are used within the brackets of the bounds, brackets in between are matched
+   * by <tt>$type</tt>. Open bounds extend to MinKey and MaxKey.
+   *
+   * @param field field the range applies to
+   * @return filter matching documents of this range
+   */
+  public Bson toFilter(String field) {
+    int minBracket = min == null ? MIN_KEY : bracket(min);
+    int maxBracket = max == null ? MAX_KEY : bracket(max);
+    boolean openMin = minBracket == MIN_KEY;
+    boolean openMax = maxBracket == MAX_KEY;
+    if (openMin && openMax) {
+      return Filters.empty();
+    } else if (!openMin && !openMax && minBracket == maxBracket) {
+      return Filters.and(Filters.gte(field, min), Filters.lt(field, max));
+    }
+
+    List<Bson> clauses = new ArrayList<>();
+    if (!openMin) {
+      clauses.add(Filters.gte(field, min));
+    }
+    if (!openMax) {
+      clauses.add(Filters.lt(field, max));
+    }
+    List<String> types = new ArrayList<>();
+    for (int i = openMin ? MIN_KEY : minBracket + 1; i <= (openMax ? MAX_KEY : maxBracket - 1); i++) {
+      types.addAll(TYPE_BRACKETS.get(i));
+    }
+    if (!types.isEmpty()) {
+      clauses.add(new Document(field, new Document("$type", types)));
+    }
+    return clauses.size() == 1 ? clauses.get(0) : Filters.or(clauses);
+  }
+
+  private static int bracket(Object value) {
+    if (value instanceof BsonValue) {
+      switch (((BsonValue) value).getBsonType()) {
+        case MIN_KEY:
+          return MIN_KEY;
+        case MAX_KEY:
+          return MAX_KEY;
+        case NULL:
+        case UNDEFINED:
+          return 1;
+        case INT32:
+        case INT64:
+        case DOUBLE:
+        case DECIMAL128:
+          return 2;
+        case STRING:
+        case SYMBOL:
+          return 3;
+        case DOCUMENT:
+          return 4;
+        case ARRAY:
+          return 5;
+        case BINARY:
+          return 6;
+        case OBJECT_ID:
+          return 7;
+        case BOOLEAN:
+          return 8;
+        case DATE_TIME:
+          return 9;
+        case TIMESTAMP:
+          return 10;
+        case REGULAR_EXPRESSION:
+          return 11;
+        default:
+          throw new IllegalArgumentException("Unsupported range bound " + value);
+      }
+    } else if (value instanceof MinKey) {
+      return MIN_KEY;
+    } else if (value instanceof Number || value instanceof Decimal128) {
+      return 2;
+    } else if (value instanceof String || value instanceof Symbol) {
+      return 3;
+    } else if (value instanceof Map || value instanceof Bson) {
+      return 4;
+    } else if (value instanceof Collection) {
+      return 5;
+    } else if (value instanceof Binary || value instanceof byte[] || value instanceof UUID) {
+      return 6;
+    } else if (value instanceof ObjectId) {
+      return 7;
+    } else if (value instanceof Boolean) {
+      return 8;
+    } else if (value instanceof Date) {
+      return 9;
+    } else if (value instanceof Pattern) {
+      return 11;
+    } else if (value instanceof MaxKey) {
+      return MAX_KEY;
+    }
+    throw new IllegalArgumentException("Unsupported range bound " + value);
+  }
+
+  @Override
+  public String toString() {
+    String bounds = "[" + (min == null ? "MinKey" : min) + ", " + (max == null ? "MaxKey" : max) + ")";
+    return shard == null ? bounds : field + " " + bounds + " on " + shard;
+  }
+}
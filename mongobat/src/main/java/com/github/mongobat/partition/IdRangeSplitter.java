@@ -0,0 +1,69 @@
+package com.github.mongobat.partition;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a collection into <tt>_id</tt> ranges of a similar size.
+ * Split points are computed server-side by <tt>$bucketAuto</tt> over a <tt>$sample</tt> of ids,
+ * so the whole collection is not scanned.
+ */
+public class IdRangeSplitter {
+
+  private static final int DEFAULT_SAMPLES_PER_RANGE = 100;
+  private static final int DEFAULT_MAX_SAMPLE_SIZE = 100_000;
+
+  private final int samplesPerRange;
+  private final int maxSampleSize;
+
+  public IdRangeSplitter() {
+    this(DEFAULT_SAMPLES_PER_RANGE, DEFAULT_MAX_SAMPLE_SIZE);
+  }
+
+  public IdRangeSplitter(int samplesPerRange, int maxSampleSize) {
+    this.samplesPerRange = samplesPerRange;
+    this.maxSampleSize = maxSampleSize;
+  }
+
+  /**
+   * @param collection collection to split
+   * @param ranges     requested number of ranges
+   * @return consecutive ranges covering the whole collection, fewer than requested for small collections
+   */
+  public List<IdRange> split(MongoCollection<?> collection, int ranges) {
+    return IdRange.fromBoundaries(findBoundaries(collection, ranges));
+  }
+
+  /**
+   * @param collection collection to split
+   * @param ranges     requested number of ranges
+   * @return sorted split points, one fewer than the number of ranges
+   */
+  public List<Object> findBoundaries(MongoCollection<?> collection, int ranges) {
+    if (ranges < 2) {
+      return List.of();
+    }
+    int sampleSize = (int) Math.min((long) ranges * samplesPerRange, maxSampleSize);
+
+    List<Document> pipeline = List.of(
+        new Document("$sample", new Document("size", sampleSize)),
+        new Document("$project", new Document(IdRange.ID_FIELD, 1)),
+        new Document("$bucketAuto", new Document("groupBy", "$" + IdRange.ID_FIELD).append("buckets", ranges)));
+
+    List<Document> buckets = collection.aggregate(pipeline, Document.class)
+        .allowDiskUse(true)
+        .into(new ArrayList<>());
+
+    List<Object> boundaries = new ArrayList<>();
+    for (int i = 1; i < buckets.size(); i++) {
+      Object boundary = buckets.get(i).get(IdRange.ID_FIELD, Document.class).get("min");
+      if (boundaries.isEmpty() || !boundaries.get(boundaries.size() - 1).equals(boundary)) {
+        boundaries.add(boundary);
+      }
+    }
+    return boundaries;
+  }
+}
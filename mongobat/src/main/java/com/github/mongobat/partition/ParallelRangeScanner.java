@@ -0,0 +1,258 @@
+package com.github.mongobat.partition;
+
+import com.github.mongobat.changeset.CancellationToken;
+import com.github.mongobat.exception.MongoBatChangeSetException;
+import com.github.mongobat.exception.MongoBatException;
+import com.github.mongobat.profiling.CommandProfiler;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scans a collection in parallel <tt>_id</tt> ranges, each range with its own cursor, on a bounded thread pool.
+ * Can be injected into ChangeSet methods doing collection-wide rewrites.
+ *
+ * <pre>
+ * &#64;ChangeSet(order = "001", id = "rewrite", author = "author", description = "")
+ * public void rewrite(MongoDatabase db, ParallelRangeScanner scanner) throws MongoBatException {
+ *   MongoCollection&lt;Document&gt; orders = db.getCollection("orders");
+ *   scanner.scan(orders, Filters.exists("legacy"), document -&gt; orders.updateOne(...));
+ * }
+ * </pre>
+ * The collection is split into more ranges than threads, so threads which finished a small range pick up the next one.
+ * <p>
+ * With a {@link ShardChunkSplitter} set, sharded collections are split along their chunks instead, so each cursor
+ * is served by a single shard. Threads are spread evenly over shards, with a cap of threads working on one shard.
+ */
+public class ParallelRangeScanner {
+  private static final Logger log = LoggerFactory.getLogger(ParallelRangeScanner.class);
+
+  private static final int DEFAULT_RANGES_PER_THREAD = 4;
+  private static final int DEFAULT_BATCH_SIZE = 1000;
+
+  private final IdRangeSplitter splitter;
+  private final int parallelism;
+  private final CancellationToken cancellationToken;
+  private ShardChunkSplitter chunkSplitter;
+  private CommandProfiler commandProfiler;
+  private int maxThreadsPerShard;
+  private int rangesPerThread = DEFAULT_RANGES_PER_THREAD;
+  private int batchSize = DEFAULT_BATCH_SIZE;
+
+  public ParallelRangeScanner(IdRangeSplitter splitter, int parallelism, CancellationToken cancellationToken) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism should be greater than 0");
+    }
+    this.splitter = splitter;
+    this.parallelism = parallelism;
+    this.cancellationToken = cancellationToken;
+  }
+
+  /**
+   * Handles a single document
+   */
+  @FunctionalInterface
+  public interface DocumentHandler<T> {
+    void handle(T document) throws Exception;
+  }
+
+  /**
+   * Handles a whole range, e.g. by a single <tt>updateMany</tt>
+   */
+  @FunctionalInterface
+  public interface RangeHandler {
+    /**
+     * @param range range to handle
+     * @return number of handled documents, used for throughput statistics
+     * @throws Exception exception
+     */
+    long handle(IdRange range) throws Exception;
+  }
+
+  /**
+   * Iterates all documents matching the filter, ranges are scanned concurrently
+   *
+   * @param collection scanned collection
+   * @param filter     additional filter applied to each range, may be null
+   * @param handler    document handler, called concurrently from scanning threads
+   * @param <T>        document type
+   * @return throughput of each range
+   * @throws MongoBatException if the handler failed or cancellation was requested
+   */
+  public <T> ScanReport scan(MongoCollection<T> collection, Bson filter, DocumentHandler<T> handler) throws MongoBatException {
+    return scanRanges(collection, range -> {
+      long documents = 0;
+      Bson rangeFilter = filter == null ? range.toFilter() : Filters.and(range.toFilter(), filter);
+      try (MongoCursor<T> cursor = collection.find(rangeFilter).batchSize(batchSize).iterator()) {
+        while (cursor.hasNext()) {
+          if (documents % batchSize == 0) {
+            cancellationToken.throwIfCancellationRequested();
+          }
+          handler.handle(cursor.next());
+          documents++;
+        }
+      }
+      return documents;
+    });
+  }
+
+  /**
+   * Splits the collection into ranges and handles them concurrently
+   *
+   * @param collection split collection
+   * @param handler    range handler, called concurrently from scanning threads
+   * @return throughput of each range
+   * @throws MongoBatException if the handler failed or cancellation was requested
+   */
+  public ScanReport scanRanges(MongoCollection<?> collection, RangeHandler handler) throws MongoBatException {
+    List<IdRange> ranges = chunkSplitter == null ? List.of() : chunkSplitter.split(collection);
+    if (ranges.isEmpty()) {
+      ranges = splitter.split(collection, parallelism * rangesPerThread);
+    }
+    return scanRanges(ranges, handler);
+  }
+
+  /**
+   * Handles given ranges concurrently, ranges of one shard by a limited number of threads at a time
+   *
+   * @param ranges  ranges to handle
+   * @param handler range handler, called concurrently from scanning threads
+   * @return throughput of each range
+   * @throws MongoBatException if the handler failed or cancellation was requested
+   */
+  public ScanReport scanRanges(List<IdRange> ranges, RangeHandler handler) throws MongoBatException {
+    Instant started = Instant.now();
+    int perShard = getMaxThreadsPerShard(ranges);
+    ShardQueue queue = new ShardQueue(ranges, perShard);
+    int threads = Math.max(1, Math.min(Math.min(parallelism, ranges.size()), queue.getShards() * perShard));
+    AtomicInteger threadNumber = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "mongobat-scan-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    try {
+      RangeScanStats[] stats = new RangeScanStats[ranges.size()];
+      List<Future<?>> futures = new ArrayList<>(threads);
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(propagate(() -> {
+          try {
+            for (int index = queue.take(); index >= 0; index = queue.take()) {
+              try {
+                cancellationToken.throwIfCancellationRequested();
+                IdRange range = ranges.get(index);
+                Instant rangeStarted = Instant.now();
+                long documents = handler.handle(range);
+                stats[index] = new RangeScanStats(range, documents, Duration.between(rangeStarted, Instant.now()));
+                log.debug("Range scanned {}", stats[index]);
+              } finally {
+                queue.release(index);
+              }
+            }
+          } catch (Exception e) {
+            queue.cancel();
+            throw e;
+          }
+          return null;
+        })));
+      }
+
+      for (Future<?> future : futures) {
+        future.get();
+      }
+
+      ScanReport report = new ScanReport(List.of(stats), Duration.between(started, Instant.now()));
+      log.info("Parallel scan finished: {}", report);
+      return report;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof MongoBatException) {
+        throw (MongoBatException) cause;
+      }
+      throw new MongoBatChangeSetException("Parallel scan failed: " + cause.getMessage(), cause);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MongoBatChangeSetException("Parallel scan interrupted", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private <V> Callable<V> propagate(Callable<V> task) {
+    return commandProfiler == null ? task : commandProfiler.propagate(task);
+  }
+
+  private int getMaxThreadsPerShard(List<IdRange> ranges) {
+    if (maxThreadsPerShard > 0) {
+      return maxThreadsPerShard;
+    }
+    long shards = ranges.stream().map(IdRange::getShard).distinct().count();
+    return (int) Math.max(1, (parallelism + shards - 1) / Math.max(1, shards));
+  }
+
+  /**
+   * @param chunkSplitter splitter of sharded collections along their chunks, null to always split by <tt>_id</tt>
+   * @return scanner object for fluent interface
+   */
+  public ParallelRangeScanner setShardChunkSplitter(ShardChunkSplitter chunkSplitter) {
+    this.chunkSplitter = chunkSplitter;
+    return this;
+  }
+
+  /**
+   * @param commandProfiler profiler attributing commands of scanning threads to the changeset bound to the caller,
+   *                        null to not attribute them
+   * @return scanner object for fluent interface
+   */
+  public ParallelRangeScanner setCommandProfiler(CommandProfiler commandProfiler) {
+    this.commandProfiler = commandProfiler;
+    return this;
+  }
+
+  /**
+   * @param maxThreadsPerShard maximum number of threads scanning ranges of one shard at a time,
+   *                           default is the parallelism divided evenly among shards
+   * @return scanner object for fluent interface
+   */
+  public ParallelRangeScanner setMaxThreadsPerShard(int maxThreadsPerShard) {
+    this.maxThreadsPerShard = maxThreadsPerShard;
+    return this;
+  }
+
+  /**
+   * @param rangesPerThread number of ranges per scanning thread, default 4
+   * @return scanner object for fluent interface
+   */
+  public ParallelRangeScanner setRangesPerThread(int rangesPerThread) {
+    this.rangesPerThread = rangesPerThread;
+    return this;
+  }
+
+  /**
+   * @param batchSize cursor batch size, default 1000
+   * @return scanner object for fluent interface
+   */
+  public ParallelRangeScanner setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+}
@@ -0,0 +1,120 @@
+package com.github.mongobat.partition;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+/**
+ * Range of a partitioned changeset published in the coordination collection
+ */
+public class Partition {
+
+  public static final String KEY_ID = "_id";
+  public static final String KEY_CHANGE_ID = "changeId";
+  public static final String KEY_AUTHOR = "author";
+  public static final String KEY_CHANGELOG_CLASS = "changeLogClass";
+  public static final String KEY_CHANGESET_METHOD = "changeSetMethod";
+  public static final String KEY_INDEX = "index";
+  public static final String KEY_MIN = "min";
+  public static final String KEY_MAX = "max";
+  public static final String KEY_STATUS = "status";
+  public static final String KEY_OWNER = "owner";
+  public static final String KEY_LEASE_UNTIL = "leaseUntil";
+  public static final String KEY_LEASE_MILLIS = "leaseMillis";
+  public static final String KEY_ATTEMPTS = "attempts";
+  public static final String KEY_MAX_ATTEMPTS = "maxAttempts";
+  public static final String KEY_ERROR = "error";
+
+  public static final String STATUS_PENDING = "pending";
+  public static final String STATUS_CLAIMED = "claimed";
+  public static final String STATUS_DONE = "done";
+  public static final String STATUS_FAILED = "failed";
+
+  private final ObjectId id;
+  private final String changeId;
+  private final String author;
+  private final String changeLogClass;
+  private final String changeSetMethodName;
+  private final int index;
+  private final IdRange range;
+  private final long leaseMillis;
+  private final int attempts;
+  private final int maxAttempts;
+
+  public Partition(ObjectId id, String changeId, String author, String changeLogClass, String changeSetMethodName,
+      int index, IdRange range, long leaseMillis, int attempts, int maxAttempts) {
+    this.id = id;
+    this.changeId = changeId;
+    this.author = author;
+    this.changeLogClass = changeLogClass;
+    this.changeSetMethodName = changeSetMethodName;
+    this.index = index;
+    this.range = range;
+    this.leaseMillis = leaseMillis;
+    this.attempts = attempts;
+    this.maxAttempts = maxAttempts;
+  }
+
+  public static Partition fromDBObject(Document document) {
+    return new Partition(
+        document.getObjectId(KEY_ID),
+        document.getString(KEY_CHANGE_ID),
+        document.getString(KEY_AUTHOR),
+        document.getString(KEY_CHANGELOG_CLASS),
+        document.getString(KEY_CHANGESET_METHOD),
+        document.getInteger(KEY_INDEX, 0),
+        new IdRange(document.get(KEY_MIN), document.get(KEY_MAX)),
+        document.getLong(KEY_LEASE_MILLIS),
+        document.getInteger(KEY_ATTEMPTS, 0),
+        document.getInteger(KEY_MAX_ATTEMPTS, 1));
+  }
+
+  public ObjectId getId() {
+    return id;
+  }
+
+  public String getChangeId() {
+    return changeId;
+  }
+
+  public String getAuthor() {
+    return author;
+  }
+
+  public String getChangeLogClass() {
+    return changeLogClass;
+  }
+
+  public String getChangeSetMethodName() {
+    return changeSetMethodName;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  public IdRange getRange() {
+    return range;
+  }
+
+  public long getLeaseMillis() {
+    return leaseMillis;
+  }
+
+  public int getAttempts() {
+    return attempts;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  @Override
+  public String toString() {
+    return "Partition{" +
+        "changeId='" + changeId + '\'' +
+        ", index=" + index +
+        ", range=" + range +
+        ", attempts=" + attempts +
+        '}';
+  }
+}
@@ -0,0 +1,228 @@
+package com.github.mongobat.partition;
+
+import com.github.mongobat.changeset.ChangeEntry;
+import com.github.mongobat.changeset.Partitioned;
+import com.github.mongobat.dao.PartitionDao;
+import com.github.mongobat.exception.MongoBatCancellationException;
+import com.github.mongobat.exception.MongoBatChangeSetException;
+import com.mongodb.client.MongoDatabase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Executes partitioned changesets: publishes <tt>_id</tt> ranges, claims them with a lease and waits
+ * until every range is done.
+ *
+ * @see Partitioned
+ */
+public class PartitionCoordinator {
+  private static final Logger log = LoggerFactory.getLogger(PartitionCoordinator.class);
+
+  private static final Duration DEFAULT_POLL_INTERVAL = Duration.ofSeconds(10);
+
+  private final PartitionDao partitionDao;
+  private final IdRangeSplitter splitter;
+  private final String owner;
+  private Duration pollInterval = DEFAULT_POLL_INTERVAL;
+
+  private final ScheduledExecutorService leaseExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "mongobat-partition-lease");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  public PartitionCoordinator(PartitionDao partitionDao, IdRangeSplitter splitter, String owner) {
+    this.partitionDao = partitionDao;
+    this.splitter = splitter;
+    this.owner = owner;
+  }
+
+  /**
+   * Processes a single range of a partitioned changeset
+   */
+  @FunctionalInterface
+  public interface RangeHandler {
+    void process(IdRange range) throws IllegalAccessException, InvocationTargetException, MongoBatChangeSetException;
+  }
+
+  /**
+   * Resolves a range handler of a changeset published by another node
+   */
+  @FunctionalInterface
+  public interface RangeHandlerResolver {
+    RangeHandler resolve(Partition partition) throws MongoBatChangeSetException;
+  }
+
+  /**
+   * Executes a partitioned changeset as the process lock holder. Ranges are published if not published yet,
+   * so an interrupted execution resumes with the remaining ranges. Ranges which failed in a previous execution
+   * are pending again, with their attempts reset.
+   * <p>
+   * A range failing locally is released like on assisting nodes, and claimed again until it reaches
+   * {@link Partitioned#maxAttempts()}.
+   *
+   * @param db          database
+   * @param changeEntry executed change
+   * @param partitioned partitioning definition
+   * @param handler     handler of a single range
+   * @throws InvocationTargetException  exception thrown by the changeset, for the last failed local attempt
+   * @throws IllegalAccessException     exception
+   * @throws MongoBatChangeSetException if some ranges failed on other nodes
+   */
+  public void execute(MongoDatabase db, ChangeEntry changeEntry, Partitioned partitioned, RangeHandler handler)
+      throws IllegalAccessException, InvocationTargetException, MongoBatChangeSetException {
+    if (!partitionDao.hasPartitions(db, changeEntry)) {
+      List<IdRange> ranges = splitter.split(db.getCollection(partitioned.collection()), partitioned.partitions());
+      partitionDao.createPartitions(db, changeEntry, ranges, TimeUnit.SECONDS.toMillis(partitioned.leaseSeconds()), partitioned.maxAttempts());
+      log.info("{} split into {} ranges", changeEntry.getChangeId(), ranges.size());
+    } else {
+      long reset = partitionDao.resetFailed(db, changeEntry);
+      if (reset > 0) {
+        log.info("{} failed ranges of {} are pending again", reset, changeEntry.getChangeId());
+      }
+    }
+
+    Exception localFailure = null;
+    while (true) {
+      Optional<Partition> partition = partitionDao.claim(db, changeEntry, owner);
+      if (partition.isPresent()) {
+        try {
+          process(db, partition.get(), handler);
+        } catch (IllegalAccessException | InvocationTargetException | MongoBatChangeSetException | RuntimeException e) {
+          if (e instanceof InvocationTargetException
+              && ((InvocationTargetException) e).getTargetException() instanceof MongoBatCancellationException) {
+            throw e;
+          }
+          log.warn("Range {} failed, attempt {} of {}", partition.get(), partition.get().getAttempts() + 1,
+              partition.get().getMaxAttempts());
+          localFailure = e;
+        }
+        continue;
+      }
+
+      long failed = partitionDao.countFailed(db, changeEntry);
+      if (failed > 0) {
+        if (localFailure != null) {
+          rethrow(localFailure);
+        }
+        throw new MongoBatChangeSetException(failed + " ranges of " + changeEntry.getChangeId() + " failed");
+      }
+      long incomplete = partitionDao.countIncomplete(db, changeEntry);
+      if (incomplete == 0) {
+        break;
+      }
+
+      log.info("Waiting for {} ranges of {} processed by other nodes..", incomplete, changeEntry.getChangeId());
+      try {
+        Thread.sleep(pollInterval.toMillis());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new MongoBatChangeSetException("Interrupted while waiting for ranges of " + changeEntry.getChangeId());
+      }
+    }
+
+    partitionDao.deletePartitions(db, changeEntry);
+  }
+
+  private static void rethrow(Exception e) throws IllegalAccessException, InvocationTargetException, MongoBatChangeSetException {
+    if (e instanceof IllegalAccessException) {
+      throw (IllegalAccessException) e;
+    }
+    if (e instanceof InvocationTargetException) {
+      throw (InvocationTargetException) e;
+    }
+    if (e instanceof MongoBatChangeSetException) {
+      throw (MongoBatChangeSetException) e;
+    }
+    throw (RuntimeException) e;
+  }
+
+  /**
+   * Processes ranges published by the lock holder. The holder publishes ranges only when it reaches a partitioned
+   * changeset, so ranges are polled every poll interval while the lock is held. Returns once published ranges are
+   * all finished, or when the lock is released.
+   *
+   * @param db       database
+   * @param resolver resolver of changeset range handlers
+   * @param lockHeld whether the process lock is held by another node
+   * @return number of processed ranges
+   */
+  public int assist(MongoDatabase db, RangeHandlerResolver resolver, BooleanSupplier lockHeld) {
+    int processed = 0;
+    boolean published = false;
+    while (true) {
+      Optional<Partition> partition = partitionDao.claim(db, null, owner);
+      if (partition.isPresent()) {
+        published = true;
+        try {
+          process(db, partition.get(), resolver.resolve(partition.get()));
+          processed++;
+        } catch (MongoBatChangeSetException | IllegalAccessException | InvocationTargetException e) {
+          log.error("Range {} could not be processed", partition.get(), e);
+        }
+        continue;
+      }
+
+      if (!lockHeld.getAsBoolean()) {
+        break;
+      }
+      boolean unfinished = partitionDao.hasUnfinished(db);
+      if (published && !unfinished) {
+        break;
+      }
+      published |= unfinished;
+      try {
+        Thread.sleep(pollInterval.toMillis());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        log.warn("Interrupted while waiting for published ranges");
+        break;
+      }
+    }
+    return processed;
+  }
+
+  private void process(MongoDatabase db, Partition partition, RangeHandler handler)
+      throws IllegalAccessException, InvocationTargetException, MongoBatChangeSetException {
+    long renewRate = Math.max(1, partition.getLeaseMillis() / 3);
+    ScheduledFuture<?> leaseRenewal = leaseExecutor.scheduleAtFixedRate(() -> {
+      try {
+        if (!partitionDao.renewLease(db, partition, owner)) {
+          log.warn("Lease of range {} was lost", partition);
+        }
+      } catch (RuntimeException e) {
+        log.warn("Lease of range {} could not be renewed", partition, e);
+      }
+    }, renewRate, renewRate, TimeUnit.MILLISECONDS);
+
+    try {
+      log.debug("Processing range {}", partition);
+      handler.process(partition.getRange());
+      partitionDao.complete(db, partition, owner);
+    } catch (IllegalAccessException | InvocationTargetException | MongoBatChangeSetException | RuntimeException e) {
+      Throwable cause = e instanceof InvocationTargetException ? ((InvocationTargetException) e).getTargetException() : e;
+      partitionDao.release(db, partition, owner, String.valueOf(cause));
+      throw e;
+    } finally {
+      leaseRenewal.cancel(false);
+    }
+  }
+
+  public void setPollInterval(Duration pollInterval) {
+    this.pollInterval = pollInterval;
+  }
+
+  public void close() {
+    leaseExecutor.shutdownNow();
+  }
+}
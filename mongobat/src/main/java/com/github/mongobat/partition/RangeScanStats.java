@@ -0,0 +1,41 @@
+package com.github.mongobat.partition;
+
+import java.time.Duration;
+
+/**
+ * Throughput of a single range scan
+ */
+public class RangeScanStats {
+
+  private final IdRange range;
+  private final long documents;
+  private final Duration duration;
+
+  public RangeScanStats(IdRange range, long documents, Duration duration) {
+    this.range = range;
+    this.documents = documents;
+    this.duration = duration;
+  }
+
+  public IdRange getRange() {
+    return range;
+  }
+
+  public long getDocuments() {
+    return documents;
+  }
+
+  public Duration getDuration() {
+    return duration;
+  }
+
+  public double getDocumentsPerSecond() {
+    long millis = duration.toMillis();
+    return millis == 0 ? documents * 1000.0 : documents * 1000.0 / millis;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: %d documents in %d ms (%.1f/s)", range, documents, duration.toMillis(), getDocumentsPerSecond());
+  }
+}
@@ -0,0 +1,40 @@
+package com.github.mongobat.partition;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Result of a parallel scan with throughput of each range
+ */
+public class ScanReport {
+
+  private final List<RangeScanStats> ranges;
+  private final Duration duration;
+
+  public ScanReport(List<RangeScanStats> ranges, Duration duration) {
+    this.ranges = List.copyOf(ranges);
+    this.duration = duration;
+  }
+
+  public List<RangeScanStats> getRanges() {
+    return ranges;
+  }
+
+  public Duration getDuration() {
+    return duration;
+  }
+
+  public long getDocuments() {
+    return ranges.stream().mapToLong(RangeScanStats::getDocuments).sum();
+  }
+
+  public double getDocumentsPerSecond() {
+    long millis = duration.toMillis();
+    return millis == 0 ? getDocuments() * 1000.0 : getDocuments() * 1000.0 / millis;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d documents in %d ranges, %d ms (%.1f/s)", getDocuments(), ranges.size(), duration.toMillis(), getDocumentsPerSecond());
+  }
+}
@@ -0,0 +1,112 @@
+package com.github.mongobat.partition;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.MaxKey;
+import org.bson.types.MinKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Splits a sharded collection along its chunks, read from <tt>config.collections</tt> and <tt>config.chunks</tt>,
+ * so each range is served by a single shard.
+ * <p>
+ * Ranges are over the first shard key field. Chunks of a compound shard key sharing the same first field value
+ * are merged into one range. Collections which are not sharded, or are sharded by a hashed key, are not split.
+ */
+public class ShardChunkSplitter {
+  private static final Logger log = LoggerFactory.getLogger(ShardChunkSplitter.class);
+
+  public static final String CONFIG_DATABASE = "config";
+
+  private static final String COLLECTIONS = "collections";
+  private static final String CHUNKS = "chunks";
+  private static final String HASHED = "hashed";
+
+  private final MongoDatabase configDatabase;
+
+  /**
+   * @param configDatabase <tt>config</tt> database of the cluster, reached through mongos
+   */
+  public ShardChunkSplitter(MongoDatabase configDatabase) {
+    this.configDatabase = configDatabase;
+  }
+
+  /**
+   * @param collection collection to split
+   * @return consecutive ranges, one per chunk, covering the whole collection, empty if the collection is not sharded
+   */
+  public List<IdRange> split(MongoCollection<?> collection) {
+    return split(collection.getNamespace());
+  }
+
+  /**
+   * @param namespace namespace of the collection to split
+   * @return consecutive ranges, one per chunk, covering the whole collection, empty if the collection is not sharded
+   */
+  public List<IdRange> split(MongoNamespace namespace) {
+    try {
+      Document sharded = configDatabase.getCollection(COLLECTIONS)
+          .find(Filters.eq("_id", namespace.getFullName()))
+          .first();
+      if (sharded == null || sharded.getBoolean("dropped", false)) {
+        return List.of();
+      }
+
+      Document key = sharded.get("key", Document.class);
+      String field = key.keySet().iterator().next();
+      if (HASHED.equals(key.get(field))) {
+        log.info("Collection {} is sharded by hashed key {}, its chunks are not split along", namespace, field);
+        return List.of();
+      }
+
+      // chunks reference the collection by uuid since 5.0 and by namespace before
+      Bson chunksFilter = sharded.get("uuid") == null ? Filters.eq("ns", namespace.getFullName())
+          : Filters.or(Filters.eq("uuid", sharded.get("uuid")), Filters.eq("ns", namespace.getFullName()));
+      List<Document> chunks = configDatabase.getCollection(CHUNKS)
+          .find(chunksFilter)
+          .sort(Sorts.ascending("min"))
+          .into(new ArrayList<>());
+
+      List<IdRange> ranges = fromChunks(field, chunks);
+      log.debug("Collection {} split into {} chunk ranges", namespace, ranges.size());
+      return ranges;
+    } catch (MongoCommandException e) {
+      log.warn("Cannot read chunks of {}, it is split by _id: {}", namespace, e.getErrorMessage());
+      return List.of();
+    }
+  }
+
+  static List<IdRange> fromChunks(String field, List<Document> chunks) {
+    List<Object> boundaries = new ArrayList<>();
+    List<String> shards = new ArrayList<>();
+    for (Document chunk : chunks) {
+      Object min = bound(chunk.get("min", Document.class).get(field));
+      if (boundaries.isEmpty() || !Objects.equals(boundaries.get(boundaries.size() - 1), min)) {
+        boundaries.add(min);
+        shards.add(chunk.getString("shard"));
+      }
+    }
+
+    List<IdRange> ranges = new ArrayList<>(boundaries.size());
+    for (int i = 0; i < boundaries.size(); i++) {
+      Object max = i + 1 < boundaries.size() ? boundaries.get(i + 1) : null;
+      ranges.add(new IdRange(field, boundaries.get(i), max, shards.get(i)));
+    }
+    return ranges;
+  }
+
+  private static Object bound(Object value) {
+    return value instanceof MinKey || value instanceof MaxKey ? null : value;
+  }
+}
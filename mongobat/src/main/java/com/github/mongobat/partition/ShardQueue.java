@@ -0,0 +1,81 @@
+package com.github.mongobat.partition;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out ranges to scanning threads, at most a given number of ranges of the same shard at a time.
+ * The next range is taken from the least busy shard, so threads are spread evenly over shards.
+ * Ranges without a shard are treated as ranges of one shard.
+ */
+final class ShardQueue {
+
+  private final List<IdRange> ranges;
+  private final int maxPerShard;
+  private final Map<String, Deque<Integer>> pending = new LinkedHashMap<>();
+  private final Map<String, Integer> active = new HashMap<>();
+  private boolean cancelled;
+
+  ShardQueue(List<IdRange> ranges, int maxPerShard) {
+    this.ranges = ranges;
+    this.maxPerShard = maxPerShard;
+    for (int i = 0; i < ranges.size(); i++) {
+      pending.computeIfAbsent(ranges.get(i).getShard(), shard -> new ArrayDeque<>()).add(i);
+    }
+  }
+
+  /**
+   * @return number of distinct shards of the ranges
+   */
+  int getShards() {
+    return pending.size();
+  }
+
+  /**
+   * Waits until a shard with remaining ranges is below its limit
+   *
+   * @return index of the next range, -1 if all ranges were taken or the queue was cancelled
+   * @throws InterruptedException if interrupted while waiting
+   */
+  synchronized int take() throws InterruptedException {
+    while (true) {
+      if (cancelled || pending.values().stream().allMatch(Deque::isEmpty)) {
+        return -1;
+      }
+      Map.Entry<String, Deque<Integer>> next = null;
+      int nextActive = maxPerShard;
+      for (Map.Entry<String, Deque<Integer>> entry : pending.entrySet()) {
+        int running = active.getOrDefault(entry.getKey(), 0);
+        if (!entry.getValue().isEmpty() && running < nextActive) {
+          next = entry;
+          nextActive = running;
+        }
+      }
+      if (next != null) {
+        active.put(next.getKey(), nextActive + 1);
+        return next.getValue().poll();
+      }
+      wait();
+    }
+  }
+
+  /**
+   * @param index index of a range returned by {@link #take()} which is no longer scanned
+   */
+  synchronized void release(int index) {
+    active.merge(ranges.get(index).getShard(), -1, Integer::sum);
+    notifyAll();
+  }
+
+  /**
+   * Stops handing out ranges
+   */
+  synchronized void cancel() {
+    cancelled = true;
+    notifyAll();
+  }
+}
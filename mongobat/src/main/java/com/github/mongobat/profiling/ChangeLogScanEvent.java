@@ -0,0 +1,32 @@
+package com.github.mongobat.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a changelog package scan
+ */
+@Name("com.github.mongobat.ChangeLogScan")
+@Label("Changelog Scan")
+@Category("MongoBat")
+@Description("Scan of a package for changelog classes")
+public class ChangeLogScanEvent extends Event {
+
+  @Label("Package")
+  private String scanPackage;
+
+  @Label("Changelogs")
+  private int changeLogs;
+
+  public void finish(String scanPackage, int changeLogs) {
+    end();
+    if (shouldCommit()) {
+      this.scanPackage = scanPackage;
+      this.changeLogs = changeLogs;
+      commit();
+    }
+  }
+}
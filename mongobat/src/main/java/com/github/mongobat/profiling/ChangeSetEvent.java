@@ -0,0 +1,50 @@
+package com.github.mongobat.profiling;
+
+import com.github.mongobat.changeset.ChangeEntry;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of a changeset execution
+ */
+@Name("com.github.mongobat.ChangeSet")
+@Label("ChangeSet Execution")
+@Category("MongoBat")
+@Description("Execution of a changeset method")
+public class ChangeSetEvent extends Event {
+
+  public static final String SUCCEEDED = "SUCCEEDED";
+  public static final String FAILED = "FAILED";
+  public static final String TIMED_OUT = "TIMED_OUT";
+  public static final String CANCELLED = "CANCELLED";
+
+  @Label("Change Id")
+  private String changeId;
+
+  @Label("Author")
+  private String author;
+
+  @Label("Changelog Class")
+  private String changeLogClass;
+
+  @Label("Changeset Method")
+  private String changeSetMethod;
+
+  @Label("Outcome")
+  private String outcome;
+
+  public void finish(ChangeEntry changeEntry, String outcome) {
+    end();
+    if (shouldCommit()) {
+      this.changeId = changeEntry.getChangeId();
+      this.author = changeEntry.getAuthor();
+      this.changeLogClass = changeEntry.getChangeLogClass();
+      this.changeSetMethod = changeEntry.getChangeSetMethodName();
+      this.outcome = outcome;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package com.github.mongobat.profiling;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Driver command listener attributing commands to the changeset being executed.
+ * <p>
+ * A listener can only be added when a client is created, so the profiler has to be registered on the client
+ * settings and then set on the runner:
+ * <pre>
+ * CommandProfiler profiler = new CommandProfiler();
+ * MongoClient client = MongoClients.create(MongoClientSettings.builder()
+ *     .applyConnectionString(connectionString)
+ *     .addCommandListener(profiler)
+ *     .build());
+ * new MongoBat(client).setCommandProfiler(profiler);
+ * </pre>
+ * Commands are attributed to the changeset bound to the calling thread. Threads issuing commands on behalf of a
+ * changeset (e.g. parallel scans and verifications) get the binding via {@link #propagate(Callable)}. Commands of
+ * other threads are not attributed.
+ */
+public class CommandProfiler implements CommandListener {
+
+  private final ThreadLocal<CommandStats> current = new ThreadLocal<>();
+  private final Map<Integer, CommandStats> inFlight = new ConcurrentHashMap<>();
+
+  /**
+   * Starts collecting commands of a changeset
+   *
+   * @param changeId executed change
+   * @return stats of the changeset, to be passed to {@link #stop(CommandStats)}
+   */
+  public CommandStats start(String changeId) {
+    return new CommandStats(changeId);
+  }
+
+  /**
+   * Attributes commands of the current thread to the changeset until {@link #unbind()}
+   *
+   * @param stats stats returned by {@link #start(String)}
+   */
+  public void bind(CommandStats stats) {
+    current.set(stats);
+  }
+
+  public void unbind() {
+    current.remove();
+  }
+
+  /**
+   * Stops collecting commands of a changeset
+   *
+   * @param stats stats returned by {@link #start(String)}
+   * @return collected stats
+   */
+  public CommandStats stop(CommandStats stats) {
+    return stats;
+  }
+
+  /**
+   * Attributes commands of the task to the changeset bound to the current thread, whichever thread runs the task
+   *
+   * @param task task to be run by another thread
+   * @param <V>  task result type
+   * @return task binding the changeset while running, or the task itself if no changeset is bound
+   */
+  public <V> Callable<V> propagate(Callable<V> task) {
+    CommandStats stats = current.get();
+    if (stats == null) {
+      return task;
+    }
+    return () -> {
+      CommandStats previous = current.get();
+      current.set(stats);
+      try {
+        return task.call();
+      } finally {
+        if (previous == null) {
+          current.remove();
+        } else {
+          current.set(previous);
+        }
+      }
+    };
+  }
+
+  @Override
+  public void commandStarted(CommandStartedEvent event) {
+    CommandStats stats = current.get();
+    if (stats != null) {
+      inFlight.put(event.getRequestId(), stats);
+      stats.addStarted(event.getCommandName(), sizeOf(event.getCommand()));
+    }
+  }
+
+  @Override
+  public void commandSucceeded(CommandSucceededEvent event) {
+    CommandStats stats = inFlight.remove(event.getRequestId());
+    if (stats != null) {
+      stats.addSucceeded(sizeOf(event.getResponse()), event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+  }
+
+  @Override
+  public void commandFailed(CommandFailedEvent event) {
+    CommandStats stats = inFlight.remove(event.getRequestId());
+    if (stats != null) {
+      stats.addFailed(event.getElapsedTime(TimeUnit.NANOSECONDS));
+    }
+  }
+
+  private static long sizeOf(BsonDocument document) {
+    if (document == null) {
+      return 0;
+    }
+    if (document instanceof RawBsonDocument) {
+      return ((RawBsonDocument) document).getByteBuffer().remaining();
+    }
+    BasicOutputBuffer buffer = new BasicOutputBuffer();
+    new BsonDocumentCodec().encode(new BsonBinaryWriter(buffer), document, EncoderContext.builder().build());
+    return buffer.getPosition();
+  }
+}
@@ -0,0 +1,96 @@
+package com.github.mongobat.profiling;
+
+import org.bson.Document;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Driver commands issued by a single changeset execution
+ */
+public class CommandStats {
+
+  public static final String KEY_COMMANDS = "commands";
+  public static final String KEY_COMMAND_COUNT = "commandCount";
+  public static final String KEY_FAILED_COMMANDS = "failedCommands";
+  public static final String KEY_BYTES_SENT = "bytesSent";
+  public static final String KEY_BYTES_RECEIVED = "bytesReceived";
+  public static final String KEY_COMMAND_MILLIS = "commandMillis";
+
+  private final String changeId;
+  private final Map<String, Long> commandCounts = new TreeMap<>();
+  private long failedCommands;
+  private long bytesSent;
+  private long bytesReceived;
+  private long elapsedNanos;
+
+  public CommandStats(String changeId) {
+    this.changeId = changeId;
+  }
+
+  synchronized void addStarted(String commandName, long size) {
+    commandCounts.merge(commandName, 1L, Long::sum);
+    bytesSent += size;
+  }
+
+  synchronized void addSucceeded(long size, long nanos) {
+    bytesReceived += size;
+    elapsedNanos += nanos;
+  }
+
+  synchronized void addFailed(long nanos) {
+    failedCommands++;
+    elapsedNanos += nanos;
+  }
+
+  public String getChangeId() {
+    return changeId;
+  }
+
+  /**
+   * @return number of commands by command name, e.g. <tt>update</tt>
+   */
+  public synchronized Map<String, Long> getCommandCounts() {
+    return Collections.unmodifiableMap(new TreeMap<>(commandCounts));
+  }
+
+  public synchronized long getCommandCount() {
+    return commandCounts.values().stream().mapToLong(Long::longValue).sum();
+  }
+
+  public synchronized long getFailedCommands() {
+    return failedCommands;
+  }
+
+  public synchronized long getBytesSent() {
+    return bytesSent;
+  }
+
+  public synchronized long getBytesReceived() {
+    return bytesReceived;
+  }
+
+  /**
+   * @return sum of command round trip times, as measured by the driver
+   */
+  public synchronized Duration getCommandTime() {
+    return Duration.ofNanos(elapsedNanos);
+  }
+
+  public synchronized Document toDocument() {
+    return new Document(KEY_COMMANDS, new Document(commandCounts))
+        .append(KEY_COMMAND_COUNT, getCommandCount())
+        .append(KEY_FAILED_COMMANDS, failedCommands)
+        .append(KEY_BYTES_SENT, bytesSent)
+        .append(KEY_BYTES_RECEIVED, bytesReceived)
+        .append(KEY_COMMAND_MILLIS, getCommandTime().toMillis());
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%s: %d commands %s, %d failed, %d bytes sent, %d bytes received in %d ms",
+        changeId, getCommandCount(), commandCounts, failedCommands, bytesSent, bytesReceived, getCommandTime().toMillis());
+  }
+}
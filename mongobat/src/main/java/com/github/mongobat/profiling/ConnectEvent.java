@@ -0,0 +1,32 @@
+package com.github.mongobat.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of connecting to a database, including verification of the changelog index and the lock
+ */
+@Name("com.github.mongobat.Connect")
+@Label("Connect")
+@Category("MongoBat")
+@Description("Connection to a database with changelog index and lock verification")
+public class ConnectEvent extends Event {
+
+  @Label("Database")
+  private String database;
+
+  @Label("Changelog Collection")
+  private String changelogCollection;
+
+  public void finish(String database, String changelogCollection) {
+    end();
+    if (shouldCommit()) {
+      this.database = database;
+      this.changelogCollection = changelogCollection;
+      commit();
+    }
+  }
+}
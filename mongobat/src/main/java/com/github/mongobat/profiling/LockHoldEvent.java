@@ -0,0 +1,28 @@
+package com.github.mongobat.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event spanning from acquisition to release of the process lock
+ */
+@Name("com.github.mongobat.LockHold")
+@Label("Lock Hold")
+@Category("MongoBat")
+@Description("Process lock held by this instance")
+public class LockHoldEvent extends Event {
+
+  @Label("Owner")
+  private String owner;
+
+  public void finish(String owner) {
+    end();
+    if (shouldCommit()) {
+      this.owner = owner;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.github.mongobat.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event of acquiring the process lock, including waiting for it
+ */
+@Name("com.github.mongobat.LockWait")
+@Label("Lock Wait")
+@Category("MongoBat")
+@Description("Acquisition of the process lock")
+public class LockWaitEvent extends Event {
+
+  @Label("Owner")
+  private String owner;
+
+  @Label("Acquired")
+  private boolean acquired;
+
+  public void finish(String owner, boolean acquired) {
+    end();
+    if (shouldCommit()) {
+      this.owner = owner;
+      this.acquired = acquired;
+      commit();
+    }
+  }
+}
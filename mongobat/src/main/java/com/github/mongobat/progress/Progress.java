@@ -0,0 +1,139 @@
+package com.github.mongobat.progress;
+
+import org.bson.Document;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Optional;
+
+/**
+ * Immutable snapshot of a changeset progress: work done, total if known, throughput and estimated time left
+ */
+public class Progress {
+
+  private static final String KEY_DONE = "done";
+  private static final String KEY_TOTAL = "total";
+  private static final String KEY_PERCENT = "percent";
+  private static final String KEY_THROUGHPUT = "throughput";
+  private static final String KEY_ETA_MS = "etaMs";
+  private static final String KEY_STARTED_AT = "startedAt";
+  private static final String KEY_UPDATED_AT = "updatedAt";
+
+  private final String changeId;
+  private final long done;
+  private final Long total;
+  private final double throughput;
+  private final Instant startedAt;
+  private final Instant updatedAt;
+
+  public Progress(String changeId, long done, Long total, double throughput, Instant startedAt, Instant updatedAt) {
+    this.changeId = changeId;
+    this.done = done;
+    this.total = total;
+    this.throughput = throughput;
+    this.startedAt = startedAt;
+    this.updatedAt = updatedAt;
+  }
+
+  /**
+   * @param changeId changeset id
+   * @param document progress document of a changelog entry
+   * @return progress
+   */
+  public static Progress fromDocument(String changeId, Document document) {
+    return new Progress(changeId,
+        Optional.ofNullable(document.get(KEY_DONE, Number.class)).map(Number::longValue).orElse(0L),
+        Optional.ofNullable(document.get(KEY_TOTAL, Number.class)).map(Number::longValue).orElse(null),
+        Optional.ofNullable(document.get(KEY_THROUGHPUT, Number.class)).map(Number::doubleValue).orElse(0.0),
+        Optional.ofNullable(document.getDate(KEY_STARTED_AT)).map(Date::toInstant).orElse(null),
+        Optional.ofNullable(document.getDate(KEY_UPDATED_AT)).map(Date::toInstant).orElse(null));
+  }
+
+  public Document toDocument() {
+    Document document = new Document(KEY_DONE, done);
+    if (total != null) {
+      document.append(KEY_TOTAL, total).append(KEY_PERCENT, getPercent());
+    }
+    document.append(KEY_THROUGHPUT, throughput);
+    getEta().ifPresent(eta -> document.append(KEY_ETA_MS, eta.toMillis()));
+    return document
+        .append(KEY_STARTED_AT, startedAt == null ? null : Date.from(startedAt))
+        .append(KEY_UPDATED_AT, updatedAt == null ? null : Date.from(updatedAt));
+  }
+
+  public String getChangeId() {
+    return changeId;
+  }
+
+  public long getDone() {
+    return done;
+  }
+
+  /**
+   * @return total work, null if not set by the changeset
+   */
+  public Long getTotal() {
+    return total;
+  }
+
+  /**
+   * @return percentage done, 0 to 100, -1 if the total is unknown
+   */
+  public int getPercent() {
+    if (total == null) {
+      return -1;
+    }
+    return total <= 0 ? 100 : (int) Math.min(100, done * 100 / total);
+  }
+
+  /**
+   * @return work done per second since the changeset started
+   */
+  public double getThroughput() {
+    return throughput;
+  }
+
+  /**
+   * @return estimated time left, empty if the total or the throughput is unknown
+   */
+  public Optional<Duration> getEta() {
+    if (total == null || throughput <= 0) {
+      return Optional.empty();
+    }
+    return Optional.of(Duration.ofMillis((long) (Math.max(0, total - done) * 1000 / throughput)));
+  }
+
+  public Instant getStartedAt() {
+    return startedAt;
+  }
+
+  public Instant getUpdatedAt() {
+    return updatedAt;
+  }
+
+  /**
+   * @return human readable progress, e.g. "72%, 18 min left" or "1200 done, 35/s" when the total is unknown
+   */
+  public String describe() {
+    if (total == null) {
+      return String.format("%d done, %.0f/s", done, throughput);
+    }
+    return getPercent() + "%" + getEta().map(eta -> ", " + format(eta) + " left").orElse("");
+  }
+
+  private static String format(Duration duration) {
+    if (duration.compareTo(Duration.ofMinutes(1)) < 0) {
+      return duration.toSeconds() + " s";
+    }
+    if (duration.compareTo(Duration.ofHours(1)) < 0) {
+      return duration.toMinutes() + " min";
+    }
+    return duration.toHours() + " h " + duration.toMinutesPart() + " min";
+  }
+
+  @Override
+  public String toString() {
+    return changeId + ": " + describe();
+  }
+}
@@ -0,0 +1,10 @@
+package com.github.mongobat.progress;
+
+/**
+ * Receives progress updates of running changesets, at most once per progress interval per changeset
+ */
+@FunctionalInterface
+public interface ProgressListener {
+
+  void onProgress(Progress progress);
+}
@@ -0,0 +1,109 @@
+package com.github.mongobat.progress;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Progress of a changeset, which can be injected into ChangeSet methods.
+ * The changeset sets the total amount of work if known and reports increments, MongoBat computes throughput and
+ * time left and publishes the progress periodically to the changelog and registered listeners.
+ * Increments may be reported from several threads.
+ *
+ * <pre>
+ * &#64;ChangeSet(order = "001", id = "backfill", author = "author", description = "")
+ * public void backfill(MongoDatabase db, ProgressReporter progress) {
+ *   progress.setTotal(db.getCollection("orders").estimatedDocumentCount());
+ *   for (...) {
+ *     // process next batch
+ *     progress.increment(batch.size());
+ *   }
+ * }
+ * </pre>
+ */
+public class ProgressReporter {
+  private static final Logger log = LoggerFactory.getLogger(ProgressReporter.class);
+
+  private final String changeId;
+  private final Duration interval;
+  private final ProgressListener publisher;
+  private final Clock clock;
+  private final Instant startedAt;
+  private final AtomicLong done = new AtomicLong();
+  private volatile Long total;
+  private final AtomicReference<Instant> lastPublished;
+
+  /**
+   * @param changeId  changeset id
+   * @param interval  minimal interval between published updates
+   * @param publisher receives published updates
+   */
+  public ProgressReporter(String changeId, Duration interval, ProgressListener publisher) {
+    this(changeId, interval, publisher, Clock.systemUTC());
+  }
+
+  /* Visible for testing */
+  ProgressReporter(String changeId, Duration interval, ProgressListener publisher, Clock clock) {
+    this.changeId = changeId;
+    this.interval = interval;
+    this.publisher = publisher;
+    this.clock = clock;
+    this.startedAt = clock.instant();
+    this.lastPublished = new AtomicReference<>(startedAt);
+  }
+
+  /**
+   * @param total total amount of work, e.g. number of documents to process
+   */
+  public void setTotal(long total) {
+    this.total = total;
+  }
+
+  public void increment() {
+    increment(1);
+  }
+
+  /**
+   * @param amount amount of work done since the last increment
+   */
+  public void increment(long amount) {
+    done.addAndGet(amount);
+    Instant now = clock.instant();
+    Instant last = lastPublished.get();
+    // only one of concurrent callers publishes
+    if (!now.isBefore(last.plus(interval)) && lastPublished.compareAndSet(last, now)) {
+      publish(getProgress());
+    }
+  }
+
+  /**
+   * @return current progress
+   */
+  public Progress getProgress() {
+    Instant now = clock.instant();
+    long elapsedMillis = Duration.between(startedAt, now).toMillis();
+    long current = done.get();
+    double throughput = elapsedMillis <= 0 ? 0 : current * 1000.0 / elapsedMillis;
+    return new Progress(changeId, current, total, throughput, startedAt, now);
+  }
+
+  /**
+   * @return true if the changeset reported any progress
+   */
+  public boolean isReported() {
+    return total != null || done.get() > 0;
+  }
+
+  private void publish(Progress progress) {
+    try {
+      publisher.onProgress(progress);
+    } catch (RuntimeException e) {
+      log.warn("Mongobee failed to publish progress of {}", changeId, e);
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package com.github.mongobat.resolver;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Lazily created ChangeSet method parameters. A provider registered for a type also provides parameters declared
+ * with any of its supertypes; an exact registration wins, otherwise the first registered assignable one.
+ * The match is cached by parameter type.
+ *
+ * <pre>
+ * runner.registerParameterResolver(new ParameterProviders()
+ *     .register(SearchClient.class, () -&gt; SearchClient.connect(searchUrl))  // closed when the run ends
+ *     .register(Clock.class, Clock::systemUTC, ParameterScope.SINGLETON));
+ * </pre>
+ */
+public class ParameterProviders implements ParameterResolver {
+  private static final Logger log = LoggerFactory.getLogger(ParameterProviders.class);
+
+  private final List<Provider<?>> providers = new CopyOnWriteArrayList<>();
+  private final Map<Class<?>, Optional<Provider<?>>> providerByType = new ConcurrentHashMap<>();
+  private final Map<Provider<?>, Object> runInstances = new ConcurrentHashMap<>();
+
+  /**
+   * @param type     provided type
+   * @param supplier creates the instance when a changeset needs it, once per execution
+   * @return this providers
+   */
+  public <T> ParameterProviders register(Class<T> type, Supplier<? extends T> supplier) {
+    return register(type, supplier, ParameterScope.RUN);
+  }
+
+  /**
+   * @param type     provided type
+   * @param supplier creates the instance when a changeset needs it
+   * @param scope    lifetime of the instance
+   * @return this providers
+   */
+  public <T> ParameterProviders register(Class<T> type, Supplier<? extends T> supplier, ParameterScope scope) {
+    providers.add(new Provider<>(type, supplier, scope));
+    providerByType.clear();
+    return this;
+  }
+
+  @Override
+  public boolean supports(Class<?> parameterType) {
+    return findProvider(parameterType).isPresent();
+  }
+
+  @Override
+  public Object resolve(Class<?> parameterType) {
+    Provider<?> provider = findProvider(parameterType)
+        .orElseThrow(() -> new IllegalArgumentException("No provider of " + parameterType.getName()));
+    if (provider.scope == ParameterScope.SINGLETON) {
+      return provider.getSingleton();
+    }
+    return runInstances.computeIfAbsent(provider, Provider::create);
+  }
+
+  /**
+   * Closes instances created for the execution
+   */
+  @Override
+  public void endRun() {
+    for (Object instance : runInstances.values()) {
+      if (instance instanceof AutoCloseable) {
+        try {
+          ((AutoCloseable) instance).close();
+        } catch (Exception e) {
+          log.warn("Mongobee failed to close parameter {}", instance, e);
+        }
+      }
+    }
+    runInstances.clear();
+  }
+
+  private Optional<Provider<?>> findProvider(Class<?> parameterType) {
+    return providerByType.computeIfAbsent(parameterType, this::matchProvider);
+  }
+
+  private Optional<Provider<?>> matchProvider(Class<?> parameterType) {
+    Optional<Provider<?>> exact = providers.stream().filter(p -> p.type.equals(parameterType)).findFirst();
+    return exact.isPresent() ? exact : providers.stream().filter(p -> parameterType.isAssignableFrom(p.type)).findFirst();
+  }
+
+  private static class Provider<T> {
+    private final Class<T> type;
+    private final Supplier<? extends T> supplier;
+    private final ParameterScope scope;
+    private volatile T singleton;
+
+    Provider(Class<T> type, Supplier<? extends T> supplier, ParameterScope scope) {
+      this.type = type;
+      this.supplier = supplier;
+      this.scope = scope;
+    }
+
+    T create() {
+      T instance = supplier.get();
+      if (instance == null) {
+        throw new IllegalStateException("Provider of " + type.getName() + " returned null");
+      }
+      return instance;
+    }
+
+    T getSingleton() {
+      if (singleton == null) {
+        synchronized (this) {
+          if (singleton == null) {
+            singleton = create();
+          }
+        }
+      }
+      return singleton;
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package com.github.mongobat.resolver;
+
+/**
+ * Provides parameters of ChangeSet methods which are not built into MongoBat, registered via
+ * MongoBat::registerParameterResolver. Resolvers are asked in registration order and the one supporting a parameter
+ * type is cached for that type, so {@link #supports(Class)} should not depend on the run.
+ * Parameters are resolved only when a changeset declaring them is invoked.
+ */
+public interface ParameterResolver {
+
+  /**
+   * @param parameterType declared type of the ChangeSet method parameter
+   * @return true if the resolver provides parameters of the type
+   */
+  boolean supports(Class<?> parameterType);
+
+  /**
+   * @param parameterType declared type of the ChangeSet method parameter, supported by this resolver
+   * @return parameter instance
+   */
+  Object resolve(Class<?> parameterType);
+
+  /**
+   * Called when an execution ends, e.g. to release instances created for the run
+   */
+  default void endRun() {
+  }
+}
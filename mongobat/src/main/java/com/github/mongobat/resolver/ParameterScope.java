@@ -0,0 +1,16 @@
+package com.github.mongobat.resolver;
+
+/**
+ * Lifetime of parameter instances created by {@link ParameterProviders}
+ */
+public enum ParameterScope {
+  /**
+   * Created by the first changeset which needs it and kept for the lifetime of the runner
+   */
+  SINGLETON,
+  /**
+   * Created by the first changeset of an execution which needs it and closed (if <tt>AutoCloseable</tt>)
+   * when the execution ends
+   */
+  RUN
+}
@@ -0,0 +1,165 @@
+package com.github.mongobat.retry;
+
+import com.github.mongobat.changeset.Retry;
+import com.mongodb.MongoException;
+import com.mongodb.MongoNodeIsRecoveringException;
+import com.mongodb.MongoNotPrimaryException;
+import com.mongodb.MongoServerException;
+import com.mongodb.MongoSocketException;
+import com.mongodb.MongoTimeoutException;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries of changesets failing with transient driver errors.
+ * <p>
+ * An error is transient if it (or any of its causes) is a driver error labelled with one of
+ * {@link #setRetryableLabels(Set) retryable labels}, a network error, a not primary / node recovering error,
+ * a server selection timeout or a server error with one of {@link #setRetryableCodes(Set) retryable codes}.
+ * The backoff before retry <i>n</i> is random between zero and {@code min(maxBackoff, initialBackoff * 2^(n-1))}
+ * (full jitter), so instances retrying after the same step-down don't hit the new primary at once.
+ *
+ * <pre>
+ * runner.setRetryPolicy(new RetryPolicy()
+ *     .setMaxAttempts(5)
+ *     .setInitialBackoff(Duration.ofMillis(200)));
+ * </pre>
+ */
+public class RetryPolicy {
+
+  public static final String TRANSIENT_TRANSACTION_ERROR = "TransientTransactionError";
+  public static final String RETRYABLE_WRITE_ERROR = "RetryableWriteError";
+
+  private static final Duration DEFAULT_INITIAL_BACKOFF = Duration.ofMillis(100);
+  private static final Duration DEFAULT_MAX_BACKOFF = Duration.ofSeconds(10);
+  // WriteConflict, HostUnreachable, HostNotFound, NetworkTimeout, ShutdownInProgress, PrimarySteppedDown,
+  // ExceededTimeLimit, SocketException, NotWritablePrimary, InterruptedAtShutdown, InterruptedDueToReplStateChange,
+  // NotPrimaryNoSecondaryOk, NotPrimaryOrSecondary
+  private static final Set<Integer> DEFAULT_RETRYABLE_CODES =
+      Set.of(112, 6, 7, 89, 91, 189, 262, 9001, 10107, 11600, 11602, 13435, 13436);
+
+  private int maxAttempts = 3;
+  private Duration initialBackoff = DEFAULT_INITIAL_BACKOFF;
+  private Duration maxBackoff = DEFAULT_MAX_BACKOFF;
+  private Set<String> retryableLabels = Set.of(TRANSIENT_TRANSACTION_ERROR, RETRYABLE_WRITE_ERROR);
+  private Set<Integer> retryableCodes = DEFAULT_RETRYABLE_CODES;
+
+  /**
+   * @param retry changeset annotation
+   * @return policy of the annotated changeset
+   */
+  public static RetryPolicy of(Retry retry) {
+    return new RetryPolicy()
+        .setMaxAttempts(retry.maxAttempts())
+        .setInitialBackoff(Duration.ofMillis(retry.initialBackoff()))
+        .setMaxBackoff(Duration.ofMillis(retry.maxBackoff()));
+  }
+
+  /**
+   * @param error error thrown by a changeset
+   * @return true if the error or any of its causes is transient
+   */
+  public boolean isRetryable(Throwable error) {
+    for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+      if (cause instanceof MongoException && isTransient((MongoException) cause)) {
+        return true;
+      }
+      if (cause.getCause() == cause) {
+        break;
+      }
+    }
+    return false;
+  }
+
+  private boolean isTransient(MongoException error) {
+    if (retryableLabels.stream().anyMatch(error::hasErrorLabel)) {
+      return true;
+    }
+    if (error instanceof MongoSocketException || error instanceof MongoTimeoutException
+        || error instanceof MongoNotPrimaryException || error instanceof MongoNodeIsRecoveringException) {
+      return true;
+    }
+    return error instanceof MongoServerException && retryableCodes.contains(error.getCode());
+  }
+
+  /**
+   * @param retry number of the retry, starting with 1
+   * @return random backoff before the retry
+   */
+  public Duration getBackoff(int retry) {
+    long ceiling = initialBackoff.toMillis() << Math.min(retry - 1, 30);
+    long bound = Math.min(maxBackoff.toMillis(), ceiling < 0 ? Long.MAX_VALUE : ceiling);
+    return Duration.ofMillis(bound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(bound + 1));
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  /**
+   * @param maxAttempts maximal number of invocations, including the first one, 3 by default
+   * @return this policy
+   */
+  public RetryPolicy setMaxAttempts(int maxAttempts) {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("Max attempts must be positive");
+    }
+    this.maxAttempts = maxAttempts;
+    return this;
+  }
+
+  public Duration getInitialBackoff() {
+    return initialBackoff;
+  }
+
+  /**
+   * @param initialBackoff upper bound of the first backoff, doubled for each next retry, 100 ms by default
+   * @return this policy
+   */
+  public RetryPolicy setInitialBackoff(Duration initialBackoff) {
+    this.initialBackoff = initialBackoff;
+    return this;
+  }
+
+  public Duration getMaxBackoff() {
+    return maxBackoff;
+  }
+
+  /**
+   * @param maxBackoff upper bound of any backoff, 10 seconds by default
+   * @return this policy
+   */
+  public RetryPolicy setMaxBackoff(Duration maxBackoff) {
+    this.maxBackoff = maxBackoff;
+    return this;
+  }
+
+  public Set<String> getRetryableLabels() {
+    return retryableLabels;
+  }
+
+  /**
+   * @param retryableLabels error labels of transient errors, TransientTransactionError and RetryableWriteError by default
+   * @return this policy
+   */
+  public RetryPolicy setRetryableLabels(Set<String> retryableLabels) {
+    this.retryableLabels = Set.copyOf(retryableLabels);
+    return this;
+  }
+
+  public Set<Integer> getRetryableCodes() {
+    return retryableCodes;
+  }
+
+  /**
+   * @param retryableCodes server error codes of transient command errors, e.g. 112 (WriteConflict)
+   *                       and step-down codes by default
+   * @return this policy
+   */
+  public RetryPolicy setRetryableCodes(Set<Integer> retryableCodes) {
+    this.retryableCodes = Set.copyOf(retryableCodes);
+    return this;
+  }
+}
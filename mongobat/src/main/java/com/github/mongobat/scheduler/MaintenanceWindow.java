@@ -0,0 +1,165 @@
+package com.github.mongobat.scheduler;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Recurring time window in which postponed changesets may be executed.
+ * <p>
+ * Defined by a cron-like expression of days of week and a time range, e.g.
+ * <ul>
+ *   <li><tt>* 02:00-05:00</tt> - every day from 2 AM to 5 AM</li>
+ *   <li><tt>MON-FRI 01:00-04:30</tt> - working days</li>
+ *   <li><tt>SAT,SUN 22:00-06:00</tt> - weekend nights, the window ends on the next day</li>
+ * </ul>
+ */
+public class MaintenanceWindow {
+
+  private final Set<DayOfWeek> days;
+  private final LocalTime start;
+  private final LocalTime end;
+  private final ZoneId zone;
+
+  public MaintenanceWindow(Set<DayOfWeek> days, LocalTime start, LocalTime end, ZoneId zone) {
+    if (days.isEmpty()) {
+      throw new IllegalArgumentException("Maintenance window should contain at least one day");
+    }
+    if (start.equals(end)) {
+      throw new IllegalArgumentException("Maintenance window start and end should differ");
+    }
+    this.days = Collections.unmodifiableSet(EnumSet.copyOf(days));
+    this.start = start;
+    this.end = end;
+    this.zone = zone;
+  }
+
+  public static MaintenanceWindow parse(String expression) {
+    return parse(expression, ZoneId.systemDefault());
+  }
+
+  /**
+   * @param expression days of week and time range, e.g. <tt>MON-FRI 01:00-04:30</tt>
+   * @param zone       time zone of the window
+   * @return maintenance window
+   */
+  public static MaintenanceWindow parse(String expression, ZoneId zone) {
+    String[] parts = expression.trim().split("\\s+");
+    if (parts.length != 2) {
+      throw new IllegalArgumentException("Invalid maintenance window: " + expression);
+    }
+    String[] times = parts[1].split("-");
+    if (times.length != 2) {
+      throw new IllegalArgumentException("Invalid maintenance window time range: " + parts[1]);
+    }
+    try {
+      return new MaintenanceWindow(parseDays(parts[0]), LocalTime.parse(times[0]), LocalTime.parse(times[1]), zone);
+    } catch (DateTimeParseException e) {
+      throw new IllegalArgumentException("Invalid maintenance window time range: " + parts[1], e);
+    }
+  }
+
+  private static Set<DayOfWeek> parseDays(String days) {
+    if ("*".equals(days)) {
+      return EnumSet.allOf(DayOfWeek.class);
+    }
+    Set<DayOfWeek> result = EnumSet.noneOf(DayOfWeek.class);
+    for (String item : days.split(",")) {
+      String[] range = item.split("-");
+      DayOfWeek from = parseDay(range[0]);
+      DayOfWeek to = range.length > 1 ? parseDay(range[1]) : from;
+      for (DayOfWeek day = from; ; day = day.plus(1)) {
+        result.add(day);
+        if (day == to) {
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  private static DayOfWeek parseDay(String day) {
+    String name = day.trim().toUpperCase(Locale.ROOT);
+    return Arrays.stream(DayOfWeek.values())
+        .filter(d -> d.name().startsWith(name) && name.length() >= 3)
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("Invalid day of week: " + day));
+  }
+
+  /**
+   * @param time point in time
+   * @return occurrence of this window containing the given time, if any
+   */
+  public Optional<Occurrence> occurrenceAt(ZonedDateTime time) {
+    ZonedDateTime local = time.withZoneSameInstant(zone);
+    LocalDate today = local.toLocalDate();
+    for (LocalDate day : new LocalDate[]{today, today.minusDays(1)}) {
+      if (!days.contains(day.getDayOfWeek())) {
+        continue;
+      }
+      ZonedDateTime occurrenceStart = day.atTime(start).atZone(zone);
+      ZonedDateTime occurrenceEnd = (end.isAfter(start) ? day : day.plusDays(1)).atTime(end).atZone(zone);
+      if (!local.isBefore(occurrenceStart) && local.isBefore(occurrenceEnd)) {
+        return Optional.of(new Occurrence(occurrenceStart, occurrenceEnd));
+      }
+    }
+    return Optional.empty();
+  }
+
+  public Set<DayOfWeek> getDays() {
+    return days;
+  }
+
+  public LocalTime getStart() {
+    return start;
+  }
+
+  public LocalTime getEnd() {
+    return end;
+  }
+
+  public ZoneId getZone() {
+    return zone;
+  }
+
+  @Override
+  public String toString() {
+    return "MaintenanceWindow{" +
+        "days=" + days +
+        ", start=" + start +
+        ", end=" + end +
+        ", zone=" + zone +
+        '}';
+  }
+
+  /**
+   * Single occurrence of a maintenance window
+   */
+  public static class Occurrence {
+
+    private final ZonedDateTime start;
+    private final ZonedDateTime end;
+
+    Occurrence(ZonedDateTime start, ZonedDateTime end) {
+      this.start = start;
+      this.end = end;
+    }
+
+    public ZonedDateTime getStart() {
+      return start;
+    }
+
+    public ZonedDateTime getEnd() {
+      return end;
+    }
+  }
+}
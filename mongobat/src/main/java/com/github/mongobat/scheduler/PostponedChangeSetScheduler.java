@@ -0,0 +1,191 @@
+package com.github.mongobat.scheduler;
+
+import com.github.mongobat.ExecutionReport;
+import com.github.mongobat.MongoBat;
+import com.github.mongobat.changeset.CancellationToken;
+import com.github.mongobat.exception.MongoBatException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background scheduler which executes postponed changesets inside maintenance windows.
+ * <p>
+ * Every poll it checks whether a maintenance window is open and, if so, executes pending postponed changesets
+ * under the process lock. No more than the configured number of changesets run at the same time and each
+ * window occurrence has its own time budget. Changesets still running when the window closes or the budget is
+ * spent are cancelled cooperatively and resumed in the next window.
+ *
+ * <pre>
+ * PostponedChangeSetScheduler scheduler = new PostponedChangeSetScheduler(runner,
+ *     List.of(MaintenanceWindow.parse("MON-FRI 01:00-05:00")))
+ *     .setConcurrency(2)
+ *     .setWindowBudget(Duration.ofHours(3));
+ * scheduler.start();
+ * </pre>
+ */
+public class PostponedChangeSetScheduler implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(PostponedChangeSetScheduler.class);
+
+  private static final int DEFAULT_CONCURRENCY = 1;
+  private static final Duration DEFAULT_POLL_INTERVAL = Duration.ofMinutes(1);
+
+  private final MongoBat mongoBat;
+  private final List<MaintenanceWindow> windows;
+
+  private int concurrency = DEFAULT_CONCURRENCY;
+  private Duration windowBudget;
+  private Duration pollInterval = DEFAULT_POLL_INTERVAL;
+  private Clock clock = Clock.systemDefaultZone();
+
+  private ScheduledExecutorService executor;
+  private volatile CancellationToken cancellationToken = new CancellationToken();
+  private Instant budgetWindowStart;
+  private Duration budgetUsed = Duration.ZERO;
+
+  public PostponedChangeSetScheduler(MongoBat mongoBat, List<MaintenanceWindow> windows) {
+    if (windows.isEmpty()) {
+      throw new IllegalArgumentException("At least one maintenance window should be defined");
+    }
+    this.mongoBat = mongoBat;
+    this.windows = List.copyOf(windows);
+  }
+
+  public synchronized void start() {
+    if (executor != null) {
+      return;
+    }
+    cancellationToken = new CancellationToken();
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "mongobat-postponed-scheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(this::poll, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    log.info("Postponed changeset scheduler started with windows {}", windows);
+  }
+
+  /**
+   * Stops the scheduler, running changesets are cancelled and resumed in a next window
+   */
+  public synchronized void stop() {
+    if (executor == null) {
+      return;
+    }
+    cancellationToken.cancel("scheduler stopped");
+    executor.shutdown();
+    try {
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    executor = null;
+    log.info("Postponed changeset scheduler stopped");
+  }
+
+  @Override
+  public void close() {
+    stop();
+  }
+
+  private void poll() {
+    try {
+      runOnce();
+    } catch (MongoBatException | RuntimeException e) {
+      log.error("Postponed changesets execution failed", e);
+    }
+  }
+
+  /**
+   * Executes postponed changesets if a maintenance window is open right now
+   *
+   * @return execution report, or null if nothing was executed
+   * @throws MongoBatException exception
+   */
+  public ExecutionReport runOnce() throws MongoBatException {
+    ZonedDateTime now = ZonedDateTime.now(clock);
+    Optional<MaintenanceWindow.Occurrence> occurrence = windows.stream()
+        .map(window -> window.occurrenceAt(now))
+        .flatMap(Optional::stream)
+        .findFirst();
+    if (occurrence.isEmpty()) {
+      return null;
+    }
+
+    Instant windowStart = occurrence.get().getStart().toInstant();
+    if (!windowStart.equals(budgetWindowStart)) {
+      budgetWindowStart = windowStart;
+      budgetUsed = Duration.ZERO;
+    }
+
+    Instant deadline = occurrence.get().getEnd().toInstant();
+    if (windowBudget != null) {
+      Duration budgetLeft = windowBudget.minus(budgetUsed);
+      if (budgetLeft.isNegative() || budgetLeft.isZero()) {
+        log.debug("Time budget of maintenance window started at {} is spent", windowStart);
+        return null;
+      }
+      Instant budgetDeadline = now.toInstant().plus(budgetLeft);
+      if (budgetDeadline.isBefore(deadline)) {
+        deadline = budgetDeadline;
+      }
+    }
+
+    Instant started = clock.instant();
+    try {
+      ExecutionReport report = mongoBat.executePostponed(concurrency, deadline, cancellationToken.newChild());
+      if (report != null) {
+        log.info("Postponed changesets: {} executed, {} failed, {} still postponed",
+            report.getExecuted(), report.getFailed(), report.getPostponed());
+      }
+      return report;
+    } finally {
+      budgetUsed = budgetUsed.plus(Duration.between(started, clock.instant()));
+    }
+  }
+
+  /**
+   * @param concurrency number of postponed changesets executed at the same time, default 1
+   * @return scheduler object for fluent interface
+   */
+  public PostponedChangeSetScheduler setConcurrency(int concurrency) {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("Concurrency should be greater than 0");
+    }
+    this.concurrency = concurrency;
+    return this;
+  }
+
+  /**
+   * @param windowBudget maximal execution time within one window occurrence, the whole window by default
+   * @return scheduler object for fluent interface
+   */
+  public PostponedChangeSetScheduler setWindowBudget(Duration windowBudget) {
+    this.windowBudget = windowBudget;
+    return this;
+  }
+
+  /**
+   * @param pollInterval how often the scheduler checks for an open window, default 1 minute
+   * @return scheduler object for fluent interface
+   */
+  public PostponedChangeSetScheduler setPollInterval(Duration pollInterval) {
+    this.pollInterval = pollInterval;
+    return this;
+  }
+
+  /* Visible for testing */
+  PostponedChangeSetScheduler setClock(Clock clock) {
+    this.clock = clock;
+    return this;
+  }
+}
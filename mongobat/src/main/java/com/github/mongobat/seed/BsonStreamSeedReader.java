@@ -0,0 +1,45 @@
+package com.github.mongobat.seed;
+
+import org.bson.RawBsonDocument;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads concatenated BSON documents from a stream, used for classpath resources which can't be memory-mapped
+ */
+class BsonStreamSeedReader implements SeedReader {
+
+  private final DataInputStream input;
+
+  BsonStreamSeedReader(InputStream input) {
+    this.input = new DataInputStream(input);
+  }
+
+  @Override
+  public RawBsonDocument next() throws IOException {
+    byte[] header = new byte[4];
+    int read = input.readNBytes(header, 0, header.length);
+    if (read == 0) {
+      return null;
+    }
+    if (read < header.length) {
+      throw new EOFException("Truncated BSON document");
+    }
+    int length = (header[0] & 0xff) | (header[1] & 0xff) << 8 | (header[2] & 0xff) << 16 | (header[3] & 0xff) << 24;
+    if (length < 5) {
+      throw new EOFException("Invalid BSON document length " + length);
+    }
+    byte[] bytes = new byte[length];
+    System.arraycopy(header, 0, bytes, 0, header.length);
+    input.readFully(bytes, header.length, length - header.length);
+    return new RawBsonDocument(bytes);
+  }
+
+  @Override
+  public void close() throws IOException {
+    input.close();
+  }
+}
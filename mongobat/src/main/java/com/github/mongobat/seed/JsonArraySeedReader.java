@@ -0,0 +1,51 @@
+package com.github.mongobat.seed;
+
+import org.bson.BsonType;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.RawBsonDocumentCodec;
+import org.bson.json.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads elements of an Extended JSON array straight into BSON, without holding the array in memory
+ */
+class JsonArraySeedReader implements SeedReader {
+
+  private static final RawBsonDocumentCodec CODEC = new RawBsonDocumentCodec();
+
+  private final Reader source;
+  private final JsonReader reader;
+  private boolean started;
+  private boolean finished;
+
+  JsonArraySeedReader(Reader source) {
+    this.source = source;
+    this.reader = new JsonReader(source);
+  }
+
+  @Override
+  public RawBsonDocument next() {
+    if (finished) {
+      return null;
+    }
+    if (!started) {
+      reader.readStartArray();
+      started = true;
+    }
+    if (reader.readBsonType() == BsonType.END_OF_DOCUMENT) {
+      reader.readEndArray();
+      finished = true;
+      return null;
+    }
+    return CODEC.decode(reader, DecoderContext.builder().build());
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+    source.close();
+  }
+}
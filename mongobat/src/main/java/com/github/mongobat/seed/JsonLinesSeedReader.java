@@ -0,0 +1,29 @@
+package com.github.mongobat.seed;
+
+import org.bson.RawBsonDocument;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+
+class JsonLinesSeedReader implements SeedReader {
+
+  private final BufferedReader reader;
+
+  JsonLinesSeedReader(BufferedReader reader) {
+    this.reader = reader;
+  }
+
+  @Override
+  public RawBsonDocument next() throws IOException {
+    String line;
+    do {
+      line = reader.readLine();
+    } while (line != null && line.isBlank());
+    return line == null ? null : RawBsonDocument.parse(line);
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+}
@@ -0,0 +1,64 @@
+package com.github.mongobat.seed;
+
+import org.bson.RawBsonDocument;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads concatenated BSON documents from a memory-mapped file. Files are mapped in windows, so files over 2 GB
+ * can be read too; documents are copied out of the mapping as raw bytes and never decoded.
+ */
+class MappedBsonSeedReader implements SeedReader {
+
+  private static final long WINDOW_SIZE = 256L * 1024 * 1024;
+
+  private final FileChannel channel;
+  private final long size;
+  private MappedByteBuffer window;
+  private long windowStart;
+  private long position;
+
+  MappedBsonSeedReader(Path path) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    this.size = channel.size();
+  }
+
+  @Override
+  public RawBsonDocument next() throws IOException {
+    if (position >= size) {
+      return null;
+    }
+    if (size - position < 4) {
+      throw new EOFException("Truncated BSON document at " + position);
+    }
+    ensureMapped(4);
+    int length = window.getInt((int) (position - windowStart));
+    if (length < 5 || size - position < length) {
+      throw new EOFException("Truncated BSON document at " + position);
+    }
+    ensureMapped(length);
+    byte[] bytes = new byte[length];
+    window.duplicate().position((int) (position - windowStart)).get(bytes);
+    position += length;
+    return new RawBsonDocument(bytes);
+  }
+
+  private void ensureMapped(int length) throws IOException {
+    if (window == null || position + length > windowStart + window.capacity()) {
+      windowStart = position;
+      window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, Math.max(WINDOW_SIZE, length)));
+      window.order(ByteOrder.LITTLE_ENDIAN);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,35 @@
+package com.github.mongobat.seed;
+
+/**
+ * Format of a seed resource
+ */
+public enum SeedFormat {
+  /**
+   * one Extended JSON document per line, blank lines are skipped
+   */
+  JSON_LINES,
+  /**
+   * Extended JSON array of documents
+   */
+  JSON_ARRAY,
+  /**
+   * concatenated BSON documents, as written by <tt>mongodump</tt>
+   */
+  BSON;
+
+  /**
+   * @param location resource location
+   * @return format matching the location's extension
+   */
+  public static SeedFormat of(String location) {
+    String name = location.toLowerCase();
+    if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+      return JSON_LINES;
+    } else if (name.endsWith(".json")) {
+      return JSON_ARRAY;
+    } else if (name.endsWith(".bson")) {
+      return BSON;
+    }
+    throw new IllegalArgumentException("Unknown seed format of " + location);
+  }
+}
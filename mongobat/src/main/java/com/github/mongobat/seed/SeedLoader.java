@@ -0,0 +1,112 @@
+package com.github.mongobat.seed;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams seed documents into a collection in bounded unordered bulk writes. Documents stay in their raw BSON form,
+ * at most one batch of them is held in memory.
+ *
+ * <pre>
+ * new SeedLoader(1000, List.of("code"))
+ *     .load(SeedSource.of("seed/currencies.jsonl"), db.getCollection("currencies"));
+ * </pre>
+ */
+public class SeedLoader {
+  private static final Logger log = LoggerFactory.getLogger(SeedLoader.class);
+
+  private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+  private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+
+  private final int batchSize;
+  private final List<String> upsertKeys;
+
+  /**
+   * @param batchSize  number of documents written in one bulk write
+   * @param upsertKeys top level fields identifying a document, empty to insert documents
+   */
+  public SeedLoader(int batchSize, List<String> upsertKeys) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be positive");
+    }
+    this.batchSize = batchSize;
+    this.upsertKeys = List.copyOf(upsertKeys);
+  }
+
+  /**
+   * @param source     seed data
+   * @param database   target database
+   * @param collection target collection name
+   * @return number of written documents
+   * @throws IOException if the data can't be read
+   */
+  public SeedResult load(SeedSource source, MongoDatabase database, String collection) throws IOException {
+    return load(source, database.getCollection(collection, RawBsonDocument.class));
+  }
+
+  /**
+   * @param source     seed data
+   * @param collection target collection
+   * @return number of written documents
+   * @throws IOException              if the data can't be read
+   * @throws IllegalArgumentException if a document has no upsert key
+   */
+  public SeedResult load(SeedSource source, MongoCollection<?> collection) throws IOException {
+    MongoCollection<RawBsonDocument> target = collection.withDocumentClass(RawBsonDocument.class);
+    SeedResult result = new SeedResult();
+    List<WriteModel<RawBsonDocument>> batch = new ArrayList<>(batchSize);
+    try (SeedReader reader = source.open()) {
+      RawBsonDocument document;
+      while ((document = reader.next()) != null) {
+        batch.add(toWriteModel(document));
+        if (batch.size() == batchSize) {
+          write(target, batch, result);
+          batch = new ArrayList<>(batchSize);
+        }
+      }
+    }
+    if (!batch.isEmpty()) {
+      write(target, batch, result);
+    }
+    log.info("Seed {} loaded into {}: {}", source, target.getNamespace(), result);
+    return result;
+  }
+
+  private WriteModel<RawBsonDocument> toWriteModel(RawBsonDocument document) {
+    if (upsertKeys.isEmpty()) {
+      return new InsertOneModel<>(document);
+    }
+    BsonDocument filter = new BsonDocument();
+    for (String key : upsertKeys) {
+      if (!document.containsKey(key)) {
+        throw new IllegalArgumentException("Seed document without upsert key " + key + ": " + document.toJson());
+      }
+      filter.put(key, document.get(key));
+    }
+    return new ReplaceOneModel<>(filter, document, UPSERT);
+  }
+
+  private void write(MongoCollection<RawBsonDocument> collection, List<WriteModel<RawBsonDocument>> batch, SeedResult result) {
+    BulkWriteResult bulkWriteResult = collection.bulkWrite(batch, UNORDERED);
+    if (bulkWriteResult.wasAcknowledged()) {
+      result.addBatch(batch.size(), bulkWriteResult.getInsertedCount(), bulkWriteResult.getUpserts().size(),
+          bulkWriteResult.getModifiedCount());
+    } else {
+      result.addBatch(batch.size(), 0, 0, 0);
+    }
+  }
+}
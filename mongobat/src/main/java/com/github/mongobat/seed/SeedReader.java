@@ -0,0 +1,18 @@
+package com.github.mongobat.seed;
+
+import org.bson.RawBsonDocument;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads documents of a seed resource one by one
+ */
+public interface SeedReader extends Closeable {
+
+  /**
+   * @return next document, or null at the end of the resource
+   * @throws IOException if the resource can't be read
+   */
+  RawBsonDocument next() throws IOException;
+}
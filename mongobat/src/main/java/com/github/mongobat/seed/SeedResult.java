@@ -0,0 +1,52 @@
+package com.github.mongobat.seed;
+
+/**
+ * Number of documents written by a seed
+ */
+public class SeedResult {
+
+  private long read;
+  private long inserted;
+  private long upserted;
+  private long modified;
+  private int batches;
+
+  void addBatch(int read, long inserted, long upserted, long modified) {
+    this.read += read;
+    this.inserted += inserted;
+    this.upserted += upserted;
+    this.modified += modified;
+    this.batches++;
+  }
+
+  public long getRead() {
+    return read;
+  }
+
+  public long getInserted() {
+    return inserted;
+  }
+
+  public long getUpserted() {
+    return upserted;
+  }
+
+  public long getModified() {
+    return modified;
+  }
+
+  public int getBatches() {
+    return batches;
+  }
+
+  @Override
+  public String toString() {
+    return "SeedResult{" +
+        "read=" + read +
+        ", inserted=" + inserted +
+        ", upserted=" + upserted +
+        ", modified=" + modified +
+        ", batches=" + batches +
+        '}';
+  }
+}
@@ -0,0 +1,106 @@
+package com.github.mongobat.seed;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Location and format of seed data
+ */
+public class SeedSource {
+
+  private static final String FILE_PREFIX = "file:";
+  private static final String CLASSPATH_PREFIX = "classpath:";
+
+  private final String resource;
+  private final Path path;
+  private final SeedFormat format;
+
+  private SeedSource(String resource, Path path, SeedFormat format) {
+    this.resource = resource;
+    this.path = path;
+    this.format = format;
+  }
+
+  /**
+   * @param resource classpath resource
+   * @return source with format given by the resource's extension
+   */
+  public static SeedSource classpath(String resource) {
+    String name = resource.startsWith("/") ? resource.substring(1) : resource;
+    return new SeedSource(name, null, SeedFormat.of(name));
+  }
+
+  /**
+   * @param path file
+   * @return source with format given by the file's extension
+   */
+  public static SeedSource file(Path path) {
+    return new SeedSource(null, path, SeedFormat.of(path.toString()));
+  }
+
+  /**
+   * @param location classpath resource, optionally with <tt>classpath:</tt> prefix, or a file with <tt>file:</tt> prefix
+   * @return source of the location
+   */
+  public static SeedSource of(String location) {
+    if (location.startsWith(FILE_PREFIX)) {
+      return file(Paths.get(location.substring(FILE_PREFIX.length())));
+    }
+    return classpath(location.startsWith(CLASSPATH_PREFIX) ? location.substring(CLASSPATH_PREFIX.length()) : location);
+  }
+
+  /**
+   * @param format format of the data
+   * @return source with the given format
+   */
+  public SeedSource withFormat(SeedFormat format) {
+    return new SeedSource(resource, path, format);
+  }
+
+  public SeedFormat getFormat() {
+    return format;
+  }
+
+  /**
+   * @return reader of the documents, files in BSON format are memory-mapped
+   * @throws IOException if the data can't be opened
+   */
+  public SeedReader open() throws IOException {
+    if (format == SeedFormat.BSON && path != null) {
+      return new MappedBsonSeedReader(path);
+    }
+    InputStream input = openStream();
+    switch (format) {
+      case BSON:
+        return new BsonStreamSeedReader(new BufferedInputStream(input));
+      case JSON_ARRAY:
+        return new JsonArraySeedReader(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)));
+      default:
+        return new JsonLinesSeedReader(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)));
+    }
+  }
+
+  private InputStream openStream() throws IOException {
+    if (path != null) {
+      return Files.newInputStream(path);
+    }
+    InputStream input = Thread.currentThread().getContextClassLoader().getResourceAsStream(resource);
+    if (input == null) {
+      throw new FileNotFoundException("Seed resource " + resource + " not found");
+    }
+    return input;
+  }
+
+  @Override
+  public String toString() {
+    return (path != null ? FILE_PREFIX + path : CLASSPATH_PREFIX + resource) + " (" + format + ")";
+  }
+}
@@ -0,0 +1,82 @@
+package com.github.mongobat.stats;
+
+import org.bson.Document;
+
+/**
+ * Document count and sizes of a collection reported by <tt>collStats</tt>, or a difference of two such snapshots
+ */
+public class CollectionStats {
+
+  public static final String KEY_COLLECTION_STATS = "collStats";
+
+  static final CollectionStats EMPTY = new CollectionStats(0, 0, 0, 0);
+
+  private final long count;
+  private final long size;
+  private final long storageSize;
+  private final long totalIndexSize;
+
+  public CollectionStats(long count, long size, long storageSize, long totalIndexSize) {
+    this.count = count;
+    this.size = size;
+    this.storageSize = storageSize;
+    this.totalIndexSize = totalIndexSize;
+  }
+
+  /**
+   * @param collStats result of the <tt>collStats</tt> command
+   * @return snapshot of the collection
+   */
+  public static CollectionStats of(Document collStats) {
+    return new CollectionStats(number(collStats, "count"), number(collStats, "size"),
+        number(collStats, "storageSize"), number(collStats, "totalIndexSize"));
+  }
+
+  private static long number(Document document, String key) {
+    Number value = document.get(key, Number.class);
+    return value == null ? 0 : value.longValue();
+  }
+
+  /**
+   * @param before earlier snapshot of the same collection
+   * @return change since the earlier snapshot
+   */
+  public CollectionStats minus(CollectionStats before) {
+    return new CollectionStats(count - before.count, size - before.size,
+        storageSize - before.storageSize, totalIndexSize - before.totalIndexSize);
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * @return uncompressed data size in bytes
+   */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * @return storage allocated for data in bytes
+   */
+  public long getStorageSize() {
+    return storageSize;
+  }
+
+  public long getTotalIndexSize() {
+    return totalIndexSize;
+  }
+
+  public Document toDocument() {
+    return new Document("count", count)
+        .append("size", size)
+        .append("storageSize", storageSize)
+        .append("totalIndexSize", totalIndexSize);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count %+d, size %+d B, storage %+d B, indexes %+d B", count, size, storageSize, totalIndexSize);
+  }
+}
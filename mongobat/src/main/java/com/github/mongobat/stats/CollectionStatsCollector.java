@@ -0,0 +1,101 @@
+package com.github.mongobat.stats;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Takes <tt>collStats</tt> snapshots of collections, all collections of a snapshot concurrently.
+ * A collection which does not exist has empty stats. Collections whose stats can't be read are left out.
+ */
+public class CollectionStatsCollector {
+  private static final Logger log = LoggerFactory.getLogger(CollectionStatsCollector.class);
+
+  private static final int NAMESPACE_NOT_FOUND = 26;
+
+  private final AtomicInteger threadCount = new AtomicInteger();
+  private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+    Thread thread = new Thread(runnable, "mongobat-stats-" + threadCount.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  /**
+   * @param database    database of the collections
+   * @param collections collection names
+   * @return stats of each collection, in the given order
+   */
+  public Map<String, CollectionStats> snapshot(MongoDatabase database, Collection<String> collections) {
+    Map<String, CompletableFuture<CollectionStats>> futures = new LinkedHashMap<>();
+    for (String collection : collections) {
+      futures.put(collection, CompletableFuture.supplyAsync(() -> collStats(database, collection), executor));
+    }
+
+    Map<String, CollectionStats> snapshot = new LinkedHashMap<>();
+    futures.forEach((collection, future) -> {
+      try {
+        snapshot.put(collection, future.join());
+      } catch (CompletionException e) {
+        log.warn("Mongobee failed to read stats of {}: {}", collection, e.getCause().getMessage());
+      }
+    });
+    return snapshot;
+  }
+
+  /**
+   * @param before snapshot taken first
+   * @param after  snapshot taken later
+   * @return change of each collection present in both snapshots
+   */
+  public static Map<String, CollectionStats> delta(Map<String, CollectionStats> before, Map<String, CollectionStats> after) {
+    Map<String, CollectionStats> delta = new LinkedHashMap<>();
+    after.forEach((collection, stats) -> {
+      if (before.containsKey(collection)) {
+        delta.put(collection, stats.minus(before.get(collection)));
+      }
+    });
+    return delta;
+  }
+
+  /**
+   * @param stats stats of collections
+   * @return stats of each collection as a document with its name, as collection names may contain dots
+   */
+  public static List<Document> toDocuments(Map<String, CollectionStats> stats) {
+    List<Document> documents = new ArrayList<>(stats.size());
+    stats.forEach((collection, collectionStats) -> {
+      Document document = new Document("collection", collection);
+      document.putAll(collectionStats.toDocument());
+      documents.add(document);
+    });
+    return documents;
+  }
+
+  private static CollectionStats collStats(MongoDatabase database, String collection) {
+    try {
+      return CollectionStats.of(database.runCommand(new Document("collStats", collection)));
+    } catch (MongoCommandException e) {
+      if (e.getErrorCode() == NAMESPACE_NOT_FOUND) {
+        return CollectionStats.EMPTY;
+      }
+      throw e;
+    }
+  }
+
+  public void close() {
+    executor.shutdownNow();
+  }
+}
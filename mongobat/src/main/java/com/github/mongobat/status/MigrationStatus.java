@@ -0,0 +1,193 @@
+package com.github.mongobat.status;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.bson.Document;
+
+import com.github.mongobat.changeset.ChangeEntry;
+import com.github.mongobat.dao.LockDao;
+import com.github.mongobat.progress.Progress;
+
+/**
+ * Immutable snapshot of the migration state: process lock holder, running changesets with their reported progress
+ * and progress of the run
+ */
+public class MigrationStatus {
+
+  private final boolean lockHeld;
+  private final String owner;
+  private final Instant acquiredAt;
+  private final List<String> runningChangeIds;
+  private final int completedChanges;
+  private final String lastChangeId;
+  private final String lastChangeStatus;
+  private final Map<String, Progress> progress;
+  private final Instant updatedAt;
+
+  private MigrationStatus(boolean lockHeld, String owner, Instant acquiredAt, List<String> runningChangeIds,
+      int completedChanges, String lastChangeId, String lastChangeStatus, Map<String, Progress> progress,
+      Instant updatedAt) {
+    this.lockHeld = lockHeld;
+    this.owner = owner;
+    this.acquiredAt = acquiredAt;
+    this.runningChangeIds = Collections.unmodifiableList(runningChangeIds);
+    this.completedChanges = completedChanges;
+    this.lastChangeId = lastChangeId;
+    this.lastChangeStatus = lastChangeStatus;
+    this.progress = Collections.unmodifiableMap(progress);
+    this.updatedAt = updatedAt;
+  }
+
+  static MigrationStatus notLocked() {
+    return new MigrationStatus(false, null, null, List.of(), 0, null, null, Map.of(), Instant.now());
+  }
+
+  /**
+   * @param lock lock document, null if the lock is not held
+   * @return status of the lock
+   */
+  static MigrationStatus fromLock(Document lock) {
+    if (lock == null) {
+      return notLocked();
+    }
+    return new MigrationStatus(true,
+        lock.getString(LockDao.KEY_OWNER),
+        Optional.ofNullable(lock.getDate(LockDao.KEY_ACQUIRED_AT)).map(Date::toInstant).orElse(null),
+        lock.getList(LockDao.KEY_RUNNING, String.class, List.of()),
+        Optional.ofNullable(lock.getInteger(LockDao.KEY_COMPLETED)).orElse(0),
+        null, null, Map.of(), Instant.now());
+  }
+
+  /**
+   * @param changeEntry changelog document
+   * @return copy of this status with the last recorded change
+   */
+  MigrationStatus withLastChange(Document changeEntry) {
+    String changeId = Optional.ofNullable(changeEntry.getString(ChangeEntry.KEY_ORIGINAL_CHANGE_ID))
+        .orElse(changeEntry.getString(ChangeEntry.KEY_CHANGE_ID));
+    return new MigrationStatus(lockHeld, owner, acquiredAt, runningChangeIds, completedChanges,
+        changeId, changeEntry.getString(ChangeEntry.KEY_STATUS), progress, Instant.now());
+  }
+
+  /**
+   * @param changeEntry changelog document with progress of a running change
+   * @return copy of this status with the progress, ignored if the change is not running
+   */
+  MigrationStatus withProgress(Document changeEntry) {
+    String changeId = changeEntry.getString(ChangeEntry.KEY_CHANGE_ID);
+    Document document = changeEntry.get(ChangeEntry.KEY_PROGRESS, Document.class);
+    if (document == null || !runningChangeIds.contains(changeId)) {
+      return this;
+    }
+    Map<String, Progress> updated = new LinkedHashMap<>(progress);
+    updated.put(changeId, Progress.fromDocument(changeId, document));
+    return new MigrationStatus(lockHeld, owner, acquiredAt, runningChangeIds, completedChanges,
+        lastChangeId, lastChangeStatus, updated, Instant.now());
+  }
+
+  /**
+   * @param previous previous status
+   * @return copy of this status which keeps the last recorded change of the previous one
+   */
+  MigrationStatus withLastChangeOf(MigrationStatus previous) {
+    if (previous == null) {
+      return this;
+    }
+    Map<String, Progress> running = previous.progress.entrySet().stream()
+        .filter(entry -> runningChangeIds.contains(entry.getKey()))
+        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> b, LinkedHashMap::new));
+    return new MigrationStatus(lockHeld, owner, acquiredAt, runningChangeIds, completedChanges,
+        previous.lastChangeId, previous.lastChangeStatus, running, updatedAt);
+  }
+
+  public boolean isLockHeld() {
+    return lockHeld;
+  }
+
+  /**
+   * @return installation id of the lock holder
+   */
+  public String getOwner() {
+    return owner;
+  }
+
+  public Instant getAcquiredAt() {
+    return acquiredAt;
+  }
+
+  /**
+   * @return ids of changesets being executed by the lock holder
+   */
+  public List<String> getRunningChangeIds() {
+    return runningChangeIds;
+  }
+
+  /**
+   * @return number of changesets finished since the lock was acquired
+   */
+  public int getCompletedChanges() {
+    return completedChanges;
+  }
+
+  /**
+   * @return id of the last recorded change, known only when the changelog is watched
+   */
+  public String getLastChangeId() {
+    return lastChangeId;
+  }
+
+  public String getLastChangeStatus() {
+    return lastChangeStatus;
+  }
+
+  /**
+   * @return last reported progress of running changesets, by change id
+   */
+  public Map<String, Progress> getProgress() {
+    return progress;
+  }
+
+  /**
+   * @return human readable state, e.g. "running backfill: 72%, 18 min left"
+   */
+  public String getSummary() {
+    if (!lockHeld) {
+      return "not running";
+    }
+    if (runningChangeIds.isEmpty()) {
+      return "running, " + completedChanges + " changes completed";
+    }
+    return "running " + runningChangeIds.stream()
+        .map(changeId -> Optional.ofNullable(progress.get(changeId)).map(Progress::toString).orElse(changeId))
+        .collect(Collectors.joining(", "));
+  }
+
+  /**
+   * @return time the snapshot was taken
+   */
+  public Instant getUpdatedAt() {
+    return updatedAt;
+  }
+
+  @Override
+  public String toString() {
+    return "MigrationStatus{" +
+        "lockHeld=" + lockHeld +
+        ", owner='" + owner + '\'' +
+        ", acquiredAt=" + acquiredAt +
+        ", runningChangeIds=" + runningChangeIds +
+        ", completedChanges=" + completedChanges +
+        ", lastChangeId='" + lastChangeId + '\'' +
+        ", lastChangeStatus='" + lastChangeStatus + '\'' +
+        ", progress=" + progress.values() +
+        ", updatedAt=" + updatedAt +
+        '}';
+  }
+}
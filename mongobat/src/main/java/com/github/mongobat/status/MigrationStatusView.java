@@ -0,0 +1,171 @@
+package com.github.mongobat.status;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.mongobat.changeset.ChangeEntry;
+import com.github.mongobat.dao.LockDao;
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+
+/**
+ * Locally cached view of the migration status, cheap enough for frequent readiness checks.
+ * <p>
+ * The view watches the lock and changelog collections through a change stream and keeps the latest snapshot
+ * in memory, so status queries don't reach the database. When change streams are not available
+ * (e.g. standalone server) or the stream breaks, the lock document is read with a point query
+ * and cached for the configured TTL; reopening the stream is retried after the TTL as well.
+ */
+public class MigrationStatusView implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(MigrationStatusView.class);
+
+  private final MongoDatabase db;
+  private final LockDao lockDao;
+  private final String changelogCollectionName;
+  private final Duration cacheTtl;
+  private final boolean watch;
+  private Clock clock = Clock.systemUTC();
+
+  private volatile MigrationStatus status;
+  private volatile boolean streaming;
+  private volatile boolean closed;
+  private Instant lastRead;
+  private Instant lastWatchAttempt;
+  private MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+
+  public MigrationStatusView(MongoDatabase db, LockDao lockDao, String changelogCollectionName, Duration cacheTtl,
+      boolean watch) {
+    this.db = db;
+    this.lockDao = lockDao;
+    this.changelogCollectionName = changelogCollectionName;
+    this.cacheTtl = cacheTtl;
+    this.watch = watch;
+  }
+
+  /**
+   * @return latest known status, at most TTL old when the change stream is not available
+   */
+  public synchronized MigrationStatus getStatus() {
+    if (streaming) {
+      return status;
+    }
+
+    Instant now = clock.instant();
+    if (watch && !closed && (lastWatchAttempt == null || !now.isBefore(lastWatchAttempt.plus(cacheTtl)))) {
+      lastWatchAttempt = now;
+      if (openChangeStream()) {
+        return status;
+      }
+    }
+
+    if (lastRead == null || !now.isBefore(lastRead.plus(cacheTtl))) {
+      readLock();
+      lastRead = now;
+    }
+    return status;
+  }
+
+  private boolean openChangeStream() {
+    List<Bson> pipeline = List.of(Aggregates.match(
+        Filters.in("ns.coll", lockDao.getLockCollectionName(), changelogCollectionName)));
+    try {
+      cursor = db.watch(pipeline).fullDocument(FullDocument.UPDATE_LOOKUP).cursor();
+    } catch (MongoException e) {
+      log.info("Change streams are not available, migration status is read with TTL {}: {}", cacheTtl, e.getMessage());
+      return false;
+    }
+
+    // the stream is open before the initial read, so no change between them is missed
+    readLock();
+    streaming = true;
+
+    Thread thread = new Thread(this::consume, "mongobat-status-watch");
+    thread.setDaemon(true);
+    thread.start();
+    return true;
+  }
+
+  private void consume() {
+    MongoChangeStreamCursor<ChangeStreamDocument<Document>> current = cursor;
+    try {
+      while (!closed) {
+        ChangeStreamDocument<Document> event = current.tryNext();
+        if (event == null && current.getServerCursor() == null) {
+          // invalidated (e.g. database dropped) or exhausted, tryNext() would return immediately from now on
+          log.info("Migration status change stream ended, falling back to cached reads");
+          break;
+        }
+        if (event != null && event.getNamespace() != null) {
+          apply(event.getNamespace().getCollectionName(), event.getOperationType(), event.getFullDocument());
+        }
+      }
+    } catch (MongoException | IllegalStateException e) {
+      if (!closed) {
+        log.warn("Migration status change stream failed, falling back to cached reads", e);
+      }
+    } finally {
+      streaming = false;
+      current.close();
+    }
+  }
+
+  /* Visible for testing */
+  synchronized void apply(String collectionName, OperationType operationType, Document fullDocument) {
+    if (collectionName.equals(lockDao.getLockCollectionName())) {
+      if (operationType == OperationType.DELETE) {
+        status = MigrationStatus.notLocked().withLastChangeOf(status);
+      } else if (fullDocument != null && lockDao.isLockDocument(fullDocument)) {
+        status = MigrationStatus.fromLock(fullDocument).withLastChangeOf(status);
+      }
+    } else if (collectionName.equals(changelogCollectionName) && fullDocument != null) {
+      MigrationStatus current = status != null ? status : MigrationStatus.notLocked();
+      // progress updates of running changes are not recorded changes
+      status = fullDocument.containsKey(ChangeEntry.KEY_PROGRESS)
+          ? current.withProgress(fullDocument) : current.withLastChange(fullDocument);
+    }
+  }
+
+  private void readLock() {
+    MigrationStatus lockStatus = MigrationStatus.fromLock(lockDao.findLock(db)).withLastChangeOf(status);
+    if (!lockStatus.getRunningChangeIds().isEmpty()) {
+      for (Document entry : db.getCollection(changelogCollectionName)
+          .find(Filters.and(Filters.in(ChangeEntry.KEY_CHANGE_ID, lockStatus.getRunningChangeIds()),
+              Filters.exists(ChangeEntry.KEY_PROGRESS)))
+          .projection(Projections.include(ChangeEntry.KEY_CHANGE_ID, ChangeEntry.KEY_PROGRESS))
+          .into(new ArrayList<>())) {
+        lockStatus = lockStatus.withProgress(entry);
+      }
+    }
+    status = lockStatus;
+  }
+
+  /* Visible for testing */
+  MigrationStatus getStatusSnapshot() {
+    return status;
+  }
+
+  /* Visible for testing */
+  void setClock(Clock clock) {
+    this.clock = clock;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+  }
+}
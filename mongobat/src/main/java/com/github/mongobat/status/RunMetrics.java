@@ -0,0 +1,141 @@
+package com.github.mongobat.status;
+
+import com.github.mongobat.ExecutionReport;
+import com.github.mongobat.progress.Progress;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Live figures of the run of this process: lock wait, running and finished changesets with their durations,
+ * last reported progress and the report of the run. Fed by MongoBat, read by {@link StatusServer}.
+ */
+public class RunMetrics {
+
+  private Instant startedAt;
+  private Instant finishedAt;
+  private Duration lockWait = Duration.ZERO;
+  private boolean lockAcquired;
+  private ExecutionReport report;
+  private final Map<String, Instant> running = new LinkedHashMap<>();
+  private final Map<String, Duration> durations = new LinkedHashMap<>();
+  private final Map<String, String> outcomes = new LinkedHashMap<>();
+  private final Map<String, Progress> progress = new LinkedHashMap<>();
+
+  /**
+   * Forgets the previous run
+   */
+  public synchronized void runStarted() {
+    startedAt = Instant.now();
+    finishedAt = null;
+    lockWait = Duration.ZERO;
+    lockAcquired = false;
+    report = null;
+    running.clear();
+    durations.clear();
+    outcomes.clear();
+    progress.clear();
+  }
+
+  public synchronized void runFinished() {
+    finishedAt = Instant.now();
+  }
+
+  /**
+   * @param wait     time spent acquiring the process lock
+   * @param acquired whether the lock was acquired
+   */
+  public synchronized void lockWaited(Duration wait, boolean acquired) {
+    lockWait = lockWait.plus(wait);
+    lockAcquired = acquired;
+  }
+
+  /**
+   * @param changeId changeset being started
+   * @param report   report of the run the changeset belongs to
+   */
+  public synchronized void changeSetStarted(String changeId, ExecutionReport report) {
+    this.report = report;
+    running.put(changeId, Instant.now());
+  }
+
+  /**
+   * @param changeId changeset which finished
+   * @param outcome  outcome, e.g. "succeeded" or "failed"
+   */
+  public synchronized void changeSetFinished(String changeId, String outcome) {
+    Instant started = running.remove(changeId);
+    if (started != null) {
+      durations.put(changeId, Duration.between(started, Instant.now()));
+      outcomes.put(changeId, outcome);
+    }
+  }
+
+  public synchronized void progressReported(Progress reported) {
+    progress.put(reported.getChangeId(), reported);
+  }
+
+  public synchronized Instant getStartedAt() {
+    return startedAt;
+  }
+
+  /**
+   * @return end of the last run, null while running
+   */
+  public synchronized Instant getFinishedAt() {
+    return finishedAt;
+  }
+
+  /**
+   * @return duration of the run so far, zero before the first run
+   */
+  public synchronized Duration getDuration() {
+    return startedAt == null ? Duration.ZERO : Duration.between(startedAt, finishedAt == null ? Instant.now() : finishedAt);
+  }
+
+  public synchronized Duration getLockWait() {
+    return lockWait;
+  }
+
+  public synchronized boolean isLockAcquired() {
+    return lockAcquired;
+  }
+
+  /**
+   * @return report of the run, null before the first changeset
+   */
+  public synchronized ExecutionReport getReport() {
+    return report;
+  }
+
+  /**
+   * @return changesets running in this process, with their start time
+   */
+  public synchronized Map<String, Instant> getRunning() {
+    return Collections.unmodifiableMap(new LinkedHashMap<>(running));
+  }
+
+  /**
+   * @return durations of finished changesets, by change id
+   */
+  public synchronized Map<String, Duration> getDurations() {
+    return Collections.unmodifiableMap(new LinkedHashMap<>(durations));
+  }
+
+  /**
+   * @return outcomes of finished changesets, by change id
+   */
+  public synchronized Map<String, String> getOutcomes() {
+    return Collections.unmodifiableMap(new LinkedHashMap<>(outcomes));
+  }
+
+  /**
+   * @return last progress reported by changesets of this run, by change id
+   */
+  public synchronized Map<String, Progress> getProgress() {
+    return Collections.unmodifiableMap(new LinkedHashMap<>(progress));
+  }
+}
@@ -0,0 +1,248 @@
+package com.github.mongobat.status;
+
+import com.github.mongobat.ExecutionReport;
+import com.github.mongobat.exception.MongoBatException;
+import com.github.mongobat.progress.Progress;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Embedded HTTP server exposing the migration, for processes running headless, e.g. in init containers:
+ * <ul>
+ * <li><tt>/status</tt> - JSON with the lock holder, running changesets, progress and report counters</li>
+ * <li><tt>/metrics</tt> - Prometheus text format with run and changeset durations, lock wait and throughput</li>
+ * </ul>
+ * Built on the JDK's <tt>com.sun.net.httpserver</tt>, requests are served by a single daemon thread.
+ */
+public class StatusServer {
+  private static final Logger log = LoggerFactory.getLogger(StatusServer.class);
+
+  private static final JsonWriterSettings JSON = JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).indent(true).build();
+  private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final InetSocketAddress address;
+  private final RunMetrics metrics;
+  private final StatusSource statusSource;
+  private HttpServer server;
+  private ExecutorService executor;
+
+  /**
+   * Migration status shared by all processes
+   */
+  @FunctionalInterface
+  public interface StatusSource {
+    MigrationStatus getStatus() throws MongoBatException;
+  }
+
+  /**
+   * @param address      address to listen on, port 0 picks a free port
+   * @param metrics      figures of the run of this process
+   * @param statusSource status of the migration, e.g. MongoBat::getMigrationStatus
+   */
+  public StatusServer(InetSocketAddress address, RunMetrics metrics, StatusSource statusSource) {
+    this.address = address;
+    this.metrics = metrics;
+    this.statusSource = statusSource;
+  }
+
+  /**
+   * @return this server
+   * @throws IOException if the address can't be bound
+   */
+  public synchronized StatusServer start() throws IOException {
+    if (server != null) {
+      return this;
+    }
+    server = HttpServer.create(address, 0);
+    executor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "mongobat-status");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.setExecutor(executor);
+    server.createContext("/status", exchange -> respond(exchange, "application/json", this::statusJson));
+    server.createContext("/metrics", exchange -> respond(exchange, PROMETHEUS_CONTENT_TYPE, this::prometheusText));
+    server.start();
+    log.info("Mongobee status server listening on port {}", getPort());
+    return this;
+  }
+
+  public synchronized void stop() {
+    if (server == null) {
+      return;
+    }
+    server.stop(0);
+    executor.shutdownNow();
+    server = null;
+    log.info("Mongobee status server stopped");
+  }
+
+  /**
+   * @return bound port, -1 if the server is not running
+   */
+  public synchronized int getPort() {
+    return server == null ? -1 : server.getAddress().getPort();
+  }
+
+  @FunctionalInterface
+  interface Body {
+    String render();
+  }
+
+  static void respond(HttpExchange exchange, String contentType, Body body) throws IOException {
+    boolean headersSent = false;
+    try {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        headersSent = true;
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      byte[] bytes = body.render().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", contentType);
+      headersSent = true;
+      exchange.sendResponseHeaders(200, bytes.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(bytes);
+      }
+    } catch (RuntimeException e) {
+      log.warn("Mongobee status server failed to serve {}", exchange.getRequestURI(), e);
+      if (!headersSent) {
+        exchange.sendResponseHeaders(500, -1);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  String statusJson() {
+    Document json = new Document();
+    try {
+      MigrationStatus status = statusSource.getStatus();
+      json.append("summary", status.getSummary())
+          .append("lock", new Document("held", status.isLockHeld())
+              .append("owner", status.getOwner())
+              .append("acquiredAt", toString(status.getAcquiredAt()))
+              .append("runningChangeIds", status.getRunningChangeIds())
+              .append("completedChanges", status.getCompletedChanges()));
+    } catch (MongoBatException | RuntimeException e) {
+      json.append("error", String.valueOf(e.getMessage()));
+    }
+
+    Map<String, Progress> progress = metrics.getProgress();
+    List<Document> current = new ArrayList<>();
+    metrics.getRunning().forEach((changeId, startedAt) -> {
+      Document changeSet = new Document("changeId", changeId)
+          .append("startedAt", startedAt.toString())
+          .append("elapsedMillis", Duration.between(startedAt, Instant.now()).toMillis());
+      if (progress.containsKey(changeId)) {
+        changeSet.append("progress", progress.get(changeId).toDocument().append("summary", progress.get(changeId).describe()));
+      }
+      current.add(changeSet);
+    });
+
+    json.append("run", new Document("startedAt", toString(metrics.getStartedAt()))
+            .append("finishedAt", toString(metrics.getFinishedAt()))
+            .append("durationMillis", metrics.getDuration().toMillis())
+            .append("lockWaitMillis", metrics.getLockWait().toMillis())
+            .append("lockAcquired", metrics.isLockAcquired()))
+        .append("current", current);
+
+    ExecutionReport report = metrics.getReport();
+    if (report != null) {
+      json.append("report", new Document("scanned", report.getScanned())
+          .append("executed", report.getExecuted())
+          .append("reExecuted", report.getReExecuted())
+          .append("skipped", report.getSkipped())
+          .append("postponed", report.getPostponed())
+          .append("failed", report.getFailed())
+          .append("retries", report.getRetries().values().stream().mapToInt(Integer::intValue).sum()));
+    }
+    return json.toJson(JSON);
+  }
+
+  String prometheusText() {
+    StringBuilder text = new StringBuilder();
+    gauge(text, "mongobat_run_duration_seconds", "Duration of the current or last run", seconds(metrics.getDuration()));
+    gauge(text, "mongobat_run_finished", "1 if the last run has finished", metrics.getFinishedAt() == null ? 0 : 1);
+    gauge(text, "mongobat_lock_wait_seconds", "Time spent waiting for the process lock", seconds(metrics.getLockWait()));
+    gauge(text, "mongobat_lock_acquired", "1 if the process lock was acquired by this run", metrics.isLockAcquired() ? 1 : 0);
+
+    ExecutionReport report = metrics.getReport();
+    if (report != null) {
+      header(text, "mongobat_changesets", "gauge", "Changesets of the run by result");
+      sample(text, "mongobat_changesets", "result", "executed", report.getExecuted());
+      sample(text, "mongobat_changesets", "result", "re_executed", report.getReExecuted());
+      sample(text, "mongobat_changesets", "result", "skipped", report.getSkipped());
+      sample(text, "mongobat_changesets", "result", "postponed", report.getPostponed());
+      sample(text, "mongobat_changesets", "result", "failed", report.getFailed());
+      header(text, "mongobat_changeset_retries", "gauge", "Retries of changesets after transient errors");
+      report.getRetries().forEach((changeId, retries) -> sample(text, "mongobat_changeset_retries", "change_id", changeId, retries));
+    }
+
+    header(text, "mongobat_changeset_duration_seconds", "gauge", "Duration of finished changesets");
+    Map<String, String> outcomes = metrics.getOutcomes();
+    metrics.getDurations().forEach((changeId, duration) -> text.append("mongobat_changeset_duration_seconds{change_id=\"")
+        .append(escape(changeId)).append("\",outcome=\"").append(escape(outcomes.get(changeId))).append("\"} ")
+        .append(format(seconds(duration))).append('\n'));
+
+    header(text, "mongobat_changeset_elapsed_seconds", "gauge", "Time since start of running changesets");
+    metrics.getRunning().forEach((changeId, startedAt) ->
+        sample(text, "mongobat_changeset_elapsed_seconds", "change_id", changeId, seconds(Duration.between(startedAt, Instant.now()))));
+
+    Map<String, Progress> progress = metrics.getProgress();
+    header(text, "mongobat_changeset_processed", "gauge", "Items processed by changesets reporting progress");
+    progress.forEach((changeId, reported) -> sample(text, "mongobat_changeset_processed", "change_id", changeId, reported.getDone()));
+    header(text, "mongobat_changeset_throughput", "gauge", "Items per second processed by changesets reporting progress");
+    progress.forEach((changeId, reported) -> sample(text, "mongobat_changeset_throughput", "change_id", changeId, reported.getThroughput()));
+    return text.toString();
+  }
+
+  private static void gauge(StringBuilder text, String name, String help, double value) {
+    header(text, name, "gauge", help);
+    text.append(name).append(' ').append(format(value)).append('\n');
+  }
+
+  private static void header(StringBuilder text, String name, String type, String help) {
+    text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void sample(StringBuilder text, String name, String label, String labelValue, double value) {
+    text.append(name).append('{').append(label).append("=\"").append(escape(labelValue)).append("\"} ")
+        .append(format(value)).append('\n');
+  }
+
+  private static double seconds(Duration duration) {
+    return duration.toMillis() / 1000.0;
+  }
+
+  private static String format(double value) {
+    return value == Math.rint(value) && !Double.isInfinite(value) ? String.valueOf((long) value) : String.format(Locale.ROOT, "%.3f", value);
+  }
+
+  private static String escape(String value) {
+    return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static String toString(Instant instant) {
+    return instant == null ? null : instant.toString();
+  }
+}
@@ -0,0 +1,176 @@
+package com.github.mongobat.transform;
+
+import com.mongodb.client.model.IndexModel;
+import org.bson.Document;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Online rebuild of a collection, returned by a ChangeSet method and executed by MongoBat.
+ * <p>
+ * Documents are copied and transformed into a shadow collection in bulk batches, while a change stream on the source
+ * collection records concurrent writes. The recorded writes are replayed on the shadow collection until it has
+ * caught up. For the cut-over, writes are blocked by a {@link WriteBlock}, the remaining events are replayed and the
+ * shadow collection replaces the source with <tt>renameCollection</tt> (<tt>dropTarget</tt>), then writes are
+ * resumed. The write block has no default and must be chosen explicitly. Requires a replica set or a sharded cluster.
+ *
+ * <pre>
+ * &#64;ChangeSet(order = "001", id = "restructure-orders", author = "author", description = "")
+ * public ShadowRebuild restructureOrders() {
+ *   return ShadowRebuild.of("orders")
+ *       .transform(order -&gt; new Document("_id", order.get("_id")).append("customer", order.get("customer_id")))
+ *       .index(new IndexModel(Indexes.ascending("customer")))
+ *       .writeBlock(WriteBlock.of(orderService::pauseWrites, orderService::resumeWrites));
+ * }
+ * </pre>
+ * Progress, replication lag and cut-over duration are recorded in the metrics of the changelog entry.
+ */
+public class ShadowRebuild {
+
+  private static final int DEFAULT_BATCH_SIZE = 1000;
+  private static final Duration DEFAULT_MAX_CATCH_UP = Duration.ofMinutes(30);
+
+  private final String collection;
+  private String shadowCollection;
+  private UnaryOperator<Document> transformation = UnaryOperator.identity();
+  private final List<IndexModel> indexes = new ArrayList<>();
+  private boolean copyIndexes = true;
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private Duration maxCatchUp = DEFAULT_MAX_CATCH_UP;
+  private WriteBlock writeBlock;
+
+  private ShadowRebuild(String collection) {
+    this.collection = collection;
+    this.shadowCollection = collection + "_shadow";
+  }
+
+  /**
+   * @param collection rebuilt collection
+   * @return rebuild copying documents as they are
+   */
+  public static ShadowRebuild of(String collection) {
+    return new ShadowRebuild(collection);
+  }
+
+  /**
+   * @param transformation transforms a source document into its new form, null skips the document;
+   *                       the <tt>_id</tt> is always kept
+   * @return this rebuild
+   */
+  public ShadowRebuild transform(UnaryOperator<Document> transformation) {
+    this.transformation = transformation;
+    return this;
+  }
+
+  /**
+   * @param indexes indexes created on the shadow collection before the copy
+   * @return this rebuild
+   */
+  public ShadowRebuild index(IndexModel... indexes) {
+    this.indexes.addAll(Arrays.asList(indexes));
+    return this;
+  }
+
+  /**
+   * @param copyIndexes whether indexes of the source collection are created on the shadow collection, default true
+   * @return this rebuild
+   */
+  public ShadowRebuild copyIndexes(boolean copyIndexes) {
+    this.copyIndexes = copyIndexes;
+    return this;
+  }
+
+  /**
+   * @param shadowCollection name of the shadow collection, default is the collection name with "_shadow" suffix
+   * @return this rebuild
+   */
+  public ShadowRebuild shadowCollection(String shadowCollection) {
+    this.shadowCollection = shadowCollection;
+    return this;
+  }
+
+  /**
+   * @param batchSize number of documents written in one bulk write, default 1000
+   * @return this rebuild
+   */
+  public ShadowRebuild batchSize(int batchSize) {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be positive");
+    }
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  /**
+   * @param maxCatchUp time the shadow collection may take to catch up with the source, default 30 minutes
+   * @return this rebuild
+   */
+  public ShadowRebuild maxCatchUp(Duration maxCatchUp) {
+    this.maxCatchUp = maxCatchUp;
+    return this;
+  }
+
+  /**
+   * @param writeBlock blocks writes to the collection during the cut-over, required
+   * @return this rebuild
+   */
+  public ShadowRebuild writeBlock(WriteBlock writeBlock) {
+    this.writeBlock = writeBlock;
+    return this;
+  }
+
+  public String getCollection() {
+    return collection;
+  }
+
+  public String getShadowCollection() {
+    return shadowCollection;
+  }
+
+  public UnaryOperator<Document> getTransformation() {
+    return transformation;
+  }
+
+  public List<IndexModel> getIndexes() {
+    return List.copyOf(indexes);
+  }
+
+  public boolean isCopyIndexes() {
+    return copyIndexes;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public Duration getMaxCatchUp() {
+    return maxCatchUp;
+  }
+
+  public WriteBlock getWriteBlock() {
+    return writeBlock;
+  }
+
+  /**
+   * @return collection whose insert marks the end of the events to replay during the cut-over
+   */
+  public String getCutOverMarkerCollection() {
+    return shadowCollection + "_cutover";
+  }
+
+  @Override
+  public String toString() {
+    return "ShadowRebuild{" +
+        "collection='" + collection + '\'' +
+        ", shadowCollection='" + shadowCollection + '\'' +
+        ", indexes=" + indexes.size() +
+        ", copyIndexes=" + copyIndexes +
+        ", batchSize=" + batchSize +
+        ", maxCatchUp=" + maxCatchUp +
+        '}';
+  }
+}
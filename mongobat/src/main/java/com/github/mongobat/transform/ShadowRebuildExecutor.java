@@ -0,0 +1,284 @@
+package com.github.mongobat.transform;
+
+import com.github.mongobat.changeset.CancellationToken;
+import com.github.mongobat.exception.MongoBatChangeSetException;
+import com.github.mongobat.exception.MongoBatConfigurationException;
+import com.github.mongobat.exception.MongoBatException;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.RenameCollectionOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Executes a {@link ShadowRebuild}: copy, change stream catch-up and cut-over.
+ * <p>
+ * During the cut-over writes are blocked and a marker document is inserted in a marker collection watched by the
+ * same change stream. Events before the marker are replayed on the shadow collection before it's renamed, so
+ * post-images are never looked up from the renamed collection and no write made after the rename is overwritten.
+ */
+public class ShadowRebuildExecutor {
+  private static final Logger log = LoggerFactory.getLogger(ShadowRebuildExecutor.class);
+
+  public static final String ADMIN_DATABASE = "admin";
+
+  private static final String ID = "_id";
+  private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+  private static final BulkWriteOptions ORDERED = new BulkWriteOptions().ordered(true);
+  private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+  private static final Duration CUT_OVER_REPLAY_TIMEOUT = Duration.ofSeconds(30);
+
+  private final MongoDatabase admin;
+
+  /**
+   * @param admin admin database, passed to the {@link WriteBlock} of rebuilds
+   */
+  public ShadowRebuildExecutor(MongoDatabase admin) {
+    this.admin = admin;
+  }
+
+  /**
+   * @param database          database of the rebuilt collection
+   * @param rebuild           rebuild to execute
+   * @param cancellationToken checked between batches, until the cut-over
+   * @return copied documents, replayed events and timings
+   * @throws MongoBatException if the rebuild has no write block, cancellation was requested, the shadow collection
+   *                           didn't catch up in time, the source collection was dropped or renamed meanwhile, or
+   *                           the cut-over marker was not seen in time
+   */
+  public ShadowRebuildReport execute(MongoDatabase database, ShadowRebuild rebuild, CancellationToken cancellationToken)
+      throws MongoBatException {
+    if (rebuild.getWriteBlock() == null) {
+      throw new MongoBatConfigurationException("Rebuild of " + rebuild.getCollection()
+          + " needs a write block for the cut-over, see ShadowRebuild.writeBlock");
+    }
+    MongoCollection<Document> source = database.getCollection(rebuild.getCollection());
+    MongoCollection<Document> shadow = database.getCollection(rebuild.getShadowCollection());
+    MongoCollection<Document> marker = database.getCollection(rebuild.getCutOverMarkerCollection());
+    ShadowRebuildReport report = new ShadowRebuildReport();
+    log.info("Rebuilding {}", rebuild);
+
+    shadow.drop();
+    marker.drop();
+    createIndexes(database, source, shadow, rebuild);
+
+    // opened before the copy, so no write made during the copy is missed
+    List<Bson> pipeline = List.of(Aggregates.match(
+        Filters.in("ns.coll", rebuild.getCollection(), rebuild.getCutOverMarkerCollection())));
+    try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> changes = database.watch(pipeline)
+        .fullDocument(FullDocument.UPDATE_LOOKUP)
+        .batchSize(rebuild.getBatchSize())
+        .cursor()) {
+      Instant started = Instant.now();
+      copy(source, shadow, rebuild, report, cancellationToken);
+      Instant copied = Instant.now();
+      report.setCopyDuration(Duration.between(started, copied));
+      log.info("Copied {} into {}: {}", rebuild.getCollection(), rebuild.getShadowCollection(), report);
+
+      catchUp(changes, shadow, rebuild, report, cancellationToken);
+      Instant caughtUp = Instant.now();
+      report.setCatchUpDuration(Duration.between(copied, caughtUp));
+
+      cutOver(changes, database, shadow, marker, rebuild, report);
+      report.setCutOverDuration(Duration.between(caughtUp, Instant.now()));
+    }
+    marker.drop();
+    log.info("Rebuilt {}: {}", rebuild.getCollection(), report);
+    return report;
+  }
+
+  private void createIndexes(MongoDatabase database, MongoCollection<Document> source, MongoCollection<Document> shadow,
+      ShadowRebuild rebuild) {
+    if (rebuild.isCopyIndexes()) {
+      List<Document> indexes = new ArrayList<>();
+      for (Document index : source.listIndexes()) {
+        if (!"_id_".equals(index.getString("name"))) {
+          index.remove("v");
+          index.remove("ns");
+          indexes.add(index);
+        }
+      }
+      if (!indexes.isEmpty()) {
+        database.runCommand(new Document("createIndexes", rebuild.getShadowCollection()).append("indexes", indexes));
+      }
+    }
+    if (!rebuild.getIndexes().isEmpty()) {
+      shadow.createIndexes(rebuild.getIndexes());
+    }
+  }
+
+  private void copy(MongoCollection<Document> source, MongoCollection<Document> shadow, ShadowRebuild rebuild,
+      ShadowRebuildReport report, CancellationToken cancellationToken) throws MongoBatException {
+    List<WriteModel<Document>> batch = new ArrayList<>(rebuild.getBatchSize());
+    try (MongoCursor<Document> cursor = source.find().batchSize(rebuild.getBatchSize()).iterator()) {
+      while (cursor.hasNext()) {
+        Document document = transform(rebuild, cursor.next());
+        if (document == null) {
+          report.addSkipped();
+          continue;
+        }
+        batch.add(new InsertOneModel<>(document));
+        if (batch.size() == rebuild.getBatchSize()) {
+          cancellationToken.throwIfCancellationRequested();
+          shadow.bulkWrite(batch, UNORDERED);
+          report.addCopied(batch.size());
+          batch = new ArrayList<>(rebuild.getBatchSize());
+        }
+      }
+    }
+    if (!batch.isEmpty()) {
+      shadow.bulkWrite(batch, UNORDERED);
+      report.addCopied(batch.size());
+    }
+  }
+
+  private void catchUp(MongoChangeStreamCursor<ChangeStreamDocument<Document>> changes, MongoCollection<Document> shadow,
+      ShadowRebuild rebuild, ShadowRebuildReport report, CancellationToken cancellationToken) throws MongoBatException {
+    Instant deadline = Instant.now().plus(rebuild.getMaxCatchUp());
+    List<WriteModel<Document>> batch = new ArrayList<>(rebuild.getBatchSize());
+    while (true) {
+      ChangeStreamDocument<Document> event = changes.tryNext();
+      if (event == null) {
+        if (batch.isEmpty()) {
+          report.setLagSeconds(0);
+          return;
+        }
+        replay(shadow, batch, report);
+        batch = new ArrayList<>(rebuild.getBatchSize());
+        continue;
+      }
+      addWriteModel(rebuild, event, batch);
+      report.setLagSeconds(lagSeconds(event));
+      if (batch.size() == rebuild.getBatchSize()) {
+        replay(shadow, batch, report);
+        batch = new ArrayList<>(rebuild.getBatchSize());
+        cancellationToken.throwIfCancellationRequested();
+        if (Instant.now().isAfter(deadline)) {
+          throw new MongoBatChangeSetException("Collection " + rebuild.getShadowCollection() + " did not catch up with "
+              + rebuild.getCollection() + " in " + rebuild.getMaxCatchUp() + ", lag " + report.getLagSeconds() + " s");
+        }
+      }
+    }
+  }
+
+  /**
+   * Blocks writes, replays the events preceding the marker on the shadow collection and renames it
+   */
+  private void cutOver(MongoChangeStreamCursor<ChangeStreamDocument<Document>> changes, MongoDatabase database,
+      MongoCollection<Document> shadow, MongoCollection<Document> marker, ShadowRebuild rebuild, ShadowRebuildReport report)
+      throws MongoBatChangeSetException {
+    WriteBlock writeBlock = rebuild.getWriteBlock();
+    writeBlock.block(admin);
+    try {
+      // writes acknowledged before the block precede the marker in the change stream
+      marker.insertOne(new Document(ID, new ObjectId()));
+      replayUntilMarker(changes, shadow, rebuild, report);
+      shadow.renameCollection(new MongoNamespace(database.getName(), rebuild.getCollection()),
+          new RenameCollectionOptions().dropTarget(true));
+    } finally {
+      writeBlock.unblock(admin);
+    }
+  }
+
+  private void replayUntilMarker(MongoChangeStreamCursor<ChangeStreamDocument<Document>> changes,
+      MongoCollection<Document> shadow, ShadowRebuild rebuild, ShadowRebuildReport report) throws MongoBatChangeSetException {
+    Instant deadline = Instant.now().plus(CUT_OVER_REPLAY_TIMEOUT);
+    List<WriteModel<Document>> batch = new ArrayList<>(rebuild.getBatchSize());
+    while (true) {
+      if (Instant.now().isAfter(deadline)) {
+        throw new MongoBatChangeSetException("Cut-over marker of " + rebuild.getCollection()
+            + " was not seen in its change stream in " + CUT_OVER_REPLAY_TIMEOUT);
+      }
+      ChangeStreamDocument<Document> event = changes.tryNext();
+      if (event == null) {
+        continue;
+      }
+      if (isMarker(rebuild, event)) {
+        break;
+      }
+      addWriteModel(rebuild, event, batch);
+      if (batch.size() == rebuild.getBatchSize()) {
+        replay(shadow, batch, report);
+        batch = new ArrayList<>(rebuild.getBatchSize());
+      }
+    }
+    if (!batch.isEmpty()) {
+      replay(shadow, batch, report);
+    }
+  }
+
+  private static boolean isMarker(ShadowRebuild rebuild, ChangeStreamDocument<Document> event) {
+    return event.getNamespace() != null
+        && rebuild.getCutOverMarkerCollection().equals(event.getNamespace().getCollectionName());
+  }
+
+  private static void replay(MongoCollection<Document> collection, List<WriteModel<Document>> batch, ShadowRebuildReport report) {
+    collection.bulkWrite(batch, ORDERED);
+    report.addReplayed(batch.size());
+  }
+
+  /**
+   * Adds the write replaying the event, if any. Only delete events delete: an insert, update or replace whose
+   * document is gone by the lookup is followed by its delete event.
+   *
+   * @throws MongoBatChangeSetException for events which are not document writes, e.g. drop or rename of the source
+   */
+  private static void addWriteModel(ShadowRebuild rebuild, ChangeStreamDocument<Document> event,
+      List<WriteModel<Document>> batch) throws MongoBatChangeSetException {
+    OperationType type = event.getOperationType();
+    if (type == OperationType.DELETE) {
+      batch.add(new DeleteOneModel<>(Filters.eq(ID, event.getDocumentKey().get(ID))));
+      return;
+    }
+    if (type != OperationType.INSERT && type != OperationType.UPDATE && type != OperationType.REPLACE) {
+      throw new MongoBatChangeSetException("Collection " + rebuild.getCollection() + " changed during the rebuild: "
+          + event.getOperationTypeString());
+    }
+    if (event.getFullDocument() == null) {
+      return;
+    }
+    Object id = event.getDocumentKey().get(ID);
+    Document document = transform(rebuild, event.getFullDocument());
+    // a document dropped by the transformation must not stay in its previous form
+    batch.add(document == null
+        ? new DeleteOneModel<>(Filters.eq(ID, id))
+        : new ReplaceOneModel<>(Filters.eq(ID, id), document, UPSERT));
+  }
+
+  private static Document transform(ShadowRebuild rebuild, Document document) {
+    Object id = document.get(ID);
+    Document result = rebuild.getTransformation().apply(document);
+    if (result != null && !result.containsKey(ID)) {
+      result.put(ID, id);
+    }
+    return result;
+  }
+
+  private static long lagSeconds(ChangeStreamDocument<Document> event) {
+    BsonTimestamp clusterTime = event.getClusterTime();
+    return clusterTime == null ? 0 : Math.max(0, Instant.now().getEpochSecond() - clusterTime.getTime());
+  }
+}
@@ -0,0 +1,115 @@
+package com.github.mongobat.transform;
+
+import org.bson.Document;
+
+import java.time.Duration;
+
+/**
+ * Progress and timings of a shadow collection rebuild
+ */
+public class ShadowRebuildReport {
+
+  public static final String KEY_SHADOW_REBUILD = "shadowRebuild";
+
+  private long copied;
+  private long skipped;
+  private long replayed;
+  private long maxLagSeconds;
+  private long lagSeconds;
+  private Duration copyDuration = Duration.ZERO;
+  private Duration catchUpDuration = Duration.ZERO;
+  private Duration cutOverDuration = Duration.ZERO;
+
+  void addCopied(long documents) {
+    copied += documents;
+  }
+
+  void addSkipped() {
+    skipped++;
+  }
+
+  void addReplayed(long events) {
+    replayed += events;
+  }
+
+  void setLagSeconds(long lagSeconds) {
+    this.lagSeconds = lagSeconds;
+    this.maxLagSeconds = Math.max(maxLagSeconds, lagSeconds);
+  }
+
+  void setCopyDuration(Duration copyDuration) {
+    this.copyDuration = copyDuration;
+  }
+
+  void setCatchUpDuration(Duration catchUpDuration) {
+    this.catchUpDuration = catchUpDuration;
+  }
+
+  void setCutOverDuration(Duration cutOverDuration) {
+    this.cutOverDuration = cutOverDuration;
+  }
+
+  /**
+   * @return documents copied into the shadow collection
+   */
+  public long getCopied() {
+    return copied;
+  }
+
+  /**
+   * @return documents dropped by the transformation
+   */
+  public long getSkipped() {
+    return skipped;
+  }
+
+  /**
+   * @return change events replayed on the shadow collection
+   */
+  public long getReplayed() {
+    return replayed;
+  }
+
+  public long getMaxLagSeconds() {
+    return maxLagSeconds;
+  }
+
+  /**
+   * @return lag of the last replayed event
+   */
+  public long getLagSeconds() {
+    return lagSeconds;
+  }
+
+  public Duration getCopyDuration() {
+    return copyDuration;
+  }
+
+  public Duration getCatchUpDuration() {
+    return catchUpDuration;
+  }
+
+  /**
+   * @return time between the last replay before the rename and the end of the replay after it
+   */
+  public Duration getCutOverDuration() {
+    return cutOverDuration;
+  }
+
+  public Document toDocument() {
+    return new Document("copied", copied)
+        .append("skipped", skipped)
+        .append("replayed", replayed)
+        .append("maxLagSeconds", maxLagSeconds)
+        .append("lagSeconds", lagSeconds)
+        .append("copyMillis", copyDuration.toMillis())
+        .append("catchUpMillis", catchUpDuration.toMillis())
+        .append("cutOverMillis", cutOverDuration.toMillis());
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d copied, %d skipped, %d replayed, max lag %d s, copy %d ms, catch-up %d ms, cut-over %d ms",
+        copied, skipped, replayed, maxLagSeconds, copyDuration.toMillis(), catchUpDuration.toMillis(), cutOverDuration.toMillis());
+  }
+}
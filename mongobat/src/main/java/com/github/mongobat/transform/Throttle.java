@@ -0,0 +1,42 @@
+package com.github.mongobat.transform;
+
+import java.time.Duration;
+
+/**
+ * Pause between chunks of a transformation, to leave capacity for live traffic
+ */
+@FunctionalInterface
+public interface Throttle {
+
+  /**
+   * @param progress progress after the last chunk
+   * @return pause before the next chunk
+   */
+  Duration pauseAfter(TransformationProgress progress);
+
+  /**
+   * @return no pauses
+   */
+  static Throttle none() {
+    return progress -> Duration.ZERO;
+  }
+
+  /**
+   * @param pause pause after each chunk
+   * @return throttle with a fixed pause
+   */
+  static Throttle fixed(Duration pause) {
+    return progress -> pause;
+  }
+
+  /**
+   * @param dutyCycle fraction of time spent on chunks, in (0, 1]
+   * @return throttle pausing in proportion to the duration of the last chunk
+   */
+  static Throttle dutyCycle(double dutyCycle) {
+    if (dutyCycle <= 0 || dutyCycle > 1) {
+      throw new IllegalArgumentException("Duty cycle must be in (0, 1]");
+    }
+    return progress -> Duration.ofNanos((long) (progress.getLastChunkDuration().toNanos() * (1 - dutyCycle) / dutyCycle));
+  }
+}
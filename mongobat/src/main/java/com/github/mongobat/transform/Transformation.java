@@ -0,0 +1,253 @@
+package com.github.mongobat.transform;
+
+import com.github.mongobat.partition.IdRange;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Declarative server-side transformation of a collection, returned by a ChangeSet method and executed by MongoBat.
+ * <p>
+ * Steps are translated into an update pipeline applied by <tt>updateMany</tt>. Steps which can't be part of an update
+ * pipeline (<tt>$lookup</tt>) turn the transformation into an aggregation which replaces the transformed documents
+ * with <tt>$merge</tt>. Either way documents never leave the server. The collection is processed in <tt>_id</tt>
+ * range chunks, so each command stays short, with progress and throttling hooks called between chunks.
+ *
+ * <pre>
+ * &#64;ChangeSet(order = "001", id = "normalize-orders", author = "author", description = "")
+ * public Transformation normalizeOrders() {
+ *   return Transformation.of("orders")
+ *       .filter(Filters.exists("amount_str"))
+ *       .rename("amount_str", "amount")
+ *       .convert("amount", "decimal")
+ *       .lookupOne("customers", "customerId", "_id", "customer")
+ *       .throttle(Throttle.dutyCycle(0.5));
+ * }
+ * </pre>
+ * Transformed documents should stop matching the filter, so a chunk interrupted by a failure can simply be run again.
+ */
+public class Transformation {
+
+  private static final int DEFAULT_CHUNK_SIZE = 10_000;
+
+  private final String collection;
+  private final List<Bson> steps = new ArrayList<>();
+  private Bson filter;
+  private boolean merge;
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
+  private Throttle throttle = Throttle.none();
+  private Consumer<TransformationProgress> progressListener = progress -> {
+  };
+
+  private Transformation(String collection) {
+    this.collection = collection;
+  }
+
+  /**
+   * @param collection transformed collection
+   * @return empty transformation of the collection
+   */
+  public static Transformation of(String collection) {
+    return new Transformation(collection);
+  }
+
+  /**
+   * @param filter documents to transform
+   * @return this transformation
+   */
+  public Transformation filter(Bson filter) {
+    this.filter = filter;
+    return this;
+  }
+
+  /**
+   * @param from current field name
+   * @param to   new field name
+   * @return this transformation
+   */
+  public Transformation rename(String from, String to) {
+    steps.add(new Document("$set", new Document(to, "$" + from)));
+    steps.add(new Document("$unset", from));
+    return this;
+  }
+
+  /**
+   * Converts a field with <tt>$convert</tt>, values which can't be converted are kept as they are
+   *
+   * @param field field to convert
+   * @param type  target type, e.g. "decimal", "int", "date", "objectId", "string"
+   * @return this transformation
+   */
+  public Transformation convert(String field, String type) {
+    steps.add(new Document("$set", new Document(field, new Document("$convert", new Document("input", "$" + field)
+        .append("to", type)
+        .append("onError", "$" + field)
+        .append("onNull", "$" + field)))));
+    return this;
+  }
+
+  /**
+   * @param field      field to set
+   * @param expression aggregation expression of the value, e.g. <tt>new Document("$multiply", List.of("$price", "$qty"))</tt>
+   * @return this transformation
+   */
+  public Transformation set(String field, Object expression) {
+    steps.add(new Document("$set", new Document(field, expression)));
+    return this;
+  }
+
+  /**
+   * @param fields fields to remove
+   * @return this transformation
+   */
+  public Transformation unset(String... fields) {
+    steps.add(new Document("$unset", Arrays.asList(fields)));
+    return this;
+  }
+
+  /**
+   * Joins matching documents of another collection as an array
+   *
+   * @param from         joined collection
+   * @param localField   field of the transformed documents
+   * @param foreignField field of the joined documents
+   * @param as           array field with joined documents
+   * @return this transformation
+   */
+  public Transformation lookup(String from, String localField, String foreignField, String as) {
+    steps.add(new Document("$lookup", new Document("from", from)
+        .append("localField", localField)
+        .append("foreignField", foreignField)
+        .append("as", as)));
+    merge = true;
+    return this;
+  }
+
+  /**
+   * Embeds the first matching document of another collection, or removes the field if there is none
+   *
+   * @param from         joined collection
+   * @param localField   field of the transformed documents
+   * @param foreignField field of the joined documents
+   * @param as           embedded document field
+   * @return this transformation
+   */
+  public Transformation lookupOne(String from, String localField, String foreignField, String as) {
+    lookup(from, localField, foreignField, as);
+    steps.add(new Document("$set", new Document(as, new Document("$arrayElemAt", List.of("$" + as, 0)))));
+    return this;
+  }
+
+  /**
+   * @param stage custom stage; it has to be allowed in update pipelines unless the transformation uses a lookup
+   * @return this transformation
+   */
+  public Transformation stage(Bson stage) {
+    steps.add(stage);
+    return this;
+  }
+
+  /**
+   * @param chunkSize approximate number of documents transformed by one command, default 10000
+   * @return this transformation
+   */
+  public Transformation chunkSize(int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Chunk size must be positive");
+    }
+    this.chunkSize = chunkSize;
+    return this;
+  }
+
+  /**
+   * @param throttle pause between chunks
+   * @return this transformation
+   */
+  public Transformation throttle(Throttle throttle) {
+    this.throttle = throttle;
+    return this;
+  }
+
+  /**
+   * @param progressListener called after each chunk
+   * @return this transformation
+   */
+  public Transformation onProgress(Consumer<TransformationProgress> progressListener) {
+    this.progressListener = progressListener;
+    return this;
+  }
+
+  public String getCollection() {
+    return collection;
+  }
+
+  public Bson getFilter() {
+    return filter;
+  }
+
+  /**
+   * @return true if the transformation is executed as an aggregation with <tt>$merge</tt>
+   */
+  public boolean isMerge() {
+    return merge;
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  public Throttle getThrottle() {
+    return throttle;
+  }
+
+  public Consumer<TransformationProgress> getProgressListener() {
+    return progressListener;
+  }
+
+  /**
+   * @return update pipeline of the transformation steps
+   */
+  public List<Bson> toUpdatePipeline() {
+    return List.copyOf(steps);
+  }
+
+  /**
+   * @param range chunk of the collection
+   * @return aggregation transforming documents of the chunk and merging them back into the collection
+   */
+  public List<Bson> toMergePipeline(IdRange range) {
+    List<Bson> pipeline = new ArrayList<>(steps.size() + 2);
+    pipeline.add(Aggregates.match(toFilter(range)));
+    pipeline.addAll(steps);
+    pipeline.add(new Document("$merge", new Document("into", collection)
+        .append("on", IdRange.ID_FIELD)
+        .append("whenMatched", "replace")
+        .append("whenNotMatched", "discard")));
+    return pipeline;
+  }
+
+  /**
+   * @param range chunk of the collection
+   * @return filter of documents transformed in the chunk
+   */
+  public Bson toFilter(IdRange range) {
+    return filter == null ? range.toFilter() : Filters.and(range.toFilter(), filter);
+  }
+
+  @Override
+  public String toString() {
+    return "Transformation{" +
+        "collection='" + collection + '\'' +
+        ", filter=" + filter +
+        ", steps=" + steps +
+        ", merge=" + merge +
+        ", chunkSize=" + chunkSize +
+        '}';
+  }
+}
@@ -0,0 +1,88 @@
+package com.github.mongobat.transform;
+
+import com.github.mongobat.changeset.CancellationToken;
+import com.github.mongobat.exception.MongoBatChangeSetException;
+import com.github.mongobat.exception.MongoBatException;
+import com.github.mongobat.partition.IdRange;
+import com.github.mongobat.partition.IdRangeSplitter;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Executes a {@link Transformation} chunk by chunk
+ */
+public class TransformationExecutor {
+  private static final Logger log = LoggerFactory.getLogger(TransformationExecutor.class);
+
+  private final IdRangeSplitter splitter;
+
+  public TransformationExecutor(IdRangeSplitter splitter) {
+    this.splitter = splitter;
+  }
+
+  /**
+   * @param database          database of the transformed collection
+   * @param transformation    transformation to execute
+   * @param cancellationToken checked before each chunk
+   * @return progress after the last chunk
+   * @throws MongoBatException if cancellation was requested or the throttle was interrupted
+   */
+  public TransformationProgress execute(MongoDatabase database, Transformation transformation,
+      CancellationToken cancellationToken) throws MongoBatException {
+    MongoCollection<Document> collection = database.getCollection(transformation.getCollection());
+    long documents = collection.estimatedDocumentCount();
+    int chunks = (int) Math.max(1, Math.min(Integer.MAX_VALUE, (documents + transformation.getChunkSize() - 1) / transformation.getChunkSize()));
+    List<IdRange> ranges = splitter.split(collection, chunks);
+    log.info("Transforming {} in {} chunks: {}", transformation.getCollection(), ranges.size(), transformation);
+
+    Instant started = Instant.now();
+    TransformationProgress progress = null;
+    long matched = 0;
+    long modified = 0;
+    for (int i = 0; i < ranges.size(); i++) {
+      cancellationToken.throwIfCancellationRequested();
+      IdRange range = ranges.get(i);
+      Instant chunkStarted = Instant.now();
+      if (transformation.isMerge()) {
+        collection.aggregate(transformation.toMergePipeline(range)).allowDiskUse(true).toCollection();
+      } else {
+        UpdateResult result = collection.updateMany(transformation.toFilter(range), transformation.toUpdatePipeline());
+        if (result.wasAcknowledged()) {
+          matched += result.getMatchedCount();
+          modified += result.getModifiedCount();
+        }
+      }
+      Instant now = Instant.now();
+      progress = new TransformationProgress(transformation.getCollection(), i + 1, ranges.size(), range, matched, modified,
+          Duration.between(chunkStarted, now), Duration.between(started, now));
+      log.debug("Transformed {}", progress);
+      transformation.getProgressListener().accept(progress);
+
+      if (i + 1 < ranges.size()) {
+        pause(transformation.getThrottle().pauseAfter(progress));
+      }
+    }
+    log.info("Transformed {}", progress);
+    return progress;
+  }
+
+  private static void pause(Duration pause) throws MongoBatChangeSetException {
+    if (pause.isZero() || pause.isNegative()) {
+      return;
+    }
+    try {
+      Thread.sleep(pause.toMillis(), (int) (pause.toNanos() % 1_000_000));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MongoBatChangeSetException("Transformation interrupted", e);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package com.github.mongobat.transform;
+
+import com.github.mongobat.partition.IdRange;
+
+import java.time.Duration;
+
+/**
+ * Progress of a transformation after a chunk
+ */
+public class TransformationProgress {
+
+  private final String collection;
+  private final int chunk;
+  private final int chunks;
+  private final IdRange range;
+  private final long matched;
+  private final long modified;
+  private final Duration lastChunkDuration;
+  private final Duration elapsed;
+
+  public TransformationProgress(String collection, int chunk, int chunks, IdRange range, long matched, long modified,
+      Duration lastChunkDuration, Duration elapsed) {
+    this.collection = collection;
+    this.chunk = chunk;
+    this.chunks = chunks;
+    this.range = range;
+    this.matched = matched;
+    this.modified = modified;
+    this.lastChunkDuration = lastChunkDuration;
+    this.elapsed = elapsed;
+  }
+
+  public String getCollection() {
+    return collection;
+  }
+
+  /**
+   * @return number of finished chunks
+   */
+  public int getChunk() {
+    return chunk;
+  }
+
+  public int getChunks() {
+    return chunks;
+  }
+
+  /**
+   * @return range of the last chunk
+   */
+  public IdRange getRange() {
+    return range;
+  }
+
+  /**
+   * @return documents matched so far, not known for transformations with <tt>$merge</tt>
+   */
+  public long getMatched() {
+    return matched;
+  }
+
+  /**
+   * @return documents modified so far, not known for transformations with <tt>$merge</tt>
+   */
+  public long getModified() {
+    return modified;
+  }
+
+  public Duration getLastChunkDuration() {
+    return lastChunkDuration;
+  }
+
+  public Duration getElapsed() {
+    return elapsed;
+  }
+
+  public boolean isDone() {
+    return chunk == chunks;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s: chunk %d/%d %s, %d matched, %d modified, %d ms", collection, chunk, chunks, range,
+        matched, modified, elapsed.toMillis());
+  }
+}
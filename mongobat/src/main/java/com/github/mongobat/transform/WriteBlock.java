@@ -0,0 +1,64 @@
+package com.github.mongobat.transform;
+
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+
+/**
+ * Stops writes to the rebuilt collection during the cut-over of a {@link ShadowRebuild}, so no write is made
+ * between the last event replayed on the shadow collection and the rename
+ */
+public interface WriteBlock {
+
+  /**
+   * @param admin admin database
+   */
+  void block(MongoDatabase admin);
+
+  /**
+   * @param admin admin database
+   */
+  void unblock(MongoDatabase admin);
+
+  /**
+   * Blocks writes of all users with <tt>setUserWriteBlockMode</tt> (MongoDB 6.0+), cluster-wide. The migration user
+   * needs the <tt>bypassWriteBlockingMode</tt> privilege to rename the shadow collection meanwhile.
+   * <p>
+   * Dangerous: every application writing to the cluster is blocked during the cut-over, and if the process dies
+   * before unblocking, the cluster stays write-blocked until <tt>setUserWriteBlockMode</tt> is disabled manually.
+   * Prefer {@link #of(Runnable, Runnable)} with the writers of the rebuilt collection.
+   *
+   * @return server-side write block
+   */
+  static WriteBlock userWriteBlockMode() {
+    return new WriteBlock() {
+      @Override
+      public void block(MongoDatabase admin) {
+        admin.runCommand(new Document("setUserWriteBlockMode", 1).append("global", true));
+      }
+
+      @Override
+      public void unblock(MongoDatabase admin) {
+        admin.runCommand(new Document("setUserWriteBlockMode", 1).append("global", false));
+      }
+    };
+  }
+
+  /**
+   * @param block   pauses writers of the application, returns once no write is in flight
+   * @param unblock resumes writers of the application
+   * @return write block implemented by the application
+   */
+  static WriteBlock of(Runnable block, Runnable unblock) {
+    return new WriteBlock() {
+      @Override
+      public void block(MongoDatabase admin) {
+        block.run();
+      }
+
+      @Override
+      public void unblock(MongoDatabase admin) {
+        unblock.run();
+      }
+    };
+  }
+}
@@ -4,6 +4,7 @@ import com.github.mongobat.changeset.ChangeEntry;
 import com.github.mongobat.changeset.ChangeLog;
 import com.github.mongobat.changeset.ChangeSet;
 import com.github.mongobat.exception.MongoBatChangeSetException;
+import com.github.mongobat.profiling.ChangeLogScanEvent;
 import org.reflections.Reflections;
 
 import java.lang.reflect.Method;
@@ -27,12 +28,16 @@ public class ChangeService {
   }
 
   public List<Class<?>> fetchChangeLogs(){
+    ChangeLogScanEvent event = new ChangeLogScanEvent();
+    event.begin();
     Reflections reflections = new Reflections(changeLogsBasePackage);
     Set<Class<?>> changeLogs = reflections.getTypesAnnotatedWith(ChangeLog.class);
 
-    return changeLogs.stream()
+    List<Class<?>> result = changeLogs.stream()
         .sorted(new ChangeLogComparator())
         .collect(Collectors.toList());
+    event.finish(changeLogsBasePackage, result.size());
+    return result;
   }
 
   public List<Method> fetchChangeSets(final Class<?> type) throws MongoBatChangeSetException {
@@ -0,0 +1,73 @@
+package com.github.mongobat.utils;
+
+import com.github.mongobat.changeset.Selector;
+import com.github.mongobat.exception.MongoBatChangeSetException;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Precomputed lookup of all changesets found in the scan packages, kept in execution order.
+ * Built once per runner, so targeted executions don't have to rescan the classpath.
+ */
+public class ChangeSetPlan {
+
+  private final List<PlannedChangeSet> changeSets;
+  private final Map<String, List<PlannedChangeSet>> byId = new HashMap<>();
+  private final Map<String, List<PlannedChangeSet>> byGroup = new HashMap<>();
+  private final Map<String, List<PlannedChangeSet>> byTag = new HashMap<>();
+  private final Map<String, PlannedChangeSet> byMethod = new HashMap<>();
+
+  private ChangeSetPlan(List<PlannedChangeSet> changeSets) {
+    this.changeSets = Collections.unmodifiableList(changeSets);
+    for (PlannedChangeSet changeSet : changeSets) {
+      byId.computeIfAbsent(changeSet.getChangeSet().id(), k -> new ArrayList<>()).add(changeSet);
+      byGroup.computeIfAbsent(changeSet.getChangeSet().group(), k -> new ArrayList<>()).add(changeSet);
+      for (String tag : changeSet.getChangeSet().tags()) {
+        byTag.computeIfAbsent(tag, k -> new ArrayList<>()).add(changeSet);
+      }
+      byMethod.put(methodKey(changeSet.getChangeLogClass().getName(), changeSet.getMethod().getName()), changeSet);
+    }
+  }
+
+  public static ChangeSetPlan build(List<String> changeLogsScanPackages) throws MongoBatChangeSetException {
+    List<PlannedChangeSet> changeSets = new ArrayList<>();
+    for (String scanPackage : changeLogsScanPackages) {
+      ChangeService service = new ChangeService(scanPackage);
+      for (Class<?> changeLogClass : service.fetchChangeLogs()) {
+        for (Method method : service.fetchChangeSets(changeLogClass)) {
+          changeSets.add(new PlannedChangeSet(service, method, changeSets.size()));
+        }
+      }
+    }
+    return new ChangeSetPlan(changeSets);
+  }
+
+  public List<PlannedChangeSet> getChangeSets() {
+    return changeSets;
+  }
+
+  /**
+   * @param selector groups, tags and ids to select
+   * @return changesets matching any of the selector criteria, in execution order
+   */
+  public List<PlannedChangeSet> select(Selector selector) {
+    Set<PlannedChangeSet> selected = new HashSet<>();
+    selector.getGroups().forEach(group -> selected.addAll(byGroup.getOrDefault(group, List.of())));
+    selector.getTags().forEach(tag -> selected.addAll(byTag.getOrDefault(tag, List.of())));
+    selector.getIds().forEach(id -> selected.addAll(byId.getOrDefault(id, List.of())));
+
+    return selected.stream()
+        .sorted(Comparator.comparingInt(PlannedChangeSet::getPosition))
+        .collect(Collectors.toList());
+  }
+
+  public Optional<PlannedChangeSet> findByMethod(String changeLogClass, String changeSetMethodName) {
+    return Optional.ofNullable(byMethod.get(methodKey(changeLogClass, changeSetMethodName)));
+  }
+
+  private static String methodKey(String changeLogClass, String changeSetMethodName) {
+    return changeLogClass + "#" + changeSetMethodName;
+  }
+}
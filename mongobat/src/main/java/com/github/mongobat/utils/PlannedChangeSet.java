@@ -0,0 +1,56 @@
+package com.github.mongobat.utils;
+
+import com.github.mongobat.changeset.ChangeEntry;
+import com.github.mongobat.changeset.ChangeSet;
+
+import java.lang.reflect.Method;
+
+/**
+ * Changeset method found during package scan together with its position in the execution order
+ */
+public class PlannedChangeSet {
+
+  private final ChangeService service;
+  private final Method method;
+  private final ChangeSet changeSet;
+  private final int position;
+
+  PlannedChangeSet(ChangeService service, Method method, int position) {
+    this.service = service;
+    this.method = method;
+    this.changeSet = method.getAnnotation(ChangeSet.class);
+    this.position = position;
+  }
+
+  public ChangeEntry createChangeEntry() {
+    return service.createChangeEntry(method);
+  }
+
+  public Class<?> getChangeLogClass() {
+    return method.getDeclaringClass();
+  }
+
+  public Method getMethod() {
+    return method;
+  }
+
+  public ChangeSet getChangeSet() {
+    return changeSet;
+  }
+
+  public int getPosition() {
+    return position;
+  }
+
+  public boolean isRunAlways() {
+    return service.isRunAlwaysChangeSet(method);
+  }
+
+  public boolean isRepeatable() {
+    return service.isRepeatable(method);
+  }
+
+  public boolean isPostponed() {
+    return service.isPostponed(method);
+  }
+}
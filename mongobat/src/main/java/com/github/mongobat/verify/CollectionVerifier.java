@@ -0,0 +1,170 @@
+package com.github.mongobat.verify;
+
+import com.github.mongobat.changeset.CancellationToken;
+import com.github.mongobat.exception.MongoBatException;
+import com.github.mongobat.exception.MongoBatVerificationException;
+import com.github.mongobat.partition.IdRange;
+import com.github.mongobat.partition.IdRangeSplitter;
+import com.github.mongobat.partition.ParallelRangeScanner;
+import com.github.mongobat.profiling.CommandProfiler;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Accumulators;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Executes a {@link Verification}.
+ * <p>
+ * Source and target are split into the same <tt>_id</tt> ranges. For each range, both collections compute
+ * server-side a count and a sum of <tt>$toHashedIndexKey</tt> over <tt>_id</tt> and the compared fields, or over the
+ * top-level fields of whole documents sorted by name, so a copy which reordered fields still matches (MongoDB 5.2+).
+ * Ranges are compared concurrently by a {@link ParallelRangeScanner}. Then a <tt>$sample</tt> of source
+ * documents is compared field by field with the target documents of the same <tt>_id</tt>.
+ */
+public class CollectionVerifier {
+  private static final Logger log = LoggerFactory.getLogger(CollectionVerifier.class);
+
+  // keeps the sum of hashes within a long for any collection size
+  private static final long HASH_MODULUS = Integer.MAX_VALUE;
+
+  private final IdRangeSplitter splitter;
+  private final int parallelism;
+  private CommandProfiler commandProfiler;
+
+  public CollectionVerifier(IdRangeSplitter splitter, int parallelism) {
+    this.splitter = splitter;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * @param commandProfiler profiler attributing commands of comparing threads to the changeset bound to the caller,
+   *                        null to not attribute them
+   * @return verifier object for fluent interface
+   */
+  public CollectionVerifier setCommandProfiler(CommandProfiler commandProfiler) {
+    this.commandProfiler = commandProfiler;
+    return this;
+  }
+
+  /**
+   * @param database          database of both collections
+   * @param verification      compared collections and fields
+   * @param cancellationToken checked before each range
+   * @return report of a passed verification
+   * @throws MongoBatVerificationException if the collections differ
+   * @throws MongoBatException             if cancellation was requested
+   */
+  public VerificationReport verify(MongoDatabase database, Verification verification,
+      CancellationToken cancellationToken) throws MongoBatException {
+    Instant started = Instant.now();
+    MongoCollection<Document> source = database.getCollection(verification.getSource());
+    MongoCollection<Document> target = database.getCollection(verification.getTarget());
+    VerificationReport report = new VerificationReport(verification);
+
+    List<IdRange> ranges = splitter.split(source, verification.getRanges());
+    List<Bson> hashPipeline = hashPipeline(verification.getFields());
+    new ParallelRangeScanner(splitter, parallelism, cancellationToken).setCommandProfiler(commandProfiler).scanRanges(ranges, range -> {
+      Document sourceHash = rangeHash(source, range, hashPipeline);
+      Document targetHash = rangeHash(target, range, hashPipeline);
+      long documents = sourceHash.get("count", Number.class).longValue();
+      report.addRange(range, documents, targetHash.get("count", Number.class).longValue(),
+          sourceHash.get("hash", Number.class).longValue() == targetHash.get("hash", Number.class).longValue());
+      return documents;
+    });
+
+    if (verification.getSampleSize() > 0) {
+      cancellationToken.throwIfCancellationRequested();
+      compareSample(source, target, verification, report);
+    }
+
+    report.setDuration(Duration.between(started, Instant.now()));
+    if (!report.isPassed()) {
+      throw new MongoBatVerificationException(report);
+    }
+    log.info("Verified {}", report);
+    return report;
+  }
+
+  static List<Bson> hashPipeline(List<String> fields) {
+    Object canonical;
+    if (fields.isEmpty()) {
+      // the hash of a document depends on the order of its fields
+      canonical = new Document("$sortArray", new Document("input", new Document("$objectToArray", "$$ROOT"))
+          .append("sortBy", new Document("k", 1)));
+    } else {
+      // an array keeps the order of fields and allows dotted paths
+      List<String> values = new ArrayList<>();
+      values.add("$" + IdRange.ID_FIELD);
+      fields.forEach(field -> values.add("$" + field));
+      canonical = new Document("v", values);
+    }
+    Document hash = new Document("$abs", new Document("$mod",
+        List.of(new Document("$toHashedIndexKey", canonical), HASH_MODULUS)));
+    return List.of(Aggregates.group(null, Accumulators.sum("count", 1), Accumulators.sum("hash", hash)));
+  }
+
+  private static Document rangeHash(MongoCollection<Document> collection, IdRange range, List<Bson> hashPipeline) {
+    List<Bson> pipeline = new ArrayList<>();
+    pipeline.add(Aggregates.match(range.toFilter()));
+    pipeline.addAll(hashPipeline);
+    Document result = collection.aggregate(pipeline).allowDiskUse(true).first();
+    return result == null ? new Document("count", 0).append("hash", 0) : result;
+  }
+
+  private static void compareSample(MongoCollection<Document> source, MongoCollection<Document> target,
+      Verification verification, VerificationReport report) {
+    List<Document> sample = source.aggregate(List.of(Aggregates.sample(verification.getSampleSize())))
+        .into(new ArrayList<>());
+    if (sample.isEmpty()) {
+      return;
+    }
+    List<Object> ids = sample.stream().map(document -> document.get(IdRange.ID_FIELD)).collect(Collectors.toList());
+    Map<Object, Document> copies = target.find(Filters.in(IdRange.ID_FIELD, ids)).into(new ArrayList<>()).stream()
+        .collect(Collectors.toMap(document -> document.get(IdRange.ID_FIELD), Function.identity()));
+
+    for (Document original : sample) {
+      Object id = original.get(IdRange.ID_FIELD);
+      Document copy = copies.get(id);
+      report.addSample(id, copy == null ? List.of("missing in " + verification.getTarget())
+          : differentFields(original, copy, verification.getFields()));
+    }
+  }
+
+  static List<String> differentFields(Document original, Document copy, List<String> fields) {
+    Set<String> compared = new LinkedHashSet<>(fields);
+    if (compared.isEmpty()) {
+      compared.addAll(original.keySet());
+      compared.addAll(copy.keySet());
+    }
+    return compared.stream()
+        .filter(field -> !Objects.equals(value(original, field), value(copy, field)))
+        .collect(Collectors.toList());
+  }
+
+  private static Object value(Document document, String path) {
+    Object value = document;
+    for (String key : path.split("\\.")) {
+      if (!(value instanceof Document)) {
+        return null;
+      }
+      value = ((Document) value).get(key);
+    }
+    return value;
+  }
+}
@@ -0,0 +1,102 @@
+package com.github.mongobat.verify;
+
+import com.github.mongobat.changeset.Verify;
+
+import java.util.List;
+
+/**
+ * Comparison of a target collection with the source collection it was copied from
+ *
+ * @see Verify
+ */
+public class Verification {
+
+  private static final int DEFAULT_RANGES = 16;
+  private static final int DEFAULT_SAMPLE_SIZE = 100;
+
+  private final String source;
+  private final String target;
+  private List<String> fields = List.of();
+  private int ranges = DEFAULT_RANGES;
+  private int sampleSize = DEFAULT_SAMPLE_SIZE;
+
+  private Verification(String source, String target) {
+    this.source = source;
+    this.target = target;
+  }
+
+  /**
+   * @param source collection the documents are copied from
+   * @param target collection the documents are copied to
+   * @return verification of whole documents
+   */
+  public static Verification of(String source, String target) {
+    return new Verification(source, target);
+  }
+
+  /**
+   * @param verify annotation of a changeset
+   * @return verification configured by the annotation
+   */
+  public static Verification of(Verify verify) {
+    return of(verify.source(), verify.target())
+        .fields(verify.fields())
+        .ranges(verify.ranges())
+        .sampleSize(verify.sampleSize());
+  }
+
+  /**
+   * @param fields fields which should be equal, <tt>_id</tt> is always compared, none to compare whole documents
+   * @return this verification
+   */
+  public Verification fields(String... fields) {
+    this.fields = List.of(fields);
+    return this;
+  }
+
+  /**
+   * @param ranges number of <tt>_id</tt> ranges compared by hashes, default 16
+   * @return this verification
+   */
+  public Verification ranges(int ranges) {
+    if (ranges < 1) {
+      throw new IllegalArgumentException("Number of ranges must be positive");
+    }
+    this.ranges = ranges;
+    return this;
+  }
+
+  /**
+   * @param sampleSize number of documents compared field by field, default 100, 0 to skip the comparison
+   * @return this verification
+   */
+  public Verification sampleSize(int sampleSize) {
+    this.sampleSize = sampleSize;
+    return this;
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  public String getTarget() {
+    return target;
+  }
+
+  public List<String> getFields() {
+    return fields;
+  }
+
+  public int getRanges() {
+    return ranges;
+  }
+
+  public int getSampleSize() {
+    return sampleSize;
+  }
+
+  @Override
+  public String toString() {
+    return source + " -> " + target + (fields.isEmpty() ? "" : " " + fields);
+  }
+}
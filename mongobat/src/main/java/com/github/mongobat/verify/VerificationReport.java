@@ -0,0 +1,127 @@
+package com.github.mongobat.verify;
+
+import org.bson.Document;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a {@link Verification}, filled concurrently by range comparisons
+ */
+public class VerificationReport {
+
+  public static final String KEY_VERIFICATION = "verification";
+
+  private static final int MAX_REPORTED_MISMATCHES = 20;
+
+  private final Verification verification;
+  private long sourceDocuments;
+  private long targetDocuments;
+  private int ranges;
+  private int mismatchedRanges;
+  private int sampled;
+  private int mismatchedSamples;
+  private final List<String> mismatches = new ArrayList<>();
+  private Duration duration = Duration.ZERO;
+
+  VerificationReport(Verification verification) {
+    this.verification = verification;
+  }
+
+  synchronized void addRange(Object range, long source, long target, boolean hashesEqual) {
+    sourceDocuments += source;
+    targetDocuments += target;
+    ranges++;
+    if (source != target || !hashesEqual) {
+      mismatchedRanges++;
+      addMismatch("range " + range + ": " + source + " source and " + target + " target documents"
+          + (source == target ? " with different contents" : ""));
+    }
+  }
+
+  synchronized void addSample(Object id, List<String> differentFields) {
+    sampled++;
+    if (!differentFields.isEmpty()) {
+      mismatchedSamples++;
+      addMismatch("_id " + id + ": " + String.join(", ", differentFields));
+    }
+  }
+
+  private void addMismatch(String mismatch) {
+    if (mismatches.size() < MAX_REPORTED_MISMATCHES) {
+      mismatches.add(mismatch);
+    }
+  }
+
+  void setDuration(Duration duration) {
+    this.duration = duration;
+  }
+
+  public Verification getVerification() {
+    return verification;
+  }
+
+  public synchronized long getSourceDocuments() {
+    return sourceDocuments;
+  }
+
+  public synchronized long getTargetDocuments() {
+    return targetDocuments;
+  }
+
+  public synchronized int getRanges() {
+    return ranges;
+  }
+
+  public synchronized int getMismatchedRanges() {
+    return mismatchedRanges;
+  }
+
+  /**
+   * @return number of documents compared field by field
+   */
+  public synchronized int getSampled() {
+    return sampled;
+  }
+
+  public synchronized int getMismatchedSamples() {
+    return mismatchedSamples;
+  }
+
+  /**
+   * @return descriptions of the first mismatches
+   */
+  public synchronized List<String> getMismatches() {
+    return new ArrayList<>(mismatches);
+  }
+
+  public Duration getDuration() {
+    return duration;
+  }
+
+  /**
+   * @return true if no range and no sampled document differ
+   */
+  public synchronized boolean isPassed() {
+    return mismatchedRanges == 0 && mismatchedSamples == 0;
+  }
+
+  public synchronized Document toDocument() {
+    return new Document("source", verification.getSource())
+        .append("target", verification.getTarget())
+        .append("sourceDocuments", sourceDocuments)
+        .append("targetDocuments", targetDocuments)
+        .append("ranges", ranges)
+        .append("mismatchedRanges", mismatchedRanges)
+        .append("sampled", sampled)
+        .append("mismatchedSamples", mismatchedSamples)
+        .append("millis", duration.toMillis());
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%s: %d of %d ranges and %d of %d sampled documents differ%s", verification,
+        mismatchedRanges, ranges, mismatchedSamples, sampled, mismatches.isEmpty() ? "" : " " + mismatches);
+  }
+}
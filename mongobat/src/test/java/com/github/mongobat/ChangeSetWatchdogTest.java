@@ -0,0 +1,57 @@
+package com.github.mongobat;
+
+import com.github.mongobat.changeset.CancellationToken;
+import com.github.mongobat.changeset.ChangeEntry;
+import com.github.mongobat.exception.MongoBatChangeSetTimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeSetWatchdogTest {
+
+  private static final ThreadLocal<String> CALLER = new ThreadLocal<>();
+
+  private final ChangeSetWatchdog watchdog = new ChangeSetWatchdog(Duration.ofMillis(50));
+  private final ChangeSetContext context = new ChangeSetContext(
+      new ChangeEntry("change1", "author", new Date(), "ChangeLog", "change1", "", null, null, false, false),
+      new CancellationToken());
+
+  @AfterEach
+  void tearDown() {
+    watchdog.close();
+    CALLER.remove();
+  }
+
+  @Test
+  void shouldRunChangeSetOnCallingThread() throws Exception {
+    CALLER.set("caller");
+
+    Object result = watchdog.execute(context, Duration.ofSeconds(10), () -> CALLER.get());
+
+    assertEquals("caller", result);
+    assertFalse(context.getCancellationToken().isCancellationRequested());
+  }
+
+  @Test
+  void shouldInterruptChangeSetIgnoringCancellation() {
+    AtomicBoolean interrupted = new AtomicBoolean();
+
+    assertThrows(MongoBatChangeSetTimeoutException.class, () -> watchdog.execute(context, Duration.ofMillis(50), () -> {
+      try {
+        Thread.sleep(10_000);
+      } catch (InterruptedException e) {
+        interrupted.set(true);
+      }
+      return null;
+    }));
+
+    assertTrue(interrupted.get());
+    assertTrue(context.getCancellationToken().isCancellationRequested());
+    assertFalse(Thread.currentThread().isInterrupted());
+  }
+}
@@ -0,0 +1,64 @@
+package com.github.mongobat;
+
+import com.github.mongobat.exception.MongoBatException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollectionReadinessTest {
+
+  private final CollectionReadiness readiness = new CollectionReadiness();
+
+  @Test
+  void shouldHoldAllCollectionsForUndeclaredChangeSet() throws Exception {
+    readiness.expect("orders", new String[]{"orders"});
+    readiness.expect("cleanup", new String[0]);
+
+    assertFalse(readiness.isReady("customers"));
+    readiness.finished("cleanup", false);
+
+    assertTrue(readiness.isReady("customers"));
+    assertFalse(readiness.isReady("orders"));
+    assertEquals(Set.of("orders"), readiness.getPendingChangeIds());
+  }
+
+  @Test
+  void shouldFailCollectionsOfFailedChangeSet() throws Exception {
+    readiness.expect("orders", new String[]{"orders", "order_items"});
+    readiness.finished("orders", false);
+
+    assertThrows(MongoBatException.class, () -> readiness.await("order_items", Duration.ofSeconds(1)));
+    assertTrue(readiness.isReady("customers"));
+
+    readiness.expect("orders", new String[]{"orders", "order_items"});
+    readiness.endRun(true);
+    assertTrue(readiness.await("orders", null));
+  }
+
+  @Test
+  void shouldFailCollectionsOfChangeSetsNotExecutedInFailedRun() throws Exception {
+    readiness.expect("orders", new String[]{"orders"});
+    readiness.expect("customers", new String[]{"customers"});
+    readiness.expect("cleanup", new String[0]);
+    readiness.finished("orders", false);
+
+    readiness.endRun(false);
+
+    assertThrows(MongoBatException.class, () -> readiness.isReady("customers"));
+    assertTrue(readiness.isReady("products"));
+    assertTrue(readiness.getPendingChangeIds().isEmpty());
+  }
+
+  @Test
+  void shouldAcceptCollectionDeclaredTwice() throws Exception {
+    readiness.expect("orders", new String[]{"orders", "orders"});
+
+    assertFalse(readiness.isReady("orders"));
+    readiness.finished("orders", false);
+
+    assertThrows(MongoBatException.class, () -> readiness.isReady("orders"));
+  }
+}
@@ -0,0 +1,973 @@
+package com.github.mongobat;
+
+import com.github.mongobat.changelog.batching.BatchingChangeLog;
+import com.github.mongobat.changelog.cancellable.CancellableChangeLog;
+import com.github.mongobat.changelog.environments.EnvironmentsChangeLog;
+import com.github.mongobat.changelog.groups.GroupsChangeLog;
+import com.github.mongobat.changelog.params.CustomParamsChangeLog;
+import com.github.mongobat.changelog.postponed.PostponedChangeLog;
+import com.github.mongobat.changelog.profiles.ProfilesChangeLog;
+import com.github.mongobat.changelog.readiness.ReadinessChangeLog;
+import com.github.mongobat.changelog.supertype.SupertypeParamsChangeLog;
+import com.github.mongobat.changelog.repeatable.RepeatableChangeLog;
+import com.github.mongobat.changelog.retry.RetryChangeLog;
+import com.github.mongobat.changelog.seed.SeedChangeLog;
+import com.github.mongobat.changelog.timeout.TimeoutChangeLog;
+import com.github.mongobat.changeset.CancellationToken;
+import com.github.mongobat.changeset.ChangeEntry;
+import com.github.mongobat.changeset.ChangeStatus;
+import com.github.mongobat.changeset.ExecutionProfile;
+import com.github.mongobat.changeset.Selector;
+import com.github.mongobat.changeset.TimeoutPolicy;
+import com.github.mongobat.dao.ChangeEntryDao;
+import com.github.mongobat.dao.ChangeEntryIndexDao;
+import com.github.mongobat.exception.MongoBatChangeSetException;
+import com.github.mongobat.exception.MongoBatChangeSetTimeoutException;
+import com.github.mongobat.exception.MongoBatConfigurationException;
+import com.github.mongobat.exception.MongoBatException;
+import com.github.mongobat.exception.MongoBatLockException;
+import com.github.mongobat.profiling.ChangeLogScanEvent;
+import com.github.mongobat.profiling.ChangeSetEvent;
+import com.github.mongobat.profiling.CommandProfiler;
+import com.github.mongobat.profiling.CommandStats;
+import com.github.mongobat.resolver.ParameterProviders;
+import com.github.mongobat.resolver.ParameterScope;
+import com.github.mongobat.retry.RetryPolicy;
+import com.github.mongobat.stats.CollectionStats;
+import com.github.mongobat.test.changelogs.MongoBatTestResource;
+import com.github.mongobat.utils.ChangeSetExecutionChecker;
+import com.github.mongobat.utils.Environment;
+import com.mongodb.MongoNamespace;
+import com.mongodb.MongoSocketReadException;
+import com.mongodb.ReadPreference;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.function.Executable;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MongoBatTest {
+
+  private static final String CHANGELOG_COLLECTION_NAME = "dbchangelog";
+
+  @Mock
+  private ChangeEntryDao dao;
+
+  @Mock
+  private ChangeEntryIndexDao indexDao;
+
+  @Mock
+  private MongoDatabase fakeMongoDatabase;
+
+  @Mock
+  private MongoCollection<Document> mongoCollection;
+
+  @Mock
+  private MongoClient mongoClient;
+
+  @Mock
+  private ChangeSetExecutionChecker executionChecker;
+
+  @InjectMocks
+  private MongoBat runner = new MongoBat(mongoClient);
+
+  @BeforeEach
+  void init() throws MongoBatException {
+    lenient().when(dao.connectMongoDb(any(MongoClient.class), anyString()))
+        .thenReturn(fakeMongoDatabase);
+    lenient().when(dao.getMongoDatabase()).thenReturn(fakeMongoDatabase);
+    lenient().doCallRealMethod().when(dao).save(any(ChangeEntry.class));
+    doCallRealMethod().when(dao).setChangelogCollectionName(anyString());
+    doCallRealMethod().when(dao).setIndexDao(any(ChangeEntryIndexDao.class));
+    dao.setIndexDao(indexDao);
+    dao.setChangelogCollectionName(CHANGELOG_COLLECTION_NAME);
+
+    runner.setDbName("mongobeetest");
+    runner.setEnabled(true);
+    runner.setChangeLogsScanPackage(MongoBatTestResource.class.getPackage().getName());
+  }
+
+  @Test
+  void shouldThrowAnExceptionIfNoDbNameSet() {
+    runner.setDbName(null);
+    runner.setEnabled(true);
+    runner.setChangeLogsScanPackage(MongoBatTestResource.class.getPackage().getName());
+
+    Executable execute = () -> {
+      ExecutionReport report = runner.execute();
+      assertNull(report);
+    };
+    assertThrows(MongoBatConfigurationException.class, execute);
+  }
+
+  @Test
+  void shouldExecuteAllChangeSets() throws Exception {
+    // given
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+
+    // when
+    ExecutionReport report = runner.execute();
+
+    // then
+    verify(dao, times(8)).save(any(ChangeEntry.class));
+    assertEquals(8, report.getScanned());
+    assertEquals(8, report.getExecuted());
+  }
+
+  @Test
+  void shouldPassOverChangeSets() throws Exception {
+    // given
+    when(dao.acquireProcessLock()).thenReturn(true);
+    lenient().when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(false);
+
+    // when
+    ExecutionReport report = runner.execute();
+
+    // then
+    verify(dao, times(0)).save(any(ChangeEntry.class));
+    assertEquals(8, report.getScanned());
+    assertEquals(8, report.getSkipped());
+  }
+
+  @Test
+  void shouldExecuteProcessWhenLockAcquired() throws Exception {
+    // given
+    when(dao.acquireProcessLock()).thenReturn(true);
+
+    // when
+    runner.execute();
+
+    // then
+    verify(dao, atLeastOnce()).isNewChange(any(ChangeEntry.class));
+  }
+
+  @Test
+  void shouldReleaseLockAfterWhenLockAcquired() throws Exception {
+    // given
+    when(dao.acquireProcessLock()).thenReturn(true);
+
+    // when
+    runner.execute();
+
+    // then
+    verify(dao).releaseProcessLock();
+  }
+
+  @Test
+  void shouldNotExecuteProcessWhenLockNotAcquired() throws Exception {
+    // given
+    when(dao.acquireProcessLock()).thenReturn(false);
+
+    // when
+    ExecutionReport report = runner.execute();
+
+    // then
+    verify(dao, never()).isNewChange(any(ChangeEntry.class));
+    assertNull(report);
+  }
+
+  @Test
+  void shouldReturnExecutionStatusBasedOnDao() throws Exception {
+    // given
+    when(dao.isProccessLockHeld()).thenReturn(true);
+
+    boolean inProgress = runner.isExecutionInProgress();
+
+    // then
+    assertTrue(inProgress);
+  }
+
+  @Test
+  void shouldReleaseLockWhenExceptionInMigration() throws Exception {
+    // given
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenThrow(RuntimeException.class);
+
+    // when & then
+    Executable execute = () -> {
+      ExecutionReport report = runner.execute();
+      assertEquals(8, report.getScanned());
+      assertEquals(8, report.getFailed());
+    };
+    assertThrows(RuntimeException.class, execute);
+    verify(dao).releaseProcessLock();
+  }
+
+  @Test
+  void shouldIgnoreChangeSetsWithUnsupportedParameterType() throws Exception {
+    runner.setChangeLogsScanPackage(CustomParamsChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    ExecutionReport report = runner.execute();
+
+    verify(executionChecker).execute(CustomParamsChangeLog.CHANGESET5);
+    verify(dao, times(5)).save(any(ChangeEntry.class));
+    assertEquals(5, report.getScanned());
+    assertEquals(1, report.getExecuted());
+    assertEquals(4, report.getFailed());
+  }
+
+  @Test
+  void shouldResolveProvidedParametersOncePerRun() throws Exception {
+    runner.setChangeLogsScanPackage(CustomParamsChangeLog.class.getPackage().getName());
+    MongoClient searchClient = mock(MongoClient.class);
+    AtomicInteger created = new AtomicInteger();
+    runner.registerParameterResolver(new ParameterProviders()
+        .register(Document.class, () -> new Document("created", created.incrementAndGet()))
+        .register(MongoClient.class, () -> searchClient)
+        .register(ChangeSetExecutionChecker.class, () -> executionChecker, ParameterScope.SINGLETON));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    ExecutionReport report = runner.execute();
+
+    verify(executionChecker, times(5)).execute(anyString());
+    assertEquals(5, report.getExecuted());
+    assertEquals(1, created.get());
+    verify(searchClient).close();
+  }
+
+  @Test
+  void shouldResolveParameterBySingleInstanceOfSubtype() throws Exception {
+    runner.setChangeLogsScanPackage(SupertypeParamsChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(Document.class, new Document(), ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    ExecutionReport report = runner.execute();
+
+    verify(executionChecker).execute(SupertypeParamsChangeLog.SETTINGS);
+    assertEquals(1, report.getExecuted());
+  }
+
+  @Test
+  void shouldFailChangeSetWhenSeveralInstancesMatchParameterType() throws Exception {
+    runner.setChangeLogsScanPackage(SupertypeParamsChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(Document.class, new Document(), HashMap.class, new HashMap<>(),
+        ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    ExecutionReport report = runner.execute();
+
+    verify(executionChecker, never()).execute(anyString());
+    assertEquals(1, report.getFailed());
+    verify(dao).save(argThat(entry -> entry.getError() != null && entry.getError().contains("Map is ambiguous")));
+  }
+
+  @Test
+  void shouldRunChangeSetsWhenCustomParametersWereDefined() throws Exception {
+    runner.setChangeLogsScanPackage(CustomParamsChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(Document.class, new Document(), MongoClient.class, mongoClient, ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    ExecutionReport report = runner.execute();
+
+    verify(executionChecker, times(5)).execute(anyString());
+    verify(dao, times(5)).save(any(ChangeEntry.class));
+    assertEquals(5, report.getScanned());
+    assertEquals(5, report.getExecuted());
+  }
+
+  @Test
+  void shouldRunChangeSetsForSelectedEnvironment() throws Exception {
+    runner.setChangeLogsScanPackage(EnvironmentsChangeLog.class.getPackage().getName());
+    runner.setEnvironment(Environment.PROD);
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+    doCallRealMethod().when(executionChecker).execute(anyString());
+
+    ExecutionReport report = runner.execute();
+
+    verify(executionChecker).execute(Environment.PROD);
+    verify(executionChecker).execute(Environment.ANY);
+    verify(dao, times(2)).save(any(ChangeEntry.class));
+    assertEquals(5, report.getScanned());
+    assertEquals(2, report.getExecuted());
+  }
+
+  @Test
+  void shouldRunAllChangeSetsWhenEnvironmentIsNotDefined() throws Exception {
+    runner.setChangeLogsScanPackage(EnvironmentsChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+    doCallRealMethod().when(executionChecker).execute(anyString());
+
+    ExecutionReport report = runner.execute();
+
+    verify(executionChecker, times(5)).execute(anyString());
+    verify(dao, times(5)).save(any(ChangeEntry.class));
+    assertEquals(5, report.getScanned());
+    assertEquals(5, report.getExecuted());
+  }
+
+  @Test
+  void shouldNotExecutePostponedChangeSets() throws Exception {
+    runner.setChangeLogsScanPackage(PostponedChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+    doCallRealMethod().when(executionChecker).execute(anyString());
+
+    ExecutionReport report = runner.execute();
+
+    verify(executionChecker).execute(PostponedChangeLog.NOT_POSTPONED);
+    verify(dao, times(3)).save(any(ChangeEntry.class));
+    assertEquals(3, report.getScanned());
+    assertEquals(1, report.getExecuted());
+    assertEquals(2, report.getPostponed());
+  }
+
+  @Test
+  void shouldIgnoreRunAlwaysFlagForPostponedChangeSets() throws Exception {
+    runner.setChangeLogsScanPackage(PostponedChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(false);
+
+    ExecutionReport report = runner.execute();
+
+    verify(executionChecker, never()).execute(anyString());
+    verify(dao, never()).save(any(ChangeEntry.class));
+    assertEquals(3, report.getScanned());
+    assertEquals(3, report.getSkipped());
+  }
+
+  @Test
+  void shouldRunSingleChangeSetRegardlessOfRepeatableWhenIsNew() throws Exception {
+    runner.setChangeLogsScanPackage(RepeatableChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+    doCallRealMethod().when(executionChecker).execute(anyString());
+
+    ChangeEntry changeEntry = createChangeEntry("id1", "changeSet1", false);
+    ExecutionReport report = runner.executeSingle(changeEntry);
+
+    verify(executionChecker).execute("111");
+    verify(dao).save(any(ChangeEntry.class));
+    assertEquals(1, report.getScanned());
+    assertEquals(1, report.getExecuted());
+  }
+
+  @Test
+  void shouldNotRerunSingleChangeSetWhenRepeatableIsFalse() throws Exception {
+    runner.setChangeLogsScanPackage(RepeatableChangeLog.class.getPackage().getName());
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(false);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    ChangeEntry changeEntry = createChangeEntry("id1", "changeSet1", false);
+    ExecutionReport report = runner.executeSingle(changeEntry);
+
+    assertEquals(1, report.getScanned());
+    assertEquals(1, report.getFailed());
+  }
+
+  @Test
+  void shouldRerunSingleChangeSetWhenRepeatableIsTrue() throws Exception {
+    runner.setChangeLogsScanPackage(RepeatableChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(false);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    ChangeEntry changeEntry = createChangeEntry("id2", "changeSet2", true);
+    ExecutionReport report = runner.executeSingle(changeEntry);
+
+    verify(dao).save(any(ChangeEntry.class));
+    assertEquals(1, report.getScanned());
+    assertEquals(1, report.getReExecuted());
+  }
+
+  @Test
+  void shouldExecuteOnlySelectedGroupIncludingPostponed() throws Exception {
+    runner.setChangeLogsScanPackage(GroupsChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    ExecutionReport report = runner.execute(Selector.ofGroups(GroupsChangeLog.BILLING));
+
+    verify(executionChecker).execute("billing 1");
+    verify(executionChecker).execute("billing 2");
+    verify(executionChecker).execute("billing backfill");
+    verify(executionChecker, times(3)).execute(anyString());
+    verify(dao, never()).isNewChange(any(ChangeEntry.class));
+    verify(dao, times(3)).save(any(ChangeEntry.class));
+    assertEquals(3, report.getScanned());
+    assertEquals(3, report.getExecuted());
+  }
+
+  @Test
+  void shouldExecuteSelectedTagsAndIdsOnlyOnce() throws Exception {
+    runner.setChangeLogsScanPackage(GroupsChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    ExecutionReport report = runner.execute(Selector.ofTags(GroupsChangeLog.BACKFILL).withIds("id4", "id5"));
+
+    verify(executionChecker).execute("backfill");
+    verify(executionChecker).execute("billing backfill");
+    verify(executionChecker).execute("other");
+    assertEquals(3, report.getScanned());
+    assertEquals(3, report.getExecuted());
+  }
+
+  @Test
+  void shouldPassOverAppliedSelectedChangeSetsUnlessRunAlways() throws Exception {
+    runner.setChangeLogsScanPackage(GroupsChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.findAppliedChanges(any())).thenReturn(Set.of(
+        ChangeEntry.key("id1", "testUser"), ChangeEntry.key("id2", "testUser"), ChangeEntry.key("id4", "testUser")));
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    ExecutionReport report = runner.execute(Selector.ofGroups(GroupsChangeLog.BILLING));
+
+    verify(executionChecker).execute("billing backfill");
+    verify(executionChecker, times(1)).execute(anyString());
+    assertEquals(3, report.getScanned());
+    assertEquals(1, report.getReExecuted());
+    assertEquals(2, report.getSkipped());
+  }
+
+  @Test
+  void shouldRejectEmptySelector() {
+    assertThrows(MongoBatConfigurationException.class, () -> runner.execute(new Selector()));
+  }
+
+  @Test
+  void shouldExecutePostponedChangeSetsAndPauseAtDeadline() throws Exception {
+    runner.setChangeLogsScanPackage(CancellableChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.findPostponedChanges()).thenReturn(new ArrayList<>(List.of(
+        createPostponedChangeEntry("id2", "changeSet2"),
+        createPostponedChangeEntry("id1", "changeSet1"))));
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    ExecutionReport report = runner.executePostponed(2, Instant.now().plus(Duration.ofMillis(200)), new CancellationToken());
+
+    verify(executionChecker).execute("quick");
+    verify(dao).save(argThat(entry -> entry.getChangeId().equals("id1") && entry.getStatus() == ChangeStatus.INSTALLED));
+    verify(dao, times(1)).save(any(ChangeEntry.class));
+    verify(dao).releaseProcessLock();
+    assertEquals(2, report.getScanned());
+    assertEquals(1, report.getExecuted());
+    assertEquals(1, report.getPostponed());
+  }
+
+  @Test
+  void shouldStopSchedulingPostponedChangeSetAfterMaxAttempts() throws Exception {
+    runner.setChangeLogsScanPackage(CancellableChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+    runner.setMaxPostponedAttempts(2);
+    doThrow(new IllegalStateException("boom")).when(executionChecker).execute("quick");
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.findPostponedChanges()).thenReturn(new ArrayList<>(List.of(createPostponedChangeEntry("id1", "changeSet1"))));
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    runner.executePostponed(1, Instant.now().plusSeconds(60), new CancellationToken());
+
+    verify(dao).save(argThat(entry -> entry.getChangeId().equals("id1") && entry.getStatus() == ChangeStatus.POSTPONED
+        && entry.getAttempts() == 1 && entry.getError().contains("boom")));
+
+    ChangeEntry failedBefore = createPostponedChangeEntry("id1", "changeSet1");
+    failedBefore.setAttempts(1);
+    when(dao.findPostponedChanges()).thenReturn(new ArrayList<>(List.of(failedBefore)));
+
+    ExecutionReport report = runner.executePostponed(1, Instant.now().plusSeconds(60), new CancellationToken());
+
+    verify(dao).save(argThat(entry -> entry.getChangeId().equals("id1") && entry.getStatus() == ChangeStatus.FAILED
+        && entry.getAttempts() == 2));
+    assertEquals(1, report.getFailed());
+  }
+
+  @Test
+  void shouldNotStartPostponedChangeSetsWhenCancelled() throws Exception {
+    runner.setChangeLogsScanPackage(CancellableChangeLog.class.getPackage().getName());
+    CancellationToken cancellationToken = new CancellationToken();
+    cancellationToken.cancel("test");
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.findPostponedChanges()).thenReturn(new ArrayList<>(List.of(createPostponedChangeEntry("id1", "changeSet1"))));
+
+    ExecutionReport report = runner.executePostponed(1, Instant.now().plusSeconds(60), cancellationToken);
+
+    verify(executionChecker, never()).execute(anyString());
+    verify(dao, never()).save(any(ChangeEntry.class));
+    assertEquals(1, report.getPostponed());
+  }
+
+  @Test
+  void shouldExecuteBatchUnderSingleLock() throws Exception {
+    runner.setChangeLogsScanPackage(RepeatableChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.findAppliedChanges(any())).thenReturn(Set.of(ChangeEntry.key("id1", "testUser")));
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    ExecutionReport report = runner.executeBatch(List.of(
+        createChangeEntry("id1", "changeSet1", false),
+        createChangeEntry("id2", "changeSet2", true),
+        createChangeEntry("id3", "missingChangeSet", true)));
+
+    verify(dao, times(1)).acquireProcessLock();
+    verify(dao, times(1)).releaseProcessLock();
+    verify(dao, never()).isNewChange(any(ChangeEntry.class));
+    verify(executionChecker, never()).execute("111");
+    verify(executionChecker).execute("222");
+    assertEquals(3, report.getScanned());
+    assertEquals(1, report.getExecuted());
+    assertEquals(2, report.getFailed());
+    assertEquals(Map.of(
+        "id1", ExecutionReport.Result.FAILED,
+        "id2", ExecutionReport.Result.EXECUTED,
+        "id3", ExecutionReport.Result.FAILED), report.getResults());
+  }
+
+  private ChangeEntry createPostponedChangeEntry(String changeId, String changeSetMethodName) {
+    ChangeEntry changeEntry = new ChangeEntry(changeId, "testUser", new Date(), CancellableChangeLog.class.getName(), changeSetMethodName, "", "", Environment.ANY, true, true);
+    changeEntry.setStatus(ChangeStatus.POSTPONED);
+    return changeEntry;
+  }
+
+  private ChangeEntry createChangeEntry(String changeId, String changeSetMethodName, boolean repeatable) {
+    return new ChangeEntry(changeId, "testUser", new Date(), RepeatableChangeLog.class.getName(), changeSetMethodName, "", "", Environment.ANY, false, repeatable);
+  }
+
+  @Test
+  void shouldInjectDatabaseConfiguredWithExecutionProfile() throws Exception {
+    runner.setChangeLogsScanPackage(ProfilesChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+    runner.registerExecutionProfile(new ExecutionProfile(ProfilesChangeLog.BULK)
+        .setWriteConcern(WriteConcern.W1)
+        .setReadPreference(ReadPreference.secondaryPreferred()));
+
+    MongoDatabase bulkDatabase = mock(MongoDatabase.class);
+    when(fakeMongoDatabase.withWriteConcern(WriteConcern.W1)).thenReturn(bulkDatabase);
+    when(bulkDatabase.withReadPreference(ReadPreference.secondaryPreferred())).thenReturn(bulkDatabase);
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+    doCallRealMethod().when(executionChecker).execute(anyString());
+
+    ExecutionReport report = runner.execute();
+
+    verify(bulkDatabase).getCollection("orders");
+    verify(fakeMongoDatabase).getCollection("orders");
+    verify(executionChecker).execute(ProfilesChangeLog.BULK);
+    verify(executionChecker).execute("default");
+    assertEquals(2, report.getExecuted());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldFlushBufferedWritesAtEndOfChangeSet() throws Exception {
+    runner.setChangeLogsScanPackage(BatchingChangeLog.class.getPackage().getName());
+    runner.registerExecutionProfile(new ExecutionProfile(ExecutionProfile.DEFAULT).setAutoBatchSize(100));
+
+    MongoCollection<Document> orders = mock(MongoCollection.class);
+    when(orders.getNamespace()).thenReturn(new MongoNamespace("test", "orders"));
+    doReturn(Document.class).when(orders).getDocumentClass();
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+    when(fakeMongoDatabase.getCollection("orders")).thenReturn(orders);
+
+    ExecutionReport report = runner.execute();
+
+    verify(orders, never()).insertOne(any(Document.class));
+    verify(orders).bulkWrite(argThat(requests -> requests.size() == BatchingChangeLog.ORDERS), any(BulkWriteOptions.class));
+    assertEquals(1, report.getExecuted());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldLoadSeedOfChangeSet() throws Exception {
+    runner.setChangeLogsScanPackage(SeedChangeLog.class.getPackage().getName());
+
+    MongoCollection<RawBsonDocument> currencies = mock(MongoCollection.class);
+    when(currencies.withDocumentClass(RawBsonDocument.class)).thenReturn(currencies);
+    when(currencies.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenReturn(BulkWriteResult.unacknowledged());
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+    when(fakeMongoDatabase.getCollection(SeedChangeLog.COLLECTION, RawBsonDocument.class)).thenReturn(currencies);
+
+    ExecutionReport report = runner.execute();
+
+    verify(currencies).bulkWrite(argThat(requests -> requests.size() == 5), any(BulkWriteOptions.class));
+    assertEquals(1, report.getExecuted());
+    assertEquals(0, report.getFailed());
+  }
+
+  @Test
+  void shouldRetryChangeSetAfterTransientError() throws Exception {
+    runner.setChangeLogsScanPackage(RetryChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+    runner.setRetryPolicy(new RetryPolicy().setInitialBackoff(Duration.ofMillis(1)));
+
+    MongoSocketReadException stepDown = new MongoSocketReadException("Connection reset", new ServerAddress());
+    doThrow(stepDown).doNothing().when(executionChecker).execute(RetryChangeLog.RETRIED);
+    doThrow(stepDown).when(executionChecker).execute(RetryChangeLog.NOT_RETRIED);
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    // the second changeset is not repeatable, so the global policy doesn't retry it
+    assertThrows(MongoBatException.class, () -> runner.execute());
+
+    verify(executionChecker, times(2)).execute(RetryChangeLog.RETRIED);
+    verify(executionChecker).execute(RetryChangeLog.NOT_RETRIED);
+    verify(mongoCollection).replaceOne(any(Document.class),
+        argThat(entry -> entry.get(ChangeEntry.KEY_METRICS, Document.class).getInteger("retries") == 1),
+        any(ReplaceOptions.class));
+  }
+
+  @Test
+  void shouldReleaseCollectionsAsAsyncChangeSetsFinish() throws Exception {
+    runner.setChangeLogsScanPackage(ReadinessChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    CountDownLatch ordersStarted = new CountDownLatch(1);
+    CountDownLatch ordersReleased = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      ordersStarted.countDown();
+      ordersReleased.await(5, TimeUnit.SECONDS);
+      return null;
+    }).when(executionChecker).execute(ReadinessChangeLog.ORDERS);
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    CompletableFuture<ExecutionReport> execution = runner.executeAsync();
+    assertTrue(ordersStarted.await(5, TimeUnit.SECONDS));
+
+    assertFalse(runner.isCollectionReady(ReadinessChangeLog.ORDERS));
+    assertFalse(runner.isCollectionReady(ReadinessChangeLog.CUSTOMERS));
+    assertTrue(runner.isCollectionReady("products"));
+    assertFalse(runner.awaitCollectionReady(ReadinessChangeLog.ORDERS, Duration.ofMillis(10)));
+
+    ordersReleased.countDown();
+    assertTrue(runner.awaitCollectionReady(ReadinessChangeLog.CUSTOMERS, Duration.ofSeconds(5)));
+    assertEquals(2, execution.get(5, TimeUnit.SECONDS).getExecuted());
+    assertTrue(runner.isCollectionReady(ReadinessChangeLog.ORDERS));
+  }
+
+  @Test
+  void shouldSignalCollectionReadyOnlyOnceChangeIsRecorded() throws Exception {
+    runner.setChangeLogsScanPackage(ReadinessChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    CountDownLatch saving = new CountDownLatch(1);
+    CountDownLatch saved = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      if (ReadinessChangeLog.ORDERS.equals(invocation.<ChangeEntry>getArgument(0).getChangeId())) {
+        saving.countDown();
+        saved.await(5, TimeUnit.SECONDS);
+      }
+      return null;
+    }).when(dao).save(any(ChangeEntry.class));
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+
+    CompletableFuture<ExecutionReport> execution = runner.executeAsync();
+    assertTrue(saving.await(5, TimeUnit.SECONDS));
+
+    assertFalse(runner.isCollectionReady(ReadinessChangeLog.ORDERS));
+    saved.countDown();
+    assertTrue(runner.awaitCollectionReady(ReadinessChangeLog.ORDERS, Duration.ofSeconds(5)));
+    assertEquals(2, execution.get(5, TimeUnit.SECONDS).getExecuted());
+  }
+
+  @Test
+  void shouldNotReleaseCollectionsOfChangeSetsNotExecutedWhenAsyncExecutionFails() throws Exception {
+    runner.setChangeLogsScanPackage(ReadinessChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    doThrow(new IllegalStateException("boom")).when(executionChecker).execute(ReadinessChangeLog.ORDERS);
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+
+    CompletableFuture<ExecutionReport> execution = runner.executeAsync();
+
+    assertThrows(ExecutionException.class, () -> execution.get(5, TimeUnit.SECONDS));
+    verify(executionChecker, never()).execute(ReadinessChangeLog.CUSTOMERS);
+    MongoBatException notMigrated = assertThrows(MongoBatException.class,
+        () -> runner.awaitCollectionReady(ReadinessChangeLog.CUSTOMERS, Duration.ofSeconds(5)));
+    assertTrue(notMigrated.getMessage().contains(ReadinessChangeLog.CUSTOMERS));
+    assertThrows(MongoBatException.class, () -> runner.isCollectionReady(ReadinessChangeLog.ORDERS));
+  }
+
+  @Test
+  void shouldServeReportOfWholeRunAcrossScanPackages() throws Exception {
+    runner.setChangeLogsScanPackages(List.of(ReadinessChangeLog.class.getPackage().getName(),
+        EnvironmentsChangeLog.class.getPackage().getName()));
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+    runner.setStatusPort(0);
+
+    List<Document> served = new ArrayList<>();
+    doAnswer(invocation -> {
+      if (Environment.DEV.equals(invocation.getArgument(0))) {
+        URL url = new URL("http://localhost:" + runner.getStatusServer().getPort() + "/status");
+        try (InputStream in = url.openStream()) {
+          served.add(Document.parse(new String(in.readAllBytes(), StandardCharsets.UTF_8)));
+        }
+      }
+      return null;
+    }).when(executionChecker).execute(anyString());
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    ExecutionReport report = runner.execute();
+
+    assertEquals(1, served.size());
+    assertEquals(2, served.get(0).get("report", Document.class).getInteger("executed"));
+    assertEquals(7, report.getExecuted());
+  }
+
+  @Test
+  void shouldRecordStatsOfDeclaredCollections() throws Exception {
+    runner.setChangeLogsScanPackage(ReadinessChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+    runner.setCollectionStats(true);
+
+    Map<String, AtomicInteger> snapshots = new ConcurrentHashMap<>();
+    when(fakeMongoDatabase.runCommand(any(Bson.class))).thenAnswer(invocation -> {
+      String collection = ((Document) invocation.getArgument(0)).getString("collStats");
+      int snapshot = snapshots.computeIfAbsent(collection, name -> new AtomicInteger()).getAndIncrement();
+      return new Document("count", 10 + snapshot * 5).append("size", 1000 + snapshot * 600)
+          .append("storageSize", 4096).append("totalIndexSize", 512);
+    });
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    ExecutionReport report = runner.execute();
+    runner.close();
+
+    Map<String, Map<String, CollectionStats>> stats = report.getCollectionStats();
+    assertEquals(Set.of(ReadinessChangeLog.ORDERS, ReadinessChangeLog.CUSTOMERS), stats.keySet());
+    assertEquals(Set.of(ReadinessChangeLog.ORDERS), stats.get(ReadinessChangeLog.ORDERS).keySet());
+    assertEquals(5, stats.get(ReadinessChangeLog.ORDERS).get(ReadinessChangeLog.ORDERS).getCount());
+    assertEquals(600, stats.get(ReadinessChangeLog.CUSTOMERS).get(ReadinessChangeLog.CUSTOMERS).getSize());
+    ArgumentCaptor<ChangeEntry> saved = ArgumentCaptor.forClass(ChangeEntry.class);
+    verify(dao, atLeastOnce()).save(saved.capture());
+    assertEquals(List.of(new Document("collection", ReadinessChangeLog.ORDERS).append("count", 5L).append("size", 600L)
+            .append("storageSize", 0L).append("totalIndexSize", 0L)),
+        saved.getAllValues().stream().filter(entry -> entry.getChangeId().equals(ReadinessChangeLog.ORDERS))
+            .reduce((first, last) -> last).orElseThrow().getMetrics().getList(CollectionStats.KEY_COLLECTION_STATS, Document.class));
+  }
+
+  @Test
+  void shouldFailChangeSetWithUnknownExecutionProfile() throws Exception {
+    runner.setChangeLogsScanPackage(ProfilesChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    ExecutionReport report = runner.execute();
+
+    verify(executionChecker, never()).execute(ProfilesChangeLog.BULK);
+    assertEquals(1, report.getExecuted());
+    assertEquals(1, report.getFailed());
+  }
+
+  @Test
+  void shouldFailOverrunningChangeSetsAndContinue() throws Exception {
+    runner.setChangeLogsScanPackage(TimeoutChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+    runner.setDefaultMaxDuration(Duration.ofMillis(100));
+    runner.setCancellationGracePeriod(Duration.ofMillis(100));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+    doCallRealMethod().when(executionChecker).execute(anyString());
+
+    ExecutionReport report = runner.execute();
+
+    verify(executionChecker).execute(TimeoutChangeLog.COOPERATIVE);
+    verify(executionChecker).execute(TimeoutChangeLog.FAST);
+    verify(dao).releaseProcessLock();
+    assertEquals(1, report.getExecuted());
+    assertEquals(2, report.getFailed());
+    assertEquals(ExecutionReport.Result.FAILED, report.getResults().get(TimeoutChangeLog.STUCK));
+  }
+
+  @Test
+  void shouldAbortExecutionAfterTimeoutWhenPolicyIsAbort() throws Exception {
+    runner.setChangeLogsScanPackage(TimeoutChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+    runner.setDefaultMaxDuration(Duration.ofMillis(100));
+    runner.setCancellationGracePeriod(Duration.ofMillis(100));
+    runner.setTimeoutPolicy(TimeoutPolicy.ABORT);
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+
+    assertThrows(MongoBatChangeSetTimeoutException.class, () -> runner.execute());
+
+    verify(executionChecker, never()).execute(TimeoutChangeLog.FAST);
+    verify(dao, times(1)).save(argThat(entry -> ChangeStatus.FAILED.equals(entry.getStatus())));
+    verify(dao).releaseProcessLock();
+  }
+
+  @Test
+  void shouldAttributeDriverCommandsToChangeSets() throws Exception {
+    CommandProfiler profiler = new CommandProfiler();
+    runner.setChangeLogsScanPackage(GroupsChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+    runner.setCommandProfiler(profiler);
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+    AtomicInteger requestId = new AtomicInteger();
+    doAnswer(invocation -> {
+      int id = requestId.incrementAndGet();
+      profiler.commandStarted(new CommandStartedEvent(id, null, "test", "update", new BsonDocument("update", new BsonString("orders"))));
+      profiler.commandSucceeded(new CommandSucceededEvent(id, null, "update", new BsonDocument("ok", new BsonInt32(1)), 1_000_000));
+      return null;
+    }).when(executionChecker).execute(anyString());
+
+    ExecutionReport report = runner.execute();
+
+    assertEquals(4, report.getCommandStats().size());
+    CommandStats stats = report.getCommandStats().get("id1");
+    assertEquals(Map.of("update", 1L), stats.getCommandCounts());
+    assertTrue(stats.getBytesSent() > 0);
+    assertTrue(stats.getBytesReceived() > 0);
+    assertEquals(Duration.ofMillis(1), stats.getCommandTime());
+    verify(mongoCollection).replaceOne(any(Document.class), argThat(document -> "id1".equals(document.getString(ChangeEntry.KEY_CHANGE_ID))
+        && document.get(ChangeEntry.KEY_METRICS, Document.class).getLong(CommandStats.KEY_COMMAND_COUNT) == 1), any(ReplaceOptions.class));
+  }
+
+  @Test
+  void shouldRecordFlightRecorderEventsOfChangeSets() throws Exception {
+    runner.setChangeLogsScanPackage(GroupsChangeLog.class.getPackage().getName());
+    runner.setChangeSetMethodParams(Map.of(ChangeSetExecutionChecker.class, executionChecker));
+
+    when(dao.acquireProcessLock()).thenReturn(true);
+    when(dao.isNewChange(any(ChangeEntry.class))).thenReturn(true);
+    when(fakeMongoDatabase.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(mongoCollection);
+    doAnswer(invocation -> {
+      if ("other".equals(invocation.getArgument(0))) {
+        throw new IllegalStateException("failed");
+      }
+      return null;
+    }).when(executionChecker).execute(anyString());
+    Path file = Files.createTempFile("mongobat", ".jfr");
+
+    try (Recording recording = new Recording()) {
+      recording.enable(ChangeLogScanEvent.class);
+      recording.enable(ChangeSetEvent.class);
+      recording.start();
+      assertThrows(MongoBatException.class, () -> runner.execute());
+      recording.stop();
+      recording.dump(file);
+    }
+
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+    Files.delete(file);
+    Map<String, String> outcomes = events.stream()
+        .filter(event -> event.getEventType().getName().equals("com.github.mongobat.ChangeSet"))
+        .collect(Collectors.toMap(event -> event.getString("changeId"), event -> event.getString("outcome")));
+    assertEquals(Map.of("id1", ChangeSetEvent.SUCCEEDED, "id3", ChangeSetEvent.SUCCEEDED,
+        "id4", ChangeSetEvent.SUCCEEDED, "id5", ChangeSetEvent.FAILED), outcomes);
+    assertTrue(events.stream().anyMatch(event -> event.getEventType().getName().equals("com.github.mongobat.ChangeLogScan")
+        && event.getInt("changeLogs") == 1));
+  }
+
+}
@@ -0,0 +1,184 @@
+package com.github.mongobat.batching;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoNamespace;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteError;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.InsertOneResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WriteBatcherTest {
+
+  @Mock
+  private MongoDatabase database;
+
+  @Mock
+  private MongoCollection<Document> orders;
+
+  @BeforeEach
+  void setUp() {
+    lenient().when(database.getCollection("orders")).thenReturn(orders);
+    lenient().when(orders.getNamespace()).thenReturn(new MongoNamespace("test", "orders"));
+    lenient().doReturn(Document.class).when(orders).getDocumentClass();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldFlushWritesWhenBatchIsFull() {
+    WriteBatcher batcher = new WriteBatcher(2, null);
+    MongoCollection<Document> collection = batcher.wrap(database).getCollection("orders");
+
+    collection.insertOne(new Document("_id", 1));
+    collection.updateOne(Filters.eq("_id", 1), Updates.set("paid", true));
+    collection.deleteOne(Filters.eq("_id", 2));
+
+    ArgumentCaptor<List<WriteModel<Document>>> requests = ArgumentCaptor.forClass(List.class);
+    verify(orders).bulkWrite(requests.capture(), any(BulkWriteOptions.class));
+    assertInstanceOf(InsertOneModel.class, requests.getValue().get(0));
+    assertInstanceOf(UpdateOneModel.class, requests.getValue().get(1));
+    assertEquals(1, batcher.getBufferedWrites());
+
+    batcher.flush();
+
+    verify(orders, times(2)).bulkWrite(requests.capture(), any(BulkWriteOptions.class));
+    assertInstanceOf(DeleteOneModel.class, requests.getValue().get(0));
+    assertEquals(3, batcher.getFlushedWrites());
+    assertEquals(2, batcher.getBulkWrites());
+    verify(orders, never()).insertOne(any(Document.class));
+  }
+
+  @Test
+  void shouldFlushWritesBeforeRead() {
+    FindIterable<Document> iterable = mock(FindIterable.class);
+    when(orders.find(any(Document.class))).thenReturn(iterable);
+    WriteBatcher batcher = new WriteBatcher(100, null);
+    MongoCollection<Document> collection = batcher.wrap(orders);
+
+    collection.insertOne(new Document("_id", 1));
+    collection.find(new Document("_id", 1));
+
+    InOrder inOrder = inOrder(orders);
+    inOrder.verify(orders).bulkWrite(anyList(), any(BulkWriteOptions.class));
+    inOrder.verify(orders).find(any(Document.class));
+    assertEquals(0, batcher.getBufferedWrites());
+  }
+
+  @Test
+  void shouldFlushWritesOlderThanInterval() {
+    WriteBatcher batcher = new WriteBatcher(100, Duration.ZERO);
+    MongoCollection<Document> collection = batcher.wrap(database).getCollection("orders");
+
+    collection.insertOne(new Document("_id", 1));
+    collection.insertOne(new Document("_id", 2));
+
+    verify(orders).bulkWrite(anyList(), any(BulkWriteOptions.class));
+    assertEquals(1, batcher.getBufferedWrites());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldExecuteWriteDirectlyWhenItsResultIsRead() {
+    Bson filter = Filters.eq("_id", 1);
+    Bson update = Updates.set("paid", true);
+    when(orders.updateOne(filter, update)).thenReturn(UpdateResult.acknowledged(1, 0L, null));
+    WriteBatcher batcher = new WriteBatcher(100, null);
+    MongoCollection<Document> collection = batcher.wrap(orders);
+
+    collection.insertOne(new Document("_id", 1));
+    UpdateResult result = collection.updateOne(filter, update);
+
+    assertEquals(0, result.getModifiedCount());
+    assertEquals(1, result.getMatchedCount());
+    ArgumentCaptor<List<WriteModel<Document>>> requests = ArgumentCaptor.forClass(List.class);
+    InOrder inOrder = inOrder(orders);
+    inOrder.verify(orders).bulkWrite(requests.capture(), any(BulkWriteOptions.class));
+    inOrder.verify(orders).updateOne(filter, update);
+    assertEquals(1, requests.getValue().size());
+    assertEquals(0, batcher.getBufferedWrites());
+  }
+
+  @Test
+  void shouldThrowWriteErrorWhenResultIsRead() {
+    Document order = new Document("_id", 1);
+    when(orders.insertOne(order)).thenThrow(new MongoWriteException(
+        new WriteError(11000, "E11000 duplicate key error", new BsonDocument()), new ServerAddress()));
+    MongoCollection<Document> collection = new WriteBatcher(100, null).wrap(orders);
+
+    InsertOneResult result = collection.insertOne(order);
+
+    MongoWriteException e = assertThrows(MongoWriteException.class, result::getInsertedId);
+    assertEquals(11000, e.getCode());
+    verify(orders, never()).bulkWrite(anyList(), any(BulkWriteOptions.class));
+  }
+
+  @Test
+  void shouldExecuteMultiDocumentWritesDirectly() {
+    when(orders.updateMany(any(Bson.class), any(Bson.class))).thenReturn(UpdateResult.acknowledged(3, 3L, null));
+    when(orders.deleteMany(any(Bson.class))).thenReturn(DeleteResult.acknowledged(2));
+    WriteBatcher batcher = new WriteBatcher(100, null);
+    MongoCollection<Document> collection = batcher.wrap(orders);
+
+    collection.insertOne(new Document("_id", 1));
+    assertEquals(3, collection.updateMany(Filters.exists("paid"), Updates.set("paid", true)).getModifiedCount());
+    assertEquals(2, collection.deleteMany(Filters.eq("paid", false)).getDeletedCount());
+
+    InOrder inOrder = inOrder(orders);
+    inOrder.verify(orders).bulkWrite(anyList(), any(BulkWriteOptions.class));
+    inOrder.verify(orders).updateMany(any(Bson.class), any(Bson.class));
+    inOrder.verify(orders).deleteMany(any(Bson.class));
+    assertEquals(1, batcher.getFlushedWrites());
+  }
+
+  @Test
+  void shouldThrowErrorsOfFlushedWritesFromFlush() {
+    when(orders.getCodecRegistry()).thenReturn(MongoClientSettings.getDefaultCodecRegistry());
+    MongoBulkWriteException failure = new MongoBulkWriteException(BulkWriteResult.acknowledged(0, 0, 0, 0, List.of(), List.of()),
+        List.of(new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), 0)), null, new ServerAddress());
+    when(orders.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenThrow(failure);
+    WriteBatcher batcher = new WriteBatcher(100, null);
+    MongoCollection<Document> collection = batcher.wrap(orders);
+
+    InsertOneResult inserted = collection.insertOne(new Document("_id", 1));
+    UpdateResult updated = collection.updateOne(Filters.eq("_id", 2), Updates.set("paid", true));
+
+    assertSame(failure, assertThrows(MongoBulkWriteException.class, batcher::flush));
+    assertEquals(new BsonInt32(1), inserted.getInsertedId());
+    assertThrows(IllegalStateException.class, updated::getModifiedCount);
+    verify(orders, never()).insertOne(any(Document.class));
+  }
+}
@@ -0,0 +1,22 @@
+package com.github.mongobat.changelog.batching;
+
+import com.github.mongobat.changeset.ChangeLog;
+import com.github.mongobat.changeset.ChangeSet;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import org.bson.Document;
+
+@ChangeLog(order = "1")
+public class BatchingChangeLog {
+
+  public static final int ORDERS = 3;
+
+  @ChangeSet(author = "testUser", id = "batched", order = "01", description = "")
+  public void changeSet1(MongoDatabase db) {
+    MongoCollection<Document> orders = db.getCollection("orders");
+    for (int i = 0; i < ORDERS; i++) {
+      orders.insertOne(new Document("_id", i));
+    }
+  }
+
+}
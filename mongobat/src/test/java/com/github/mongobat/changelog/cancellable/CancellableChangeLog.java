@@ -0,0 +1,25 @@
+package com.github.mongobat.changelog.cancellable;
+
+import com.github.mongobat.changeset.CancellationToken;
+import com.github.mongobat.changeset.ChangeLog;
+import com.github.mongobat.changeset.ChangeSet;
+import com.github.mongobat.exception.MongoBatCancellationException;
+import com.github.mongobat.utils.ChangeSetExecutionChecker;
+
+@ChangeLog(order = "1")
+public class CancellableChangeLog {
+
+  @ChangeSet(author = "testUser", id = "id1", order = "01", description = "", postponed = true)
+  public void changeSet1(ChangeSetExecutionChecker executionChecker) {
+    executionChecker.execute("quick");
+  }
+
+  @ChangeSet(author = "testUser", id = "id2", order = "02", description = "", postponed = true)
+  public void changeSet2(CancellationToken cancellationToken) throws MongoBatCancellationException, InterruptedException {
+    while (true) {
+      cancellationToken.throwIfCancellationRequested();
+      Thread.sleep(10);
+    }
+  }
+
+}
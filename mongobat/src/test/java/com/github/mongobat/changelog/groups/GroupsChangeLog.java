@@ -0,0 +1,38 @@
+package com.github.mongobat.changelog.groups;
+
+import com.github.mongobat.changeset.ChangeLog;
+import com.github.mongobat.changeset.ChangeSet;
+import com.github.mongobat.utils.ChangeSetExecutionChecker;
+
+@ChangeLog(order = "1")
+public class GroupsChangeLog {
+
+  public static final String BILLING = "billing";
+  public static final String BACKFILL = "backfill";
+
+  @ChangeSet(author = "testUser", id = "id1", order = "01", description = "", group = BILLING)
+  public void changeSet1(ChangeSetExecutionChecker executionChecker) {
+    executionChecker.execute("billing 1");
+  }
+
+  @ChangeSet(author = "testUser", id = "id2", order = "02", description = "", group = BILLING, postponed = true)
+  public void changeSet2(ChangeSetExecutionChecker executionChecker) {
+    executionChecker.execute("billing 2");
+  }
+
+  @ChangeSet(author = "testUser", id = "id3", order = "03", description = "", tags = BACKFILL)
+  public void changeSet3(ChangeSetExecutionChecker executionChecker) {
+    executionChecker.execute("backfill");
+  }
+
+  @ChangeSet(author = "testUser", id = "id4", order = "04", description = "", group = BILLING, tags = BACKFILL, runAlways = true)
+  public void changeSet4(ChangeSetExecutionChecker executionChecker) {
+    executionChecker.execute("billing backfill");
+  }
+
+  @ChangeSet(author = "testUser", id = "id5", order = "05", description = "")
+  public void changeSet5(ChangeSetExecutionChecker executionChecker) {
+    executionChecker.execute("other");
+  }
+
+}
@@ -0,0 +1,26 @@
+package com.github.mongobat.changelog.profiles;
+
+import com.github.mongobat.changeset.ChangeLog;
+import com.github.mongobat.changeset.ChangeSet;
+import com.github.mongobat.changeset.ExecutionProfile;
+import com.github.mongobat.utils.ChangeSetExecutionChecker;
+import com.mongodb.client.MongoDatabase;
+
+@ChangeLog(order = "1")
+public class ProfilesChangeLog {
+
+  public static final String BULK = "bulk";
+
+  @ChangeSet(author = "testUser", id = "profiled", order = "01", description = "", profile = BULK)
+  public void changeSet1(MongoDatabase db, ExecutionProfile profile, ChangeSetExecutionChecker executionChecker) {
+    db.getCollection("orders");
+    executionChecker.execute(profile.getName());
+  }
+
+  @ChangeSet(author = "testUser", id = "default", order = "02", description = "")
+  public void changeSet2(MongoDatabase db, ChangeSetExecutionChecker executionChecker) {
+    db.getCollection("orders");
+    executionChecker.execute("default");
+  }
+
+}
@@ -0,0 +1,23 @@
+package com.github.mongobat.changelog.readiness;
+
+import com.github.mongobat.changeset.ChangeLog;
+import com.github.mongobat.changeset.ChangeSet;
+import com.github.mongobat.utils.ChangeSetExecutionChecker;
+
+@ChangeLog(order = "1")
+public class ReadinessChangeLog {
+
+  public static final String ORDERS = "orders";
+  public static final String CUSTOMERS = "customers";
+
+  @ChangeSet(author = "testUser", id = ORDERS, order = "01", description = "", collections = ORDERS)
+  public void changeSet1(ChangeSetExecutionChecker executionChecker) {
+    executionChecker.execute(ORDERS);
+  }
+
+  @ChangeSet(author = "testUser", id = CUSTOMERS, order = "02", description = "", collections = CUSTOMERS)
+  public void changeSet2(ChangeSetExecutionChecker executionChecker) {
+    executionChecker.execute(CUSTOMERS);
+  }
+
+}
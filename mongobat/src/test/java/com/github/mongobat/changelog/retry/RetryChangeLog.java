@@ -0,0 +1,25 @@
+package com.github.mongobat.changelog.retry;
+
+import com.github.mongobat.changeset.ChangeLog;
+import com.github.mongobat.changeset.ChangeSet;
+import com.github.mongobat.changeset.Retry;
+import com.github.mongobat.utils.ChangeSetExecutionChecker;
+
+@ChangeLog(order = "1")
+public class RetryChangeLog {
+
+  public static final String RETRIED = "retried";
+  public static final String NOT_RETRIED = "notRetried";
+
+  @ChangeSet(author = "testUser", id = RETRIED, order = "01", description = "")
+  @Retry(maxAttempts = 3, initialBackoff = 1)
+  public void changeSet1(ChangeSetExecutionChecker executionChecker) {
+    executionChecker.execute(RETRIED);
+  }
+
+  @ChangeSet(author = "testUser", id = NOT_RETRIED, order = "02", description = "", repeatable = false)
+  public void changeSet2(ChangeSetExecutionChecker executionChecker) {
+    executionChecker.execute(NOT_RETRIED);
+  }
+
+}
@@ -0,0 +1,17 @@
+package com.github.mongobat.changelog.seed;
+
+import com.github.mongobat.changeset.ChangeLog;
+import com.github.mongobat.changeset.ChangeSet;
+import com.github.mongobat.changeset.Seed;
+
+@ChangeLog(order = "1")
+public class SeedChangeLog {
+
+  public static final String COLLECTION = "currencies";
+
+  @ChangeSet(author = "testUser", id = "currencies", order = "01", description = "")
+  @Seed(resource = "seed/currencies.jsonl", collection = COLLECTION, upsertKeys = "code")
+  public void changeSet1() {
+  }
+
+}
@@ -0,0 +1,19 @@
+package com.github.mongobat.changelog.supertype;
+
+import com.github.mongobat.changeset.ChangeLog;
+import com.github.mongobat.changeset.ChangeSet;
+import com.github.mongobat.utils.ChangeSetExecutionChecker;
+
+import java.util.Map;
+
+@ChangeLog(order = "1")
+public class SupertypeParamsChangeLog {
+
+  public static final String SETTINGS = "settings";
+
+  @ChangeSet(author = "testUser", id = SETTINGS, order = "01", description = "")
+  public void changeSet1(Map<String, Object> settings, ChangeSetExecutionChecker executionChecker) {
+    executionChecker.execute(SETTINGS);
+  }
+
+}
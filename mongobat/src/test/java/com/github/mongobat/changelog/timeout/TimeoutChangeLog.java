@@ -0,0 +1,36 @@
+package com.github.mongobat.changelog.timeout;
+
+import com.github.mongobat.changeset.CancellationToken;
+import com.github.mongobat.changeset.ChangeLog;
+import com.github.mongobat.changeset.ChangeSet;
+import com.github.mongobat.exception.MongoBatCancellationException;
+import com.github.mongobat.utils.ChangeSetExecutionChecker;
+
+@ChangeLog(order = "1")
+public class TimeoutChangeLog {
+
+  public static final String COOPERATIVE = "cooperative";
+  public static final String STUCK = "stuck";
+  public static final String FAST = "fast";
+
+  @ChangeSet(author = "testUser", id = COOPERATIVE, order = "01", description = "")
+  public void changeSet1(CancellationToken token, ChangeSetExecutionChecker executionChecker)
+      throws MongoBatCancellationException, InterruptedException {
+    while (!token.isCancellationRequested()) {
+      Thread.sleep(10);
+    }
+    executionChecker.execute(COOPERATIVE);
+    token.throwIfCancellationRequested();
+  }
+
+  @ChangeSet(author = "testUser", id = STUCK, order = "02", description = "")
+  public void changeSet2() throws InterruptedException {
+    Thread.sleep(Long.MAX_VALUE);
+  }
+
+  @ChangeSet(author = "testUser", id = FAST, order = "03", description = "", maxDuration = 60)
+  public void changeSet3(ChangeSetExecutionChecker executionChecker) {
+    executionChecker.execute(FAST);
+  }
+
+}
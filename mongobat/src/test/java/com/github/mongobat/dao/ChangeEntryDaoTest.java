@@ -0,0 +1,394 @@
+package com.github.mongobat.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import com.github.mongobat.changeset.ChangeEntry;
+import com.github.mongobat.profiling.ConnectEvent;
+import com.github.mongobat.profiling.LockHoldEvent;
+import com.github.mongobat.profiling.LockWaitEvent;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.result.UpdateResult;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.github.mongobat.exception.MongoBatConfigurationException;
+import com.github.mongobat.exception.MongoBatLockException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoDatabase;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * @author lstolowski
+ * @since 10.12.14
+ */
+@ExtendWith(MockitoExtension.class)
+public class ChangeEntryDaoTest {
+  private static final String DB_NAME = "mongobeetest";
+  private static final String CHANGELOG_COLLECTION_NAME = "dbchangelog";
+  private static final String LOCK_COLLECTION_NAME = "mongobeelock";
+  private static final boolean WAIT_FOR_LOCK = false;
+  private static final long CHANGE_LOG_LOCK_WAIT_TIME = 5L;
+  private static final long CHANGE_LOG_LOCK_POLL_RATE = 10L;
+  private static final boolean THROW_EXCEPTION_IF_CANNOT_OBTAIN_LOCK = false;
+
+  @Mock
+  private MongoClient mongoClient;
+
+  @Mock
+  private MongoDatabase db;
+
+  @Mock
+  private MongoCollection<Document> lockCollection;
+
+  @Mock
+  private MongoCollection<Document> changelogCollection;
+
+  @Mock
+  private MongoCollection<Document> indexesCollection;
+
+  @Mock
+  private FindIterable<Document> findIterable;
+
+  @BeforeEach
+  public void beforeEach() {
+    when(mongoClient.getDatabase(anyString())).thenReturn(db);
+    when(db.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(changelogCollection);
+    lenient().when(db.getCollection(LOCK_COLLECTION_NAME)).thenReturn(lockCollection);
+    lenient().when(db.getCollection("system.indexes")).thenReturn(indexesCollection);
+    lenient().when(indexesCollection.find(any(Document.class))).thenReturn(findIterable);
+  }
+
+  @Test
+  public void shouldCreateChangeIdAuthorIndexIfNotFound() throws MongoBatConfigurationException {
+    // given
+    ChangeEntryDao dao = new ChangeEntryDao(CHANGELOG_COLLECTION_NAME, LOCK_COLLECTION_NAME, WAIT_FOR_LOCK,
+        CHANGE_LOG_LOCK_WAIT_TIME, CHANGE_LOG_LOCK_POLL_RATE, THROW_EXCEPTION_IF_CANNOT_OBTAIN_LOCK);
+
+    ChangeEntryIndexDao indexDaoMock = mock(ChangeEntryIndexDao.class);
+    when(indexDaoMock.findRequiredChangeAndAuthorIndex(db)).thenReturn(null);
+    dao.setIndexDao(indexDaoMock);
+
+    // when
+    dao.connectMongoDb(mongoClient, DB_NAME);
+
+    //then
+    verify(indexDaoMock).createRequiredUniqueIndex(any(MongoCollection.class));
+    // and not
+    verify(indexDaoMock, times(0)).dropIndex(any(MongoCollection.class), any(Document.class));
+  }
+
+  @Test
+  public void shouldNotCreateChangeIdAuthorIndexIfFound() throws MongoBatConfigurationException {
+    // given
+    ChangeEntryDao dao = new ChangeEntryDao(CHANGELOG_COLLECTION_NAME, LOCK_COLLECTION_NAME, WAIT_FOR_LOCK,
+        CHANGE_LOG_LOCK_WAIT_TIME, CHANGE_LOG_LOCK_POLL_RATE, THROW_EXCEPTION_IF_CANNOT_OBTAIN_LOCK);
+    ChangeEntryIndexDao indexDaoMock = mock(ChangeEntryIndexDao.class);
+    when(indexDaoMock.findRequiredChangeAndAuthorIndex(db)).thenReturn(new Document());
+    when(indexDaoMock.isUnique(any(Document.class))).thenReturn(true);
+    dao.setIndexDao(indexDaoMock);
+
+    // when
+    dao.connectMongoDb(mongoClient, DB_NAME);
+
+    //then
+    verify(indexDaoMock, times(0)).createRequiredUniqueIndex(db.getCollection(CHANGELOG_COLLECTION_NAME));
+    // and not
+    verify(indexDaoMock, times(0)).dropIndex(db.getCollection(CHANGELOG_COLLECTION_NAME), new Document());
+  }
+
+  @Test
+  public void shouldRecreateChangeIdAuthorIndexIfFoundNotUnique() throws MongoBatConfigurationException {
+    // given
+    ChangeEntryDao dao = new ChangeEntryDao(CHANGELOG_COLLECTION_NAME, LOCK_COLLECTION_NAME, WAIT_FOR_LOCK,
+        CHANGE_LOG_LOCK_WAIT_TIME, CHANGE_LOG_LOCK_POLL_RATE, THROW_EXCEPTION_IF_CANNOT_OBTAIN_LOCK);
+    ChangeEntryIndexDao indexDaoMock = mock(ChangeEntryIndexDao.class);
+    when(indexDaoMock.findRequiredChangeAndAuthorIndex(db)).thenReturn(new Document());
+    when(indexDaoMock.isUnique(any(Document.class))).thenReturn(false);
+    dao.setIndexDao(indexDaoMock);
+
+    // when
+    dao.connectMongoDb(mongoClient, DB_NAME);
+
+    //then
+    verify(indexDaoMock).dropIndex(any(MongoCollection.class), any(Document.class));
+    // and
+    verify(indexDaoMock).createRequiredUniqueIndex(any(MongoCollection.class));
+  }
+
+  @Test
+  public void shouldInitiateLock() throws MongoBatConfigurationException {
+    // given
+    ChangeEntryDao dao = new ChangeEntryDao(CHANGELOG_COLLECTION_NAME, LOCK_COLLECTION_NAME, WAIT_FOR_LOCK,
+        CHANGE_LOG_LOCK_WAIT_TIME, CHANGE_LOG_LOCK_POLL_RATE, THROW_EXCEPTION_IF_CANNOT_OBTAIN_LOCK);
+    ChangeEntryIndexDao indexDaoMock = mock(ChangeEntryIndexDao.class);
+    dao.setIndexDao(indexDaoMock);
+
+    LockDao lockDao = mock(LockDao.class);
+    dao.setLockDao(lockDao);
+
+    // when
+    dao.connectMongoDb(mongoClient, DB_NAME);
+
+    // then
+    verify(lockDao).intitializeLock(db);
+  }
+
+  @Test
+  public void shouldGetLockWhenLockDaoGetsLock() throws Exception {
+    // given
+    ChangeEntryDao dao = new ChangeEntryDao(CHANGELOG_COLLECTION_NAME, LOCK_COLLECTION_NAME, WAIT_FOR_LOCK,
+        CHANGE_LOG_LOCK_WAIT_TIME, CHANGE_LOG_LOCK_POLL_RATE, THROW_EXCEPTION_IF_CANNOT_OBTAIN_LOCK);
+
+    LockDao lockDao = mock(LockDao.class);
+    when(lockDao.acquireLock(any(MongoDatabase.class), any())).thenReturn(true);
+    dao.setLockDao(lockDao);
+
+    dao.connectMongoDb(mongoClient, DB_NAME);
+
+    // when
+    boolean hasLock = dao.acquireProcessLock();
+
+    // then
+    assertTrue(hasLock);
+  }
+
+  @Test
+  public void shouldWaitForLockIfWaitForLockIsTrue() throws Exception {
+    // given
+    ChangeEntryDao dao = new ChangeEntryDao(CHANGELOG_COLLECTION_NAME, LOCK_COLLECTION_NAME, true,
+        CHANGE_LOG_LOCK_WAIT_TIME, CHANGE_LOG_LOCK_POLL_RATE, THROW_EXCEPTION_IF_CANNOT_OBTAIN_LOCK);
+
+    LockDao lockDao = mock(LockDao.class);
+    when(lockDao.acquireLock(any(MongoDatabase.class), any())).thenReturn(false,true);
+    dao.setLockDao(lockDao);
+
+    dao.connectMongoDb(mongoClient, DB_NAME);
+
+    // when
+    boolean hasLock = dao.acquireProcessLock();
+
+    // then
+    verify(lockDao, times(2)).acquireLock(any(MongoDatabase.class), any());
+    assertTrue(hasLock);
+  }
+
+  @Test
+  public void shouldThrowLockExceptionIfThrowExceptionIsTrue() throws Exception {
+    // given
+    ChangeEntryDao dao = new ChangeEntryDao(CHANGELOG_COLLECTION_NAME, LOCK_COLLECTION_NAME, WAIT_FOR_LOCK,
+        CHANGE_LOG_LOCK_WAIT_TIME, CHANGE_LOG_LOCK_POLL_RATE, true);
+
+    LockDao lockDao = mock(LockDao.class);
+    when(lockDao.acquireLock(any(MongoDatabase.class), any())).thenReturn(false);
+    dao.setLockDao(lockDao);
+
+    dao.connectMongoDb(mongoClient, DB_NAME);
+
+    // when/then
+    assertThrows(MongoBatLockException.class, dao::acquireProcessLock);
+  }
+
+  @Test
+  public void shouldReleaseLockFromLockDao() throws Exception {
+    // given
+    ChangeEntryDao dao = new ChangeEntryDao(CHANGELOG_COLLECTION_NAME, LOCK_COLLECTION_NAME, WAIT_FOR_LOCK,
+        CHANGE_LOG_LOCK_WAIT_TIME, CHANGE_LOG_LOCK_POLL_RATE, THROW_EXCEPTION_IF_CANNOT_OBTAIN_LOCK);
+
+    LockDao lockDao = mock(LockDao.class);
+    dao.setLockDao(lockDao);
+
+    dao.connectMongoDb(mongoClient, DB_NAME);
+
+    // when
+    dao.releaseProcessLock();
+
+    // then
+    verify(lockDao).releaseLock(any(MongoDatabase.class));
+  }
+
+  @Test
+  public void shouldRecordConnectAndLockFlightRecorderEvents() throws Exception {
+    // given
+    ChangeEntryDao dao = new ChangeEntryDao(CHANGELOG_COLLECTION_NAME, LOCK_COLLECTION_NAME, WAIT_FOR_LOCK,
+        CHANGE_LOG_LOCK_WAIT_TIME, CHANGE_LOG_LOCK_POLL_RATE, THROW_EXCEPTION_IF_CANNOT_OBTAIN_LOCK);
+    dao.setInstallationId("node1");
+
+    LockDao lockDao = mock(LockDao.class);
+    when(lockDao.acquireLock(any(MongoDatabase.class), any())).thenReturn(true);
+    dao.setLockDao(lockDao);
+    Path file = Files.createTempFile("mongobat", ".jfr");
+
+    // when
+    try (Recording recording = new Recording()) {
+      recording.enable(ConnectEvent.class);
+      recording.enable(LockWaitEvent.class);
+      recording.enable(LockHoldEvent.class);
+      recording.start();
+      dao.connectMongoDb(mongoClient, DB_NAME);
+      dao.acquireProcessLock();
+      dao.releaseProcessLock();
+      recording.stop();
+      recording.dump(file);
+    }
+
+    // then
+    List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+    Files.delete(file);
+    assertEquals(List.of("com.github.mongobat.Connect", "com.github.mongobat.LockWait", "com.github.mongobat.LockHold"),
+        events.stream()
+            .sorted(Comparator.comparing(RecordedEvent::getStartTime))
+            .map(event -> event.getEventType().getName())
+            .collect(Collectors.toList()));
+    assertEquals(DB_NAME, events.get(0).getString("database"));
+    assertTrue(events.stream().filter(event -> event.hasField("acquired")).allMatch(event -> event.getBoolean("acquired")));
+    assertTrue(events.stream().filter(event -> event.hasField("owner")).allMatch(event -> "node1".equals(event.getString("owner"))));
+  }
+
+  @Test
+  public void shouldCheckLockHeldFromFromLockDao() throws Exception {
+    // given
+    ChangeEntryDao dao = new ChangeEntryDao(CHANGELOG_COLLECTION_NAME, LOCK_COLLECTION_NAME, WAIT_FOR_LOCK,
+        CHANGE_LOG_LOCK_WAIT_TIME, CHANGE_LOG_LOCK_POLL_RATE, THROW_EXCEPTION_IF_CANNOT_OBTAIN_LOCK);
+
+    LockDao lockDao = mock(LockDao.class);
+    dao.setLockDao(lockDao);
+    dao.setWatchStatus(false);
+
+    dao.connectMongoDb(mongoClient, DB_NAME);
+
+    // when
+    when(lockDao.findLock(db)).thenReturn(new Document("key", "LOCK").append(LockDao.KEY_OWNER, "node-1"));
+
+    boolean lockHeld = dao.isProccessLockHeld();
+    boolean stillHeld = dao.isProccessLockHeld();
+
+    // then
+    assertTrue(lockHeld);
+    assertTrue(stillHeld);
+    assertEquals("node-1", dao.getMigrationStatus().getOwner());
+    verify(lockDao, times(1)).findLock(db);
+  }
+
+  @Test
+  public void shouldVerifyIndexesOnlyOnFirstConnection() throws MongoBatConfigurationException {
+    // given
+    ChangeEntryDao dao = new ChangeEntryDao(CHANGELOG_COLLECTION_NAME, LOCK_COLLECTION_NAME, WAIT_FOR_LOCK,
+        CHANGE_LOG_LOCK_WAIT_TIME, CHANGE_LOG_LOCK_POLL_RATE, THROW_EXCEPTION_IF_CANNOT_OBTAIN_LOCK);
+    ChangeEntryIndexDao indexDaoMock = mock(ChangeEntryIndexDao.class);
+    dao.setIndexDao(indexDaoMock);
+
+    LockDao lockDao = mock(LockDao.class);
+    dao.setLockDao(lockDao);
+
+    // when
+    dao.connectMongoDb(mongoClient, DB_NAME);
+    dao.connectMongoDb(mongoClient, DB_NAME);
+
+    // then
+    verify(indexDaoMock, times(1)).findRequiredChangeAndAuthorIndex(db);
+    verify(lockDao, times(1)).intitializeLock(db);
+  }
+
+  @Test
+  public void shouldMarkOnlyInProgressChangeInstalled() throws Exception {
+    // given
+    ChangeEntryDao dao = new ChangeEntryDao(CHANGELOG_COLLECTION_NAME, LOCK_COLLECTION_NAME, WAIT_FOR_LOCK,
+        CHANGE_LOG_LOCK_WAIT_TIME, CHANGE_LOG_LOCK_POLL_RATE, THROW_EXCEPTION_IF_CANNOT_OBTAIN_LOCK);
+    dao.setIndexDao(mock(ChangeEntryIndexDao.class));
+    dao.setLockDao(mock(LockDao.class));
+    dao.connectMongoDb(mongoClient, DB_NAME);
+    @SuppressWarnings("unchecked")
+    MongoCollection<Document> durableCollection = mock(MongoCollection.class);
+    when(changelogCollection.withWriteConcern(WriteConcern.MAJORITY)).thenReturn(durableCollection);
+    when(durableCollection.updateOne(any(Bson.class), any(Bson.class))).thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+    // when
+    boolean marked = dao.markInstalled(new ChangeEntry("id", "author", new Date(), "ChangeLog", "changeSet", "", "", "", false, false));
+
+    // then
+    assertTrue(marked);
+    ArgumentCaptor<Bson> filter = ArgumentCaptor.forClass(Bson.class);
+    ArgumentCaptor<Bson> update = ArgumentCaptor.forClass(Bson.class);
+    verify(durableCollection).updateOne(filter.capture(), update.capture());
+    assertEquals(BsonDocument.parse("{$and: [{changeId: 'id', author: 'author'}, {status: 'in-progress'}]}"),
+        filter.getValue().toBsonDocument());
+    assertEquals(BsonDocument.parse("{$set: {status: 'installed'}}"), update.getValue().toBsonDocument());
+    verify(durableCollection, never()).replaceOne(any(Bson.class), any(Document.class), any(ReplaceOptions.class));
+  }
+
+  @Test
+  public void shouldSaveChangeEntriesWithMajorityWriteConcern() throws Exception {
+    // given
+    ChangeEntryDao dao = new ChangeEntryDao(CHANGELOG_COLLECTION_NAME, LOCK_COLLECTION_NAME, WAIT_FOR_LOCK,
+        CHANGE_LOG_LOCK_WAIT_TIME, CHANGE_LOG_LOCK_POLL_RATE, THROW_EXCEPTION_IF_CANNOT_OBTAIN_LOCK);
+    dao.setIndexDao(mock(ChangeEntryIndexDao.class));
+    dao.setLockDao(mock(LockDao.class));
+    dao.connectMongoDb(mongoClient, DB_NAME);
+
+    @SuppressWarnings("unchecked")
+    MongoCollection<Document> durableCollection = mock(MongoCollection.class);
+    when(changelogCollection.withWriteConcern(WriteConcern.MAJORITY)).thenReturn(durableCollection);
+
+    // when
+    dao.save(new ChangeEntry("id", "author", new Date(), "ChangeLog", "changeSet", "", "", "", false, true));
+
+    // then
+    verify(durableCollection).replaceOne(any(Document.class), any(Document.class), any(ReplaceOptions.class));
+    verify(changelogCollection, never()).replaceOne(any(Document.class), any(Document.class), any(ReplaceOptions.class));
+  }
+
+  @Test
+  public void shouldFindAppliedChangesByChangeIdAndAuthorRegardlessOfGroup() throws Exception {
+    // given
+    ChangeEntryDao dao = new ChangeEntryDao(CHANGELOG_COLLECTION_NAME, LOCK_COLLECTION_NAME, WAIT_FOR_LOCK,
+        CHANGE_LOG_LOCK_WAIT_TIME, CHANGE_LOG_LOCK_POLL_RATE, THROW_EXCEPTION_IF_CANNOT_OBTAIN_LOCK);
+    dao.setIndexDao(mock(ChangeEntryIndexDao.class));
+    dao.setLockDao(mock(LockDao.class));
+    dao.connectMongoDb(mongoClient, DB_NAME);
+
+    @SuppressWarnings("unchecked")
+    FindIterable<Document> entries = mock(FindIterable.class);
+    ArgumentCaptor<Bson> filter = ArgumentCaptor.forClass(Bson.class);
+    when(changelogCollection.find(filter.capture())).thenReturn(entries);
+    when(entries.projection(any())).thenReturn(entries);
+    when(entries.into(anyList())).thenReturn(new ArrayList<>(List.of(
+        new Document(ChangeEntry.KEY_CHANGE_ID, "id1").append(ChangeEntry.KEY_AUTHOR, "alice"),
+        new Document(ChangeEntry.KEY_CHANGE_ID, "id2").append(ChangeEntry.KEY_AUTHOR, "carol"))));
+
+    // when
+    Set<String> applied = dao.findAppliedChanges(List.of(
+        new ChangeEntry("id1", "alice", new Date(), "ChangeLog", "changeSet1", "", "renamed", "", false, false),
+        new ChangeEntry("id1", "bob", new Date(), "ChangeLog", "changeSet2", "", "", "", false, false),
+        new ChangeEntry("id2", "dave", new Date(), "ChangeLog", "changeSet3", "", "", "", false, false)));
+
+    // then
+    assertEquals(Set.of(ChangeEntry.key("id1", "alice")), applied);
+    assertFalse(filter.getValue().toBsonDocument().toJson().contains(ChangeEntry.KEY_GROUP));
+  }
+
+}
@@ -3,15 +3,22 @@ package com.github.mongobat.dao;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 import com.mongodb.MongoWriteException;
 import com.mongodb.ServerAddress;
 import com.mongodb.WriteError;
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.result.UpdateResult;
 import org.bson.BsonDocument;
+import org.bson.BsonString;
 import org.bson.Document;
+import org.bson.conversions.Bson;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -35,6 +42,9 @@ public class LockDaoTest {
   @Mock
   private MongoCollection<Document> lockCollection;
 
+  @Mock
+  private FindIterable<Document> findIterable;
+
   @BeforeEach
   public void beforeEach() {
     when(db.getCollection(LOCK_COLLECTION_NAME)).thenReturn(lockCollection);
@@ -108,7 +118,8 @@ public class LockDaoTest {
 
   @Test
   public void whenLockNotHeldCheckReturnsFalse() {
-    when(lockCollection.countDocuments()).thenReturn(0L);
+    when(lockCollection.find(any(Document.class))).thenReturn(findIterable);
+    when(findIterable.first()).thenReturn(null);
 
     LockDao dao = new LockDao(LOCK_COLLECTION_NAME);
     dao.intitializeLock(db);
@@ -119,7 +130,8 @@ public class LockDaoTest {
 
   @Test
   public void whenLockHeldCheckReturnsTrue() {
-    when(lockCollection.countDocuments()).thenReturn(1L);
+    when(lockCollection.find(any(Document.class))).thenReturn(findIterable);
+    when(findIterable.first()).thenReturn(new Document("key", "LOCK"));
 
     LockDao dao = new LockDao(LOCK_COLLECTION_NAME);
     dao.intitializeLock(db);
@@ -130,4 +142,40 @@ public class LockDaoTest {
     verify(lockCollection).insertOne(any(Document.class));
   }
 
+  @Test
+  public void shouldPublishOwnerAndChangeProgressInLockDocument() {
+    LockDao dao = new LockDao(LOCK_COLLECTION_NAME);
+
+    dao.acquireLock(db, "node-1");
+    dao.markChangeStarted(db, "change1");
+    dao.markChangeFinished(db, "change1");
+
+    verify(lockCollection).insertOne(argThat(lock -> "node-1".equals(lock.getString(LockDao.KEY_OWNER))));
+    verify(lockCollection, times(2)).updateOne(eq(new Document("key", "LOCK")), any(Bson.class));
+  }
+
+  @Test
+  public void shouldAcquireLeaseUnlessHeldByAnotherOwner() {
+    MongoWriteException duplicateKey = new MongoWriteException(new WriteError(11000, "E11000", new BsonDocument()), new ServerAddress());
+    when(lockCollection.updateOne(any(Bson.class), anyList(), any(UpdateOptions.class)))
+        .thenReturn(UpdateResult.acknowledged(0, 0L, new BsonString("id")))
+        .thenThrow(duplicateKey);
+    LockDao dao = new LockDao(LOCK_COLLECTION_NAME);
+
+    assertTrue(dao.acquireLease(db, "sweep:orders", "sweeper-1", 60_000));
+    assertFalse(dao.acquireLease(db, "sweep:orders", "sweeper-2", 60_000));
+  }
+
+  @Test
+  public void shouldExpireReleasedLeaseInsteadOfDeletingIt() {
+    LockDao dao = new LockDao(LOCK_COLLECTION_NAME);
+
+    dao.releaseLease(db, "sweep:orders", "sweeper-1");
+
+    verify(lockCollection).updateOne(
+        eq(Filters.and(Filters.eq("key", "LEASE:sweep:orders"), Filters.eq(LockDao.KEY_OWNER, "sweeper-1"))),
+        any(Bson.class));
+    verify(lockCollection, never()).deleteMany(any(Bson.class));
+  }
+
 }
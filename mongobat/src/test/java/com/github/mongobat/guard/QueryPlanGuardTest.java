@@ -0,0 +1,105 @@
+package com.github.mongobat.guard;
+
+import com.github.mongobat.exception.MongoBatQueryPlanException;
+import com.mongodb.ExplainVerbosity;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class QueryPlanGuardTest {
+
+  @Mock
+  private MongoDatabase database;
+
+  @Mock
+  private MongoCollection<Document> orders;
+
+  @Mock
+  private FindIterable<Document> explained;
+
+  @BeforeEach
+  void setUp() {
+    lenient().when(database.getCollection("orders")).thenReturn(orders);
+    lenient().when(orders.getNamespace()).thenReturn(new MongoNamespace("test", "orders"));
+    lenient().doReturn(Document.class).when(orders).getDocumentClass();
+    lenient().when(orders.getCodecRegistry()).thenReturn(MongoClientSettings.getDefaultCodecRegistry());
+    lenient().when(orders.find(any(BsonDocument.class))).thenReturn(explained);
+    lenient().when(orders.estimatedDocumentCount()).thenReturn(1_000_000L);
+  }
+
+  @Test
+  void shouldReportCollectionScanOnceForFilterShape() {
+    givenWinningPlan("COLLSCAN");
+    QueryPlanInspector inspector = new QueryPlanGuard().newInspector("backfill");
+    MongoCollection<Document> collection = inspector.wrap(database).getCollection("orders");
+
+    collection.updateMany(Filters.eq("status", "NEW"), Updates.set("paid", false));
+    collection.updateMany(Filters.eq("status", "PAID"), Updates.set("paid", true));
+
+    verify(explained).explain(BsonDocument.class, ExplainVerbosity.QUERY_PLANNER);
+    verify(orders, times(2)).updateMany(any(), any(Bson.class));
+    List<QueryPlanFinding> findings = inspector.getFindings();
+    assertEquals(1, findings.size());
+    assertEquals("test.orders", findings.get(0).getNamespace());
+    assertEquals("updateMany", findings.get(0).getOperation());
+    assertEquals("{\"status\": \"?\"}", findings.get(0).getFilterShape());
+    assertFalse(findings.get(0).isBlocked());
+  }
+
+  @Test
+  void shouldBlockCollectionScanOfLargeCollection() {
+    givenWinningPlan("COLLSCAN");
+    QueryPlanInspector inspector = new QueryPlanGuard().setAction(QueryPlanAction.BLOCK).newInspector("backfill");
+    MongoCollection<Document> collection = inspector.wrap(database).getCollection("orders");
+
+    MongoBatQueryPlanException exception = assertThrows(MongoBatQueryPlanException.class,
+        () -> collection.deleteMany(Filters.lt("createdAt", 1)));
+
+    assertTrue(exception.getFinding().isBlocked());
+    verify(orders, never()).deleteMany(any());
+  }
+
+  @Test
+  void shouldIgnoreIndexedQueriesSmallCollectionsAndMissingFilters() {
+    givenWinningPlan("IXSCAN");
+    QueryPlanInspector inspector = new QueryPlanGuard().setAction(QueryPlanAction.BLOCK).newInspector("backfill");
+    MongoCollection<Document> collection = inspector.wrap(orders);
+
+    collection.find(Filters.eq("_id", 1));
+    collection.find(new Document());
+
+    givenWinningPlan("COLLSCAN");
+    when(orders.estimatedDocumentCount()).thenReturn(10L);
+    collection.countDocuments(Filters.eq("status", "NEW"));
+
+    verify(explained, times(2)).explain(BsonDocument.class, ExplainVerbosity.QUERY_PLANNER);
+    assertTrue(inspector.getFindings().isEmpty());
+  }
+
+  private void givenWinningPlan(String stage) {
+    BsonDocument winningPlan = new BsonDocument("stage", new BsonString("FETCH"))
+        .append("inputStage", new BsonDocument("stage", new BsonString(stage)));
+    lenient().when(explained.explain(BsonDocument.class, ExplainVerbosity.QUERY_PLANNER))
+        .thenReturn(new BsonDocument("queryPlanner", new BsonDocument("winningPlan", winningPlan)));
+  }
+}
@@ -0,0 +1,190 @@
+package com.github.mongobat.lazy;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LazyMigrationsTest {
+
+  @Mock
+  private MongoDatabase database;
+
+  @Mock
+  private MongoCollection<Document> collection;
+
+  @Mock
+  private FindIterable<Document> findIterable;
+
+  private final LazyMigrations migrations = new LazyMigrations();
+
+  @AfterEach
+  void tearDown() {
+    migrations.close();
+  }
+
+  private static LazyMigration ordersV2() {
+    return LazyMigration.of("orders", 2)
+        .step(0, order -> order.append("currency", "EUR"))
+        .step(1, order -> order.append("total", order.remove("amount")));
+  }
+
+  @Test
+  void shouldUpgradeDocumentStepByStep() {
+    Document upgraded = ordersV2().upgrade(new Document("_id", 1).append("amount", 10));
+
+    assertEquals(new Document("_id", 1).append("currency", "EUR").append("_v", 2).append("total", 10), upgraded);
+    assertEquals(2, LazyMigration.version(ordersV2().upgrade(new Document("_id", 2).append("_v", 1).append("amount", 5))));
+    assertThrows(IllegalStateException.class, () -> LazyMigration.of("orders", 1).upgrade(new Document("_id", 3)));
+  }
+
+  @Test
+  void shouldGuardUpgradeOnWholeDocumentAsRead() {
+    Document original = new Document("_id", 1).append("_v", 0).append("amount", 10);
+
+    Bson unchanged = LazyMigration.unchangedFilter(original);
+    ordersV2().upgrade(original);
+
+    assertEquals(BsonDocument.parse("{$and: [{_id: 1}, {$expr: {$eq: ['$$ROOT', {$literal: {_id: 1, _v: 0, amount: 10}}]}}]}"),
+        unchanged.toBsonDocument());
+  }
+
+  @Test
+  void shouldUpgradeOutdatedDocumentsOnRead() {
+    when(database.getCollection("orders")).thenReturn(collection);
+    when(collection.countDocuments(any(Bson.class))).thenReturn(1L);
+
+    long remaining = migrations.start(ordersV2().sweep(false).writeBack(false), database, () -> fail("not completed"));
+    CodecRegistry registry = migrations.codecRegistry("orders", MongoClientSettings.getDefaultCodecRegistry());
+
+    Document outdated = decode(registry, BsonDocument.parse("{_id: 1, amount: 10}"));
+    Document current = decode(registry, BsonDocument.parse("{_id: 2, _v: 2, total: 5}"));
+
+    assertEquals(1, remaining);
+    assertEquals(2, outdated.getInteger("_v"));
+    assertEquals(10, outdated.getInteger("total"));
+    assertEquals("EUR", outdated.getString("currency"));
+    assertEquals(Document.parse("{_id: 2, _v: 2, total: 5}"), current);
+    assertEquals(Document.parse("{_id: 3}"),
+        decode(migrations.codecRegistry("customers", MongoClientSettings.getDefaultCodecRegistry()), BsonDocument.parse("{_id: 3}")));
+  }
+
+  @Test
+  void shouldSweepOutdatedDocumentsAndComplete() throws Exception {
+    when(database.getCollection("orders")).thenReturn(collection);
+    when(collection.countDocuments(any(Bson.class))).thenReturn(2L, 0L);
+    when(collection.find(any(Bson.class))).thenReturn(findIterable);
+    when(findIterable.sort(any())).thenReturn(findIterable);
+    when(findIterable.limit(anyInt())).thenReturn(findIterable);
+    AtomicInteger batches = new AtomicInteger();
+    when(findIterable.into(anyList())).thenAnswer(invocation -> {
+      List<Document> target = invocation.getArgument(0);
+      if (batches.getAndIncrement() == 0) {
+        target.add(new Document("_id", 1).append("amount", 10));
+        target.add(new Document("_id", 2).append("_v", 1).append("amount", 20));
+      }
+      return target;
+    });
+    when(collection.replaceOne(any(Bson.class), any(Document.class))).thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+    CountDownLatch completed = new CountDownLatch(1);
+    assertEquals(2, migrations.start(ordersV2().sweepBatchSize(10), database, completed::countDown));
+
+    assertTrue(completed.await(5, TimeUnit.SECONDS));
+    ArgumentCaptor<Document> replacements = ArgumentCaptor.forClass(Document.class);
+    verify(collection, times(2)).replaceOne(any(Bson.class), replacements.capture());
+    replacements.getAllValues().forEach(replacement -> assertEquals(2, replacement.getInteger("_v")));
+    assertEquals(0, migrations.getRemaining("orders"));
+    assertEquals(-1, migrations.getRemaining("customers"));
+  }
+
+  @Test
+  void shouldNotSweepCollectionLeasedByAnotherProcess() throws Exception {
+    when(database.getCollection("orders")).thenReturn(collection);
+    when(collection.countDocuments(any(Bson.class))).thenReturn(2L);
+    CountDownLatch asked = new CountDownLatch(1);
+    SweepLease lease = mock(SweepLease.class);
+    when(lease.acquire(eq("orders"), anyString(), any(Duration.class))).thenAnswer(invocation -> {
+      asked.countDown();
+      return false;
+    });
+    migrations.setSweepLease(lease);
+    Runnable onComplete = mock(Runnable.class);
+
+    migrations.start(ordersV2(), database, onComplete);
+
+    assertTrue(asked.await(5, TimeUnit.SECONDS));
+    migrations.close();
+    verify(collection, never()).find(any(Bson.class));
+    verify(lease, never()).release(anyString(), anyString());
+    verifyNoInteractions(onComplete);
+  }
+
+  @Test
+  void shouldRenewLeaseForEachBatchAndReleaseItAfterCompletion() throws Exception {
+    when(database.getCollection("orders")).thenReturn(collection);
+    when(collection.countDocuments(any(Bson.class))).thenReturn(1L, 0L);
+    when(collection.find(any(Bson.class))).thenReturn(findIterable);
+    when(findIterable.sort(any())).thenReturn(findIterable);
+    when(findIterable.limit(anyInt())).thenReturn(findIterable);
+    AtomicInteger batches = new AtomicInteger();
+    when(findIterable.into(anyList())).thenAnswer(invocation -> {
+      List<Document> target = invocation.getArgument(0);
+      if (batches.getAndIncrement() == 0) {
+        target.add(new Document("_id", 1).append("amount", 10));
+      }
+      return target;
+    });
+    when(collection.replaceOne(any(Bson.class), any(Document.class))).thenReturn(UpdateResult.acknowledged(1, 1L, null));
+    SweepLease lease = mock(SweepLease.class);
+    when(lease.acquire(eq("orders"), anyString(), any(Duration.class))).thenReturn(true);
+    CountDownLatch released = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      released.countDown();
+      return null;
+    }).when(lease).release(eq("orders"), anyString());
+    migrations.setSweepLease(lease);
+
+    CountDownLatch completed = new CountDownLatch(1);
+    migrations.start(ordersV2(), database, completed::countDown);
+
+    assertTrue(completed.await(5, TimeUnit.SECONDS));
+    assertTrue(released.await(5, TimeUnit.SECONDS));
+    ArgumentCaptor<String> owners = ArgumentCaptor.forClass(String.class);
+    verify(lease, times(2)).acquire(eq("orders"), owners.capture(), any(Duration.class));
+    assertEquals(1, owners.getAllValues().stream().distinct().count());
+    verify(lease).release("orders", owners.getValue());
+  }
+
+  private static Document decode(CodecRegistry registry, BsonDocument document) {
+    return registry.get(Document.class).decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+  }
+}
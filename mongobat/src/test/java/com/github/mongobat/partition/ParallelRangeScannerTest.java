@@ -0,0 +1,163 @@
+package com.github.mongobat.partition;
+
+import com.github.mongobat.changeset.CancellationToken;
+import com.github.mongobat.exception.MongoBatCancellationException;
+import com.github.mongobat.exception.MongoBatChangeSetException;
+import com.github.mongobat.profiling.CommandProfiler;
+import com.github.mongobat.profiling.CommandStats;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.event.CommandStartedEvent;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ParallelRangeScannerTest {
+
+  @Mock
+  private IdRangeSplitter splitter;
+
+  @Mock
+  private MongoCollection<Document> collection;
+
+  @Test
+  void shouldScanEachRangeWithItsOwnCursor() throws Exception {
+    when(splitter.split(collection, 8)).thenReturn(IdRange.fromBoundaries(List.of(10, 20)));
+    when(collection.find(any(Bson.class))).thenAnswer(invocation -> findIterable(3));
+
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    AtomicLong handled = new AtomicLong();
+    ScanReport report = new ParallelRangeScanner(splitter, 2, new CancellationToken())
+        .scan(collection, null, document -> {
+          threads.add(Thread.currentThread().getName());
+          handled.incrementAndGet();
+        });
+
+    verify(collection, times(3)).find(any(Bson.class));
+    assertEquals(9, handled.get());
+    assertEquals(9, report.getDocuments());
+    assertEquals(3, report.getRanges().size());
+    assertTrue(threads.stream().allMatch(name -> name.startsWith("mongobat-scan-")));
+  }
+
+  @Test
+  void shouldFailWhenRangeHandlerFails() {
+    ParallelRangeScanner scanner = new ParallelRangeScanner(splitter, 2, new CancellationToken());
+
+    assertThrows(MongoBatChangeSetException.class, () -> scanner.scanRanges(IdRange.fromBoundaries(List.of(1)), range -> {
+      throw new IllegalStateException("boom");
+    }));
+  }
+
+  @Test
+  void shouldAttributeCommandsOfScanningThreadsToBoundChangeSet() throws Exception {
+    CommandProfiler profiler = new CommandProfiler();
+    CommandStats stats = profiler.start("change1");
+    AtomicInteger requestId = new AtomicInteger();
+    ParallelRangeScanner scanner = new ParallelRangeScanner(splitter, 2, new CancellationToken())
+        .setCommandProfiler(profiler);
+
+    profiler.bind(stats);
+    try {
+      scanner.scanRanges(IdRange.fromBoundaries(List.of(10, 20)), range -> {
+        profiler.commandStarted(new CommandStartedEvent(requestId.incrementAndGet(), null, "test", "find",
+            new BsonDocument("find", new BsonString("orders"))));
+        return 1;
+      });
+    } finally {
+      profiler.unbind();
+      profiler.stop(stats);
+    }
+
+    assertEquals(Map.of("find", 3L), stats.getCommandCounts());
+  }
+
+  @Test
+  void shouldStopWhenCancelled() {
+    CancellationToken cancellationToken = new CancellationToken();
+    cancellationToken.cancel("test");
+    ParallelRangeScanner scanner = new ParallelRangeScanner(splitter, 2, cancellationToken);
+
+    assertThrows(MongoBatCancellationException.class, () -> scanner.scanRanges(List.of(IdRange.all()), range -> 1));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldScanByChunksOfShardedCollectionOnly() throws Exception {
+    ShardChunkSplitter chunkSplitter = mock(ShardChunkSplitter.class);
+    MongoCollection<Document> customers = mock(MongoCollection.class);
+    when(chunkSplitter.split(collection)).thenReturn(List.of(
+        new IdRange("tenant", null, 20, "shard-a"), new IdRange("tenant", 20, null, "shard-b")));
+    when(chunkSplitter.split(customers)).thenReturn(List.of());
+    when(splitter.split(customers, 8)).thenReturn(List.of(IdRange.all()));
+    ParallelRangeScanner scanner = new ParallelRangeScanner(splitter, 2, new CancellationToken())
+        .setShardChunkSplitter(chunkSplitter);
+
+    ScanReport sharded = scanner.scanRanges(collection, range -> 1);
+    ScanReport unsharded = scanner.scanRanges(customers, range -> 1);
+
+    assertEquals(Set.of("shard-a", "shard-b"), sharded.getRanges().stream()
+        .map(stats -> stats.getRange().getShard()).collect(Collectors.toSet()));
+    assertEquals(1, unsharded.getRanges().size());
+    verify(splitter, never()).split(collection, 8);
+  }
+
+  @Test
+  void shouldCapThreadsScanningOneShard() throws Exception {
+    List<IdRange> ranges = IntStream.range(0, 12)
+        .mapToObj(i -> new IdRange("tenant", i, i + 1, i < 8 ? "shard-a" : "shard-b"))
+        .collect(Collectors.toList());
+    Map<String, AtomicInteger> running = new ConcurrentHashMap<>();
+    Map<String, Integer> maxRunning = new ConcurrentHashMap<>();
+
+    ScanReport report = new ParallelRangeScanner(splitter, 6, new CancellationToken())
+        .setMaxThreadsPerShard(2)
+        .scanRanges(ranges, range -> {
+          int now = running.computeIfAbsent(range.getShard(), shard -> new AtomicInteger()).incrementAndGet();
+          maxRunning.merge(range.getShard(), now, Math::max);
+          Thread.sleep(20);
+          running.get(range.getShard()).decrementAndGet();
+          return 1;
+        });
+
+    assertEquals(12, report.getDocuments());
+    assertEquals(ranges, report.getRanges().stream().map(RangeScanStats::getRange).collect(Collectors.toList()));
+    assertEquals(2, maxRunning.get("shard-a"));
+    assertTrue(maxRunning.get("shard-b") <= 2);
+  }
+
+  @SuppressWarnings("unchecked")
+  private FindIterable<Document> findIterable(int documents) {
+    FindIterable<Document> iterable = mock(FindIterable.class);
+    MongoCursor<Document> cursor = mock(MongoCursor.class);
+    Iterator<Document> iterator = IntStream.range(0, documents)
+        .mapToObj(i -> new Document("_id", i)).iterator();
+    when(iterable.batchSize(anyInt())).thenReturn(iterable);
+    when(iterable.iterator()).thenReturn(cursor);
+    when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+    when(cursor.next()).thenAnswer(invocation -> iterator.next());
+    return iterable;
+  }
+}
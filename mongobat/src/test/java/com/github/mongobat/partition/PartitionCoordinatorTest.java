@@ -0,0 +1,238 @@
+package com.github.mongobat.partition;
+
+import com.github.mongobat.changeset.ChangeEntry;
+import com.github.mongobat.changeset.ChangeSet;
+import com.github.mongobat.changeset.Partitioned;
+import com.github.mongobat.dao.PartitionDao;
+import com.github.mongobat.exception.MongoBatChangeSetException;
+import com.github.mongobat.utils.Environment;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.MinKey;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.InvocationTargetException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PartitionCoordinatorTest {
+
+  private static final String OWNER = "owner";
+
+  @Mock
+  private PartitionDao partitionDao;
+
+  @Mock
+  private IdRangeSplitter splitter;
+
+  @Mock
+  private MongoDatabase db;
+
+  @Mock
+  private MongoCollection<Document> collection;
+
+  private PartitionCoordinator coordinator;
+
+  private final ChangeEntry changeEntry = new ChangeEntry("id1", "testUser", new Date(), "Class", "method", "", "",
+      Environment.ANY, false, true);
+
+  @BeforeEach
+  void init() {
+    coordinator = new PartitionCoordinator(partitionDao, splitter, OWNER);
+    coordinator.setPollInterval(Duration.ofMillis(1));
+  }
+
+  @Test
+  void shouldPublishRangesAndProcessThemUntilAllDone() throws Exception {
+    List<IdRange> ranges = IdRange.fromBoundaries(List.of(10, 20));
+    when(db.getCollection("orders")).thenReturn(collection);
+    when(splitter.split(collection, 3)).thenReturn(ranges);
+    when(partitionDao.claim(db, changeEntry, OWNER)).thenReturn(
+        Optional.of(partition(0, ranges.get(0))), Optional.of(partition(1, ranges.get(1))), Optional.empty(), Optional.empty());
+    when(partitionDao.countIncomplete(db, changeEntry)).thenReturn(1L, 0L);
+
+    List<IdRange> processed = new ArrayList<>();
+    coordinator.execute(db, changeEntry, partitioned(), processed::add);
+
+    verify(partitionDao).createPartitions(db, changeEntry, ranges, 60_000L, 2);
+    verify(partitionDao, times(2)).complete(eq(db), any(Partition.class), eq(OWNER));
+    verify(partitionDao).deletePartitions(db, changeEntry);
+    assertEquals(List.of(ranges.get(0), ranges.get(1)), processed);
+  }
+
+  @Test
+  void shouldResumePublishedRanges() throws Exception {
+    when(partitionDao.hasPartitions(db, changeEntry)).thenReturn(true);
+    when(partitionDao.claim(db, changeEntry, OWNER)).thenReturn(Optional.empty());
+
+    coordinator.execute(db, changeEntry, partitioned(), range -> fail("nothing to process"));
+
+    verify(splitter, never()).split(any(), anyInt());
+    verify(partitionDao, never()).createPartitions(any(), any(), any(), anyLong(), anyInt());
+    verify(partitionDao).resetFailed(db, changeEntry);
+    verify(partitionDao).deletePartitions(db, changeEntry);
+  }
+
+  @Test
+  void shouldReleaseRangeWhenProcessingFailsUntilMaxAttempts() {
+    when(partitionDao.hasPartitions(db, changeEntry)).thenReturn(true);
+    Partition firstAttempt = partition(0, IdRange.all(), 0);
+    Partition lastAttempt = partition(0, IdRange.all(), 1);
+    when(partitionDao.claim(db, changeEntry, OWNER)).thenReturn(Optional.of(firstAttempt), Optional.of(lastAttempt), Optional.empty());
+    when(partitionDao.countFailed(db, changeEntry)).thenReturn(1L);
+
+    assertThrows(InvocationTargetException.class, () -> coordinator.execute(db, changeEntry, partitioned(), range -> {
+      throw new InvocationTargetException(new IllegalStateException("boom"));
+    }));
+
+    verify(partitionDao).release(db, firstAttempt, OWNER, "java.lang.IllegalStateException: boom");
+    verify(partitionDao).release(db, lastAttempt, OWNER, "java.lang.IllegalStateException: boom");
+    verify(partitionDao, never()).complete(any(), any(), any());
+    verify(partitionDao, never()).deletePartitions(any(), any());
+  }
+
+  @Test
+  void shouldRetryLocallyFailedRange() throws Exception {
+    when(partitionDao.hasPartitions(db, changeEntry)).thenReturn(true);
+    Partition firstAttempt = partition(0, IdRange.all(), 0);
+    Partition secondAttempt = partition(0, IdRange.all(), 1);
+    when(partitionDao.claim(db, changeEntry, OWNER)).thenReturn(Optional.of(firstAttempt), Optional.of(secondAttempt), Optional.empty());
+
+    List<IdRange> processed = new ArrayList<>();
+    coordinator.execute(db, changeEntry, partitioned(), range -> {
+      if (processed.isEmpty()) {
+        processed.add(range);
+        throw new InvocationTargetException(new IllegalStateException("transient"));
+      }
+      processed.add(range);
+    });
+
+    verify(partitionDao).release(db, firstAttempt, OWNER, "java.lang.IllegalStateException: transient");
+    verify(partitionDao).complete(db, secondAttempt, OWNER);
+    verify(partitionDao).deletePartitions(db, changeEntry);
+    assertEquals(2, processed.size());
+  }
+
+  @Test
+  void shouldFailWhenRangesFailedOnOtherNodes() {
+    when(partitionDao.hasPartitions(db, changeEntry)).thenReturn(true);
+    when(partitionDao.claim(db, changeEntry, OWNER)).thenReturn(Optional.empty());
+    when(partitionDao.countFailed(db, changeEntry)).thenReturn(2L);
+
+    assertThrows(MongoBatChangeSetException.class, () -> coordinator.execute(db, changeEntry, partitioned(), range -> {}));
+    verify(partitionDao, never()).deletePartitions(any(), any());
+  }
+
+  @Test
+  void shouldAssistWithAnyPublishedRange() {
+    Partition partition = partition(0, IdRange.all());
+    when(partitionDao.claim(db, null, OWNER)).thenReturn(Optional.of(partition), Optional.empty());
+
+    int processed = coordinator.assist(db, p -> range -> {}, () -> false);
+
+    assertEquals(1, processed);
+    verify(partitionDao).complete(db, partition, OWNER);
+  }
+
+  @Test
+  void shouldWaitForRangesPublishedWhileLockIsHeld() {
+    Partition partition = partition(0, IdRange.all());
+    when(partitionDao.claim(db, null, OWNER)).thenReturn(Optional.empty(), Optional.empty(), Optional.of(partition), Optional.empty());
+    when(partitionDao.hasUnfinished(db)).thenReturn(false, false, false);
+
+    int processed = coordinator.assist(db, p -> range -> {}, () -> true);
+
+    assertEquals(1, processed);
+    verify(partitionDao).complete(db, partition, OWNER);
+    verify(partitionDao, times(4)).claim(db, null, OWNER);
+  }
+
+  @Test
+  void shouldStopAssistingWhenLockIsReleased() {
+    when(partitionDao.claim(db, null, OWNER)).thenReturn(Optional.empty());
+    AtomicInteger checks = new AtomicInteger();
+
+    int processed = coordinator.assist(db, p -> range -> {}, () -> checks.incrementAndGet() < 3);
+
+    assertEquals(0, processed);
+    assertEquals(3, checks.get());
+    verify(partitionDao, times(2)).hasUnfinished(db);
+  }
+
+  @Test
+  void shouldBuildRangesFromBoundaries() {
+    List<IdRange> ranges = IdRange.fromBoundaries(List.of(10, 20));
+
+    assertEquals(3, ranges.size());
+    assertEquals(BsonDocument.parse("{$or: [{_id: {$lt: 10}}, {_id: {$type: ['minKey', 'null', 'undefined']}}]}"),
+        toBsonDocument(ranges.get(0).toFilter()));
+    assertEquals(BsonDocument.parse("{$and: [{_id: {$gte: 10}}, {_id: {$lt: 20}}]}"), toBsonDocument(ranges.get(1).toFilter()));
+    assertEquals(BsonDocument.parse("{$or: [{_id: {$gte: 20}}, {_id: {$type: ['string', 'symbol', 'object', 'array', "
+            + "'binData', 'objectId', 'bool', 'date', 'timestamp', 'regex', 'maxKey']}}]}"),
+        toBsonDocument(ranges.get(2).toFilter()));
+    assertEquals(BsonDocument.parse("{}"), toBsonDocument(IdRange.all().toFilter()));
+    assertEquals(20, ranges.get(2).getMin());
+    assertNull(ranges.get(2).getMax());
+  }
+
+  @Test
+  void shouldCoverTypesBetweenBoundariesOfMixedTypes() {
+    ObjectId objectId = new ObjectId();
+    List<IdRange> ranges = IdRange.fromBoundaries(List.of(1, 100, "abc", objectId));
+
+    assertEquals(BsonDocument.parse("{$or: [{_id: {$gte: 100}}, {_id: {$lt: 'abc'}}]}"), toBsonDocument(ranges.get(2).toFilter()));
+    assertEquals(new BsonDocument("$or", new BsonArray(List.of(
+            BsonDocument.parse("{_id: {$gte: 'abc'}}"),
+            new BsonDocument("_id", new BsonDocument("$lt", new BsonObjectId(objectId))),
+            BsonDocument.parse("{_id: {$type: ['object', 'array', 'binData']}}")))),
+        toBsonDocument(ranges.get(3).toFilter()));
+    assertEquals(BsonDocument.parse("{$or: [{_id: {$lt: 'abc'}}, {_id: {$type: ['minKey', 'null', 'undefined', "
+            + "'double', 'int', 'long', 'decimal']}}]}"),
+        toBsonDocument(new IdRange(new MinKey(), "abc").toFilter()));
+    assertThrows(IllegalArgumentException.class, () -> new IdRange(new Object(), null).toFilter());
+  }
+
+  private static BsonDocument toBsonDocument(Bson filter) {
+    return filter.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry());
+  }
+
+  private Partition partition(int index, IdRange range) {
+    return partition(index, range, 0);
+  }
+
+  private Partition partition(int index, IdRange range, int attempts) {
+    return new Partition(new ObjectId(), changeEntry.getChangeId(), changeEntry.getAuthor(), "Class", "method",
+        index, range, 60_000L, attempts, 2);
+  }
+
+  private Partitioned partitioned() throws NoSuchMethodException {
+    return PartitionedChangeLog.class.getMethod("changeSet").getAnnotation(Partitioned.class);
+  }
+
+  static class PartitionedChangeLog {
+    @ChangeSet(author = "testUser", id = "id1", order = "01", description = "")
+    @Partitioned(collection = "orders", partitions = 3, leaseSeconds = 60, maxAttempts = 2)
+    public void changeSet() {
+    }
+  }
+}
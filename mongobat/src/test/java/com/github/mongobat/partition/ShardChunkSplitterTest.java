@@ -0,0 +1,139 @@
+package com.github.mongobat.partition;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoNamespace;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import org.bson.BsonArray;
+import org.bson.BsonBinary;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.MaxKey;
+import org.bson.types.MinKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShardChunkSplitterTest {
+
+  private static final MongoNamespace ORDERS = new MongoNamespace("shop", "orders");
+
+  @Mock
+  private MongoDatabase configDatabase;
+
+  @Mock
+  private MongoCollection<Document> collections;
+
+  @Mock
+  private MongoCollection<Document> chunks;
+
+  private ShardChunkSplitter splitter;
+
+  @BeforeEach
+  void init() {
+    lenient().when(configDatabase.getCollection("collections")).thenReturn(collections);
+    splitter = new ShardChunkSplitter(configDatabase);
+  }
+
+  @Test
+  void shouldSplitAlongChunksOfShardKey() {
+    BsonBinary uuid = new BsonBinary(UUID.randomUUID());
+    FindIterable<Document> sharded = first(new Document("_id", "shop.orders")
+        .append("key", new Document("tenant", 1).append("_id", 1))
+        .append("uuid", uuid));
+    when(collections.find(any(Bson.class))).thenReturn(sharded);
+    FindIterable<Document> sortedChunks = chunks(
+        chunk(new MinKey(), new MinKey(), "shard-a"),
+        chunk(10, new MinKey(), "shard-b"),
+        chunk(10, 50, "shard-a"),
+        chunk(20, 0, "shard-b"),
+        chunk(30, new MinKey(), "shard-a"));
+    when(configDatabase.getCollection("chunks")).thenReturn(chunks);
+    when(chunks.find(any(Bson.class))).thenReturn(sortedChunks);
+
+    List<IdRange> ranges = splitter.split(ORDERS);
+
+    assertEquals(List.of("tenant [MinKey, 10) on shard-a", "tenant [10, 20) on shard-b",
+        "tenant [20, 30) on shard-b", "tenant [30, MaxKey) on shard-a"),
+        ranges.stream().map(IdRange::toString).collect(Collectors.toList()));
+    ArgumentCaptor<Bson> filter = ArgumentCaptor.forClass(Bson.class);
+    verify(chunks).find(filter.capture());
+    assertEquals(new BsonDocument("$or", new BsonArray(List.of(
+            new BsonDocument("uuid", uuid), BsonDocument.parse("{ns: 'shop.orders'}")))),
+        filter.getValue().toBsonDocument());
+  }
+
+  @Test
+  void shouldNotSplitUnshardedOrHashedCollections() {
+    FindIterable<Document> unsharded = first(null);
+    FindIterable<Document> hashed = first(new Document("_id", "shop.orders").append("key", new Document("tenant", "hashed")));
+    FindIterable<Document> dropped = first(new Document("_id", "shop.orders").append("key", new Document("tenant", 1))
+        .append("dropped", true));
+    when(collections.find(any(Bson.class))).thenReturn(unsharded, hashed, dropped);
+
+    assertTrue(splitter.split(ORDERS).isEmpty());
+    assertTrue(splitter.split(ORDERS).isEmpty());
+    assertTrue(splitter.split(ORDERS).isEmpty());
+    verify(configDatabase, never()).getCollection("chunks");
+  }
+
+  @Test
+  void shouldNotSplitWhenChunksCannotBeRead() {
+    when(collections.find(any(Bson.class))).thenThrow(new MongoCommandException(
+        new BsonDocument("ok", new BsonInt32(0)).append("code", new BsonInt32(13)), new ServerAddress()));
+
+    assertTrue(splitter.split(ORDERS).isEmpty());
+  }
+
+  @Test
+  void shouldMergeChunksStartingAtSameShardKeyValue() {
+    List<IdRange> ranges = ShardChunkSplitter.fromChunks("tenant", List.of(
+        chunk(new MinKey(), new MinKey(), "shard-a"),
+        chunk(5, new MinKey(), "shard-b"),
+        chunk(5, 7, "shard-a"),
+        chunk(5, new MaxKey(), "shard-a")));
+
+    assertEquals(List.of("tenant [MinKey, 5) on shard-a", "tenant [5, MaxKey) on shard-b"),
+        ranges.stream().map(IdRange::toString).collect(Collectors.toList()));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static FindIterable<Document> first(Document document) {
+    FindIterable<Document> iterable = mock(FindIterable.class);
+    when(iterable.first()).thenReturn(document);
+    return iterable;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static FindIterable<Document> chunks(Document... documents) {
+    FindIterable<Document> iterable = mock(FindIterable.class);
+    when(iterable.sort(any(Bson.class))).thenReturn(iterable);
+    when(iterable.into(any())).thenAnswer(invocation -> {
+      Collection<Document> target = invocation.getArgument(0);
+      target.addAll(List.of(documents));
+      return target;
+    });
+    return iterable;
+  }
+
+  private static Document chunk(Object tenant, Object id, String shard) {
+    return new Document("min", new Document("tenant", tenant).append("_id", id)).append("shard", shard);
+  }
+}
@@ -0,0 +1,110 @@
+package com.github.mongobat.profiling;
+
+import com.mongodb.MongoException;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandProfilerTest {
+
+  // {"update": "orders"} and {"ok": 1} encoded
+  private static final long COMMAND_SIZE = 24;
+  private static final long RESPONSE_SIZE = 13;
+
+  private final CommandProfiler profiler = new CommandProfiler();
+
+  @Test
+  void shouldAggregateCommandsOfChangeSet() {
+    CommandStats stats = profiler.start("change1");
+    profiler.bind(stats);
+    try {
+      succeed(1, "insert");
+      succeed(2, "update");
+      succeed(3, "update");
+      profiler.commandStarted(new CommandStartedEvent(4, null, "test", "delete", new BsonDocument("delete", new BsonString("orders"))));
+      profiler.commandFailed(new CommandFailedEvent(4, null, "delete", 2_000_000, new MongoException("failed")));
+    } finally {
+      profiler.unbind();
+      profiler.stop(stats);
+    }
+
+    assertEquals(Map.of("insert", 1L, "update", 2L, "delete", 1L), stats.getCommandCounts());
+    assertEquals(4, stats.getCommandCount());
+    assertEquals(1, stats.getFailedCommands());
+    assertEquals(Duration.ofMillis(5), stats.getCommandTime());
+    assertEquals(4 * COMMAND_SIZE, stats.getBytesSent());
+    assertEquals(3 * RESPONSE_SIZE, stats.getBytesReceived());
+    assertEquals(4L, stats.toDocument().getLong(CommandStats.KEY_COMMAND_COUNT));
+  }
+
+  @Test
+  void shouldAttributeCommandsOfPropagatedTasks() throws Exception {
+    CommandStats stats = profiler.start("change1");
+    Callable<Void> task;
+    profiler.bind(stats);
+    try {
+      task = profiler.propagate(() -> {
+        succeed(1, "find");
+        return null;
+      });
+    } finally {
+      profiler.unbind();
+    }
+
+    CompletableFuture.runAsync(() -> {
+      try {
+        task.call();
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+      succeed(2, "find");
+    }).join();
+    profiler.stop(stats);
+
+    assertEquals(Map.of("find", 1L), stats.getCommandCounts());
+  }
+
+  @Test
+  void shouldNotAttributeCommandsOfUnboundThreadsToSingleRunningChangeSet() {
+    CommandStats stats = profiler.start("change1");
+
+    CompletableFuture.runAsync(() -> succeed(1, "find")).join();
+    profiler.stop(stats);
+
+    assertEquals(0, stats.getCommandCount());
+  }
+
+  @Test
+  void shouldNotAttributeCommandsOfUnboundThreadsToConcurrentChangeSets() {
+    CommandStats first = profiler.start("change1");
+    CommandStats second = profiler.start("change2");
+    profiler.bind(second);
+    try {
+      succeed(1, "insert");
+      CompletableFuture.runAsync(() -> succeed(2, "find")).join();
+    } finally {
+      profiler.unbind();
+    }
+
+    assertEquals(0, first.getCommandCount());
+    assertEquals(Map.of("insert", 1L), second.getCommandCounts());
+  }
+
+  private void succeed(int requestId, String commandName) {
+    profiler.commandStarted(new CommandStartedEvent(requestId, null, "test", commandName,
+        new BsonDocument(commandName, new BsonString("orders"))));
+    profiler.commandSucceeded(new CommandSucceededEvent(requestId, null, commandName,
+        new BsonDocument("ok", new BsonInt32(1)), 1_000_000));
+  }
+}
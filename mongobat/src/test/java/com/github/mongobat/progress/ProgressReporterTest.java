@@ -0,0 +1,83 @@
+package com.github.mongobat.progress;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProgressReporterTest {
+
+  private static final Instant START = Instant.parse("2024-01-01T10:00:00Z");
+
+  private Instant now = START;
+
+  private final Clock clock = new Clock() {
+    @Override
+    public ZoneId getZone() {
+      return ZoneId.of("UTC");
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  };
+
+  @Test
+  void shouldPublishAtMostOncePerInterval() {
+    List<Progress> published = new ArrayList<>();
+    ProgressReporter reporter = new ProgressReporter("backfill", Duration.ofSeconds(10), published::add, clock);
+    reporter.setTotal(10000);
+
+    now = START.plusSeconds(5);
+    reporter.increment(500);
+    now = START.plusSeconds(10);
+    reporter.increment(500);
+    now = START.plusSeconds(15);
+    reporter.increment(500);
+    now = START.plusSeconds(20);
+    reporter.increment(500);
+
+    assertEquals(2, published.size());
+    assertEquals(1000, published.get(0).getDone());
+    assertEquals(2000, published.get(1).getDone());
+    assertEquals(100.0, published.get(1).getThroughput(), 0.001);
+  }
+
+  @Test
+  void shouldEstimateTimeLeft() {
+    ProgressReporter reporter = new ProgressReporter("backfill", Duration.ofHours(1), progress -> fail("not published"), clock);
+    reporter.setTotal(1000);
+    now = START.plusSeconds(7 * 60 + 12);
+    reporter.increment(720);
+
+    Progress progress = reporter.getProgress();
+
+    assertEquals(72, progress.getPercent());
+    assertEquals(Duration.ofSeconds(168), progress.getEta().orElseThrow());
+    assertEquals("72%, 2 min left", progress.describe());
+    assertEquals(72, Progress.fromDocument("backfill", progress.toDocument()).getPercent());
+  }
+
+  @Test
+  void shouldDescribeProgressWithoutTotal() {
+    ProgressReporter reporter = new ProgressReporter("backfill", Duration.ofHours(1), progress -> fail("not published"), clock);
+    now = START.plusSeconds(40);
+    reporter.increment(1400);
+
+    assertFalse(reporter.getProgress().getEta().isPresent());
+    assertEquals(-1, reporter.getProgress().getPercent());
+    assertEquals("1400 done, 35/s", reporter.getProgress().describe());
+  }
+}
@@ -0,0 +1,54 @@
+package com.github.mongobat.resolver;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParameterProvidersTest {
+
+  @Test
+  void shouldMatchSupertypesPreferringExactRegistration() {
+    ParameterProviders providers = new ParameterProviders()
+        .register(ArrayList.class, ArrayList::new)
+        .register(List.class, LinkedList::new);
+
+    assertTrue(providers.supports(Collection.class));
+    assertFalse(providers.supports(String.class));
+    assertInstanceOf(ArrayList.class, providers.resolve(Collection.class));
+    assertInstanceOf(LinkedList.class, providers.resolve(List.class));
+    assertThrows(IllegalArgumentException.class, () -> providers.resolve(String.class));
+  }
+
+  @Test
+  void shouldCreateInstancesLazilyPerScope() {
+    AtomicInteger runCreated = new AtomicInteger();
+    AtomicInteger singletonCreated = new AtomicInteger();
+    AtomicInteger closed = new AtomicInteger();
+    ParameterProviders providers = new ParameterProviders()
+        .register(AutoCloseable.class, () -> {
+          runCreated.incrementAndGet();
+          return closed::incrementAndGet;
+        })
+        .register(StringBuilder.class, () -> new StringBuilder("singleton" + singletonCreated.incrementAndGet()),
+            ParameterScope.SINGLETON);
+    assertEquals(0, runCreated.get());
+
+    Object first = providers.resolve(AutoCloseable.class);
+    assertSame(first, providers.resolve(AutoCloseable.class));
+    Object singleton = providers.resolve(StringBuilder.class);
+    providers.endRun();
+    Object second = providers.resolve(AutoCloseable.class);
+
+    assertNotSame(first, second);
+    assertEquals(2, runCreated.get());
+    assertEquals(1, closed.get());
+    assertSame(singleton, providers.resolve(CharSequence.class));
+    assertEquals(1, singletonCreated.get());
+  }
+}
@@ -0,0 +1,52 @@
+package com.github.mongobat.retry;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.MongoSocketReadException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteError;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+
+  private final RetryPolicy policy = new RetryPolicy();
+
+  @Test
+  void shouldClassifyErrorsByLabelAndCode() {
+    MongoException labelled = new MongoException("Transaction aborted");
+    labelled.addLabel(RetryPolicy.TRANSIENT_TRANSACTION_ERROR);
+    MongoCommandException steppedDown = new MongoCommandException(
+        BsonDocument.parse("{ok: 0, code: 189, errmsg: 'primary stepped down'}"), new ServerAddress());
+    MongoWriteException writeConflict = new MongoWriteException(
+        new WriteError(112, "WriteConflict", new BsonDocument()), new ServerAddress());
+    MongoCommandException duplicateKey = new MongoCommandException(
+        BsonDocument.parse("{ok: 0, code: 11000, errmsg: 'duplicate key'}"), new ServerAddress());
+
+    assertTrue(policy.isRetryable(labelled));
+    assertTrue(policy.isRetryable(steppedDown));
+    assertTrue(policy.isRetryable(writeConflict));
+    assertTrue(policy.isRetryable(new RuntimeException(new MongoSocketReadException("reset", new ServerAddress()))));
+    assertFalse(policy.isRetryable(duplicateKey));
+    assertFalse(policy.isRetryable(new IllegalStateException("bug")));
+    assertFalse(new RetryPolicy().setRetryableLabels(Set.of()).isRetryable(labelled));
+  }
+
+  @Test
+  void shouldBoundExponentialBackoffWithJitter() {
+    policy.setInitialBackoff(Duration.ofMillis(100)).setMaxBackoff(Duration.ofMillis(1000));
+
+    for (int i = 0; i < 100; i++) {
+      assertTrue(policy.getBackoff(1).toMillis() <= 100);
+      assertTrue(policy.getBackoff(3).toMillis() <= 400);
+      assertTrue(policy.getBackoff(50).toMillis() <= 1000);
+    }
+    assertEquals(Duration.ZERO, new RetryPolicy().setInitialBackoff(Duration.ZERO).getBackoff(2));
+  }
+}
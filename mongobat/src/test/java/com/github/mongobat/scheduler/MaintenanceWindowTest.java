@@ -0,0 +1,63 @@
+package com.github.mongobat.scheduler;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MaintenanceWindowTest {
+
+  // 2024-01-01 is Monday
+  private static final ZonedDateTime MONDAY = ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+  @Test
+  void shouldParseDayRangesAndLists() {
+    MaintenanceWindow window = MaintenanceWindow.parse("MON-WED,SAT 01:00-04:30", ZoneOffset.UTC);
+
+    assertEquals(EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY, DayOfWeek.SATURDAY), window.getDays());
+    assertEquals(LocalTime.of(1, 0), window.getStart());
+    assertEquals(LocalTime.of(4, 30), window.getEnd());
+  }
+
+  @Test
+  void shouldParseWeekRangeWrappingSunday() {
+    MaintenanceWindow window = MaintenanceWindow.parse("FRI-MON 01:00-02:00", ZoneOffset.UTC);
+
+    assertEquals(EnumSet.of(DayOfWeek.FRIDAY, DayOfWeek.SATURDAY, DayOfWeek.SUNDAY, DayOfWeek.MONDAY), window.getDays());
+  }
+
+  @Test
+  void shouldFindOccurrenceInsideWindow() {
+    MaintenanceWindow window = MaintenanceWindow.parse("* 02:00-05:00", ZoneOffset.UTC);
+
+    MaintenanceWindow.Occurrence occurrence = window.occurrenceAt(MONDAY.withHour(3)).orElseThrow();
+
+    assertEquals(MONDAY.withHour(2), occurrence.getStart());
+    assertEquals(MONDAY.withHour(5), occurrence.getEnd());
+    assertTrue(window.occurrenceAt(MONDAY.withHour(5)).isEmpty());
+    assertTrue(window.occurrenceAt(MONDAY.withHour(1)).isEmpty());
+  }
+
+  @Test
+  void shouldFindOccurrenceCrossingMidnight() {
+    MaintenanceWindow window = MaintenanceWindow.parse("SUN 22:00-06:00", ZoneOffset.UTC);
+
+    MaintenanceWindow.Occurrence occurrence = window.occurrenceAt(MONDAY.withHour(4)).orElseThrow();
+
+    assertEquals(MONDAY.minusDays(1).withHour(22), occurrence.getStart());
+    assertEquals(MONDAY.withHour(6), occurrence.getEnd());
+    assertTrue(window.occurrenceAt(MONDAY.withHour(23)).isEmpty());
+  }
+
+  @Test
+  void shouldRejectInvalidExpression() {
+    assertThrows(IllegalArgumentException.class, () -> MaintenanceWindow.parse("MON"));
+    assertThrows(IllegalArgumentException.class, () -> MaintenanceWindow.parse("XYZ 01:00-02:00"));
+    assertThrows(IllegalArgumentException.class, () -> MaintenanceWindow.parse("MON 1am-2am"));
+  }
+}
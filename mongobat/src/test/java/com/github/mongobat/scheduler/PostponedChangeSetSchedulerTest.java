@@ -0,0 +1,72 @@
+package com.github.mongobat.scheduler;
+
+import com.github.mongobat.ExecutionReport;
+import com.github.mongobat.MongoBat;
+import com.github.mongobat.changeset.CancellationToken;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PostponedChangeSetSchedulerTest {
+
+  // 2024-01-01 is Monday
+  private static final Instant MONDAY_3AM = Instant.parse("2024-01-01T03:00:00Z");
+
+  @Mock
+  private MongoBat mongoBat;
+
+  @Test
+  void shouldNotExecuteOutsideOfWindow() throws Exception {
+    PostponedChangeSetScheduler scheduler = new PostponedChangeSetScheduler(mongoBat,
+        List.of(MaintenanceWindow.parse("TUE 02:00-05:00", ZoneOffset.UTC)))
+        .setClock(Clock.fixed(MONDAY_3AM, ZoneOffset.UTC));
+
+    assertNull(scheduler.runOnce());
+    verify(mongoBat, never()).executePostponed(anyInt(), any(Instant.class), any(CancellationToken.class));
+  }
+
+  @Test
+  void shouldExecuteUntilWindowEnd() throws Exception {
+    ExecutionReport report = new ExecutionReport("id");
+    when(mongoBat.executePostponed(eq(3), any(Instant.class), any(CancellationToken.class))).thenReturn(report);
+    PostponedChangeSetScheduler scheduler = new PostponedChangeSetScheduler(mongoBat,
+        List.of(MaintenanceWindow.parse("MON 02:00-05:00", ZoneOffset.UTC)))
+        .setConcurrency(3)
+        .setClock(Clock.fixed(MONDAY_3AM, ZoneOffset.UTC));
+
+    assertSame(report, scheduler.runOnce());
+
+    ArgumentCaptor<Instant> deadline = ArgumentCaptor.forClass(Instant.class);
+    verify(mongoBat).executePostponed(eq(3), deadline.capture(), any(CancellationToken.class));
+    assertEquals(Instant.parse("2024-01-01T05:00:00Z"), deadline.getValue());
+  }
+
+  @Test
+  void shouldLimitExecutionByWindowBudget() throws Exception {
+    PostponedChangeSetScheduler scheduler = new PostponedChangeSetScheduler(mongoBat,
+        List.of(MaintenanceWindow.parse("MON 02:00-05:00", ZoneOffset.UTC)))
+        .setWindowBudget(Duration.ofMinutes(30))
+        .setClock(Clock.fixed(MONDAY_3AM, ZoneOffset.UTC));
+
+    scheduler.runOnce();
+
+    ArgumentCaptor<Instant> deadline = ArgumentCaptor.forClass(Instant.class);
+    verify(mongoBat).executePostponed(eq(1), deadline.capture(), any(CancellationToken.class));
+    assertEquals(MONDAY_3AM.plus(Duration.ofMinutes(30)), deadline.getValue());
+  }
+}
@@ -0,0 +1,112 @@
+package com.github.mongobat.seed;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.WriteModel;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.ByteBuf;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SeedLoaderTest {
+
+  @Mock
+  private MongoCollection<Document> collection;
+
+  @Mock
+  private MongoCollection<RawBsonDocument> rawCollection;
+
+  private final List<List<WriteModel<RawBsonDocument>>> batches = new ArrayList<>();
+
+  @TempDir
+  Path directory;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    when(collection.withDocumentClass(RawBsonDocument.class)).thenReturn(rawCollection);
+    lenient().when(rawCollection.getNamespace()).thenReturn(new MongoNamespace("test", "currencies"));
+    lenient().when(rawCollection.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenAnswer(invocation -> {
+      batches.add(new ArrayList<>((List<WriteModel<RawBsonDocument>>) invocation.getArgument(0)));
+      return BulkWriteResult.unacknowledged();
+    });
+  }
+
+  @Test
+  void shouldInsertJsonLinesInBatches() throws Exception {
+    SeedResult result = new SeedLoader(2, List.of()).load(SeedSource.of("classpath:seed/currencies.jsonl"), collection);
+
+    assertEquals(5, result.getRead());
+    assertEquals(3, result.getBatches());
+    assertEquals(List.of(2, 2, 1), batches.stream().map(List::size).collect(Collectors.toList()));
+    InsertOneModel<RawBsonDocument> first = (InsertOneModel<RawBsonDocument>) batches.get(0).get(0);
+    assertEquals("EUR", first.getDocument().getString("code").getValue());
+    assertTrue(first.getDocument().get("rate").isDecimal128());
+  }
+
+  @Test
+  void shouldUpsertExtendedJsonArrayByKeys() throws Exception {
+    Path file = directory.resolve("currencies.json");
+    Files.writeString(file, "[{\"code\": \"EUR\", \"since\": {\"$date\": \"1999-01-01T00:00:00Z\"}},\n {\"code\": \"USD\"}]");
+
+    SeedResult result = new SeedLoader(10, List.of("code")).load(SeedSource.of("file:" + file), collection);
+
+    assertEquals(2, result.getRead());
+    ReplaceOneModel<RawBsonDocument> first = (ReplaceOneModel<RawBsonDocument>) batches.get(0).get(0);
+    assertEquals(new BsonDocument("code", new BsonString("EUR")), first.getFilter());
+    assertTrue(first.getReplaceOptions().isUpsert());
+    assertTrue(first.getReplacement().get("since").isDateTime());
+  }
+
+  @Test
+  void shouldReadMemoryMappedBsonDump() throws Exception {
+    ByteArrayOutputStream dump = new ByteArrayOutputStream();
+    for (int i = 0; i < 3; i++) {
+      ByteBuf document = RawBsonDocument.parse("{\"_id\": " + i + ", \"name\": \"n" + i + "\"}").getByteBuffer();
+      byte[] bytes = new byte[document.remaining()];
+      document.get(bytes);
+      dump.write(bytes);
+    }
+    Path file = directory.resolve("currencies.bson");
+    Files.write(file, dump.toByteArray());
+
+    SeedResult result = new SeedLoader(1000, List.of("_id")).load(SeedSource.file(file), collection);
+
+    assertEquals(3, result.getRead());
+    assertEquals(1, batches.size());
+    ReplaceOneModel<RawBsonDocument> last = (ReplaceOneModel<RawBsonDocument>) batches.get(0).get(2);
+    assertEquals("n2", last.getReplacement().getString("name").getValue());
+  }
+
+  @Test
+  void shouldRejectDocumentWithoutUpsertKey() {
+    SeedLoader loader = new SeedLoader(10, List.of("isoCode"));
+
+    assertThrows(IllegalArgumentException.class, () -> loader.load(SeedSource.classpath("seed/currencies.jsonl"), collection));
+    verify(rawCollection, never()).bulkWrite(anyList(), any(BulkWriteOptions.class));
+  }
+}
@@ -0,0 +1,81 @@
+package com.github.mongobat.stats;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.MongoDatabase;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CollectionStatsCollectorTest {
+
+  @Mock
+  private MongoDatabase db;
+
+  private final CollectionStatsCollector collector = new CollectionStatsCollector();
+
+  @AfterEach
+  void close() {
+    collector.close();
+  }
+
+  @Test
+  void shouldSnapshotCollectionsConcurrently() {
+    CountDownLatch started = new CountDownLatch(2);
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    when(db.runCommand(any(Bson.class))).thenAnswer(invocation -> {
+      String collection = ((Document) invocation.getArgument(0)).getString("collStats");
+      threads.add(Thread.currentThread().getName());
+      started.countDown();
+      // both commands must be in flight at the same time
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      if (collection.equals("missing")) {
+        throw new MongoCommandException(new BsonDocument("ok", new BsonInt32(0)).append("code", new BsonInt32(26)),
+            new ServerAddress());
+      }
+      return new Document("count", 10).append("size", 2048L).append("storageSize", 4096.0).append("totalIndexSize", 512);
+    });
+
+    Map<String, CollectionStats> snapshot = collector.snapshot(db, List.of("orders", "missing"));
+
+    assertEquals(List.of("orders", "missing"), List.copyOf(snapshot.keySet()));
+    assertEquals(new Document("count", 10L).append("size", 2048L).append("storageSize", 4096L).append("totalIndexSize", 512L),
+        snapshot.get("orders").toDocument());
+    assertEquals(0, snapshot.get("missing").getCount());
+    assertEquals(2, threads.size());
+    assertTrue(threads.stream().allMatch(name -> name.startsWith("mongobat-stats-")));
+  }
+
+  @Test
+  void shouldComputeDeltasOfCollectionsInBothSnapshots() {
+    Map<String, CollectionStats> before = Map.of("orders", new CollectionStats(10, 1000, 4096, 512));
+    Map<String, CollectionStats> after = Map.of("orders", new CollectionStats(15, 1600, 8192, 512),
+        "customers", new CollectionStats(1, 100, 4096, 256));
+
+    Map<String, CollectionStats> delta = CollectionStatsCollector.delta(before, after);
+
+    assertEquals(Set.of("orders"), delta.keySet());
+    assertEquals(List.of(new Document("collection", "orders").append("count", 5L).append("size", 600L)
+            .append("storageSize", 4096L).append("totalIndexSize", 0L)),
+        CollectionStatsCollector.toDocuments(delta));
+    assertEquals("count +5, size +600 B, storage +4096 B, indexes +0 B", delta.get("orders").toString());
+  }
+}
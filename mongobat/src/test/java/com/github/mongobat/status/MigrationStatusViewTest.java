@@ -0,0 +1,179 @@
+package com.github.mongobat.status;
+
+import com.github.mongobat.changeset.ChangeEntry;
+import com.github.mongobat.dao.LockDao;
+import com.mongodb.MongoCommandException;
+import com.mongodb.ServerAddress;
+import com.github.mongobat.progress.Progress;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MigrationStatusViewTest {
+
+  private static final String LOCK_COLLECTION_NAME = "mongobatlock";
+  private static final String CHANGELOG_COLLECTION_NAME = "dbchangelog";
+  private static final Instant NOW = Instant.parse("2024-01-01T10:00:00Z");
+
+  @Mock
+  private MongoDatabase db;
+
+  @Mock
+  private MongoCollection<Document> changelog;
+
+  @Mock
+  private FindIterable<Document> progressEntries;
+
+  @Mock
+  private ChangeStreamIterable<Document> changeStream;
+
+  @Mock
+  private MongoChangeStreamCursor<ChangeStreamDocument<Document>> changeStreamCursor;
+
+  private final LockDao lockDao = spy(new LockDao(LOCK_COLLECTION_NAME));
+
+  @BeforeEach
+  void init() {
+    lenient().doReturn(lock("node-1", List.of("change1"), 3)).when(lockDao).findLock(db);
+    lenient().when(db.getCollection(CHANGELOG_COLLECTION_NAME)).thenReturn(changelog);
+    lenient().when(changelog.find(any(Bson.class))).thenReturn(progressEntries);
+    lenient().when(progressEntries.projection(any())).thenReturn(progressEntries);
+    lenient().when(progressEntries.into(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+  }
+
+  @Test
+  void shouldFallBackToCachedPointReadsWhenChangeStreamsAreNotAvailable() {
+    when(db.watch(anyList())).thenThrow(new MongoCommandException(
+        BsonDocument.parse("{ok: 0, code: 40573, errmsg: 'The $changeStream stage is only supported on replica sets'}"),
+        new ServerAddress()));
+    MigrationStatusView view = new MigrationStatusView(db, lockDao, CHANGELOG_COLLECTION_NAME, Duration.ofSeconds(5), true);
+    view.setClock(Clock.fixed(NOW, ZoneOffset.UTC));
+
+    MigrationStatus status = view.getStatus();
+    view.getStatus();
+
+    assertTrue(status.isLockHeld());
+    assertEquals("node-1", status.getOwner());
+    assertEquals(List.of("change1"), status.getRunningChangeIds());
+    assertEquals(3, status.getCompletedChanges());
+    verify(lockDao, times(1)).findLock(db);
+    verify(db, times(1)).watch(anyList());
+  }
+
+  @Test
+  void shouldFallBackToCachedPointReadsWhenChangeStreamEnds() {
+    when(db.watch(anyList())).thenReturn(changeStream);
+    when(changeStream.fullDocument(FullDocument.UPDATE_LOOKUP)).thenReturn(changeStream);
+    when(changeStream.cursor()).thenReturn(changeStreamCursor);
+    MigrationStatusView view = new MigrationStatusView(db, lockDao, CHANGELOG_COLLECTION_NAME, Duration.ofSeconds(5), true);
+    view.setClock(Clock.fixed(NOW, ZoneOffset.UTC));
+
+    view.getStatus();
+
+    // tryNext() of an invalidated stream returns null without a server cursor
+    verify(changeStreamCursor, timeout(1000)).close();
+    doReturn(null).when(lockDao).findLock(db);
+    assertFalse(view.getStatus().isLockHeld());
+    verify(lockDao, times(2)).findLock(db);
+  }
+
+  @Test
+  void shouldReadAgainWhenCacheExpired() {
+    MigrationStatusView view = new MigrationStatusView(db, lockDao, CHANGELOG_COLLECTION_NAME, Duration.ofSeconds(5), false);
+    view.setClock(Clock.fixed(NOW, ZoneOffset.UTC));
+    view.getStatus();
+
+    doReturn(null).when(lockDao).findLock(db);
+    view.setClock(Clock.fixed(NOW.plusSeconds(5), ZoneOffset.UTC));
+
+    assertFalse(view.getStatus().isLockHeld());
+    verify(lockDao, times(2)).findLock(db);
+    verify(db, never()).watch(anyList());
+  }
+
+  @Test
+  void shouldApplyLockAndChangelogEvents() {
+    MigrationStatusView view = new MigrationStatusView(db, lockDao, CHANGELOG_COLLECTION_NAME, Duration.ofSeconds(5), false);
+
+    view.apply(LOCK_COLLECTION_NAME, OperationType.UPDATE, lock("node-2", List.of("change2"), 1));
+    view.apply(CHANGELOG_COLLECTION_NAME, OperationType.INSERT,
+        new Document(ChangeEntry.KEY_CHANGE_ID, "change1").append(ChangeEntry.KEY_STATUS, "installed"));
+    MigrationStatus running = view.getStatusSnapshot();
+
+    view.apply(LOCK_COLLECTION_NAME, OperationType.DELETE, null);
+    MigrationStatus released = view.getStatusSnapshot();
+
+    assertTrue(running.isLockHeld());
+    assertEquals("node-2", running.getOwner());
+    assertEquals(List.of("change2"), running.getRunningChangeIds());
+    assertEquals("change1", running.getLastChangeId());
+    assertFalse(released.isLockHeld());
+    assertEquals("change1", released.getLastChangeId());
+    assertEquals("installed", released.getLastChangeStatus());
+  }
+
+  @Test
+  void shouldKeepProgressOfRunningChanges() {
+    when(progressEntries.into(anyList())).thenAnswer(invocation -> {
+      List<Document> target = invocation.getArgument(0);
+      target.add(progress("change1", 720, 1000));
+      return target;
+    });
+    MigrationStatusView view = new MigrationStatusView(db, lockDao, CHANGELOG_COLLECTION_NAME, Duration.ofSeconds(5), false);
+    view.setClock(Clock.fixed(NOW, ZoneOffset.UTC));
+
+    MigrationStatus read = view.getStatus();
+    view.apply(CHANGELOG_COLLECTION_NAME, OperationType.UPDATE, progress("change1", 900, 1000));
+    MigrationStatus updated = view.getStatusSnapshot();
+    view.apply(LOCK_COLLECTION_NAME, OperationType.UPDATE, lock("node-1", List.of(), 4));
+    MigrationStatus finished = view.getStatusSnapshot();
+
+    assertEquals(72, read.getProgress().get("change1").getPercent());
+    assertEquals("running change1: 72%, 28 s left", read.getSummary());
+    assertNull(read.getLastChangeId());
+    assertEquals(90, updated.getProgress().get("change1").getPercent());
+    assertTrue(finished.getProgress().isEmpty());
+    assertEquals("running, 4 changes completed", finished.getSummary());
+  }
+
+  private static Document progress(String changeId, long done, long total) {
+    // 10 per second since the lock was acquired
+    return new Document(ChangeEntry.KEY_CHANGE_ID, changeId)
+        .append(ChangeEntry.KEY_STATUS, "in-progress")
+        .append(ChangeEntry.KEY_PROGRESS, new Progress(changeId, done, total, 10, NOW, NOW.plusSeconds(done / 10)).toDocument());
+  }
+
+  private static Document lock(String owner, List<String> running, int completed) {
+    return new Document("key", "LOCK")
+        .append(LockDao.KEY_OWNER, owner)
+        .append(LockDao.KEY_ACQUIRED_AT, Date.from(NOW))
+        .append(LockDao.KEY_RUNNING, running)
+        .append(LockDao.KEY_COMPLETED, completed);
+  }
+}
@@ -0,0 +1,149 @@
+package com.github.mongobat.status;
+
+import com.github.mongobat.ExecutionReport;
+import com.github.mongobat.dao.LockDao;
+import com.github.mongobat.progress.Progress;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class StatusServerTest {
+
+  private final RunMetrics metrics = new RunMetrics();
+  private StatusServer server;
+
+  @BeforeEach
+  void init() throws IOException {
+    metrics.runStarted();
+    metrics.lockWaited(Duration.ofMillis(1500), true);
+    ExecutionReport report = new ExecutionReport("node-1");
+    report.addExecuted("change1");
+    report.addRetry("change2");
+    metrics.changeSetStarted("change1", report);
+    metrics.changeSetFinished("change1", "succeeded");
+    metrics.changeSetStarted("change2", report);
+    metrics.progressReported(new Progress("change2", 500, 1000L, 250.0, Instant.now(), Instant.now()));
+
+    Document lock = new Document(LockDao.KEY_OWNER, "node-1")
+        .append(LockDao.KEY_ACQUIRED_AT, new Date())
+        .append(LockDao.KEY_RUNNING, List.of("change2"))
+        .append(LockDao.KEY_COMPLETED, 1);
+    server = new StatusServer(new InetSocketAddress("localhost", 0), metrics, () -> MigrationStatus.fromLock(lock)).start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop();
+  }
+
+  @Test
+  void shouldServeStatusAsJson() throws IOException {
+    HttpURLConnection connection = get("/status");
+
+    assertEquals(200, connection.getResponseCode());
+    assertEquals("application/json", connection.getContentType());
+    Document status = Document.parse(body(connection));
+    Document lock = status.get("lock", Document.class);
+    assertTrue(lock.getBoolean("held"));
+    assertEquals("node-1", lock.getString("owner"));
+    assertEquals(List.of("change2"), lock.getList("runningChangeIds", String.class));
+    List<Document> current = status.getList("current", Document.class);
+    assertEquals(1, current.size());
+    assertEquals("change2", current.get(0).getString("changeId"));
+    assertEquals(500, current.get(0).get("progress", Document.class).get("done", Number.class).intValue());
+    Document report = status.get("report", Document.class);
+    assertEquals(1, report.getInteger("executed"));
+    assertEquals(1, report.getInteger("retries"));
+    assertTrue(status.get("run", Document.class).getBoolean("lockAcquired"));
+  }
+
+  @Test
+  void shouldServeMetricsInPrometheusFormat() throws IOException {
+    HttpURLConnection connection = get("/metrics");
+
+    assertEquals(200, connection.getResponseCode());
+    assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+    String text = body(connection);
+    assertTrue(text.contains("# TYPE mongobat_lock_wait_seconds gauge\nmongobat_lock_wait_seconds 1.500\n"), text);
+    assertTrue(text.contains("mongobat_lock_acquired 1\n"), text);
+    assertTrue(text.contains("mongobat_changesets{result=\"executed\"} 1\n"), text);
+    assertTrue(text.contains("mongobat_changeset_retries{change_id=\"change2\"} 1\n"), text);
+    assertTrue(text.contains("mongobat_changeset_duration_seconds{change_id=\"change1\",outcome=\"succeeded\"} "), text);
+    assertTrue(text.contains("mongobat_changeset_processed{change_id=\"change2\"} 500\n"), text);
+    assertTrue(text.contains("mongobat_changeset_throughput{change_id=\"change2\"} 250\n"), text);
+    assertTrue(text.contains("mongobat_run_finished 0\n"), text);
+  }
+
+  @Test
+  void shouldRejectOtherMethods() throws IOException {
+    HttpURLConnection connection = get("/metrics");
+    connection.setRequestMethod("DELETE");
+
+    assertEquals(405, connection.getResponseCode());
+  }
+
+  @Test
+  void shouldRespondWithServerErrorWhenRenderingFails() throws IOException {
+    HttpExchange exchange = mock(HttpExchange.class);
+    when(exchange.getRequestMethod()).thenReturn("GET");
+
+    StatusServer.respond(exchange, "application/json", () -> {
+      throw new IllegalStateException("boom");
+    });
+
+    verify(exchange).sendResponseHeaders(500, -1);
+    verify(exchange).close();
+  }
+
+  @Test
+  void shouldNotSendHeadersTwiceWhenWritingBodyFails() throws IOException {
+    HttpExchange exchange = mock(HttpExchange.class);
+    when(exchange.getRequestMethod()).thenReturn("GET");
+    when(exchange.getResponseHeaders()).thenReturn(new Headers());
+    when(exchange.getResponseBody()).thenThrow(new IllegalStateException("boom"));
+
+    StatusServer.respond(exchange, "application/json", () -> "{}");
+
+    verify(exchange).sendResponseHeaders(200, 2);
+    verify(exchange, never()).sendResponseHeaders(eq(500), anyLong());
+    verify(exchange).close();
+  }
+
+  @Test
+  void shouldReleasePortWhenStopped() {
+    assertTrue(server.getPort() > 0);
+
+    server.stop();
+
+    assertEquals(-1, server.getPort());
+  }
+
+  private HttpURLConnection get(String path) throws IOException {
+    return (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+  }
+
+  private static String body(HttpURLConnection connection) throws IOException {
+    try (InputStream in = connection.getInputStream()) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package com.github.mongobat.transform;
+
+import com.github.mongobat.changeset.CancellationToken;
+import com.github.mongobat.exception.MongoBatChangeSetException;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.ListIndexesIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.RenameCollectionOptions;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ShadowRebuildExecutorTest {
+
+  @Mock
+  private MongoDatabase database;
+
+  @Mock
+  private MongoCollection<Document> source;
+
+  @Mock
+  private MongoCollection<Document> shadow;
+
+  @Mock
+  private MongoCollection<Document> marker;
+
+  @Mock
+  private MongoDatabase admin;
+
+  @Mock
+  private MongoChangeStreamCursor<ChangeStreamDocument<Document>> changes;
+
+  private final List<List<WriteModel<Document>>> shadowWrites = new ArrayList<>();
+  private final List<List<WriteModel<Document>>> sourceWrites = new ArrayList<>();
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    lenient().when(database.getName()).thenReturn("test");
+    when(database.getCollection("orders")).thenReturn(source);
+    when(database.getCollection("orders_shadow")).thenReturn(shadow);
+    when(database.getCollection("orders_shadow_cutover")).thenReturn(marker);
+
+    ListIndexesIterable<Document> indexes = mock(ListIndexesIterable.class);
+    MongoCursor<Document> indexCursor = cursorOf(List.of(
+        new Document("v", 2).append("key", new Document("_id", 1)).append("name", "_id_"),
+        new Document("v", 2).append("key", new Document("customer", 1)).append("name", "customer_1")));
+    when(source.listIndexes()).thenReturn(indexes);
+    when(indexes.iterator()).thenReturn(indexCursor);
+
+    FindIterable<Document> documents = mock(FindIterable.class);
+    MongoCursor<Document> documentCursor = cursorOf(List.of(
+        new Document("_id", 1).append("customer_id", "a"),
+        new Document("_id", 2).append("customer_id", "b"),
+        new Document("_id", 3).append("customer_id", "c")));
+    when(source.find()).thenReturn(documents);
+    when(documents.batchSize(anyInt())).thenReturn(documents);
+    when(documents.iterator()).thenReturn(documentCursor);
+
+    ChangeStreamIterable<Document> stream = mock(ChangeStreamIterable.class);
+    when(database.watch(anyList())).thenReturn(stream);
+    when(stream.fullDocument(FullDocument.UPDATE_LOOKUP)).thenReturn(stream);
+    when(stream.batchSize(anyInt())).thenReturn(stream);
+    when(stream.cursor()).thenReturn(changes);
+
+    lenient().when(shadow.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenAnswer(invocation -> {
+      shadowWrites.add(new ArrayList<>((List<WriteModel<Document>>) invocation.getArgument(0)));
+      return null;
+    });
+    lenient().when(source.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenAnswer(invocation -> {
+      sourceWrites.add(new ArrayList<>((List<WriteModel<Document>>) invocation.getArgument(0)));
+      return null;
+    });
+  }
+
+  @Test
+  void shouldCopyCatchUpAndRenameShadowCollection() throws Exception {
+    ChangeStreamDocument<Document> update = event(OperationType.UPDATE, 2, new Document("_id", 2).append("customer_id", "B"));
+    ChangeStreamDocument<Document> delete = event(OperationType.DELETE, 3, null);
+    ChangeStreamDocument<Document> markerInsert = markerEvent();
+    when(changes.tryNext()).thenReturn(update, null, null, delete, markerInsert);
+    ShadowRebuild rebuild = ShadowRebuild.of("orders")
+        .transform(order -> new Document("customer", order.get("customer_id")))
+        .batchSize(2)
+        .writeBlock(mock(WriteBlock.class));
+
+    ShadowRebuildReport report = new ShadowRebuildExecutor(admin).execute(database, rebuild, new CancellationToken());
+
+    verify(shadow).drop();
+    verify(database).runCommand(new Document("createIndexes", "orders_shadow").append("indexes",
+        List.of(new Document("key", new Document("customer", 1)).append("name", "customer_1"))));
+    assertEquals(4, shadowWrites.size());
+    InsertOneModel<Document> copied = (InsertOneModel<Document>) shadowWrites.get(0).get(0);
+    assertEquals(new Document("customer", "a").append("_id", 1), copied.getDocument());
+    ReplaceOneModel<Document> replayed = (ReplaceOneModel<Document>) shadowWrites.get(2).get(0);
+    assertEquals("B", replayed.getReplacement().get("customer"));
+    assertInstanceOf(DeleteOneModel.class, shadowWrites.get(3).get(0));
+    verify(shadow).renameCollection(eq(new MongoNamespace("test", "orders")), any(RenameCollectionOptions.class));
+    assertTrue(sourceWrites.isEmpty());
+    assertEquals(3, report.getCopied());
+    assertEquals(2, report.getReplayed());
+    verify(changes).close();
+  }
+
+  @Test
+  void shouldReplayCutOverEventsBeforeRenameWhileWritesAreBlocked() throws Exception {
+    // the document was deleted before the lookup, its delete event follows
+    ChangeStreamDocument<Document> updateOfDeleted = event(OperationType.UPDATE, 1, null);
+    ChangeStreamDocument<Document> delete = event(OperationType.DELETE, 1, null);
+    ChangeStreamDocument<Document> update = event(OperationType.UPDATE, 2, new Document("_id", 2).append("customer_id", "B"));
+    // made after the rename, on the new collection, and must not be replayed over it
+    ChangeStreamDocument<Document> updateAfterRename = event(OperationType.UPDATE, 3, new Document("_id", 3).append("customer", "C"));
+    ChangeStreamDocument<Document> markerInsert = markerEvent();
+    when(changes.tryNext()).thenReturn(null, updateOfDeleted, delete, update, markerInsert, updateAfterRename);
+    ShadowRebuild rebuild = ShadowRebuild.of("orders")
+        .transform(order -> new Document("customer", order.get("customer_id")))
+        .writeBlock(WriteBlock.userWriteBlockMode());
+
+    ShadowRebuildReport report = new ShadowRebuildExecutor(admin).execute(database, rebuild, new CancellationToken());
+
+    InOrder cutOver = inOrder(admin, marker, shadow);
+    cutOver.verify(admin).runCommand(new Document("setUserWriteBlockMode", 1).append("global", true));
+    cutOver.verify(marker).insertOne(any(Document.class));
+    cutOver.verify(shadow).bulkWrite(anyList(), any(BulkWriteOptions.class));
+    cutOver.verify(shadow).renameCollection(eq(new MongoNamespace("test", "orders")), any(RenameCollectionOptions.class));
+    cutOver.verify(admin).runCommand(new Document("setUserWriteBlockMode", 1).append("global", false));
+    cutOver.verify(marker).drop();
+
+    List<WriteModel<Document>> replayed = shadowWrites.get(shadowWrites.size() - 1);
+    assertEquals(2, replayed.size());
+    assertEquals(BsonDocument.parse("{_id: 1}"), ((DeleteOneModel<Document>) replayed.get(0)).getFilter().toBsonDocument());
+    assertEquals("B", ((ReplaceOneModel<Document>) replayed.get(1)).getReplacement().get("customer"));
+    assertTrue(sourceWrites.isEmpty());
+    assertEquals(2, report.getReplayed());
+    verify(changes, times(5)).tryNext();
+  }
+
+  @Test
+  void shouldResumeWritesWhenCutOverFails() {
+    ChangeStreamDocument<Document> drop = event(OperationType.DROP, null, null);
+    when(changes.tryNext()).thenReturn(null, drop);
+    WriteBlock writeBlock = mock(WriteBlock.class);
+
+    assertThrows(MongoBatChangeSetException.class, () -> new ShadowRebuildExecutor(admin)
+        .execute(database, ShadowRebuild.of("orders").writeBlock(writeBlock), new CancellationToken()));
+
+    verify(writeBlock).block(admin);
+    verify(writeBlock).unblock(admin);
+    verify(shadow, never()).renameCollection(any(MongoNamespace.class), any(RenameCollectionOptions.class));
+  }
+
+  @Test
+  void shouldFailWhenSourceCollectionIsDroppedBeforeCutOver() {
+    ChangeStreamDocument<Document> drop = event(OperationType.DROP, null, null);
+    when(changes.tryNext()).thenReturn(drop);
+
+    assertThrows(MongoBatChangeSetException.class,
+        () -> new ShadowRebuildExecutor(admin).execute(database, ShadowRebuild.of("orders").writeBlock(mock(WriteBlock.class)),
+            new CancellationToken()));
+
+    verify(shadow, never()).renameCollection(any(MongoNamespace.class), any(RenameCollectionOptions.class));
+    verify(changes).close();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static MongoCursor<Document> cursorOf(List<Document> documents) {
+    MongoCursor<Document> cursor = mock(MongoCursor.class);
+    List<Boolean> hasNext = new ArrayList<>();
+    documents.forEach(document -> hasNext.add(true));
+    when(cursor.hasNext()).thenReturn(!documents.isEmpty(), hasNext.subList(1, hasNext.size()).toArray(new Boolean[0]))
+        .thenReturn(false);
+    when(cursor.next()).thenReturn(documents.get(0), documents.subList(1, documents.size()).toArray(new Document[0]));
+    return cursor;
+  }
+
+  private static ChangeStreamDocument<Document> markerEvent() {
+    ChangeStreamDocument<Document> event = event(OperationType.INSERT, null, null);
+    when(event.getNamespace()).thenReturn(new MongoNamespace("test", "orders_shadow_cutover"));
+    return event;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static ChangeStreamDocument<Document> event(OperationType type, Integer id, Document fullDocument) {
+    ChangeStreamDocument<Document> event = mock(ChangeStreamDocument.class);
+    lenient().when(event.getOperationType()).thenReturn(type);
+    lenient().when(event.getOperationTypeString()).thenReturn(type.getValue());
+    lenient().when(event.getDocumentKey()).thenReturn(id == null ? null : new BsonDocument("_id", new BsonInt32(id)));
+    lenient().when(event.getFullDocument()).thenReturn(fullDocument);
+    lenient().when(event.getClusterTime()).thenReturn(new BsonTimestamp((int) Instant.now().getEpochSecond(), 1));
+    return event;
+  }
+}
@@ -0,0 +1,33 @@
+package com.github.mongobat.transform;
+
+import com.github.mongobat.changeset.CancellationToken;
+import com.github.mongobat.exception.MongoBatConfigurationException;
+import com.mongodb.client.MongoDatabase;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class ShadowRebuildTest {
+
+  @Mock
+  private MongoDatabase admin;
+
+  @Mock
+  private MongoDatabase database;
+
+  @Test
+  void shouldRequireExplicitWriteBlock() {
+    ShadowRebuild rebuild = ShadowRebuild.of("orders");
+
+    assertNull(rebuild.getWriteBlock());
+    MongoBatConfigurationException e = assertThrows(MongoBatConfigurationException.class,
+        () -> new ShadowRebuildExecutor(admin).execute(database, rebuild, new CancellationToken()));
+    assertTrue(e.getMessage().contains("write block"), e.getMessage());
+    verifyNoInteractions(admin, database);
+  }
+}
@@ -0,0 +1,126 @@
+package com.github.mongobat.transform;
+
+import com.github.mongobat.changeset.CancellationToken;
+import com.github.mongobat.exception.MongoBatCancellationException;
+import com.github.mongobat.partition.IdRange;
+import com.github.mongobat.partition.IdRangeSplitter;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TransformationExecutorTest {
+
+  private static final List<IdRange> RANGES = IdRange.fromBoundaries(List.of(100));
+
+  @Mock
+  private MongoDatabase database;
+
+  @Mock
+  private MongoCollection<Document> orders;
+
+  @Mock
+  private IdRangeSplitter splitter;
+
+  @BeforeEach
+  void setUp() {
+    when(database.getCollection("orders")).thenReturn(orders);
+    when(orders.estimatedDocumentCount()).thenReturn(200L);
+    lenient().when(splitter.split(orders, 2)).thenReturn(RANGES);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldUpdateChunksWithPipelineAndReportProgress() throws Exception {
+    when(orders.updateMany(any(Bson.class), anyList())).thenReturn(UpdateResult.acknowledged(100, 90L, null));
+    List<TransformationProgress> progress = new ArrayList<>();
+    List<TransformationProgress> throttled = new ArrayList<>();
+    Transformation transformation = Transformation.of("orders")
+        .filter(Filters.exists("amount_str"))
+        .rename("amount_str", "amount")
+        .convert("amount", "decimal")
+        .chunkSize(100)
+        .throttle(last -> {
+          throttled.add(last);
+          return Duration.ofMillis(1);
+        })
+        .onProgress(progress::add);
+
+    TransformationProgress result = new TransformationExecutor(splitter).execute(database, transformation, new CancellationToken());
+
+    ArgumentCaptor<Bson> filters = ArgumentCaptor.forClass(Bson.class);
+    ArgumentCaptor<List<Bson>> pipelines = ArgumentCaptor.forClass(List.class);
+    verify(orders, times(2)).updateMany(filters.capture(), pipelines.capture());
+    assertEquals(Filters.and(RANGES.get(0).toFilter(), Filters.exists("amount_str")).toBsonDocument(),
+        filters.getAllValues().get(0).toBsonDocument());
+    assertEquals(List.of("$set", "$unset", "$set"), pipelines.getValue().stream()
+        .map(stage -> stage.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry()).getFirstKey())
+        .collect(Collectors.toList()));
+    assertEquals(2, progress.size());
+    assertEquals(1, throttled.size());
+    assertTrue(result.isDone());
+    assertEquals(200, result.getMatched());
+    assertEquals(180, result.getModified());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void shouldMergeChunksOfLookupTransformation() throws Exception {
+    AggregateIterable<Document> aggregation = mock(AggregateIterable.class);
+    when(orders.aggregate(anyList())).thenReturn(aggregation);
+    when(aggregation.allowDiskUse(true)).thenReturn(aggregation);
+    Transformation transformation = Transformation.of("orders")
+        .lookupOne("customers", "customerId", "_id", "customer")
+        .chunkSize(100);
+
+    new TransformationExecutor(splitter).execute(database, transformation, new CancellationToken());
+
+    ArgumentCaptor<List<Bson>> pipelines = ArgumentCaptor.forClass(List.class);
+    verify(orders, times(2)).aggregate(pipelines.capture());
+    verify(aggregation, times(2)).toCollection();
+    verify(orders, never()).updateMany(any(Bson.class), anyList());
+    List<Bson> pipeline = pipelines.getValue();
+    assertEquals(List.of("$match", "$lookup", "$set", "$merge"), pipeline.stream()
+        .map(stage -> stage.toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry()).getFirstKey())
+        .collect(Collectors.toList()));
+  }
+
+  @Test
+  void shouldStopWhenCancellationRequested() {
+    CancellationToken token = new CancellationToken();
+    Transformation transformation = Transformation.of("orders").unset("legacy").chunkSize(100)
+        .onProgress(progress -> token.cancel("window closed"));
+    when(orders.updateMany(any(Bson.class), anyList())).thenReturn(UpdateResult.unacknowledged());
+
+    assertThrows(MongoBatCancellationException.class,
+        () -> new TransformationExecutor(splitter).execute(database, transformation, token));
+
+    verify(orders, times(1)).updateMany(any(Bson.class), anyList());
+    verify(splitter).split(orders, 2);
+    verifyNoMoreInteractions(splitter);
+    verify(orders, never()).aggregate(anyList());
+    assertNotNull(token.getReason());
+  }
+}
@@ -112,7 +112,7 @@ public class ChangeServiceTest {
     ChangeService service = new ChangeService(parentPackageName);
     List<Class<?>> changeLogs = service.fetchChangeLogs();
 
-    assertEquals(4, changeLogs.size());
+    assertEquals(13, changeLogs.size());
   }
 
 }
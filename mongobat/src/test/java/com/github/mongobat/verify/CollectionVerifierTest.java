@@ -0,0 +1,94 @@
+package com.github.mongobat.verify;
+
+import com.github.mongobat.changeset.CancellationToken;
+import com.github.mongobat.exception.MongoBatVerificationException;
+import com.github.mongobat.partition.IdRange;
+import com.github.mongobat.partition.IdRangeSplitter;
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CollectionVerifierTest {
+
+  @Mock
+  private IdRangeSplitter splitter;
+
+  @Mock
+  private MongoDatabase database;
+
+  @Mock
+  private MongoCollection<Document> source;
+
+  @Mock
+  private MongoCollection<Document> target;
+
+  @Test
+  void shouldHashWholeDocumentsWithFieldsSortedByName() {
+    List<Bson> pipeline = CollectionVerifier.hashPipeline(List.of());
+
+    assertEquals(1, pipeline.size());
+    assertEquals(BsonDocument.parse("{$group: {_id: null, count: {$sum: 1}, hash: {$sum: {$abs: {$mod: ["
+            + "{$toHashedIndexKey: {$sortArray: {input: {$objectToArray: '$$ROOT'}, sortBy: {k: 1}}}}, {$numberLong: '2147483647'}]}}}}}"),
+        pipeline.get(0).toBsonDocument());
+  }
+
+  @Test
+  void shouldHashIdAndComparedFieldsInOrder() {
+    List<Bson> pipeline = CollectionVerifier.hashPipeline(List.of("number", "customer.name"));
+
+    assertEquals(BsonDocument.parse("{$group: {_id: null, count: {$sum: 1}, hash: {$sum: {$abs: {$mod: ["
+            + "{$toHashedIndexKey: {v: ['$_id', '$number', '$customer.name']}}, {$numberLong: '2147483647'}]}}}}}"),
+        pipeline.get(0).toBsonDocument());
+  }
+
+  @Test
+  void shouldIgnoreFieldOrderWhenComparingSampledDocuments() {
+    Document original = new Document("_id", 1).append("number", "A-1").append("total", 10);
+    Document copy = new Document("total", 10).append("_id", 1).append("number", "A-1");
+
+    assertEquals(List.of(), CollectionVerifier.differentFields(original, copy, List.of()));
+    assertEquals(List.of("total"), CollectionVerifier.differentFields(original, copy.append("total", 0), List.of()));
+    assertEquals(List.of(), CollectionVerifier.differentFields(original, copy, List.of("number")));
+  }
+
+  @Test
+  void shouldFailWhenRangeHashesDiffer() {
+    when(database.getCollection("orders")).thenReturn(source);
+    when(database.getCollection("orders_archive")).thenReturn(target);
+    when(splitter.split(source, 1)).thenReturn(List.of(IdRange.all()));
+    AggregateIterable<Document> sourceHash = hash(3, 42);
+    AggregateIterable<Document> targetHash = hash(3, 41);
+    when(source.aggregate(anyList())).thenReturn(sourceHash);
+    when(target.aggregate(anyList())).thenReturn(targetHash);
+
+    MongoBatVerificationException e = assertThrows(MongoBatVerificationException.class,
+        () -> new CollectionVerifier(splitter, 1).verify(database,
+            Verification.of("orders", "orders_archive").ranges(1).sampleSize(0), new CancellationToken()));
+
+    assertEquals(3, e.getReport().getSourceDocuments());
+    assertEquals(3, e.getReport().getTargetDocuments());
+    assertEquals(1, e.getReport().getMismatchedRanges());
+  }
+
+  @SuppressWarnings("unchecked")
+  private static AggregateIterable<Document> hash(int count, long hash) {
+    AggregateIterable<Document> result = mock(AggregateIterable.class);
+    when(result.allowDiskUse(true)).thenReturn(result);
+    when(result.first()).thenReturn(new Document("count", count).append("hash", hash));
+    return result;
+  }
+}
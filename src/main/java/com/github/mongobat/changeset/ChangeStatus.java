@@ -1,17 +0,0 @@
-package com.github.mongobat.changeset;
-
-public enum ChangeStatus {
-
-  INSTALLED("installed"),
-  FAILED("failed");
-
-  private final String status;
-
-  ChangeStatus(String status) {
-    this.status = status;
-  }
-
-  public String getStatus() {
-    return status;
-  }
-}